@@ -47,10 +47,10 @@ import java.util.concurrent.TimeUnit;
  * is returned instead. E.g. {@link java.util.Map#put(Object, Object)} returns the previous value associated to the
  * supplied key. In case of RemoteCache, this returns null.
  * <p/>
- * <b>Synthetic operations</b>: aggregate operations are being implemented based on other Hot Rod operations. E.g. all
- * the {@link java.util.Map#putAll(java.util.Map)} is implemented through multiple individual puts. This means that the
- * these operations are not atomic and that they are costly, e.g. as the number of network round-trips is not one, but
- * the size of the added map. All these synthetic operations are documented as such.
+ * <b>Synthetic operations</b>: aggregate operations are being implemented based on other Hot Rod operations. E.g.
+ * {@link java.util.Map#putAll(java.util.Map)} and {@link #getAll(java.util.Set)} send one request to each server owning
+ * some of the keys, rather than a single request. This means that these operations are not atomic. All these synthetic
+ * operations are documented as such.
  * <p/>
  * <b>changing default behavior through {@link org.infinispan.client.hotrod.Flag}s</b>: it is possible to change the
  * default cache behaviour by using flags on an per invocation basis. E.g.
@@ -392,4 +392,13 @@ public interface RemoteCache<K, V> extends Cache<K, V> {
     * guarantee that "size" elements are returned( e.g. if the number of elements in the back-end server is smaller that "size")
     */
    Map<K, V> getBulk(int size);
+
+   /**
+    * Retrieves the values associated with the given keys. Keys are grouped by the server owning them and a single
+    * request is sent to each of these servers, in parallel.
+    *
+    * @return an unmodifiable map containing the entries found; keys that are not mapped in the remote cache are not
+    *         included.
+    */
+   Map<K, V> getAll(Set<? extends K> keys);
 }
@@ -53,6 +53,13 @@ public class HotRodClientException extends RuntimeException {
       this.errorStatusCode = errorStatusCode;
    }
 
+   /**
+    * @return the status code of the error response sent by the server, or -1 if this exception was not caused by one
+    */
+   public int getErrorStatusCode() {
+      return errorStatusCode;
+   }
+
    @Override
    public String toString() {
       StringBuilder sb = new StringBuilder(getClass().getName());
@@ -55,6 +55,8 @@ public class ConfigurationProperties {
    public static final String HASH_FUNCTION_PREFIX = "infinispan.client.hotrod.hash_function_impl";
    public static final String DEFAULT_EXECUTOR_FACTORY_QUEUE_SIZE ="infinispan.client.hotrod.default_executor_factory.queue_size";
    public static final String SO_TIMEOUT = "infinispan.client.hotrod.socket_timeout";
+   public static final String PIPELINED_CONNECTIONS_PER_SERVER = "infinispan.client.hotrod.pipelined.connections_per_server";
+   public static final String PIPELINED_MAX_REQUESTS_PER_CONNECTION = "infinispan.client.hotrod.pipelined.max_requests_per_connection";
 
    // defaults
 
@@ -62,6 +64,8 @@ public class ConfigurationProperties {
    private static final int DEFAULT_VALUE_SIZE = 512;
    private static final int DEFAULT_HOTROD_PORT = 11222;
    private static final int DEFAULT_SO_TIMEOUT = 60000;
+   private static final int DEFAULT_PIPELINED_CONNECTIONS_PER_SERVER = 2;
+   private static final int DEFAULT_PIPELINED_MAX_REQUESTS_PER_CONNECTION = 256;
 
    private final TypedProperties props;
 
@@ -142,4 +146,12 @@ public class ConfigurationProperties {
    public int getSoTimeout() {
       return props.getIntProperty(SO_TIMEOUT, DEFAULT_SO_TIMEOUT);
    }
+
+   public int getPipelinedConnectionsPerServer() {
+      return Math.max(1, props.getIntProperty(PIPELINED_CONNECTIONS_PER_SERVER, DEFAULT_PIPELINED_CONNECTIONS_PER_SERVER));
+   }
+
+   public int getPipelinedMaxRequestsPerConnection() {
+      return props.getIntProperty(PIPELINED_MAX_REQUESTS_PER_CONNECTION, DEFAULT_PIPELINED_MAX_REQUESTS_PER_CONNECTION);
+   }
 }
@@ -28,10 +28,12 @@ import org.infinispan.client.hotrod.RemoteCacheManager;
 import org.infinispan.client.hotrod.ServerStatistics;
 import org.infinispan.client.hotrod.Version;
 import org.infinispan.client.hotrod.VersionedValue;
+import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.exceptions.RemoteCacheManagerNotStartedException;
 import org.infinispan.client.hotrod.exceptions.TransportException;
 import org.infinispan.client.hotrod.impl.async.NotifyingFutureImpl;
 import org.infinispan.client.hotrod.impl.operations.*;
+import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.marshall.Marshaller;
 import org.infinispan.util.concurrent.NotifyingFuture;
@@ -39,12 +41,19 @@ import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -62,6 +71,11 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    private OperationsFactory operationsFactory;
    private int estimateKeySize;
    private int estimateValueSize;
+   /**
+    * Hot Rod 1.0 servers predating the get all/put all operations reply to them with an unknown command error, in
+    * which case the key by key operations are used from then on.
+    */
+   private volatile boolean bulkOperationsSupported = true;
 
 
    public RemoteCacheImpl(RemoteCacheManager rcm, String name) {
@@ -143,8 +157,26 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public void putAll(Map<? extends K, ? extends V> map, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (map.isEmpty()) return;
+      int lifespanSecs = toSeconds(lifespan, lifespanUnit);
+      int maxIdleSecs = toSeconds(maxIdleTime, maxIdleTimeUnit);
+      if (log.isTraceEnabled()) {
+         log.trace("About to add " + map.size() + " entries, lifespanSecs:" + lifespanSecs + ", maxIdleSecs:" + maxIdleSecs);
+      }
+      Map<byte[], byte[]> entries = new LinkedHashMap<byte[], byte[]>();
       for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
-         put(entry.getKey(), entry.getValue(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+         entries.put(obj2bytes(entry.getKey(), true), obj2bytes(entry.getValue(), false));
+      }
+      if (bulkOperationsSupported) {
+         try {
+            executeInParallel(operationsFactory.newPutAllOperations(entries, lifespanSecs, maxIdleSecs));
+            return;
+         } catch (HotRodClientException e) {
+            handleBulkOperationFailure(e);
+         }
+      }
+      for (Entry<byte[], byte[]> entry : entries.entrySet()) {
+         operationsFactory.newPutKeyValueOperation(entry.getKey(), entry.getValue(), lifespanSecs, maxIdleSecs).execute();
       }
    }
 
@@ -342,6 +374,41 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return Collections.unmodifiableMap(toReturn);
    }
 
+   @Override
+   public Map<K, V> getAll(Set<? extends K> keys) {
+      assertRemoteCacheManagerIsStarted();
+      if (keys.isEmpty()) return Collections.emptyMap();
+      List<byte[]> keyBytes = new ArrayList<byte[]>(keys.size());
+      for (K key : keys) {
+         keyBytes.add(obj2bytes(key, true));
+      }
+      Map<K, V> toReturn = new HashMap<K, V>();
+      if (bulkOperationsSupported) {
+         try {
+            for (Object result : executeInParallel(operationsFactory.newGetAllOperations(keyBytes))) {
+               for (Map.Entry<byte[], byte[]> entry : ((Map<byte[], byte[]>) result).entrySet()) {
+                  toReturn.put((K) bytes2obj(entry.getKey()), (V) bytes2obj(entry.getValue()));
+               }
+            }
+         } catch (HotRodClientException e) {
+            handleBulkOperationFailure(e);
+         }
+      }
+      if (!bulkOperationsSupported) {
+         toReturn.clear();
+         for (byte[] key : keyBytes) {
+            byte[] value = (byte[]) operationsFactory.newGetKeyOperation(key).execute();
+            if (value != null) {
+               toReturn.put((K) bytes2obj(key), (V) bytes2obj(value));
+            }
+         }
+      }
+      if (log.isTraceEnabled()) {
+         log.trace("Requested " + keys.size() + " keys, found " + toReturn.size());
+      }
+      return Collections.unmodifiableMap(toReturn);
+   }
+
    @Override
    public V remove(Object key) {
       assertRemoteCacheManagerIsStarted();
@@ -407,6 +474,57 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return operationsFactory.newPingOperation(transport).execute();
    }
 
+   private void handleBulkOperationFailure(HotRodClientException e) {
+      if (e.getErrorStatusCode() != HotRodConstants.UNKNOWN_COMMAND_STATUS) throw e;
+      if (bulkOperationsSupported) {
+         log.info("The server does not support get all/put all operations, falling back to per key operations");
+         bulkOperationsSupported = false;
+      }
+   }
+
+   /**
+    * Executes the operations, one per target server, concurrently. The first one runs in the calling thread and the
+    * others are handed to the executor; any operation the executor has not started by the time the calling thread is
+    * done is run by the calling thread as well, so this never depends on a free executor thread.
+    */
+   private List<Object> executeInParallel(List<? extends HotRodOperation> operations) {
+      if (operations.size() == 1) {
+         return Collections.singletonList(operations.get(0).execute());
+      }
+      List<FutureTask<Object>> tasks = new ArrayList<FutureTask<Object>>(operations.size() - 1);
+      for (final HotRodOperation op : operations.subList(1, operations.size())) {
+         FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+               return op.execute();
+            }
+         });
+         tasks.add(task);
+         try {
+            executorService.execute(task);
+         } catch (RejectedExecutionException e) {
+            // run below, in the calling thread
+         }
+      }
+      List<Object> results = new ArrayList<Object>(operations.size());
+      results.add(operations.get(0).execute());
+      for (FutureTask<Object> task : tasks) {
+         task.run(); // no-op if the executor already picked it up
+         try {
+            results.add(task.get());
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransportException("Interrupted while waiting for a response", e);
+         } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new TransportException(cause);
+         }
+      }
+      return results;
+   }
+
    private byte[] obj2bytes(Object o, boolean isKey) {
       try {
          return marshaller.objectToByteBuffer(o, isKey ? estimateKeySize : estimateValueSize);
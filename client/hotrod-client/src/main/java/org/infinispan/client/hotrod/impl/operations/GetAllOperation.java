@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the values of a set of keys in a single request. The keys are expected to be owned by the same server, see
+ * {@link OperationsFactory#newGetAllOperations(java.util.Collection)}.
+ * <p/>
+ * Request: [header][key count][key length][key]...  Response: [header]([1][key length][key][value length][value])*[0].
+ * Keys that are not present in the cache are not included in the response.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class GetAllOperation extends RetryOnFailureOperation {
+
+   private final Collection<byte[]> keys;
+
+   private final InetSocketAddress server;
+
+   public GetAllOperation(TransportFactory transportFactory, Collection<byte[]> keys, InetSocketAddress server,
+                          byte[] cacheName, AtomicInteger topologyId, Flag[] flags) {
+      super(transportFactory, cacheName, topologyId, flags);
+      this.keys = keys;
+      this.server = server;
+   }
+
+   @Override
+   protected Transport getTransport(int retryCount) {
+      // after a failure the owner might have left, any server can fetch the keys on our behalf
+      if (server != null && retryCount == 0) {
+         return transportFactory.getAddressTransport(server);
+      } else {
+         return transportFactory.getTransport();
+      }
+   }
+
+   @Override
+   protected Object executeOperation(Transport transport) {
+      long messageId = writeHeader(transport, GET_ALL_REQUEST);
+      transport.writeVInt(keys.size());
+      for (byte[] key : keys) {
+         transport.writeArray(key);
+      }
+      transport.flush();
+      readHeaderAndValidate(transport, messageId, GET_ALL_RESPONSE);
+      Map<byte[], byte[]> result = new HashMap<byte[], byte[]>();
+      while (transport.readByte() == 1) { //there's more!
+         result.put(transport.readArray(), transport.readArray());
+      }
+      return result;
+   }
+
+   public int getKeyCount() {
+      return keys.size();
+   }
+}
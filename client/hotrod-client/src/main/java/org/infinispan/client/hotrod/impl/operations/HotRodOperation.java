@@ -145,6 +145,10 @@ public abstract class HotRodOperation implements HotRodConstants {
          case HotRodConstants.UNKNOWN_VERSION_STATUS: {
             readNewTopologyIfPresent(transport);
             String msgFromServer = transport.readString();
+            if (status == HotRodConstants.UNKNOWN_COMMAND_STATUS) {
+               // the server only decoded the header, it would take the rest of the request for the next one
+               transport.release();
+            }
             if (status == HotRodConstants.COMMAND_TIMEOUT_STATUS && isTrace) {
                log.trace("Server-side timeout performing operation: %s", msgFromServer);
             } else {
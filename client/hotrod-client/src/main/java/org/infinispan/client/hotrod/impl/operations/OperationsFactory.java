@@ -24,11 +24,19 @@ package org.infinispan.client.hotrod.impl.operations;
 
 import net.jcip.annotations.Immutable;
 import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
 import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 import org.infinispan.manager.CacheContainer;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -107,6 +115,54 @@ public class OperationsFactory implements HotRodConstants {
       return new BulkGetOperation(transportFactory, cacheNameBytes, topologyId, flags(), size);
    }
 
+   /**
+    * Creates one {@link GetAllOperation} per server owning some of the given keys, as located through the client's
+    * consistent hash. If the client is not aware of the key distribution, a single operation is returned.
+    */
+   public List<GetAllOperation> newGetAllOperations(Collection<byte[]> keys) {
+      Flag[] flags = flags();
+      List<GetAllOperation> operations = new ArrayList<GetAllOperation>();
+      for (Map.Entry<InetSocketAddress, List<byte[]>> e : groupByServer(keys).entrySet()) {
+         operations.add(new GetAllOperation(transportFactory, e.getValue(), e.getKey(), cacheNameBytes, topologyId, flags));
+      }
+      return operations;
+   }
+
+   /**
+    * Creates one {@link PutAllOperation} per server owning some of the given keys, as located through the client's
+    * consistent hash. If the client is not aware of the key distribution, a single operation is returned.
+    */
+   public List<PutAllOperation> newPutAllOperations(Map<byte[], byte[]> entries, int lifespanSecs, int maxIdleSecs) {
+      Flag[] flags = flags();
+      List<PutAllOperation> operations = new ArrayList<PutAllOperation>();
+      for (Map.Entry<InetSocketAddress, List<byte[]>> e : groupByServer(entries.keySet()).entrySet()) {
+         Map<byte[], byte[]> serverEntries = new LinkedHashMap<byte[], byte[]>();
+         for (byte[] key : e.getValue()) serverEntries.put(key, entries.get(key));
+         operations.add(new PutAllOperation(transportFactory, serverEntries, e.getKey(), cacheNameBytes, topologyId,
+                                            flags, lifespanSecs, maxIdleSecs));
+      }
+      return operations;
+   }
+
+   private Map<InetSocketAddress, List<byte[]>> groupByServer(Collection<byte[]> keys) {
+      Map<InetSocketAddress, List<byte[]>> keysByServer = new HashMap<InetSocketAddress, List<byte[]>>();
+      ConsistentHash consistentHash = transportFactory.getConsistentHash();
+      if (consistentHash == null) {
+         keysByServer.put(null, new ArrayList<byte[]>(keys));
+         return keysByServer;
+      }
+      for (byte[] key : keys) {
+         InetSocketAddress server = consistentHash.getServer(key);
+         List<byte[]> serverKeys = keysByServer.get(server);
+         if (serverKeys == null) {
+            serverKeys = new ArrayList<byte[]>();
+            keysByServer.put(server, serverKeys);
+         }
+         serverKeys.add(key);
+      }
+      return keysByServer;
+   }
+
    public PingOperation newPingOperation(Transport transport) {
       return new PingOperation(topologyId, transport, cacheNameBytes);
    }
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.exceptions.InvalidResponseException;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores a set of entries in a single request. The keys are expected to be owned by the same server, see
+ * {@link OperationsFactory#newPutAllOperations(java.util.Map, int, int)}.
+ * <p/>
+ * Request: [header][lifespan][max idle][entry count]([key length][key][value length][value])*.  Response: [header].
+ *
+ * @since 5.0
+ */
+@Immutable
+public class PutAllOperation extends RetryOnFailureOperation {
+
+   private final Map<byte[], byte[]> entries;
+
+   private final InetSocketAddress server;
+
+   private final int lifespan;
+
+   private final int maxIdle;
+
+   public PutAllOperation(TransportFactory transportFactory, Map<byte[], byte[]> entries, InetSocketAddress server,
+                          byte[] cacheName, AtomicInteger topologyId, Flag[] flags, int lifespan, int maxIdle) {
+      super(transportFactory, cacheName, topologyId, flags);
+      this.entries = entries;
+      this.server = server;
+      this.lifespan = lifespan;
+      this.maxIdle = maxIdle;
+   }
+
+   @Override
+   protected Transport getTransport(int retryCount) {
+      // after a failure the owner might have left, any server can store the entries on our behalf
+      if (server != null && retryCount == 0) {
+         return transportFactory.getAddressTransport(server);
+      } else {
+         return transportFactory.getTransport();
+      }
+   }
+
+   @Override
+   protected Object executeOperation(Transport transport) {
+      long messageId = writeHeader(transport, PUT_ALL_REQUEST);
+      transport.writeVInt(lifespan);
+      transport.writeVInt(maxIdle);
+      transport.writeVInt(entries.size());
+      for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) {
+         transport.writeArray(entry.getKey());
+         transport.writeArray(entry.getValue());
+      }
+      transport.flush();
+      short status = readHeaderAndValidate(transport, messageId, PUT_ALL_RESPONSE);
+      if (status != NO_ERROR_STATUS) {
+         throw new InvalidResponseException("Unexpected response status: " + Integer.toHexString(status));
+      }
+      return null;
+   }
+}
@@ -23,6 +23,7 @@
 package org.infinispan.client.hotrod.impl.transport;
 
 import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
 
 import java.net.InetSocketAddress;
 import java.util.Collection;
@@ -51,6 +52,16 @@ public interface TransportFactory {
 
    Transport getTransport(byte[] key);
 
+   /**
+    * Returns a transport to the given server, used by operations that have already grouped their keys by owner.
+    */
+   Transport getAddressTransport(InetSocketAddress server);
+
+   /**
+    * @return the consistent hash used for locating keys, or null if the client is not aware of the key distribution
+    */
+   ConsistentHash getConsistentHash();
+
    boolean isTcpNoDelay();
 
    int getTransportCount();
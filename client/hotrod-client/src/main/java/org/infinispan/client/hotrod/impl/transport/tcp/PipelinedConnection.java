@@ -0,0 +1,252 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.tcp;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single TCP connection to a Hot Rod server shared by many concurrent requests.
+ * <p/>
+ * Requests are written to the connection as soon as they are complete, without waiting for the responses to previous
+ * requests.  The server processes the requests it receives over a connection in order, so responses arrive in the
+ * same order as the requests were sent: each request is given a ticket when it is written, and the thread owning a
+ * ticket reads its response from the connection once all responses for earlier tickets have been read.  The response
+ * is matched against the request's message id by the operation reading the response header.
+ * <p/>
+ * If anything goes wrong while writing or reading, the position in the response stream can no longer be trusted, so
+ * the connection is closed and all requests waiting on it fail with a {@link TransportException}.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class PipelinedConnection {
+
+   private static final AtomicLong ID_COUNTER = new AtomicLong(0);
+
+   private static final Log log = LogFactory.getLog(PipelinedConnection.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private final InetSocketAddress serverAddress;
+   private final SocketChannel channel;
+   private final Socket socket;
+   private final InputStream in;
+   private final int soTimeout;
+   private final Semaphore inFlight;
+   private final long id = ID_COUNTER.incrementAndGet();
+
+   private final ReentrantLock writeLock = new ReentrantLock();
+   private long nextTicket;
+
+   private final ReentrantLock readLock = new ReentrantLock();
+   private final Condition turnChanged = readLock.newCondition();
+   private long currentTurn;
+
+   private volatile boolean broken;
+
+   public PipelinedConnection(InetSocketAddress serverAddress, boolean tcpNoDelay, int soTimeout, int maxPipelinedRequests) {
+      this.serverAddress = serverAddress;
+      this.soTimeout = soTimeout;
+      this.inFlight = new Semaphore(maxPipelinedRequests > 0 ? maxPipelinedRequests : Integer.MAX_VALUE, true);
+      try {
+         channel = SocketChannel.open(serverAddress);
+         socket = channel.socket();
+         socket.setTcpNoDelay(tcpNoDelay);
+         socket.setSoTimeout(soTimeout);
+         in = new BufferedInputStream(socket.getInputStream());
+      } catch (IOException e) {
+         String message = "Could not connect to server: " + serverAddress;
+         log.error(message, e);
+         throw new TransportException(message, e);
+      }
+   }
+
+   /**
+    * Writes a complete request to the server.  Blocks if the maximum number of requests are already in flight.
+    *
+    * @return the ticket to pass to {@link #awaitResponse(long)} and {@link #responseRead(long)}
+    */
+   long send(byte[] request, int length) {
+      acquireInFlightPermit();
+      writeLock.lock();
+      try {
+         checkNotBroken();
+         ByteBuffer buf = ByteBuffer.wrap(request, 0, length);
+         while (buf.hasRemaining()) channel.write(buf);
+         if (trace) log.trace("Wrote request of %s bytes with ticket %s to %s", length, nextTicket, this);
+         return nextTicket++;
+      } catch (IOException e) {
+         inFlight.release();
+         throw markBroken(new TransportException("Problems writing data to " + serverAddress, e));
+      } catch (RuntimeException e) {
+         inFlight.release();
+         throw e;
+      } finally {
+         writeLock.unlock();
+      }
+   }
+
+   /**
+    * Blocks until the responses to all requests sent before the one with the given ticket have been read.
+    */
+   void awaitResponse(long ticket) {
+      readLock.lock();
+      try {
+         long remaining = TimeUnit.MILLISECONDS.toNanos(soTimeout);
+         while (currentTurn != ticket) {
+            checkNotBroken();
+            if (soTimeout > 0 && remaining <= 0)
+               throw markBroken(new TransportException("Timed out waiting for the responses to previous requests on " + this));
+            if (soTimeout > 0) {
+               remaining = turnChanged.awaitNanos(remaining);
+            } else {
+               turnChanged.await();
+            }
+         }
+         checkNotBroken();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         // the response to this request will never be read
+         throw markBroken(new TransportException("Interrupted while waiting for response", e));
+      } finally {
+         readLock.unlock();
+      }
+   }
+
+   /**
+    * Signals that the response for the given ticket has been completely read, handing over the connection to the
+    * next request in line.
+    */
+   void responseRead(long ticket) {
+      readLock.lock();
+      try {
+         if (currentTurn == ticket) {
+            currentTurn++;
+            turnChanged.signalAll();
+         }
+      } finally {
+         readLock.unlock();
+      }
+      inFlight.release();
+   }
+
+   /**
+    * Releases the in-flight permit held by a request which could not be completed, and closes the connection as the
+    * response stream can no longer be trusted.
+    */
+   void abandon(long ticket, String reason) {
+      if (!broken) markBroken(new TransportException(reason));
+      inFlight.release();
+   }
+
+   InputStream getInputStream() {
+      return in;
+   }
+
+   TransportException markBroken(TransportException cause) {
+      if (!broken) {
+         broken = true;
+         log.debug("Closing %s: %s", this, cause.getMessage());
+         close();
+         readLock.lock();
+         try {
+            turnChanged.signalAll();
+         } finally {
+            readLock.unlock();
+         }
+      }
+      return cause;
+   }
+
+   public boolean isValid() {
+      return !broken && channel.isOpen();
+   }
+
+   public InetSocketAddress getServerAddress() {
+      return serverAddress;
+   }
+
+   public int getRequestsInFlight() {
+      writeLock.lock();
+      try {
+         readLock.lock();
+         try {
+            return (int) (nextTicket - currentTurn);
+         } finally {
+            readLock.unlock();
+         }
+      } finally {
+         writeLock.unlock();
+      }
+   }
+
+   void close() {
+      try {
+         channel.close();
+      } catch (IOException e) {
+         log.warn("Issues closing connection: " + this, e);
+      }
+   }
+
+   private void acquireInFlightPermit() {
+      try {
+         if (soTimeout > 0) {
+            if (!inFlight.tryAcquire(soTimeout, TimeUnit.MILLISECONDS))
+               throw new TransportException("Timed out waiting to send a request on " + this);
+         } else {
+            inFlight.acquire();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new TransportException("Interrupted while waiting to send a request", e);
+      }
+   }
+
+   private void checkNotBroken() {
+      if (broken) throw new TransportException("Connection " + this + " has been closed");
+   }
+
+   @Override
+   public String toString() {
+      return "PipelinedConnection{" +
+            "serverAddress=" + serverAddress +
+            ", id=" + id +
+            ", broken=" + broken +
+            '}';
+   }
+}
@@ -0,0 +1,201 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.tcp;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.transport.AbstractTransport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.io.ExposedByteArrayOutputStream;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.infinispan.io.UnsignedNumeric.*;
+
+/**
+ * A {@link org.infinispan.client.hotrod.impl.transport.Transport} used by a single request sent over a shared
+ * {@link PipelinedConnection}.
+ * <p/>
+ * Writes are buffered and sent to the server in a single write when the request is flushed, or at the latest when the
+ * first byte of the response is read.  Reading blocks until the responses to all previously sent requests on the same
+ * connection have been consumed.  Releasing the transport hands the connection over to the next request.
+ *
+ * @since 5.0
+ */
+@NotThreadSafe
+public class PipelinedTransport extends AbstractTransport {
+
+   private static final Log log = LogFactory.getLog(PipelinedTransport.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private static final long NOT_SENT = -1;
+
+   private final PipelinedConnection connection;
+   private final ExposedByteArrayOutputStream out;
+   private long ticket = NOT_SENT;
+   private boolean reading;
+   private boolean responseStarted;
+   private boolean released;
+
+   public PipelinedTransport(PipelinedConnection connection, TransportFactory transportFactory, int bufferSize) {
+      super(transportFactory);
+      this.connection = connection;
+      this.out = new ExposedByteArrayOutputStream(bufferSize);
+   }
+
+   @Override
+   public void writeVInt(int vInt) {
+      try {
+         writeUnsignedInt(out, vInt);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public void writeVLong(long l) {
+      try {
+         writeUnsignedLong(out, l);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   protected void writeBytes(byte[] toAppend) {
+      out.write(toAppend, 0, toAppend.length);
+   }
+
+   @Override
+   public void writeByte(short toWrite) {
+      out.write(toWrite);
+   }
+
+   @Override
+   public void flush() {
+      if (out.size() == 0) return;
+      if (ticket != NOT_SENT)
+         throw new IllegalStateException("A request has already been sent using " + this);
+      ticket = connection.send(out.getRawBuffer(), out.size());
+      out.reset();
+   }
+
+   @Override
+   public long readVLong() {
+      try {
+         return readUnsignedLong(response());
+      } catch (IOException e) {
+         throw connection.markBroken(new TransportException(e));
+      }
+   }
+
+   @Override
+   public int readVInt() {
+      try {
+         return readUnsignedInt(response());
+      } catch (IOException e) {
+         throw connection.markBroken(new TransportException(e));
+      }
+   }
+
+   @Override
+   public short readByte() {
+      int resultInt;
+      try {
+         resultInt = response().read();
+      } catch (IOException e) {
+         throw connection.markBroken(new TransportException(e));
+      }
+      if (resultInt == -1) {
+         throw connection.markBroken(new TransportException("End of stream reached!"));
+      }
+      return (short) resultInt;
+   }
+
+   @Override
+   public byte[] readByteArray(int size) {
+      byte[] result = new byte[size];
+      int offset = 0;
+      try {
+         InputStream in = response();
+         while (offset < size) {
+            int read = in.read(result, offset, size - offset);
+            if (read == -1) throw connection.markBroken(new TransportException("End of stream reached!"));
+            offset += read;
+         }
+      } catch (IOException e) {
+         throw connection.markBroken(new TransportException(e));
+      }
+      if (trace) log.trace("Successfully read array with size: " + size);
+      return result;
+   }
+
+   /**
+    * Sends the request if still buffered and waits for this request's turn to read from the connection.
+    */
+   private InputStream response() {
+      if (!reading) {
+         flush();
+         if (ticket == NOT_SENT) throw new IllegalStateException("No request has been sent using " + this);
+         connection.awaitResponse(ticket);
+         reading = true;
+      }
+      responseStarted = true;
+      return connection.getInputStream();
+   }
+
+   /**
+    * Hands the connection over to the next request.  If the request was sent but its response was not read, the
+    * connection is closed as subsequent responses cannot be located anymore.
+    */
+   @Override
+   public void release() {
+      if (released) return;
+      released = true;
+      if (ticket == NOT_SENT) return;
+      if (responseStarted && connection.isValid()) {
+         connection.responseRead(ticket);
+      } else {
+         connection.abandon(ticket, "Response to request " + ticket + " was not read");
+      }
+   }
+
+   public PipelinedConnection getConnection() {
+      return connection;
+   }
+
+   public boolean isValid() {
+      return connection.isValid();
+   }
+
+   @Override
+   public String toString() {
+      return "PipelinedTransport{" +
+            "connection=" + connection +
+            ", ticket=" + ticket +
+            "} ";
+   }
+}
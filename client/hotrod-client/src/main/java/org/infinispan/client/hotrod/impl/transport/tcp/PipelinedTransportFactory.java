@@ -0,0 +1,270 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.tcp;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHashFactory;
+import org.infinispan.client.hotrod.impl.operations.PingOperation;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link TransportFactory} that, rather than checking out an exclusive connection from a pool for every operation,
+ * pipelines concurrent operations over a small, fixed number of {@link PipelinedConnection}s per server.
+ * <p/>
+ * Every call to {@link #getTransport()} returns a lightweight {@link PipelinedTransport} which buffers the request and
+ * reads the matching response off a shared connection.  Enable it by setting
+ * <tt>infinispan.client.hotrod.transport_factory</tt> to this class.  The number of connections per server and the
+ * maximum number of requests in flight on each connection are controlled by
+ * {@link ConfigurationProperties#PIPELINED_CONNECTIONS_PER_SERVER} and
+ * {@link ConfigurationProperties#PIPELINED_MAX_REQUESTS_PER_CONNECTION} respectively.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class PipelinedTransportFactory implements TransportFactory {
+
+   private static final Log log = LogFactory.getLog(PipelinedTransportFactory.class);
+
+   private final ConcurrentMap<InetSocketAddress, AtomicReferenceArray<PipelinedConnection>> connections =
+         new ConcurrentHashMap<InetSocketAddress, AtomicReferenceArray<PipelinedConnection>>();
+   private final AtomicInteger connectionIndex = new AtomicInteger(0);
+   private final ConsistentHashFactory hashFactory = new ConsistentHashFactory();
+
+   private volatile RequestBalancingStrategy balancer;
+   private volatile Collection<InetSocketAddress> servers;
+   private volatile ConsistentHash consistentHash;
+   private volatile boolean tcpNoDelay;
+   private volatile int soTimeout;
+   private volatile int connectionsPerServer;
+   private volatile int maxRequestsPerConnection;
+   private volatile int bufferSize;
+   private volatile AtomicInteger topologyId;
+   private volatile boolean pingOnStartup;
+   private volatile boolean firstPingExecuted = false;
+
+   @Override
+   public void start(ConfigurationProperties cfg, Collection<InetSocketAddress> staticConfiguredServers, AtomicInteger topologyId) {
+      hashFactory.init(cfg);
+      this.topologyId = topologyId;
+      pingOnStartup = cfg.getPingOnStartup();
+      servers = new CopyOnWriteArraySet<InetSocketAddress>(staticConfiguredServers);
+      balancer = (RequestBalancingStrategy) Util.getInstance(cfg.getRequestBalancingStrategy());
+      tcpNoDelay = cfg.getTcpNoDelay();
+      soTimeout = cfg.getSoTimeout();
+      connectionsPerServer = cfg.getPipelinedConnectionsPerServer();
+      maxRequestsPerConnection = cfg.getPipelinedMaxRequestsPerConnection();
+      bufferSize = cfg.getKeySizeEstimate() + cfg.getValueSizeEstimate() + 64;
+      balancer.setServers(servers);
+   }
+
+   @Override
+   public void destroy() {
+      for (InetSocketAddress server : connections.keySet()) closeConnections(server);
+   }
+
+   @Override
+   public void updateHashFunction(LinkedHashMap<InetSocketAddress, Integer> servers2HashCode, int numKeyOwners, short hashFunctionVersion, int hashSpace) {
+      ConsistentHash hash = hashFactory.newConsistentHash(hashFunctionVersion);
+      if (hash == null) {
+         log.warn("No hash function configured for version: " + hashFunctionVersion);
+      } else {
+         hash.init(servers2HashCode, numKeyOwners, hashSpace);
+      }
+      consistentHash = hash;
+   }
+
+   @Override
+   public Transport getTransport() {
+      return newTransport(balancer.nextServer());
+   }
+
+   @Override
+   public Transport getTransport(byte[] key) {
+      InetSocketAddress server;
+      if (consistentHash != null) {
+         server = consistentHash.getServer(key);
+         if (log.isTraceEnabled()) {
+            log.trace("Using consistent hash for determining the server: " + server);
+         }
+      } else {
+         server = balancer.nextServer();
+         if (log.isTraceEnabled()) {
+            log.trace("Using the balancer for determining the server: " + server);
+         }
+      }
+      return newTransport(server);
+   }
+
+   @Override
+   public Transport getAddressTransport(InetSocketAddress server) {
+      return newTransport(server);
+   }
+
+   @Override
+   public void releaseTransport(Transport transport) {
+      transport.release();
+   }
+
+   @Override
+   public void updateServers(Collection<InetSocketAddress> newServers) {
+      synchronized (this) {//only one updateServers at a time.
+         Set<InetSocketAddress> failedServers = new HashSet<InetSocketAddress>(servers);
+         failedServers.removeAll(newServers);
+         if (log.isTraceEnabled()) {
+            log.trace("Current list: " + servers);
+            log.trace("New list: " + newServers);
+            log.trace("Removed servers: " + failedServers);
+         }
+         if (failedServers.isEmpty() && newServers.isEmpty()) {
+            log.info("Same list of servers, not changing the connections");
+            return;
+         }
+
+         // connections to new servers are created lazily, so just route requests to them from now on
+         balancer.setServers(newServers);
+
+         for (InetSocketAddress server : failedServers) {
+            log.info("Server not in cluster anymore(" + server + "), closing its connections.");
+            closeConnections(server);
+         }
+
+         servers.clear();
+         servers.addAll(newServers);
+      }
+   }
+
+   public Collection<InetSocketAddress> getServers() {
+      return servers;
+   }
+
+   @Override
+   public boolean isTcpNoDelay() {
+      return tcpNoDelay;
+   }
+
+   @Override
+   public int getTransportCount() {
+      if (Thread.currentThread().isInterrupted()) {
+         return -1;
+      }
+      return connectionsPerServer * servers.size();
+   }
+
+   @Override
+   public int getSoTimeout() {
+      return soTimeout;
+   }
+
+   public RequestBalancingStrategy getBalancer() {
+      return balancer;
+   }
+
+   @Override
+   public ConsistentHash getConsistentHash() {
+      return consistentHash;
+   }
+
+   /**
+    * @return the number of open connections to the given server
+    */
+   public int getConnectionCount(InetSocketAddress server) {
+      AtomicReferenceArray<PipelinedConnection> serverConnections = connections.get(server);
+      int count = 0;
+      if (serverConnections != null) {
+         for (int i = 0; i < serverConnections.length(); i++) {
+            PipelinedConnection c = serverConnections.get(i);
+            if (c != null && c.isValid()) count++;
+         }
+      }
+      return count;
+   }
+
+   private Transport newTransport(InetSocketAddress server) {
+      return new PipelinedTransport(getConnection(server), this, bufferSize);
+   }
+
+   private PipelinedConnection getConnection(InetSocketAddress server) {
+      AtomicReferenceArray<PipelinedConnection> serverConnections = connections.get(server);
+      if (serverConnections == null) {
+         serverConnections = new AtomicReferenceArray<PipelinedConnection>(connectionsPerServer);
+         AtomicReferenceArray<PipelinedConnection> existing = connections.putIfAbsent(server, serverConnections);
+         if (existing != null) serverConnections = existing;
+      }
+      int index = (connectionIndex.getAndIncrement() & Integer.MAX_VALUE) % serverConnections.length();
+      PipelinedConnection connection = serverConnections.get(index);
+      if (connection != null && connection.isValid()) return connection;
+
+      synchronized (serverConnections) {
+         connection = serverConnections.get(index);
+         if (connection == null || !connection.isValid()) {
+            connection = new PipelinedConnection(server, tcpNoDelay, soTimeout, maxRequestsPerConnection);
+            if (log.isTraceEnabled()) log.trace("Created connection: " + connection);
+            serverConnections.set(index, connection);
+            pingIfFirstConnection(connection);
+         }
+      }
+      return connection;
+   }
+
+   private void pingIfFirstConnection(PipelinedConnection connection) {
+      if (pingOnStartup && !firstPingExecuted) {
+         log.trace("Executing first ping!");
+         firstPingExecuted = true;
+         PipelinedTransport transport = new PipelinedTransport(connection, this, bufferSize);
+         try {
+            new PingOperation(topologyId, transport).execute();
+         } catch (Exception e) {
+            log.trace("Ignoring ping request failure during ping on startup: " + e.getMessage());
+         } finally {
+            transport.release();
+         }
+      }
+   }
+
+   private void closeConnections(InetSocketAddress server) {
+      AtomicReferenceArray<PipelinedConnection> serverConnections = connections.remove(server);
+      if (serverConnections != null) {
+         for (int i = 0; i < serverConnections.length(); i++) {
+            PipelinedConnection c = serverConnections.get(i);
+            if (c != null) c.close();
+         }
+      }
+   }
+}
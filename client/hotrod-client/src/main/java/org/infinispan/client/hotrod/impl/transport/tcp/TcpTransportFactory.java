@@ -131,6 +131,11 @@ public class TcpTransportFactory implements TransportFactory {
       return borrowTransportFromPool(server);
    }
 
+   @Override
+   public Transport getAddressTransport(InetSocketAddress server) {
+      return borrowTransportFromPool(server);
+   }
+
    @Override
    public void releaseTransport(Transport transport) {
       TcpTransport tcpTransport = (TcpTransport) transport;
@@ -221,6 +226,7 @@ public class TcpTransportFactory implements TransportFactory {
       }
    }
 
+   @Override
    public ConsistentHash getConsistentHash() {
       return consistentHash;
    }
@@ -39,7 +39,12 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import static junit.framework.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
@@ -60,7 +65,7 @@ public class HotRodIntegrationTest extends SingleCacheManagerTest {
 
    RemoteCache defaultRemote;
    RemoteCache remoteCache;
-   private RemoteCacheManager remoteCacheManager;
+   protected RemoteCacheManager remoteCacheManager;
 
    protected HotRodServer hotrodServer;
 
@@ -209,6 +214,19 @@ public class HotRodIntegrationTest extends SingleCacheManagerTest {
       assert cache.isEmpty();
    }
 
+   public void testPutAllAndGetAll() throws Exception {
+      Map<String, String> entries = new HashMap<String, String>();
+      for (int i = 0; i < 10; i++) entries.put("multiKey" + i, "multiValue" + i);
+      remoteCache.putAll(entries);
+      for (int i = 0; i < 10; i++) assertCacheContains(cache, "multiKey" + i, "multiValue" + i);
+
+      Set<String> keys = new HashSet<String>(entries.keySet());
+      keys.add("multiKeyMissing");
+      Map<String, String> found = remoteCache.getAll(keys);
+      assertEquals(entries, found);
+      assert remoteCache.getAll(Collections.emptySet()).isEmpty();
+   }
+
    private void assertCacheContains(Cache cache, String key, String value) throws Exception {
       Marshaller marshaller = new JBossMarshaller();
       byte[] keyBytes = marshaller.objectToByteBuffer(key, 64);
@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.transport.tcp.PipelinedTransportFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the {@link HotRodIntegrationTest} suite over the {@link PipelinedTransportFactory}, plus a test where many
+ * threads share a single pipelined connection.
+ *
+ * @since 5.0
+ */
+@Test (testName = "client.hotrod.PipelinedTransportIntegrationTest", groups = "functional")
+public class PipelinedTransportIntegrationTest extends HotRodIntegrationTest {
+
+   @Override
+   protected RemoteCacheManager getRemoteCacheManager() {
+      Properties config = new Properties();
+      config.put("infinispan.client.hotrod.server_list", "127.0.0.1:" + hotrodServer.getPort());
+      config.put(ConfigurationProperties.TRANSPORT_FACTORY, PipelinedTransportFactory.class.getName());
+      config.put(ConfigurationProperties.PIPELINED_CONNECTIONS_PER_SERVER, "1");
+      config.put(ConfigurationProperties.PIPELINED_MAX_REQUESTS_PER_CONNECTION, "8");
+      return new RemoteCacheManager(config);
+   }
+
+   public void testConcurrentRequestsOverSharedConnection() throws Exception {
+      final RemoteCache<String, String> remote = remoteCacheManager.getCache();
+      ExecutorService executor = Executors.newFixedThreadPool(16);
+      try {
+         List<Future<Void>> futures = new ArrayList<Future<Void>>();
+         for (int t = 0; t < 16; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>() {
+               @Override
+               public Void call() throws Exception {
+                  for (int i = 0; i < 200; i++) {
+                     String key = "k-" + thread + "-" + i;
+                     remote.put(key, "v-" + i);
+                     String value = remote.get(key);
+                     assert ("v-" + i).equals(value) : "Expected v-" + i + " for " + key + " but got " + value;
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> f : futures) f.get();
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+}
@@ -35,6 +35,7 @@ import org.infinispan.remoting.rpc.RpcManager;
 import javax.transaction.TransactionManager;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Similar to {@link org.infinispan.AbstractDelegatingCache}, but for {@link AdvancedCache}.
@@ -119,4 +120,8 @@ public abstract class AbstractDelegatingAdvancedCache<K, V> extends AbstractDele
    public boolean lock(Collection<? extends K> keys) {
       return cache.lock(keys);
    }
+
+   public Map<K, V> getAll(Collection<? extends K> keys) {
+      return cache.getAll(keys);
+   }
 }
@@ -36,6 +36,7 @@ import org.infinispan.stats.Stats;
 import javax.transaction.TransactionManager;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An advanced interface that exposes additional methods not available on {@link Cache}.
@@ -144,6 +145,17 @@ public interface AdvancedCache<K, V> extends Cache<K, V> {
     */
    boolean lock(Collection<? extends K> keys);
 
+   /**
+    * Retrieves the values mapped to several keys in a single invocation.  When using distribution, keys that are not
+    * available locally are grouped by owner, and a single remote lookup is issued to each owner, with all owners being
+    * contacted in parallel.  This is considerably cheaper than invoking {@link #get(Object)} for each key.
+    *
+    * @param keys keys to retrieve
+    * @return a map containing the keys found, mapped to their values.  Keys that are not present in the cache are not
+    *         contained in the returned map.
+    */
+   Map<K, V> getAll(Collection<? extends K> keys);
+
    RpcManager getRpcManager();
 
    BatchContainer getBatchContainer();
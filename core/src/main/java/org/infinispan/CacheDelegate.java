@@ -26,6 +26,7 @@ import org.infinispan.batch.BatchContainer;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.SizeCommand;
@@ -50,7 +51,14 @@ import org.infinispan.factories.KnownComponentNames;
 import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.SurvivesRestarts;
+import org.infinispan.interceptors.CallInterceptor;
 import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.interceptors.InvalidationInterceptor;
+import org.infinispan.interceptors.InvocationContextInterceptor;
+import org.infinispan.interceptors.LockingInterceptor;
+import org.infinispan.interceptors.NotificationInterceptor;
+import org.infinispan.interceptors.ReplicationInterceptor;
+import org.infinispan.interceptors.TxInterceptor;
 import org.infinispan.interceptors.base.CommandInterceptor;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
@@ -81,9 +89,11 @@ import org.rhq.helpers.pluginAnnotations.agent.Operation;
 import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -128,6 +138,23 @@ public class CacheDelegate<K, V> extends CacheSupport<K,V> implements AdvancedCa
    private final ThreadLocal<PreInvocationContext> flagHolder = new ThreadLocal<PreInvocationContext>();
    private ExecutorService asyncExecutor;
 
+   /**
+    * Interceptors that just pass a non-transactional read of a single key on to the next interceptor.  If the chain
+    * consists only of these, such reads can be served straight from the data container.
+    */
+   private static final Set<Class<? extends CommandInterceptor>> READ_PASS_THROUGH_INTERCEPTORS =
+         new HashSet<Class<? extends CommandInterceptor>>(Arrays.<Class<? extends CommandInterceptor>>asList(
+               InvocationContextInterceptor.class, TxInterceptor.class, NotificationInterceptor.class,
+               LockingInterceptor.class, ReplicationInterceptor.class, InvalidationInterceptor.class,
+               CallInterceptor.class));
+
+   /**
+    * The interceptor chain modification count that direct reads were last checked against, shifted left by one, with
+    * the lowest bit set if direct reads are possible.  Both are kept in a single field so they are always read
+    * consistently.
+    */
+   private volatile int directReadState = -1;
+
    public CacheDelegate(String name) {
       this.name = name;
    }
@@ -201,6 +228,10 @@ public class CacheDelegate<K, V> extends CacheSupport<K,V> implements AdvancedCa
 
    public final boolean containsKey(Object key) {
       assertKeyNotNull(key);
+      if (isDirectReadPossible()) {
+         InternalCacheEntry entry = dataContainer.get(key);
+         return entry != null && entry.getValue() != null;
+      }
       InvocationContext ctx = getInvocationContext(false);
       GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, ctx.getFlags());
       Object response = invoker.invoke(ctx, command);
@@ -214,6 +245,10 @@ public class CacheDelegate<K, V> extends CacheSupport<K,V> implements AdvancedCa
    @SuppressWarnings("unchecked")
    public final V get(Object key) {
       assertKeyNotNull(key);
+      if (isDirectReadPossible()) {
+         InternalCacheEntry entry = dataContainer.get(key);
+         return entry == null ? null : (V) entry.getValue();
+      }
       InvocationContext ctx = getInvocationContext(false);
       GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, ctx.getFlags());
       return (V) invoker.invoke(ctx, command);
@@ -304,6 +339,32 @@ public class CacheDelegate<K, V> extends CacheSupport<K,V> implements AdvancedCa
       return notifier.getListeners();
    }
 
+   /**
+    * Tests whether a read of a single key can bypass the interceptor chain and be served straight from the data
+    * container, without creating an invocation context or a command.  This is the case when there is no transaction
+    * manager, none of the interceptors in the chain act on non-transactional reads (so there are no cache loaders,
+    * no statistics, no distribution, no storeAsBinary and no custom interceptors), nobody listens to
+    * CacheEntryVisited events, no flags have been set for the call and the cache is running.
+    */
+   private boolean isDirectReadPossible() {
+      int chainModificationCount = invoker.getModificationCount();
+      int state = directReadState;
+      if (state >>> 1 != chainModificationCount) {
+         state = chainModificationCount << 1 | (isReadPassThroughChain() ? 1 : 0);
+         directReadState = state;
+      }
+      return (state & 1) != 0 && flagHolder.get() == null && !notifier.hasCacheEntryVisitedListeners()
+            && componentRegistry.getStatus().allowInvocations();
+   }
+
+   private boolean isReadPassThroughChain() {
+      if (transactionManager != null) return false;
+      for (CommandInterceptor interceptor : invoker.asList()) {
+         if (!READ_PASS_THROUGH_INTERCEPTORS.contains(interceptor.getClass())) return false;
+      }
+      return true;
+   }
+
    private InvocationContext getInvocationContext(boolean forceNonTransactional) {
       InvocationContext ctx = forceNonTransactional ? icc.createNonTxInvocationContext() : icc.createInvocationContext();
       return setInvocationContextFlags(ctx);
@@ -337,6 +398,14 @@ public class CacheDelegate<K, V> extends CacheSupport<K,V> implements AdvancedCa
       return (Boolean) invoker.invoke(ctx, command);
    }
 
+   @SuppressWarnings("unchecked")
+   public Map<K, V> getAll(Collection<? extends K> keys) {
+      for (K key : keys) assertKeyNotNull(key);
+      InvocationContext ctx = getInvocationContext(false);
+      GetAllCommand command = commandsFactory.buildGetAllCommand(new ArrayList<Object>(keys), ctx.getFlags());
+      return (Map<K, V>) invoker.invoke(ctx, command);
+   }
+
    @ManagedOperation(description = "Starts the cache.")
    @Operation(displayName = "Starts cache.")
    public void start() {
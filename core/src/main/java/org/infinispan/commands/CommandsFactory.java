@@ -27,11 +27,14 @@ import org.infinispan.commands.control.RehashControlCommand;
 import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.read.ReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -145,6 +148,13 @@ public interface CommandsFactory {
     */
    GetKeyValueCommand buildGetKeyValueCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Builds a GetAllCommand
+    * @param keys keys to get
+    * @return a GetAllCommand
+    */
+   GetAllCommand buildGetAllCommand(Collection<Object> keys, Set<Flag> flags);
+
    /**
     * Builds a KeySetCommand
     * @return a KeySetCommand
@@ -228,6 +238,15 @@ public interface CommandsFactory {
     */
    MultipleRpcCommand buildReplicateCommand(List<ReplicableCommand> toReplicate);
 
+   /**
+    * Builds a MultipleRpcCommand that ships already marshalled commands as a single, optionally compressed, payload.
+    *
+    * @param marshalledCommands commands to replicate, each marshalled into its own byte array
+    * @param compress           whether the payload should be compressed
+    * @return a packed MultipleRpcCommand
+    */
+   MultipleRpcCommand buildPackedReplicateCommand(List<byte[]> marshalledCommands, boolean compress);
+
    /**
     * Builds a SingleRpcCommand "envelope" containing a single ReplicableCommand
     * @param call ReplicableCommand to include in the envelope
@@ -249,6 +268,13 @@ public interface CommandsFactory {
     */
    ClusteredGetCommand buildClusteredGetCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Builds a ClusteredGetAllCommand, which is a remote lookup command for several keys
+    * @param keys keys to look up
+    * @return a ClusteredGetAllCommand
+    */
+   ClusteredGetAllCommand buildClusteredGetAllCommand(Collection<Object> keys, Set<Flag> flags);
+
    /**
     * Builds a LockControlCommand to control explicit remote locking
     * @param keys keys to lock
@@ -336,6 +362,39 @@ public interface CommandsFactory {
     */
    MapReduceCommand buildMapReduceCommand(Mapper m, Reducer r, Address sender, Collection keys);
 
+   /**
+    * Builds a MapReduceCommand whose results are reduced on the owners of the intermediate keys, rather than returned
+    * to the sender.
+    * 
+    * @param m Mapper for MapReduceTask
+    * @param r Reducer for MapReduceTask
+    * @param sender sender's Address
+    * @param keys keys used in MapReduceTask
+    * @param taskId id of the MapReduceTask
+    * @return a MapReduceCommand
+    */
+   MapReduceCommand buildMapReduceCommand(Mapper m, Reducer r, Address sender, Collection keys, String taskId);
+
+   /**
+    * Builds a ReduceCommand reducing partially reduced values on the owner of their intermediate keys.
+    * 
+    * @param taskId id of the MapReduceTask
+    * @param r Reducer for MapReduceTask
+    * @param partialResults partially reduced values, keyed by intermediate key
+    * @return a ReduceCommand
+    */
+   ReduceCommand buildReduceCommand(String taskId, Reducer r, Map<Object, Object> partialResults);
+
+   /**
+    * Builds a ReduceCommand completing the reduce phase of a MapReduceTask on the owners of its intermediate keys.
+    * 
+    * @param taskId id of the MapReduceTask
+    * @param targetCacheName name of the cache to store results in, or null
+    * @param returnResults whether results should be returned
+    * @return a ReduceCommand
+    */
+   ReduceCommand buildCompleteReduceCommand(String taskId, String targetCacheName, boolean returnResults);
+
    /**
     * @see GetInDoubtTxInfoCommand
     */
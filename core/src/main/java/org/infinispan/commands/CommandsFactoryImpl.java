@@ -29,11 +29,14 @@ import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.module.ModuleCommandInitializer;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.read.ReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -58,6 +61,8 @@ import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distexec.DistributedTaskManager;
+import org.infinispan.distexec.mapreduce.MapReduceManager;
 import org.infinispan.distexec.mapreduce.Mapper;
 import org.infinispan.distexec.mapreduce.Reducer;
 import org.infinispan.distribution.DistributionManager;
@@ -68,6 +73,7 @@ import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.marshall.Ids;
+import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.transaction.xa.DldGlobalTransaction;
@@ -116,6 +122,9 @@ public class CommandsFactoryImpl implements CommandsFactory {
    private TransactionTable txTable;
    private Configuration configuration;
    private RecoveryManager recoveryManager;
+   private StreamingMarshaller marshaller;
+   private MapReduceManager mapReduceManager;
+   private DistributedTaskManager distributedTaskManager;
 
    private Map<Byte, ModuleCommandInitializer> moduleCommandInitializers;
 
@@ -137,6 +146,17 @@ public class CommandsFactoryImpl implements CommandsFactory {
       this.recoveryManager = recoveryManager;
    }
 
+   @Inject
+   public void injectMarshaller(StreamingMarshaller marshaller) {
+      this.marshaller = marshaller;
+   }
+
+   @Inject
+   public void injectDistributedExecution(MapReduceManager mapReduceManager, DistributedTaskManager distributedTaskManager) {
+      this.mapReduceManager = mapReduceManager;
+      this.distributedTaskManager = distributedTaskManager;
+   }
+
    @Start(priority = 1)
    // needs to happen early on
    public void start() {
@@ -199,6 +219,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new GetKeyValueCommand(key, notifier, flags);
    }
 
+   public GetAllCommand buildGetAllCommand(Collection<Object> keys, Set<Flag> flags) {
+      return new GetAllCommand(keys, notifier, flags);
+   }
+
    public PutMapCommand buildPutMapCommand(Map map, long lifespan, long maxIdleTimeMillis, Set<Flag> flags) {
       return new PutMapCommand(map, notifier, lifespan, maxIdleTimeMillis, flags);
    }
@@ -233,6 +257,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new MultipleRpcCommand(toReplicate, cacheName);
    }
 
+   public MultipleRpcCommand buildPackedReplicateCommand(List<byte[]> marshalledCommands, boolean compress) {
+      return new MultipleRpcCommand(marshalledCommands, compress, cacheName);
+   }
+
    public SingleRpcCommand buildSingleRpcCommand(ReplicableCommand call) {
       return new SingleRpcCommand(cacheName, call);
    }
@@ -245,6 +273,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new ClusteredGetCommand(key, cacheName, flags);
    }
 
+   public ClusteredGetAllCommand buildClusteredGetAllCommand(Collection<Object> keys, Set<Flag> flags) {
+      return new ClusteredGetAllCommand(keys, cacheName, flags);
+   }
+
    /**
     * @param isRemote true if the command is deserialized and is executed remote.
     */
@@ -263,6 +295,7 @@ public class CommandsFactoryImpl implements CommandsFactory {
          case MultipleRpcCommand.COMMAND_ID:
             MultipleRpcCommand rc = (MultipleRpcCommand) c;
             rc.init(interceptorChain, icc);
+            if (rc.isPacked()) rc.unpack(marshaller);
             if (rc.getCommands() != null)
                for (ReplicableCommand nested : rc.getCommands()) {
                   initializeReplicableCommand(nested, false);
@@ -315,6 +348,9 @@ public class CommandsFactoryImpl implements CommandsFactory {
             ClusteredGetCommand clusteredGetCommand = (ClusteredGetCommand) c;
             clusteredGetCommand.initialize(icc, this, interceptorChain, distributionManager);
             break;
+         case ClusteredGetAllCommand.COMMAND_ID:
+            ((ClusteredGetAllCommand) c).initialize(icc, this, interceptorChain, distributionManager);
+            break;
          case LockControlCommand.COMMAND_ID:
             LockControlCommand lcc = (LockControlCommand) c;
             lcc.init(interceptorChain, icc, txTable);
@@ -349,11 +385,17 @@ public class CommandsFactoryImpl implements CommandsFactory {
             break;
          case MapReduceCommand.COMMAND_ID:
             MapReduceCommand mrc = (MapReduceCommand)c;
-            mrc.init(this, interceptorChain, icc, distributionManager,cache.getAdvancedCache().getRpcManager().getAddress());
+            mrc.init(this, interceptorChain, icc, distributionManager,cache.getAdvancedCache().getRpcManager().getAddress(),
+                     dataContainer, marshaller);
+            mrc.initDistributedReduce(cache.getAdvancedCache().getRpcManager(), mapReduceManager);
+            mrc.initWorkerPool(distributedTaskManager);
+            break;
+         case ReduceCommand.COMMAND_ID:
+            ((ReduceCommand) c).init(mapReduceManager, cache.getCacheManager());
             break;
          case DistributedExecuteCommand.COMMAND_ID:
             DistributedExecuteCommand dec = (DistributedExecuteCommand)c;
-            dec.init(cache);
+            dec.init(cache, distributedTaskManager);
             break;
          case GetInDoubtTxInfoCommand.COMMAND_ID:
             GetInDoubtTxInfoCommand gidTxInfoCommand = (GetInDoubtTxInfoCommand)c;
@@ -419,6 +461,23 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new MapReduceCommand(m, r, cacheName, keys);
    }
 
+   @Override
+   public MapReduceCommand buildMapReduceCommand(Mapper m, Reducer r, Address sender, Collection keys, String taskId) {
+      MapReduceCommand command = new MapReduceCommand(m, r, cacheName, keys);
+      command.setTaskId(taskId);
+      return command;
+   }
+
+   @Override
+   public ReduceCommand buildReduceCommand(String taskId, Reducer r, Map<Object, Object> partialResults) {
+      return new ReduceCommand(cacheName, taskId, r, partialResults);
+   }
+
+   @Override
+   public ReduceCommand buildCompleteReduceCommand(String taskId, String targetCacheName, boolean returnResults) {
+      return new ReduceCommand(cacheName, taskId, targetCacheName, returnResults);
+   }
+
    @Override
    public GetInDoubtTxInfoCommand buildGetInDoubtTxInfoCommand() {
       return new GetInDoubtTxInfoCommand(cacheName);
@@ -30,24 +30,21 @@ import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.config.Configuration;
 import org.infinispan.container.DataContainer;
-import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.distribution.DistributionManager;
 import org.infinispan.distribution.RemoteTransactionLogDetails;
+import org.infinispan.distribution.StateChunker;
 import org.infinispan.distribution.TransactionLogger;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.NodeTopologyInfo;
 import org.infinispan.loaders.CacheLoaderException;
-import org.infinispan.loaders.CacheStore;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
-import org.infinispan.util.ReadOnlyDataContainerBackedKeySet;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -82,7 +79,8 @@ public class RehashControlCommand extends BaseRpcCommand {
       JOIN_TX_FINAL_LOG_REQ,
       JOIN_TX_LOG_CLOSE,
       FETCH_TOPOLOGY_INFO,
-      JOIN_ABORT
+      JOIN_ABORT,
+      PULL_STATE_CHUNK
    }
 
    Type type;
@@ -164,6 +162,8 @@ public class RehashControlCommand extends BaseRpcCommand {
             return pullStateForJoin();             
          case PULL_STATE_LEAVE:
              return pullStateForLeave();          
+         case PULL_STATE_CHUNK:
+            return distributionManager.nextOutboundStateChunk(sender);
          case LEAVE_DRAIN_TX: // used for a LEAVE ONLY!!
             distributionManager.applyRemoteTxLog(txLogCommands);
             return null;
@@ -203,51 +203,39 @@ public class RehashControlCommand extends BaseRpcCommand {
       tl.unlockAndDisable(sender);
    }
 
-   public Map<Object, InternalCacheValue> pullStateForJoin() throws CacheLoaderException {           
+   /**
+    * Starts streaming state to a joiner.  Only the first chunk of state is returned, subsequent chunks are pulled by
+    * the joiner using {@link Type#PULL_STATE_CHUNK} commands.
+    */
+   public Map<Object, InternalCacheValue> pullStateForJoin() throws CacheLoaderException {
+      // start logging transactions BEFORE generating state
       distributionManager.getTransactionLogger().enable();
-      Map<Object, InternalCacheValue> state = new HashMap<Object, InternalCacheValue>();
-      for (InternalCacheEntry ice : dataContainer) {
-         Object k = ice.getKey();
-         if (shouldTransferOwnershipToJoinNode(k)) {            
-             state.put(k, ice.toInternalCacheValue());
+      return distributionManager.startOutboundStateTransfer(sender, createStateChunker(new StateChunker.KeyFilter() {
+         @Override
+         public boolean accept(Object key) {
+            return shouldTransferOwnershipToJoinNode(key);
          }
-      }
-
-      CacheStore cacheStore = distributionManager.getCacheStoreForRehashing();
-      if (cacheStore != null) {
-         for (Object k: cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
-            if (!state.containsKey(k) && shouldTransferOwnershipToJoinNode(k)) {                
-               InternalCacheValue v = loadValue(cacheStore, k);               
-               if (v != null) state.put(k, v);
-            }
-         }
-      }
-      return state;
+      }));
    }
-   
+
+   /**
+    * Starts streaming the state of leavers to a new owner.  Only the first chunk of state is returned, subsequent
+    * chunks are pulled by the new owner using {@link Type#PULL_STATE_CHUNK} commands.
+    */
    public Map<Object, InternalCacheValue> pullStateForLeave() throws CacheLoaderException {
-     
-      Map<Object, InternalCacheValue> state = new HashMap<Object, InternalCacheValue>();
-      for (InternalCacheEntry ice : dataContainer) {
-         Object k = ice.getKey();
-         if (shouldTransferOwnershipFromLeftNodes(k)) {
-            state.put(k, ice.toInternalCacheValue());
+      return distributionManager.startOutboundStateTransfer(sender, createStateChunker(new StateChunker.KeyFilter() {
+         @Override
+         public boolean accept(Object key) {
+            return shouldTransferOwnershipFromLeftNodes(key);
          }
-      }
+      }));
+   }
 
-      CacheStore cacheStore = distributionManager.getCacheStoreForRehashing();
-      if (cacheStore != null) {
-         for (Object k : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
-            if (!state.containsKey(k) && shouldTransferOwnershipFromLeftNodes(k)) {
-               InternalCacheValue v = loadValue(cacheStore, k);               
-               if (v != null)
-                  state.put(k, v);
-            }
-         }
-      }
-      return state;
+   private StateChunker createStateChunker(StateChunker.KeyFilter filter) {
+      return new StateChunker(dataContainer, distributionManager.getCacheStoreForRehashing(), filter,
+                              configuration.getRehashChunkSize(), configuration.getRehashChunkMaxBytes());
    }
-   
+
    private boolean shouldTransferOwnershipFromLeftNodes(Object k) {      
       Address self = transport.getAddress();      
       int numCopies = configuration.getNumOwners();
@@ -263,17 +251,6 @@ public class RehashControlCommand extends BaseRpcCommand {
       }
       return false;
    }
-      
-
-   private InternalCacheValue loadValue(CacheStore cs, Object k) {
-      try {
-         InternalCacheEntry ice = cs.load(k);
-         return ice == null ? null : ice.toInternalCacheValue();
-      } catch (CacheLoaderException cle) {
-         log.warn("Unable to load " + k + " from cache loader", cle);
-      }
-      return null;
-   }
 
    final boolean shouldTransferOwnershipToJoinNode(Object k) {     
       Address self = transport.getAddress();      
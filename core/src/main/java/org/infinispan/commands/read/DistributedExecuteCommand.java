@@ -32,6 +32,7 @@ import org.infinispan.commands.VisitableCommand;
 import org.infinispan.commands.Visitor;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.distexec.DistributedCallable;
+import org.infinispan.distexec.DistributedTaskManager;
 
 /**
  * DistributedExecuteCommand is used to migrate Callable and execute it in remote JVM.
@@ -52,6 +53,8 @@ public class DistributedExecuteCommand<V> implements VisitableCommand {
 
    protected Callable<V> callable;
 
+   protected DistributedTaskManager taskManager;
+
 
    public DistributedExecuteCommand(Collection<Object> inputKeys, Callable<V> callable) {
       if (inputKeys == null || inputKeys.isEmpty())
@@ -65,8 +68,9 @@ public class DistributedExecuteCommand<V> implements VisitableCommand {
       this(null, null);
    }
 
-   public void init(Cache cache) {
+   public void init(Cache cache, DistributedTaskManager taskManager) {
       this.cache = cache;
+      this.taskManager = taskManager;
    }
 
    @Override
@@ -93,7 +97,11 @@ public class DistributedExecuteCommand<V> implements VisitableCommand {
          DistributedCallable<Object, Object, Object> dc = (DistributedCallable<Object, Object, Object>) callable;
          dc.setEnvironment(cache, keys);
       }
-      return callable.call();      
+      return taskManager == null ? callable.call() : taskManager.execute(callable);
+   }
+
+   public Set<Object> getKeys() {
+      return keys;
    }
 
    private Callable<V> getCallable() {
@@ -25,6 +25,7 @@ package org.infinispan.commands.read;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -32,24 +33,53 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distexec.DistributedTaskManager;
 import org.infinispan.distexec.mapreduce.Collector;
+import org.infinispan.distexec.mapreduce.MapReduceManager;
 import org.infinispan.distexec.mapreduce.Mapper;
 import org.infinispan.distexec.mapreduce.Reducer;
 import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.marshall.Marshaller;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.remoting.responses.ExceptionResponse;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.DeferredReturnFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 /**
  * MapReduceCommand is used to migrate {@link Mapper} and {@link Reducer} to remote JVM where they
  * will get invoked.
+ * <p>
+ * The node-local phase streams input entries in chunks to a number of workers, run by the calling thread and
+ * by the worker pool of the cache's {@link DistributedTaskManager}. Unless input keys
+ * are specified, entries are read straight off the {@link DataContainer}. Each worker maps the entries
+ * of a chunk with its own copy of the {@link Mapper}, then immediately combines the emitted values with
+ * its own copy of the {@link Reducer}, so only one partially reduced value per intermediate key is held
+ * by each worker. Partial reductions of all workers are finally reduced into the result of this command.
+ * <p>
+ * If the command belongs to a task whose reduce phase is distributed, the result is not returned but
+ * partitioned by the owners of the intermediate keys, and each partition is sent to its owner to be
+ * reduced there by a {@link ReduceCommand}.
  * 
  * @author Vladimir Blagojevic
  * @since 5.0
@@ -57,6 +87,14 @@ import org.infinispan.util.logging.LogFactory;
 public class MapReduceCommand extends BaseRpcCommand {
    public static final int COMMAND_ID = 20;
    private static final Log log = LogFactory.getLog(MapReduceCommand.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   /**
+    * Number of input entries handed to a worker at a time
+    */
+   static final int CHUNK_SIZE = 1024;
+   private static final Chunk END_OF_INPUT = new Chunk(0);
+
    protected Set<Object> keys;
    private Mapper  mapper;
    private Reducer  reducer;
@@ -66,6 +104,13 @@ public class MapReduceCommand extends BaseRpcCommand {
    protected InvocationContextContainer icc;
    protected DistributionManager dm;
    protected Address localAddress;
+   private DataContainer dataContainer;
+   private Marshaller marshaller;
+   private RpcManager rpcManager;
+   private MapReduceManager mapReduceManager;
+   private DistributedTaskManager taskManager;
+   private String taskId;
+   private int parallelism = Runtime.getRuntime().availableProcessors();
 
    public MapReduceCommand() {
    }
@@ -94,12 +139,48 @@ public class MapReduceCommand extends BaseRpcCommand {
    }
    
    public void init(CommandsFactory factory, InterceptorChain invoker,
-            InvocationContextContainer icc, DistributionManager dm, Address localAddress) {
+            InvocationContextContainer icc, DistributionManager dm, Address localAddress,
+            DataContainer dataContainer, Marshaller marshaller) {
       this.commandsFactory = factory;
       this.invoker = invoker;
       this.icc = icc;
       this.dm = dm;      
       this.localAddress = localAddress;
+      this.dataContainer = dataContainer;
+      this.marshaller = marshaller;
+   }
+
+   public void initDistributedReduce(RpcManager rpcManager, MapReduceManager mapReduceManager) {
+      this.rpcManager = rpcManager;
+      this.mapReduceManager = mapReduceManager;
+   }
+
+   /**
+    * Sets the manager whose worker pool maps input entries in parallel with the calling thread.  Without one, all
+    * input entries are mapped by the calling thread.
+    */
+   public void initWorkerPool(DistributedTaskManager taskManager) {
+      this.taskManager = taskManager;
+   }
+
+   /**
+    * Sets the id of the task this command belongs to, if the reduce phase of the task is distributed to the owners of
+    * the intermediate keys.
+    */
+   public void setTaskId(String taskId) {
+      this.taskId = taskId;
+   }
+
+   public String getTaskId() {
+      return taskId;
+   }
+
+   /**
+    * Sets the maximum number of threads mapping and combining input entries on this node.  Defaults to the number
+    * of available processors.
+    */
+   public void setParallelism(int parallelism) {
+      this.parallelism = Math.max(1, parallelism);
    }
 
    /**
@@ -112,44 +193,163 @@ public class MapReduceCommand extends BaseRpcCommand {
    @Override
    public Object perform(InvocationContext context) throws Throwable {
       InvocationContext ctx = getInvocationContext(context);
-      // find targets keys and invoked Mapper on them
       boolean noInputKeys = keys == null || keys.isEmpty();
-      if (noInputKeys) {         
-         KeySetCommand keySetCommand = commandsFactory.buildKeySetCommand();
-         Set<Object> nodeLocalKeys = (Set<Object>) invoker.invoke(ctx, keySetCommand);
-         List<Object> selectedKeys = new ArrayList<Object>();
-         for (Object key : nodeLocalKeys) {
-            List<Address> locations = dm.locate(key);
-            log.trace("For key %s at %s owners are %s", key, localAddress, locations);
-            if(locations != null && !locations.isEmpty() && locations.get(0).equals(localAddress)){
-               selectedKeys.add(key);               
-            }
+      int inputSize = noInputKeys ? dataContainer.size() : keys.size();
+      int numWorkers = taskManager == null ? 1 : (int) Math.min(parallelism, 1 + (long) inputSize / CHUNK_SIZE);
+      log.trace("For %s at %s invoking mapper on %s input entries using %s workers", this, localAddress, inputSize, numWorkers);
+
+      Worker[] workers = new Worker[numWorkers];
+      for (int i = 0; i < numWorkers; i++) {
+         // workers run concurrently, hence each one needs its own Mapper and Reducer
+         workers[i] = i == 0 || marshaller == null ? new Worker(mapper, reducer) :
+               new Worker((Mapper) Util.cloneWithMarshaller(marshaller, mapper), (Reducer) Util.cloneWithMarshaller(marshaller, reducer));
+      }
+
+      Map<Object, Object> reducedMap;
+      if (numWorkers == 1) {
+         // not worth handing off to other threads
+         Worker worker = workers[0];
+         ChunkSink sink = new DirectSink(worker);
+         feed(ctx, noInputKeys, sink);
+         reducedMap = worker.reducedValues();
+      } else {
+         reducedMap = performInParallel(ctx, noInputKeys, workers);
+      }
+      if (taskId != null) {
+         reduceOnOwners(reducedMap);
+         return Collections.emptyMap();
+      }
+      log.trace("%s executed at %s was reduced to %s", this, localAddress, reducedMap);
+      return reducedMap;
+   }
+
+   /**
+    * Sends partially reduced values to the owners of their intermediate keys, and waits for them to be reduced there.
+    */
+   @SuppressWarnings("unchecked")
+   private void reduceOnOwners(Map<Object, Object> reducedMap) throws Exception {
+      Map<Address, Map<Object, Object>> partitions = new HashMap<Address, Map<Object, Object>>();
+      for (Entry<Object, Object> e : reducedMap.entrySet()) {
+         Address owner = dm.locate(e.getKey()).get(0);
+         Map<Object, Object> partition = partitions.get(owner);
+         if (partition == null) {
+            partition = new HashMap<Object, Object>();
+            partitions.put(owner, partition);
          }
-         keys.addAll(selectedKeys);
-      }
-      log.trace("For %s at %s invoking mapper on keys %s",this,localAddress, keys);
-      DefaultCollector<Object,Object> collector = new DefaultCollector<Object, Object>();
-      for (Object key : keys) {
-         GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, ctx.getFlags());
-         command.setReturnCacheEntry(false);
-         Object value = invoker.invoke(ctx, command);
-         mapper.map(key, value,collector);
-      }
-      Map<Object, List<Object>> collectedValues = collector.collectedValues();
-      Map<Object,Object> reducedMap = new HashMap<Object, Object>();
-      for (Entry<Object, List<Object>> e : collectedValues.entrySet()) {
-         List<Object> list = e.getValue();
-         if(list.size()>1){
-            Object reduced = reducer.reduce(e.getKey(),list.iterator());
-            reducedMap.put(e.getKey(), reduced);
+         partition.put(e.getKey(), e.getValue());
+      }
+      log.trace("%s executed at %s sends %s intermediate keys to %s", this, localAddress, reducedMap.size(), partitions.keySet());
+
+      Map<Address, DeferredReturnFuture> futures = new HashMap<Address, DeferredReturnFuture>();
+      Map<Object, Object> localPartition = null;
+      for (Entry<Address, Map<Object, Object>> e : partitions.entrySet()) {
+         if (e.getKey().equals(localAddress)) {
+            localPartition = e.getValue();
          } else {
-            reducedMap.put(e.getKey(),list.get(0));
+            ReduceCommand reduce = commandsFactory.buildReduceCommand(taskId, reducer, e.getValue());
+            DeferredReturnFuture future = new DeferredReturnFuture();
+            rpcManager.invokeRemotelyInFuture(Collections.singleton(e.getKey()), reduce, future);
+            futures.put(e.getKey(), future);
          }
-      }                 
-      log.trace("%s executed at %s was reduced to %s", this, localAddress, reducedMap);
+      }
+      if (localPartition != null) mapReduceManager.combine(taskId, reducer, localPartition);
+
+      for (Entry<Address, DeferredReturnFuture> e : futures.entrySet()) {
+         Map<Address, Response> responses = (Map<Address, Response>) e.getValue().get();
+         Response response = responses == null ? null : responses.get(e.getKey());
+         if (response instanceof ExceptionResponse)
+            throw new CacheException("Reducing intermediate results of task " + taskId + " on " + e.getKey() + " failed",
+                                     ((ExceptionResponse) response).getException());
+         if (response != null && !response.isSuccessful())
+            throw new CacheException("Reducing intermediate results of task " + taskId + " on " + e.getKey() + " failed");
+      }
+   }
+
+   private Map<Object, Object> performInParallel(InvocationContext ctx, boolean noInputKeys, Worker[] workers) throws Throwable {
+      BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<Chunk>(workers.length * 2);
+      // the calling thread maps with the first worker, the others are handed to the shared worker pool
+      List<QueueDrainingWorker> pooled = new ArrayList<QueueDrainingWorker>(workers.length - 1);
+      List<Future<Map<Object, Object>>> futures = new ArrayList<Future<Map<Object, Object>>>(workers.length - 1);
+      for (int i = 1; i < workers.length; i++) {
+         QueueDrainingWorker worker = new QueueDrainingWorker(workers[i], chunks, Thread.currentThread());
+         pooled.add(worker);
+         futures.add(taskManager.submit(worker));
+      }
+      QueueSink sink = new QueueSink(chunks, workers[0], pooled);
+      boolean fed = false;
+      try {
+         feed(ctx, noInputKeys, sink);
+         fed = true;
+      } finally {
+         sink.close(fed);
+      }
+
+      Map<Object, Object> reducedMap = workers[0].reducedValues();
+      for (int i = 0; i < pooled.size(); i++) {
+         if (pooled.get(i).isWithdrawn()) continue;
+         Map<Object, Object> partial;
+         try {
+            partial = futures.get(i).get();
+         } catch (ExecutionException e) {
+            throw e.getCause();
+         }
+         combine(reducer, reducedMap, partial);
+      }
       return reducedMap;
    }
 
+   /**
+    * Reads the input entries of this command and streams them to the given sink in chunks.
+    */
+   private void feed(InvocationContext ctx, boolean noInputKeys, ChunkSink sink) throws Throwable {
+      Chunk chunk = new Chunk(CHUNK_SIZE);
+      if (noInputKeys) {
+         // iterate the data container directly, rather than building a key set and looking each key up
+         ConsistentHash ch = dm.getConsistentHash();
+         for (InternalCacheEntry entry : dataContainer) {
+            if (entry.isExpired()) continue;
+            Object key = unwrap(entry.getKey());
+            if (!ch.isKeyLocalToAddress(localAddress, key, 1)) continue;
+            chunk.add(key, unwrap(entry.getValue()));
+            if (chunk.isFull()) {
+               sink.accept(chunk);
+               chunk = new Chunk(CHUNK_SIZE);
+            }
+         }
+      } else {
+         for (Object key : keys) {
+            GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, ctx.getFlags());
+            command.setReturnCacheEntry(false);
+            Object value = invoker.invoke(ctx, command);
+            chunk.add(key, value);
+            if (chunk.isFull()) {
+               sink.accept(chunk);
+               chunk = new Chunk(CHUNK_SIZE);
+            }
+         }
+      }
+      if (chunk.size > 0) sink.accept(chunk);
+   }
+
+   private static Object unwrap(Object o) {
+      return o instanceof MarshalledValue ? ((MarshalledValue) o).get() : o;
+   }
+
+   /**
+    * Reduces values of <tt>from</tt> into <tt>into</tt>, for intermediate keys present in both.
+    */
+   @SuppressWarnings("unchecked")
+   private static void combine(Reducer reducer, Map<Object, Object> into, Map<Object, Object> from) {
+      for (Entry<Object, Object> e : from.entrySet()) {
+         Object existing = into.get(e.getKey());
+         if (existing == null && !into.containsKey(e.getKey())) {
+            into.put(e.getKey(), e.getValue());
+         } else {
+            into.put(e.getKey(), reducer.reduce(e.getKey(), Arrays.asList(existing, e.getValue()).iterator()));
+         }
+      }
+   }
+
    @Override
    public byte getCommandId() {
       return COMMAND_ID;
@@ -158,7 +358,7 @@ public class MapReduceCommand extends BaseRpcCommand {
    @Override
    public Object[] getParameters() {
       
-      return new Object[] { cacheName, keys, mapper, reducer};
+      return new Object[] { cacheName, keys, mapper, reducer, taskId};
    }
 
    @Override
@@ -170,6 +370,7 @@ public class MapReduceCommand extends BaseRpcCommand {
       keys = (Set<Object>) args[i++];
       mapper = (Mapper)args[i++];
       reducer = (Reducer) args[i++];
+      taskId = (String) args[i++];
    }
 
    @Override
@@ -205,19 +406,164 @@ public class MapReduceCommand extends BaseRpcCommand {
    
    @Override
    public String toString() {
-      return "MapReduceCommand(keys=" + keys+")";
+      return "MapReduceCommand(keys=" + keys + (taskId == null ? "" : ", taskId=" + taskId) + ")";
    }
    
    private InvocationContext getInvocationContext(InvocationContext ctx) {
       return  ctx == null ? icc.createRemoteInvocationContext(localAddress):ctx;      
    }
    
+   /**
+    * A batch of input key/value pairs.
+    */
+   private static class Chunk {
+      final Object[] keys;
+      final Object[] values;
+      int size;
+
+      Chunk(int capacity) {
+         keys = new Object[capacity];
+         values = new Object[capacity];
+      }
+
+      void add(Object key, Object value) {
+         keys[size] = key;
+         values[size++] = value;
+      }
+
+      boolean isFull() {
+         return size == keys.length;
+      }
+   }
+
+   private interface ChunkSink {
+      void accept(Chunk chunk) throws Throwable;
+   }
+
+   private static class DirectSink implements ChunkSink {
+      private final Worker worker;
+
+      DirectSink(Worker worker) {
+         this.worker = worker;
+      }
+
+      public void accept(Chunk chunk) {
+         worker.process(chunk);
+      }
+   }
+
+   /**
+    * Queues chunks for the pooled workers, or maps them in the calling thread when the queue is full, so that feeding
+    * never waits for the pool.  Pooled workers that have not started by the end of input are withdrawn, so a busy
+    * pool delays the command at most by the chunks already taken by started workers.
+    */
+   private static class QueueSink implements ChunkSink {
+      private final BlockingQueue<Chunk> chunks;
+      private final Worker local;
+      private final List<QueueDrainingWorker> pooled;
+
+      QueueSink(BlockingQueue<Chunk> chunks, Worker local, List<QueueDrainingWorker> pooled) {
+         this.chunks = chunks;
+         this.local = local;
+         this.pooled = pooled;
+      }
+
+      public void accept(Chunk chunk) {
+         if (!chunks.offer(chunk)) local.process(chunk);
+      }
+
+      void close(boolean fed) {
+         int started = 0;
+         for (QueueDrainingWorker worker : pooled) {
+            if (!worker.withdraw()) started++;
+         }
+         Chunk chunk;
+         while ((chunk = chunks.poll()) != null) {
+            if (fed) local.process(chunk);
+         }
+         // only this thread adds to the queue, which has just been emptied, so there is room for all markers
+         for (int i = 0; i < started; i++) chunks.offer(END_OF_INPUT);
+      }
+   }
+
+   private static class QueueDrainingWorker implements Callable<Map<Object, Object>> {
+      private final Worker worker;
+      private final BlockingQueue<Chunk> chunks;
+      private final Thread feeder;
+      private final AtomicBoolean claimed = new AtomicBoolean();
+      private boolean withdrawn;
+
+      QueueDrainingWorker(Worker worker, BlockingQueue<Chunk> chunks, Thread feeder) {
+         this.worker = worker;
+         this.chunks = chunks;
+         this.feeder = feeder;
+      }
+
+      public Map<Object, Object> call() throws Exception {
+         // the pool runs tasks submitted from its own threads inline, and the feeder must not wait for its own input
+         if (Thread.currentThread() == feeder || !claimed.compareAndSet(false, true)) return null;
+         Chunk chunk;
+         while ((chunk = chunks.take()) != END_OF_INPUT) worker.process(chunk);
+         return worker.reducedValues();
+      }
+
+      /**
+       * Prevents the worker from starting, if it has not started yet.  Called by the feeder only.
+       *
+       * @return true if the worker will not take any chunk, false if it has started and expects an end of input marker
+       */
+      boolean withdraw() {
+         withdrawn = claimed.compareAndSet(false, true);
+         return withdrawn;
+      }
+
+      boolean isWithdrawn() {
+         return withdrawn;
+      }
+   }
+
+   /**
+    * Maps chunks of input entries and combines the emitted values with whatever was reduced from previous
+    * chunks.  Used by one thread at a time.
+    */
+   private static class Worker {
+      private final Mapper mapper;
+      private final Reducer reducer;
+      private final DefaultCollector<Object, Object> collector = new DefaultCollector<Object, Object>();
+      private final Map<Object, Object> reduced = new HashMap<Object, Object>();
+
+      Worker(Mapper mapper, Reducer reducer) {
+         this.mapper = mapper;
+         this.reducer = reducer;
+      }
+
+      @SuppressWarnings("unchecked")
+      void process(Chunk chunk) {
+         for (int i = 0; i < chunk.size; i++) {
+            mapper.map(chunk.keys[i], chunk.values[i], collector);
+         }
+         for (Entry<Object, List<Object>> e : collector.collectedValues().entrySet()) {
+            Object key = e.getKey();
+            List<Object> values = e.getValue();
+            Object previous = reduced.get(key);
+            if (previous != null || reduced.containsKey(key)) values.add(0, previous);
+            reduced.put(key, values.size() > 1 ? reducer.reduce(key, values.iterator()) : values.get(0));
+         }
+         collector.clear();
+         if (trace) log.trace("Combined a chunk of %s entries into %s intermediate keys", chunk.size, reduced.size());
+      }
+
+      Map<Object, Object> reducedValues() {
+         return reduced;
+      }
+   }
+
    /**
     * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
     */
    private static class DefaultCollector<KOut, VOut> implements Collector<KOut, VOut> {
 
-      private final Map<KOut, List<VOut>> store = new ConcurrentHashMap<KOut, List<VOut>>();
+      private final Map<KOut, List<VOut>> store = new HashMap<KOut, List<VOut>>();
 
       @Override
       public void emit(KOut key, VOut value) {
@@ -232,5 +578,9 @@ public class MapReduceCommand extends BaseRpcCommand {
       public Map<KOut, List<VOut>> collectedValues() {
          return store;
       }
+
+      public void clear() {
+         store.clear();
+      }
    }
-}
\ No newline at end of file
+}
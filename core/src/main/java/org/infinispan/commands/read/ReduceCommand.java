@@ -0,0 +1,181 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.read;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.infinispan.Cache;
+import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.distexec.mapreduce.MapReduceManager;
+import org.infinispan.distexec.mapreduce.Reducer;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+/**
+ * ReduceCommand drives the distributed reduce phase of a MapReduceTask on the owners of intermediate keys.
+ * <p>
+ * Nodes that ran the map phase send the partially reduced values of each intermediate key to the key's owner, which
+ * reduces them as they arrive. Once all nodes are done mapping, the node that initiated the task asks every owner to
+ * complete the task: the owner then either stores its final results in a target cache or returns them.
+ * 
+ * @see MapReduceManager
+ * 
+ * @since 5.0
+ */
+public class ReduceCommand extends BaseRpcCommand {
+   public static final int COMMAND_ID = 22;
+   private static final Log log = LogFactory.getLog(ReduceCommand.class);
+
+   private String taskId;
+   private Reducer reducer;
+   private Map<Object, Object> partialResults;
+   private boolean complete;
+   private String targetCacheName;
+   private boolean returnResults;
+
+   private MapReduceManager mapReduceManager;
+   private EmbeddedCacheManager cacheManager;
+
+   public ReduceCommand() {
+   }
+
+   /**
+    * Builds a command reducing partially reduced values into the results of a task on the owner of their keys
+    */
+   public ReduceCommand(String cacheName, String taskId, Reducer reducer, Map<Object, Object> partialResults) {
+      super(cacheName);
+      this.taskId = taskId;
+      this.reducer = reducer;
+      this.partialResults = partialResults;
+   }
+
+   /**
+    * Builds a command completing a task on the owners of its intermediate keys
+    * 
+    * @param targetCacheName
+    *           name of the cache to store the results in, or null if results should not be stored
+    * @param returnResults
+    *           whether the results should be returned
+    */
+   public ReduceCommand(String cacheName, String taskId, String targetCacheName, boolean returnResults) {
+      super(cacheName);
+      this.taskId = taskId;
+      this.complete = true;
+      this.targetCacheName = targetCacheName;
+      this.returnResults = returnResults;
+   }
+
+   public void init(MapReduceManager mapReduceManager, EmbeddedCacheManager cacheManager) {
+      this.mapReduceManager = mapReduceManager;
+      this.cacheManager = cacheManager;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object perform(InvocationContext ctx) throws Throwable {
+      if (!complete) {
+         mapReduceManager.combine(taskId, reducer, partialResults);
+         return null;
+      }
+      Map<Object, Object> results = mapReduceManager.remove(taskId);
+      log.trace("Completing task %s with %s reduced keys", taskId, results.size());
+      if (targetCacheName != null && !results.isEmpty()) {
+         Cache<Object, Object> target = cacheManager.getCache(targetCacheName);
+         target.putAll(results);
+      }
+      return returnResults ? results : Collections.emptyMap();
+   }
+
+   public String getTaskId() {
+      return taskId;
+   }
+
+   public boolean isComplete() {
+      return complete;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      if (complete)
+         return new Object[]{cacheName, taskId, true, targetCacheName, returnResults};
+      else
+         return new Object[]{cacheName, taskId, false, reducer, partialResults};
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] args) {
+      if (commandId != COMMAND_ID)
+         throw new IllegalStateException("Invalid method id");
+      int i = 0;
+      cacheName = (String) args[i++];
+      taskId = (String) args[i++];
+      complete = (Boolean) args[i++];
+      if (complete) {
+         targetCacheName = (String) args[i++];
+         returnResults = (Boolean) args[i++];
+      } else {
+         reducer = (Reducer) args[i++];
+         partialResults = (Map<Object, Object>) args[i++];
+      }
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof ReduceCommand)) return false;
+      if (!super.equals(o)) return false;
+
+      ReduceCommand that = (ReduceCommand) o;
+      if (complete != that.complete) return false;
+      if (returnResults != that.returnResults) return false;
+      if (taskId != null ? !taskId.equals(that.taskId) : that.taskId != null) return false;
+      if (targetCacheName != null ? !targetCacheName.equals(that.targetCacheName) : that.targetCacheName != null) return false;
+      return partialResults != null ? partialResults.equals(that.partialResults) : that.partialResults == null;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = super.hashCode();
+      result = 31 * result + (taskId != null ? taskId.hashCode() : 0);
+      result = 31 * result + (complete ? 1 : 0);
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "ReduceCommand{" +
+            "taskId='" + taskId + '\'' +
+            ", complete=" + complete +
+            (complete ? ", targetCacheName=" + targetCacheName : ", partialResults=" + (partialResults == null ? 0 : partialResults.size())) +
+            '}';
+   }
+}
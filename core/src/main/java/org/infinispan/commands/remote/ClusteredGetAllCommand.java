@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.remote;
+
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.FlagAffectedCommand;
+import org.infinispan.commands.read.GetAllCommand;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.container.entries.MVCCEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Issues a remote get call for several keys at once, the multi-key equivalent of {@link ClusteredGetCommand}.  This is
+ * not a {@link org.infinispan.commands.VisitableCommand} and hence not passed up the
+ * {@link org.infinispan.interceptors.base.CommandInterceptor} chain.
+ * <p/>
+ * Returns a map of the keys found to their {@link InternalCacheValue}.  Keys which are affected by a rehash in progress
+ * on the target are mapped to <tt>null</tt>, meaning the target is unsure and the caller should look elsewhere.
+ *
+ * @since 5.0
+ */
+public class ClusteredGetAllCommand extends BaseRpcCommand implements FlagAffectedCommand {
+
+   public static final byte COMMAND_ID = 21;
+   private static final Log log = LogFactory.getLog(ClusteredGetAllCommand.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private List<Object> keys;
+
+   private InvocationContextContainer icc;
+   private CommandsFactory commandsFactory;
+   private InterceptorChain invoker;
+
+   private Set<Flag> flags;
+
+   private DistributionManager distributionManager;
+
+   public ClusteredGetAllCommand() {
+   }
+
+   public ClusteredGetAllCommand(Collection<Object> keys, String cacheName, Set<Flag> flags) {
+      this.keys = new ArrayList<Object>(keys);
+      this.cacheName = cacheName;
+      this.flags = flags;
+   }
+
+   public void initialize(InvocationContextContainer icc, CommandsFactory commandsFactory,
+                          InterceptorChain interceptorChain, DistributionManager distributionManager) {
+      this.distributionManager = distributionManager;
+      this.icc = icc;
+      this.commandsFactory = commandsFactory;
+      this.invoker = interceptorChain;
+   }
+
+   /**
+    * Invokes a logical "getAll(keys)" on a remote cache and returns results.
+    *
+    * @param context invocation context, ignored.
+    * @return a map of the keys found to their values; keys affected by a rehash are mapped to null
+    */
+   public Map<Object, InternalCacheValue> perform(InvocationContext context) throws Throwable {
+      Map<Object, InternalCacheValue> result = new HashMap<Object, InternalCacheValue>();
+      List<Object> toRead = keys;
+      if (distributionManager != null && distributionManager.isRehashInProgress()) {
+         toRead = new ArrayList<Object>(keys.size());
+         for (Object key : keys) {
+            if (distributionManager.isAffectedByRehash(key))
+               result.put(key, null);
+            else
+               toRead.add(key);
+         }
+      }
+      if (toRead.isEmpty()) return result;
+
+      GetAllCommand command = commandsFactory.buildGetAllCommand(toRead, flags);
+      command.setReturnCacheEntries(true);
+      InvocationContext invocationContext = icc.createRemoteInvocationContextForCommand(command, getOrigin());
+      Map<Object, CacheEntry> entries = (Map<Object, CacheEntry>) invoker.invoke(invocationContext, command);
+      for (Map.Entry<Object, CacheEntry> e : entries.entrySet()) {
+         CacheEntry cacheEntry = e.getValue();
+         //this might happen if the value was fetched from a cache loader
+         if (cacheEntry instanceof MVCCEntry) {
+            MVCCEntry mvccEntry = (MVCCEntry) cacheEntry;
+            result.put(e.getKey(), InternalEntryFactory.createValue(mvccEntry.getValue(), -1, mvccEntry.getLifespan(), -1, mvccEntry.getMaxIdle()));
+         } else {
+            result.put(e.getKey(), ((InternalCacheEntry) cacheEntry).toInternalCacheValue());
+         }
+      }
+      if (trace) log.trace("Found %s out of %s keys", entries.size(), keys.size());
+      return result;
+   }
+
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   public Object[] getParameters() {
+      return new Object[]{keys, cacheName, flags};
+   }
+
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] args) {
+      keys = (List<Object>) args[0];
+      cacheName = (String) args[1];
+      flags = (Set<Flag>) args[2];
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      ClusteredGetAllCommand that = (ClusteredGetAllCommand) o;
+
+      return !(keys != null ? !keys.equals(that.keys) : that.keys != null);
+   }
+
+   @Override
+   public int hashCode() {
+      return keys != null ? keys.hashCode() : 0;
+   }
+
+   @Override
+   public String toString() {
+      return new StringBuilder()
+         .append("ClusteredGetAllCommand{keys=")
+         .append(keys)
+         .append(", flags=").append(flags)
+         .append("}")
+         .toString();
+   }
+
+   public List<Object> getKeys() {
+      return Collections.unmodifiableList(keys);
+   }
+
+   @Override
+   public Set<Flag> getFlags() {
+      return flags;
+   }
+
+   @Override
+   public void setFlags(Set<Flag> flags) {
+      this.flags = flags;
+   }
+}
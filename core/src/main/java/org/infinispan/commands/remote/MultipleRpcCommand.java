@@ -22,15 +22,25 @@
  */
 package org.infinispan.commands.remote;
 
+import org.infinispan.CacheException;
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.VisitableCommand;
 import org.infinispan.commands.tx.TransactionBoundaryCommand;
 import org.infinispan.context.InvocationContext;
+import org.infinispan.marshall.Marshaller;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * Command that implements cluster replication logic.
@@ -38,6 +48,10 @@ import java.util.List;
  * This is not a {@link VisitableCommand} and hence not passed up the {@link org.infinispan.interceptors.base.CommandInterceptor}
  * chain.
  * <p/>
+ * The commands can also be shipped <i>packed</i>, i.e. as a single byte array holding the already marshalled commands,
+ * optionally compressed.  A packed command must be {@link #unpack(org.infinispan.marshall.Marshaller) unpacked} by the
+ * receiver before it is initialized and performed.
+ * <p/>
  *
  * @author Mircea.Markus@jboss.com
  * @since 4.0
@@ -50,12 +64,42 @@ public class MultipleRpcCommand extends BaseRpcInvokingCommand {
    private static final boolean trace = log.isTraceEnabled();
 
    private ReplicableCommand[] commands;
+   private byte[] packedCommands;
+   private boolean compressed;
+   private int unpackedLength;
 
    public MultipleRpcCommand(List<ReplicableCommand> modifications, String cacheName) {
       super(cacheName);
       commands = modifications.toArray(new ReplicableCommand[modifications.size()]);
    }
 
+   /**
+    * Creates a packed command out of commands that have already been marshalled.
+    *
+    * @param marshalledCommands commands, each marshalled into its own byte array
+    * @param compress           whether the packed commands should be compressed
+    */
+   public MultipleRpcCommand(List<byte[]> marshalledCommands, boolean compress, String cacheName) {
+      super(cacheName);
+      try {
+         ByteArrayOutputStream baos = new ByteArrayOutputStream(estimatePackedLength(marshalledCommands));
+         DataOutputStream out = new DataOutputStream(baos);
+         out.writeInt(marshalledCommands.size());
+         for (byte[] command : marshalledCommands) {
+            out.writeInt(command.length);
+            out.write(command);
+         }
+         out.flush();
+         byte[] packed = baos.toByteArray();
+         unpackedLength = packed.length;
+         compressed = compress;
+         packedCommands = compress ? deflate(packed) : packed;
+         if (trace) log.trace("Packed %s commands into %s bytes (compressed=%s)", marshalledCommands.size(), packedCommands.length, compress);
+      } catch (IOException e) {
+         throw new CacheException("Unable to pack commands", e);
+      }
+   }
+
    public MultipleRpcCommand() {
    }
 
@@ -82,7 +126,89 @@ public class MultipleRpcCommand extends BaseRpcInvokingCommand {
       return commands;
    }
 
+   /**
+    * @return true if this command carries packed commands that have not been unpacked yet
+    */
+   public boolean isPacked() {
+      return commands == null && packedCommands != null;
+   }
+
+   /**
+    * @return the number of bytes the packed commands take on the wire, or -1 if this command is not packed
+    */
+   public int getPackedLength() {
+      return packedCommands == null ? -1 : packedCommands.length;
+   }
+
+   /**
+    * Unmarshalls the packed commands carried by this command.
+    *
+    * @param marshaller marshaller used to unmarshall each command
+    */
+   public void unpack(Marshaller marshaller) {
+      if (!isPacked()) return;
+      try {
+         byte[] packed = compressed ? inflate(packedCommands, unpackedLength) : packedCommands;
+         DataInputStream in = new DataInputStream(new ByteArrayInputStream(packed));
+         int numCommands = in.readInt();
+         ReplicableCommand[] unpacked = new ReplicableCommand[numCommands];
+         for (int i = 0; i < numCommands; i++) {
+            byte[] command = new byte[in.readInt()];
+            in.readFully(command);
+            unpacked[i] = (ReplicableCommand) marshaller.objectFromByteBuffer(command);
+         }
+         commands = unpacked;
+         packedCommands = null;
+      } catch (Exception e) {
+         throw new CacheException("Unable to unpack commands", e);
+      }
+   }
+
+   private static int estimatePackedLength(List<byte[]> marshalledCommands) {
+      int length = 4;
+      for (byte[] command : marshalledCommands) length += 4 + command.length;
+      return length;
+   }
+
+   private static byte[] deflate(byte[] data) {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+         deflater.setInput(data);
+         deflater.finish();
+         ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+         byte[] chunk = new byte[4096];
+         while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            out.write(chunk, 0, n);
+         }
+         return out.toByteArray();
+      } finally {
+         deflater.end();
+      }
+   }
+
+   private static byte[] inflate(byte[] data, int length) throws DataFormatException {
+      Inflater inflater = new Inflater();
+      try {
+         inflater.setInput(data);
+         byte[] result = new byte[length];
+         int offset = 0;
+         while (offset < length && !inflater.finished()) {
+            int n = inflater.inflate(result, offset, length - offset);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+               throw new DataFormatException("Truncated compressed commands");
+            offset += n;
+         }
+         return result;
+      } finally {
+         inflater.end();
+      }
+   }
+
    public Object[] getParameters() {
+      if (packedCommands != null) {
+         return new Object[]{cacheName, packedCommands, compressed, unpackedLength};
+      }
       int numCommands = commands.length;
       Object[] retval = new Object[numCommands + 1];
       retval[0] = cacheName;
@@ -93,6 +219,14 @@ public class MultipleRpcCommand extends BaseRpcInvokingCommand {
    @SuppressWarnings("unchecked")
    public void setParameters(int commandId, Object[] args) {
       cacheName = (String) args[0];
+      if (args.length == 4 && args[1] instanceof byte[]) {
+         // packed commands, which can never be confused with an array of commands
+         packedCommands = (byte[]) args[1];
+         compressed = (Boolean) args[2];
+         unpackedLength = (Integer) args[3];
+         commands = null;
+         return;
+      }
       int numCommands = args.length - 1;
       commands = new ReplicableCommand[numCommands];
       System.arraycopy(args, 1, commands, 0, numCommands);
@@ -107,6 +241,7 @@ public class MultipleRpcCommand extends BaseRpcInvokingCommand {
 
       if (cacheName != null ? !cacheName.equals(that.cacheName) : that.cacheName != null) return false;
       if (!Arrays.equals(commands, that.commands)) return false;
+      if (!Arrays.equals(packedCommands, that.packedCommands)) return false;
       if (interceptorChain != null ? !interceptorChain.equals(that.interceptorChain) : that.interceptorChain != null)
          return false;
 
@@ -125,6 +260,7 @@ public class MultipleRpcCommand extends BaseRpcInvokingCommand {
    public String toString() {
       return "MultipleRpcCommand{" +
             "commands=" + (commands == null ? null : Arrays.asList(commands)) +
+            (packedCommands == null ? "" : ", packedLength=" + packedCommands.length + ", compressed=" + compressed) +
             ", cacheName='" + cacheName + '\'' +
             '}';
    }
@@ -30,6 +30,7 @@ import org.infinispan.distribution.ch.DefaultConsistentHash;
 import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
+import org.infinispan.marshall.CompactionPolicy;
 import org.infinispan.factories.ComponentRegistry;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
@@ -252,6 +253,23 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return locking.useLockStriping;
    }
 
+   /**
+    * If true, entries are locked with compare-and-swap based per-entry lock records instead of a lock per entry or a
+    * pool of shared locks.  Lock records support shared as well as exclusive locking and are removed as soon as they
+    * are released.  When enabled, this takes precedence over lock striping.
+    *
+    * @param useLockFreeContainer
+    * @deprecated Use {@link FluentConfiguration.LockingConfig#useLockFreeContainer(Boolean)} instead
+    */
+   @Deprecated
+   public void setUseLockFreeContainer(boolean useLockFreeContainer) {
+      locking.setUseLockFreeContainer(useLockFreeContainer);
+   }
+
+   public boolean isUseLockFreeContainer() {
+      return locking.useLockFreeContainer;
+   }
+
    public boolean isUnsafeUnreliableReturnValues() {
       return unsafe.unreliableReturnValues;
    }
@@ -283,6 +301,39 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.hash.rehashRpcTimeout;
    }
 
+   /**
+    * Maximum number of entries sent in a single chunk of state during a rehash.  State providers stream their state
+    * to the receiver in chunks of at most this many entries, and the receiver applies each chunk before requesting the
+    * next one.
+    *
+    * @param rehashChunkSize
+    * @deprecated Use {@link FluentConfiguration.HashConfig#rehashChunkSize(Integer)} instead
+    */
+   @Deprecated
+   public void setRehashChunkSize(int rehashChunkSize) {
+      this.clustering.hash.setRehashChunkSize(rehashChunkSize);
+   }
+
+   public int getRehashChunkSize() {
+      return clustering.hash.rehashChunkSize;
+   }
+
+   /**
+    * Maximum number of bytes, as estimated from the size of byte array and marshalled keys and values, sent in a single
+    * chunk of state during a rehash.  This bound applies in addition to rehashChunkSize. -1 means no limit.
+    *
+    * @param rehashChunkMaxBytes
+    * @deprecated Use {@link FluentConfiguration.HashConfig#rehashChunkMaxBytes(Long)} instead
+    */
+   @Deprecated
+   public void setRehashChunkMaxBytes(long rehashChunkMaxBytes) {
+      this.clustering.hash.setRehashChunkMaxBytes(rehashChunkMaxBytes);
+   }
+
+   public long getRehashChunkMaxBytes() {
+      return clustering.hash.rehashChunkMaxBytes;
+   }
+
    public boolean isWriteSkewCheck() {
       return locking.writeSkewCheck;
    }
@@ -329,6 +380,30 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       this.clustering.async.setReplQueueMaxElements(replQueueMaxElements);
    }
 
+   /**
+    * If useReplQueue is set to true, this attribute can be used to trigger flushing of the queue when the marshalled
+    * size of the queued commands reaches a specific number of bytes. A value of 0 disables size based flushing.
+    *
+    * @param replQueueMaxBytes
+    * @deprecated Use {@link FluentConfiguration.AsyncConfig#replQueueMaxBytes(Long)} instead
+    */
+   @Deprecated
+   public void setReplQueueMaxBytes(long replQueueMaxBytes) {
+      this.clustering.async.setReplQueueMaxBytes(replQueueMaxBytes);
+   }
+
+   /**
+    * If useReplQueue is set to true, this attribute controls whether the batch of commands sent when flushing the
+    * queue is compressed.
+    *
+    * @param replQueueCompression
+    * @deprecated Use {@link FluentConfiguration.AsyncConfig#replQueueCompression(Boolean)} instead
+    */
+   @Deprecated
+   public void setReplQueueCompression(boolean replQueueCompression) {
+      this.clustering.async.setReplQueueCompression(replQueueCompression);
+   }
+
    /**
     * If useReplQueue is set to true, this attribute controls how often the asynchronous thread used to flush the
     * replication queue runs. This should be a positive integer which represents thread wakeup time in milliseconds.
@@ -610,6 +685,23 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       this.eviction.setMaxEntries(evictionMaxEntries);
    }
 
+   public long getEvictionMaxBytes() {
+      return eviction.maxBytes;
+   }
+
+   /**
+    * Maximum number of bytes, as computed by the data container's entry size calculator, that a cache instance may
+    * hold in memory before entries are evicted. This bound applies in addition to maxEntries, or on its own if
+    * maxEntries is not set. -1 means no limit.
+    *
+    * @param evictionMaxBytes
+    * @deprecated Use {@link FluentConfiguration.EvictionConfig#maxBytes(Long)} instead
+    */
+   @Deprecated
+   public void setEvictionMaxBytes(long evictionMaxBytes) {
+      this.eviction.setMaxBytes(evictionMaxBytes);
+   }
+
    /**
     * Expiration lifespan, in milliseconds
     */
@@ -1062,6 +1154,14 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.async.replQueueInterval;
    }
 
+   public long getReplQueueMaxBytes() {
+      return clustering.async.replQueueMaxBytes;
+   }
+
+   public boolean isReplQueueCompression() {
+      return clustering.async.replQueueCompression;
+   }
+
    public String getReplQueueClass() {
       return this.clustering.async.replQueueClass;
    }
@@ -1209,6 +1309,23 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return storeAsBinary.enabled;
    }
 
+   public CompactionPolicy getStoreAsBinaryCompactionPolicy() {
+      return storeAsBinary.compactionPolicy;
+   }
+
+   /**
+    * Which representations of a value stored as binary are kept once an invocation completes. KEEP_INSTANCE (the
+    * default) keeps the deserialized instance, KEEP_SERIALIZED keeps the byte array and KEEP_BOTH keeps whichever forms
+    * have been created, trading memory for never converting a hot entry twice.
+    *
+    * @param compactionPolicy
+    * @deprecated Use {@link FluentConfiguration.StoreAsBinaryConfig#compactionPolicy(org.infinispan.marshall.CompactionPolicy)} instead
+    */
+   @Deprecated
+   public void setStoreAsBinaryCompactionPolicy(CompactionPolicy compactionPolicy) {
+      storeAsBinary.setCompactionPolicy(compactionPolicy);
+   }
+
    public boolean isL1CacheEnabled() {
       return clustering.l1.enabled;
    }
@@ -1456,6 +1573,22 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       this.customInterceptors.setCustomInterceptors(customInterceptors);
    }
 
+   /**
+    * If true, the interceptor chain routes each type of command only through the interceptors that act on it, using
+    * dispatch tables computed per command type, instead of visiting every interceptor in the chain.
+    *
+    * @param useCompiledInterceptorChain
+    * @deprecated Use {@link FluentConfiguration.CustomInterceptorsConfig#compiled(Boolean)} instead
+    */
+   @Deprecated
+   public void setUseCompiledInterceptorChain(boolean useCompiledInterceptorChain) {
+      this.customInterceptors.setCompiled(useCompiledInterceptorChain);
+   }
+
+   public boolean isUseCompiledInterceptorChain() {
+      return customInterceptors.compiled;
+   }
+
    public void assertValid() throws ConfigurationException {
       // certain combinations are illegal, such as state transfer + DIST
       if (clustering.mode.isDistributed() && clustering.stateRetrieval.fetchInMemoryState)
@@ -1772,6 +1905,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseLockStriping")
       protected Boolean useLockStriping = false;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseLockFreeContainer")
+      protected Boolean useLockFreeContainer = false;
+
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setConcurrencyLevel")
       protected Integer concurrencyLevel = 32;
 
@@ -1864,6 +2000,27 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       }
 
 
+      @XmlAttribute
+      public Boolean isUseLockFreeContainer() {
+         return useLockFreeContainer;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #useLockFreeContainer(Boolean)} instead
+       */
+      @Deprecated
+      public void setUseLockFreeContainer(Boolean useLockFreeContainer) {
+         testImmutability("useLockFreeContainer");
+         this.useLockFreeContainer = useLockFreeContainer;
+      }
+
+      @Override
+      public LockingConfig useLockFreeContainer(Boolean useLockFreeContainer) {
+         setUseLockFreeContainer(useLockFreeContainer);
+         return this;
+      }
+
+
       @XmlAttribute
       public Integer getConcurrencyLevel() {
          return concurrencyLevel;
@@ -1904,6 +2061,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (useLockStriping != null ? !useLockStriping.equals(that.useLockStriping) : that.useLockStriping != null)
             return false;
+         if (useLockFreeContainer != null ? !useLockFreeContainer.equals(that.useLockFreeContainer) : that.useLockFreeContainer != null)
+            return false;
          if (writeSkewCheck != null ? !writeSkewCheck.equals(that.writeSkewCheck) : that.writeSkewCheck != null)
             return false;
 
@@ -1916,6 +2075,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (isolationLevel != null ? isolationLevel.hashCode() : 0);
          result = 31 * result + (writeSkewCheck != null ? writeSkewCheck.hashCode() : 0);
          result = 31 * result + (useLockStriping != null ? useLockStriping.hashCode() : 0);
+         result = 31 * result + (useLockFreeContainer != null ? useLockFreeContainer.hashCode() : 0);
          result = 31 * result + (concurrencyLevel != null ? concurrencyLevel.hashCode() : 0);
          return result;
       }
@@ -2212,6 +2372,12 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setReplQueueInterval")
       protected Long replQueueInterval = 5000L;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setReplQueueMaxBytes")
+      protected Long replQueueMaxBytes = 0L;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setReplQueueCompression")
+      protected Boolean replQueueCompression = false;
+
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseAsyncMarshalling")
       protected Boolean asyncMarshalling = false;
 
@@ -2244,6 +2410,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (replQueueMaxElements != null ? !replQueueMaxElements.equals(asyncType.replQueueMaxElements) : asyncType.replQueueMaxElements != null)
             return false;
+         if (replQueueMaxBytes != null ? !replQueueMaxBytes.equals(asyncType.replQueueMaxBytes) : asyncType.replQueueMaxBytes != null)
+            return false;
+         if (replQueueCompression != null ? !replQueueCompression.equals(asyncType.replQueueCompression) : asyncType.replQueueCompression != null)
+            return false;
          if (useReplQueue != null ? !useReplQueue.equals(asyncType.useReplQueue) : asyncType.useReplQueue != null)
             return false;
          if (!Util.safeEquals(replQueueClass, asyncType.replQueueClass))
@@ -2258,6 +2428,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (useReplQueue != null ? useReplQueue.hashCode() : 0);
          result = 31 * result + (replQueueMaxElements != null ? replQueueMaxElements.hashCode() : 0);
          result = 31 * result + (replQueueInterval != null ? replQueueInterval.hashCode() : 0);
+         result = 31 * result + (replQueueMaxBytes != null ? replQueueMaxBytes.hashCode() : 0);
+         result = 31 * result + (replQueueCompression != null ? replQueueCompression.hashCode() : 0);
          result = 31 * result + (asyncMarshalling != null ? asyncMarshalling.hashCode() : 0);
          result = 31 * result + (replQueueClass != null ? replQueueClass.hashCode() : 0);
          return result;
@@ -2330,6 +2502,48 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       }
 
 
+      @XmlAttribute
+      public Long getReplQueueMaxBytes() {
+         return replQueueMaxBytes;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #replQueueMaxBytes(Long)}
+       */
+      @Deprecated
+      public void setReplQueueMaxBytes(Long replQueueMaxBytes) {
+         testImmutability("replQueueMaxBytes");
+         this.replQueueMaxBytes = replQueueMaxBytes;
+      }
+
+      @Override
+      public AsyncConfig replQueueMaxBytes(Long replQueueMaxBytes) {
+         setReplQueueMaxBytes(replQueueMaxBytes);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Boolean isReplQueueCompression() {
+         return replQueueCompression;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #replQueueCompression(Boolean)}
+       */
+      @Deprecated
+      public void setReplQueueCompression(Boolean replQueueCompression) {
+         testImmutability("replQueueCompression");
+         this.replQueueCompression = replQueueCompression;
+      }
+
+      @Override
+      public AsyncConfig replQueueCompression(Boolean replQueueCompression) {
+         setReplQueueCompression(replQueueCompression);
+         return this;
+      }
+
+
       @XmlAttribute
       public Boolean isAsyncMarshalling() {
          return asyncMarshalling;
@@ -2496,6 +2710,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEvictionMaxEntries")
       protected Integer maxEntries = -1;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEvictionMaxBytes")
+      protected Long maxBytes = -1L;
+
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEvictionThreadPolicy")
       protected EvictionThreadPolicy threadPolicy = EvictionThreadPolicy.DEFAULT;
 
@@ -2583,6 +2800,26 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      @XmlAttribute
+      public Long getMaxBytes() {
+         return maxBytes;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #maxBytes(Long)}
+       */
+      @Deprecated
+      public void setMaxBytes(Long maxBytes) {
+         testImmutability("maxBytes");
+         this.maxBytes = maxBytes;
+      }
+
+      @Override
+      public EvictionConfig maxBytes(Long maxBytes) {
+         setMaxBytes(maxBytes);
+         return this;
+      }
+
       @Override
       protected EvictionType setConfiguration(Configuration config) {
          super.setConfiguration(config);
@@ -2597,6 +2834,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          EvictionType that = (EvictionType) o;
 
          if (maxEntries != null ? !maxEntries.equals(that.maxEntries) : that.maxEntries != null) return false;
+         if (maxBytes != null ? !maxBytes.equals(that.maxBytes) : that.maxBytes != null) return false;
          if (strategy != that.strategy) return false;
          if (threadPolicy != that.threadPolicy) return false;
          if (wakeUpInterval != null ? !wakeUpInterval.equals(that.wakeUpInterval) : that.wakeUpInterval != null)
@@ -2611,6 +2849,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (strategy != null ? strategy.hashCode() : 0);
          result = 31 * result + (threadPolicy != null ? threadPolicy.hashCode() : 0);
          result = 31 * result + (maxEntries != null ? maxEntries.hashCode() : 0);
+         result = 31 * result + (maxBytes != null ? maxBytes.hashCode() : 0);
          return result;
       }
    }
@@ -3057,6 +3296,12 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setRehashEnabled")
       protected Boolean rehashEnabled = true;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setRehashChunkSize")
+      protected Integer rehashChunkSize = 10000;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setRehashChunkMaxBytes")
+      protected Long rehashChunkMaxBytes = -1L;
       
       @ConfigurationDocRef(bean = HashConfig.class, targetElement = "numVirtualNodes")
       protected Integer numVirtualNodes = 1;
@@ -3210,6 +3455,48 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+
+      @XmlAttribute
+      public Integer getRehashChunkSize() {
+         return rehashChunkSize;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #rehashChunkSize(Integer)}
+       */
+      @Deprecated
+      public void setRehashChunkSize(Integer rehashChunkSize) {
+         testImmutability("rehashChunkSize");
+         this.rehashChunkSize = rehashChunkSize;
+      }
+
+      @Override
+      public HashConfig rehashChunkSize(Integer rehashChunkSize) {
+         setRehashChunkSize(rehashChunkSize);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Long getRehashChunkMaxBytes() {
+         return rehashChunkMaxBytes;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #rehashChunkMaxBytes(Long)}
+       */
+      @Deprecated
+      public void setRehashChunkMaxBytes(Long rehashChunkMaxBytes) {
+         testImmutability("rehashChunkMaxBytes");
+         this.rehashChunkMaxBytes = rehashChunkMaxBytes;
+      }
+
+      @Override
+      public HashConfig rehashChunkMaxBytes(Long rehashChunkMaxBytes) {
+         setRehashChunkMaxBytes(rehashChunkMaxBytes);
+         return this;
+      }
+
       @Override
       public boolean equals(Object o) {
          if (this == o) return true;
@@ -3227,6 +3514,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (rehashWait != null ? !rehashWait.equals(hashType.rehashWait) : hashType.rehashWait != null) return false;
          if (rehashEnabled != hashType.rehashEnabled) return false;
+         if (rehashChunkSize != null ? !rehashChunkSize.equals(hashType.rehashChunkSize) : hashType.rehashChunkSize != null)
+            return false;
+         if (rehashChunkMaxBytes != null ? !rehashChunkMaxBytes.equals(hashType.rehashChunkMaxBytes) : hashType.rehashChunkMaxBytes != null)
+            return false;
 
          return true;
       }
@@ -3240,6 +3531,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (rehashWait != null ? rehashWait.hashCode() : 0);
          result = 31 * result + (rehashRpcTimeout != null ? rehashRpcTimeout.hashCode() : 0);
          result = 31 * result + (rehashEnabled ? 0 : 1);
+         result = 31 * result + (rehashChunkSize != null ? rehashChunkSize.hashCode() : 0);
+         result = 31 * result + (rehashChunkMaxBytes != null ? rehashChunkMaxBytes.hashCode() : 0);
          return result;
       }
    }
@@ -3469,10 +3762,33 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
        */
       private static final long serialVersionUID = 7404820498857564962L;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setStoreAsBinaryCompactionPolicy")
+      protected CompactionPolicy compactionPolicy = CompactionPolicy.KEEP_INSTANCE;
+
       public StoreAsBinary() {
          super("storeAsBinary");
       }
 
+      @XmlAttribute
+      public CompactionPolicy getCompactionPolicy() {
+         return compactionPolicy;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #compactionPolicy(CompactionPolicy)}
+       */
+      @Deprecated
+      public void setCompactionPolicy(CompactionPolicy compactionPolicy) {
+         testImmutability("compactionPolicy");
+         this.compactionPolicy = compactionPolicy;
+      }
+
+      @Override
+      public StoreAsBinary compactionPolicy(CompactionPolicy compactionPolicy) {
+         setCompactionPolicy(compactionPolicy);
+         return this;
+      }
+
       @Override
       protected StoreAsBinary setConfiguration(Configuration config) {
          super.setConfiguration(config);
@@ -3490,6 +3806,27 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          super.disable();
          return this;
       }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (!(o instanceof StoreAsBinary)) return false;
+         if (!super.equals(o)) return false;
+
+         StoreAsBinary that = (StoreAsBinary) o;
+
+         if (compactionPolicy != null ? !compactionPolicy.equals(that.compactionPolicy) : that.compactionPolicy != null)
+            return false;
+
+         return true;
+      }
+
+      @Override
+      public int hashCode() {
+         int result = super.hashCode();
+         result = 31 * result + (compactionPolicy != null ? compactionPolicy.hashCode() : 0);
+         return result;
+      }
    }
 
    /**
@@ -3740,6 +4077,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @XmlElement(name = "interceptor")
       private List<CustomInterceptorConfig> customInterceptors = new ArrayList<CustomInterceptorConfig>();
 
+      @XmlAttribute
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseCompiledInterceptorChain")
+      protected Boolean compiled = false;
+
       @Override
       public CustomInterceptorsType clone() throws CloneNotSupportedException {
          CustomInterceptorsType dolly = (CustomInterceptorsType) super.clone();
@@ -3773,13 +4114,36 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 
          if (customInterceptors != null ? !customInterceptors.equals(that.customInterceptors) : that.customInterceptors != null)
             return false;
+         if (compiled != null ? !compiled.equals(that.compiled) : that.compiled != null)
+            return false;
 
          return true;
       }
 
       @Override
       public int hashCode() {
-         return customInterceptors != null ? customInterceptors.hashCode() : 0;
+         int result = customInterceptors != null ? customInterceptors.hashCode() : 0;
+         result = 31 * result + (compiled != null ? compiled.hashCode() : 0);
+         return result;
+      }
+
+      public Boolean isCompiled() {
+         return compiled;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #compiled(Boolean)} instead
+       */
+      @Deprecated
+      public void setCompiled(Boolean compiled) {
+         testImmutability("compiled");
+         this.compiled = compiled;
+      }
+
+      @Override
+      public CustomInterceptorsConfig compiled(Boolean compiled) {
+         setCompiled(compiled);
+         return this;
       }
 
       /**
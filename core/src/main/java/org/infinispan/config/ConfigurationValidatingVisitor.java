@@ -60,7 +60,7 @@ public class ConfigurationValidatingVisitor extends AbstractConfigurationBeanVis
    }
    
    public void visitEvictionType(EvictionType et) {
-      if (et.strategy.isEnabled() && et.maxEntries <= 0)
-         throw new ConfigurationException("Eviction maxEntries value cannot be less than or equal to zero if eviction is enabled");
+      if (et.strategy.isEnabled() && et.maxEntries <= 0 && (et.maxBytes == null || et.maxBytes <= 0))
+         throw new ConfigurationException("Eviction maxEntries value cannot be less than or equal to zero if eviction is enabled, unless maxBytes is set");
    }
 }
@@ -29,6 +29,7 @@ import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.interceptors.base.CommandInterceptor;
 import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.marshall.CompactionPolicy;
 import org.infinispan.remoting.ReplicationQueue;
 import org.infinispan.transaction.lookup.TransactionManagerLookup;
 import org.infinispan.util.concurrent.IsolationLevel;
@@ -90,6 +91,15 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        */
       LockingConfig useLockStriping(Boolean useLockStriping);
 
+      /**
+       * If true, entries are locked with compare-and-swap based per-entry lock records, which support
+       * shared as well as exclusive locking and are removed as soon as they are released. When
+       * enabled, this takes precedence over lock striping.
+       *
+       * @param useLockFreeContainer
+       */
+      LockingConfig useLockFreeContainer(Boolean useLockFreeContainer);
+
       /**
        * Concurrency level for lock containers. Adjust this value according to the number of
        * concurrent threads interacting with Infinispan. Similar to the concurrencyLevel tuning
@@ -272,6 +282,14 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
     * Configures custom interceptors to be added to the cache.
     */
    public static interface CustomInterceptorsConfig extends FluentTypes, CustomInterceptorCumulator {
+      /**
+       * If true, the interceptor chain routes each type of command only through the interceptors
+       * that override the visit method it dispatches to, using dispatch tables computed per command
+       * type, instead of visiting every interceptor in the chain.
+       *
+       * @param compiled
+       */
+      CustomInterceptorsConfig compiled(Boolean compiled);
    }
 
    /**
@@ -331,6 +349,15 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param maxEntries
        */
       EvictionConfig maxEntries(Integer maxEntries);
+
+      /**
+       * Maximum number of bytes, as computed by the data container's entry size calculator, that a
+       * cache instance may hold in memory before entries are evicted. This bound applies in addition
+       * to maxEntries, or on its own if maxEntries is not set. -1 means no limit.
+       *
+       * @param maxBytes
+       */
+      EvictionConfig maxBytes(Long maxBytes);
    }
 
    /**
@@ -441,6 +468,23 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        */
       AsyncConfig replQueueInterval(Long replQueueInterval);
 
+      /**
+       * If useReplQueue is set to true, this attribute can be used to trigger flushing of the queue
+       * when the marshalled size of the queued commands reaches a specific number of bytes. A value
+       * of 0 disables size based flushing.
+       *
+       * @param replQueueMaxBytes
+       */
+      AsyncConfig replQueueMaxBytes(Long replQueueMaxBytes);
+
+      /**
+       * If useReplQueue is set to true, this attribute controls whether the batch of commands sent
+       * when flushing the queue is compressed, trading CPU for network bandwidth.
+       *
+       * @param replQueueCompression
+       */
+      AsyncConfig replQueueCompression(Boolean replQueueCompression);
+
       /**
        * If true, asynchronous marshalling is enabled which means that caller can return even
        * quicker, but it can suffer from reordering of operations. You can find more information <a
@@ -626,6 +670,22 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param rehashEnabled
        */
       HashConfig rehashEnabled(Boolean rehashEnabled);
+
+      /**
+       * Maximum number of entries sent in a single chunk of state during a rehash. The receiver applies each chunk
+       * before requesting the next one, so this bounds the amount of state held in memory on both sides.
+       *
+       * @param rehashChunkSize
+       */
+      HashConfig rehashChunkSize(Integer rehashChunkSize);
+
+      /**
+       * Maximum estimated number of bytes sent in a single chunk of state during a rehash, in addition to
+       * rehashChunkSize. -1 means no limit.
+       *
+       * @param rehashChunkMaxBytes
+       */
+      HashConfig rehashChunkMaxBytes(Long rehashChunkMaxBytes);
       
       /**
        * Controls the number of virtual nodes per "real" node. You can read more about virtual nodes
@@ -706,7 +766,15 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
 
    }
 
-   public static interface StoreAsBinaryConfig extends FluentTypes {}
+   public static interface StoreAsBinaryConfig extends FluentTypes {
+      /**
+       * Which representations of a value stored as binary are kept once an invocation completes.
+       * Defaults to {@link CompactionPolicy#KEEP_INSTANCE}.
+       *
+       * @param compactionPolicy
+       */
+      StoreAsBinaryConfig compactionPolicy(CompactionPolicy compactionPolicy);
+   }
 
    public static interface JmxStatisticsConfig extends FluentTypes {}
 
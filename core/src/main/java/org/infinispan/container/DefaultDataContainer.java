@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.jcip.annotations.ThreadSafe;
 
@@ -40,14 +41,20 @@ import org.infinispan.eviction.EvictionManager;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.util.Immutables;
 import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EntrySizeCalculator;
 import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
 import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
 
 /**
  * DefaultDataContainer is both eviction and non-eviction based data container.
- *
+ * <p/>
+ * Entries that can expire are also tracked in an {@link ExpirationQueue}, so that {@link #purgeExpired()} only
+ * visits entries that are due rather than iterating over the entire container.
  *
  * @author Manik Surtani
  * @author Galder Zamarreño
@@ -57,20 +64,30 @@ import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
  * @since 4.0
  */
 @ThreadSafe
+@MBean(objectName = "DataContainer", description = "Holds the entries of the cache in memory")
 public class DefaultDataContainer implements DataContainer {
 
    final ConcurrentMap<Object, InternalCacheEntry> entries;
    final InternalEntryFactory entryFactory;
    final DefaultEvictionListener evictionListener;
+   final ExpirationQueue expirationQueue;
    private EvictionManager evictionManager;
+   private volatile int lastPurgeCount;
+   private final AtomicLong totalPurgeCount = new AtomicLong(0);
 
    protected DefaultDataContainer(int concurrencyLevel) {
       entries = new ConcurrentHashMap<Object, InternalCacheEntry>(128, 0.75f,concurrencyLevel);
       entryFactory = new InternalEntryFactory();
       evictionListener = null;
+      expirationQueue = new ExpirationQueue(ExpirationQueue.DEFAULT_RESOLUTION, concurrencyLevel);
    }
 
    protected DefaultDataContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      this(concurrencyLevel, maxEntries, -1, strategy, policy, null);
+   }
+
+   protected DefaultDataContainer(int concurrencyLevel, int maxEntries, long maxBytes, EvictionStrategy strategy,
+            EvictionThreadPolicy policy, EntrySizeCalculator<Object, InternalCacheEntry> sizeCalculator) {
 
       // translate eviction policy and strategy
       switch (policy) {
@@ -95,8 +112,11 @@ public class DefaultDataContainer implements DataContainer {
          default:
             throw new IllegalArgumentException("No such eviction strategy " + strategy);
       }
-      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, eviction, evictionListener);
+      if (maxBytes > 0 && sizeCalculator == null) sizeCalculator = new DefaultEntrySizeCalculator();
+      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, eviction,
+               evictionListener, maxBytes, sizeCalculator);
       entryFactory = new InternalEntryFactory();
+      expirationQueue = new ExpirationQueue(ExpirationQueue.DEFAULT_RESOLUTION, concurrencyLevel);
    }
 
    @Inject
@@ -109,6 +129,16 @@ public class DefaultDataContainer implements DataContainer {
       return new DefaultDataContainer(concurrencyLevel, maxEntries, strategy, policy);
    }
 
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries, long maxBytes,
+            EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      return new DefaultDataContainer(concurrencyLevel, maxEntries, maxBytes, strategy, policy, null);
+   }
+
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries, long maxBytes,
+            EvictionStrategy strategy, EvictionThreadPolicy policy, EntrySizeCalculator<Object, InternalCacheEntry> sizeCalculator) {
+      return new DefaultDataContainer(concurrencyLevel, maxEntries, maxBytes, strategy, policy, sizeCalculator);
+   }
+
    public static DataContainer unBoundedDataContainer(int concurrencyLevel) {
       return new DefaultDataContainer(concurrencyLevel);
    }
@@ -123,6 +153,7 @@ public class DefaultDataContainer implements DataContainer {
       if (e != null) {
          if (e.isExpired()) {
             entries.remove(k);
+            expirationQueue.unschedule(k);
             e = null;
          } else {
             e.touch();
@@ -146,12 +177,18 @@ public class DefaultDataContainer implements DataContainer {
          e = entryFactory.createNewEntry(k, v, lifespan, maxIdle);
       }
       entries.put(k, e);
+      if (e.canExpire()) {
+         expirationQueue.schedule(k, e.getExpiryTime());
+      } else {
+         expirationQueue.unschedule(k);
+      }
    }
 
    public boolean containsKey(Object k) {
       InternalCacheEntry ice = peek(k);
       if (ice != null && ice.isExpired()) {
          entries.remove(k);
+         expirationQueue.unschedule(k);
          ice = null;
       }
       return ice != null;
@@ -159,6 +196,7 @@ public class DefaultDataContainer implements DataContainer {
 
    public InternalCacheEntry remove(Object k) {
       InternalCacheEntry e = entries.remove(k);
+      if (e != null && e.canExpire()) expirationQueue.unschedule(k);
       return e == null || e.isExpired() ? null : e;
    }
 
@@ -168,6 +206,7 @@ public class DefaultDataContainer implements DataContainer {
 
    public void clear() {
       entries.clear();
+      expirationQueue.clear();
    }
 
    public Set<Object> keySet() {
@@ -183,12 +222,33 @@ public class DefaultDataContainer implements DataContainer {
    }
 
    public void purgeExpired() {
-      for (Iterator<InternalCacheEntry> purgeCandidates = entries.values().iterator(); purgeCandidates.hasNext();) {
-         InternalCacheEntry e = purgeCandidates.next();
-         if (e.isExpired()) {
-            purgeCandidates.remove();
-         }
-      }
+      int purged = expirationQueue.purge(entries);
+      lastPurgeCount = purged;
+      totalPurgeCount.addAndGet(purged);
+   }
+
+   @ManagedAttribute(description = "Number of entries currently tracked for expiration")
+   @Metric(displayName = "Expiration queue depth")
+   public int getExpirationQueueDepth() {
+      return expirationQueue.size();
+   }
+
+   @ManagedAttribute(description = "Number of expired entries removed by the last purge")
+   @Metric(displayName = "Entries purged by last run")
+   public int getLastPurgeCount() {
+      return lastPurgeCount;
+   }
+
+   @ManagedAttribute(description = "Estimated size in bytes of the entries, when eviction is bounded by maxBytes")
+   @Metric(displayName = "Estimated size of entries in bytes")
+   public long getEvictionWeight() {
+      return entries instanceof BoundedConcurrentHashMap ? ((BoundedConcurrentHashMap<?, ?>) entries).weight() : 0;
+   }
+
+   @ManagedAttribute(description = "Total number of expired entries removed by purges")
+   @Metric(displayName = "Total entries purged")
+   public long getTotalPurgeCount() {
+      return totalPurgeCount.get();
    }
 
    public Iterator<InternalCacheEntry> iterator() {
@@ -198,6 +258,9 @@ public class DefaultDataContainer implements DataContainer {
    private class DefaultEvictionListener implements EvictionListener<Object, InternalCacheEntry> {
       @Override
       public void onEntryEviction(Map<Object, InternalCacheEntry> evicted) {
+         for (Map.Entry<Object, InternalCacheEntry> e : evicted.entrySet()) {
+            if (e.getValue().canExpire()) expirationQueue.unschedule(e.getKey());
+         }
          evictionManager.onEntryEviction(evicted);
       }
    }
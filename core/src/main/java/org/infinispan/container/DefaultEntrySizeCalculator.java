@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EntrySizeCalculator;
+
+/**
+ * Estimates the size of an entry in bytes, used by {@link DefaultDataContainer} when eviction is bounded by
+ * <tt>maxBytes</tt>.
+ * <p/>
+ * Only binary representations have a known size: {@link MarshalledValue}s (i.e. when <tt>storeAsBinary</tt> is
+ * enabled) are measured by the length of their serialized form, and byte arrays and {@link ByteArrayKey}s by their
+ * length.  Keys and values of any other type are counted as zero bytes, so caches storing them are effectively bounded
+ * by <tt>maxEntries</tt> only.  Custom estimates can be plugged in by creating the container with
+ * {@link DefaultDataContainer#boundedDataContainer(int, int, long, org.infinispan.eviction.EvictionStrategy,
+ * org.infinispan.eviction.EvictionThreadPolicy, EntrySizeCalculator)}.
+ *
+ * @since 5.0
+ */
+public class DefaultEntrySizeCalculator implements EntrySizeCalculator<Object, InternalCacheEntry> {
+
+   @Override
+   public long calculateSize(Object key, InternalCacheEntry entry) {
+      return sizeOf(key) + sizeOf(entry.getValue());
+   }
+
+   protected long sizeOf(Object o) {
+      if (o instanceof MarshalledValue) return ((MarshalledValue) o).getRaw().length;
+      if (o instanceof byte[]) return ((byte[]) o).length;
+      if (o instanceof ByteArrayKey) return ((ByteArrayKey) o).getData().length;
+      return 0;
+   }
+}
@@ -0,0 +1,166 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.util.concurrent.ConcurrentHashSet;
+
+/**
+ * An index of keys ordered by the time their entries are due to expire, used by {@link DefaultDataContainer} so that
+ * {@link DataContainer#purgeExpired()} only visits entries that may actually have expired rather than scanning the
+ * whole container.
+ * <p/>
+ * Keys are grouped into buckets of <tt>resolution</tt> milliseconds.  Each key is scheduled in at most one bucket at a
+ * time: a separate map records the bucket a key currently belongs to, and any bucket membership that does not match it
+ * is considered stale and silently dropped when the bucket is drained.  This keeps the cost of a put to two concurrent
+ * map updates.  Keys that are removed, evicted or found expired on access are unscheduled straight away, so that the
+ * index never keeps keys of entries that are gone from the container reachable.
+ * <p/>
+ * Entries with a maxIdle move their expiry time forward on every access without the index being told.  When such an
+ * entry's bucket comes due and the entry has not yet expired, it is simply moved to the bucket matching its current
+ * expiry time.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+class ExpirationQueue {
+
+   static final long DEFAULT_RESOLUTION = 1000;
+
+   private final long resolution;
+   private final ConcurrentSkipListMap<Long, Set<Object>> buckets = new ConcurrentSkipListMap<Long, Set<Object>>();
+   private final ConcurrentMap<Object, Long> scheduled;
+
+   ExpirationQueue(long resolution, int concurrencyLevel) {
+      this.resolution = resolution;
+      this.scheduled = new ConcurrentHashMap<Object, Long>(128, 0.75f, concurrencyLevel);
+   }
+
+   private long bucketFor(long time) {
+      return time / resolution;
+   }
+
+   /**
+    * Schedules a key to be checked for expiry at the given time, replacing any previous schedule for the same key.
+    */
+   void schedule(Object key, long expiryTime) {
+      long bucket = bucketFor(expiryTime);
+      scheduled.put(key, bucket);
+      addToBucket(bucket, key);
+   }
+
+   /**
+    * Removes any schedule for the given key, dropping the key from its bucket.
+    */
+   void unschedule(Object key) {
+      if (scheduled.isEmpty()) return;
+      Long bucket = scheduled.remove(key);
+      if (bucket == null) return;
+      Set<Object> keys = buckets.get(bucket);
+      if (keys != null) {
+         keys.remove(key);
+         // a concurrent schedule() in the same bucket may have added the key just before it was removed
+         if (bucket.equals(scheduled.get(key))) addToBucket(bucket, key);
+      }
+   }
+
+   /**
+    * @return the number of keys currently scheduled
+    */
+   int size() {
+      return scheduled.size();
+   }
+
+   void clear() {
+      scheduled.clear();
+      buckets.clear();
+   }
+
+   private void addToBucket(long bucket, Object key) {
+      while (true) {
+         Set<Object> keys = buckets.get(bucket);
+         if (keys == null) {
+            Set<Object> newKeys = new ConcurrentHashSet<Object>();
+            keys = buckets.putIfAbsent(bucket, newKeys);
+            if (keys == null) keys = newKeys;
+         }
+         keys.add(key);
+         // make sure the bucket was not drained and discarded while we were adding to it
+         if (buckets.get(bucket) == keys) return;
+      }
+   }
+
+   /**
+    * Drains all buckets that are due, removing expired entries from the given map.
+    *
+    * @param entries map of entries to purge
+    * @return the number of entries removed
+    */
+   int purge(ConcurrentMap<Object, InternalCacheEntry> entries) {
+      int purged = 0;
+      long now = System.currentTimeMillis();
+      long currentBucket = bucketFor(now);
+      for (Iterator<Map.Entry<Long, Set<Object>>> it = buckets.headMap(currentBucket, true).entrySet().iterator(); it.hasNext();) {
+         Map.Entry<Long, Set<Object>> e = it.next();
+         Long bucket = e.getKey();
+         Set<Object> keys = e.getValue();
+         for (Iterator<Object> keyIt = keys.iterator(); keyIt.hasNext();) {
+            Object key = keyIt.next();
+            if (!bucket.equals(scheduled.get(key))) {
+               // the key was rescheduled or unscheduled since it was added to this bucket
+               keyIt.remove();
+               continue;
+            }
+            InternalCacheEntry ice = entries.get(key);
+            if (ice == null || !ice.canExpire()) {
+               scheduled.remove(key, bucket);
+               keyIt.remove();
+            } else if (ice.isExpired()) {
+               if (entries.remove(key, ice)) purged++;
+               scheduled.remove(key, bucket);
+               keyIt.remove();
+            } else {
+               long newBucket = bucketFor(ice.getExpiryTime());
+               if (newBucket != bucket) {
+                  if (scheduled.replace(key, bucket, newBucket)) addToBucket(newBucket, key);
+                  keyIt.remove();
+               }
+            }
+         }
+         if (bucket < currentBucket && keys.isEmpty() && buckets.remove(bucket, keys)) {
+            // a concurrent schedule may have slipped in between the emptiness check and the removal
+            for (Object key : keys) addToBucket(bucket, key);
+         }
+      }
+      return purged;
+   }
+}
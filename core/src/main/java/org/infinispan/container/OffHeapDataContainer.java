@@ -0,0 +1,811 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.infinispan.CacheException;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.Immutables;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+
+/**
+ * A {@link DataContainer} that keeps its entries outside of the Java heap.
+ * <p/>
+ * Keys and values are marshalled with the cache's {@link StreamingMarshaller} and stored, together with their
+ * lifespan and maxIdle metadata, in records allocated with {@link OffHeapMemory}.  The hash index itself (one bucket
+ * table per segment) also lives off-heap, so the only heap objects retained per container are the segments
+ * themselves.  {@link InternalCacheEntry} instances are materialized on read and are detached copies: modifying them
+ * does not alter the stored entry, which can only be changed through {@link #put(Object, Object, long, long)}.
+ * <p/>
+ * Keys are matched by their marshalled form, so they must marshall to a canonical byte sequence (as Strings,
+ * primitives, byte arrays and {@link org.infinispan.marshall.MarshalledValue}s do).  Subclasses that know the types
+ * they store can replace marshalling with a cheaper encoding by overriding {@link #keyToBytes(Object)},
+ * {@link #valueToBytes(Object)} and the corresponding read methods.
+ * <p/>
+ * Eviction is supported when a positive <tt>maxEntries</tt> is configured.  <tt>UNORDERED</tt>, <tt>FIFO</tt> and
+ * <tt>LRU</tt> are all served by an access-ordered list threaded through the records, in the same way
+ * {@link DefaultDataContainer} maps them onto LRU.  <tt>LIRS</tt> is approximated by LRU as well.
+ * <p/>
+ * This container can be configured by class name using the <tt>dataContainer</tt> configuration element, in which
+ * case it picks up concurrency level and eviction settings from the cache's {@link Configuration}, or constructed
+ * directly and passed in via {@link org.infinispan.config.FluentConfiguration.DataContainerConfig#dataContainer(DataContainer)}.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+@MBean(objectName = "OffHeapDataContainer", description = "Data container storing entries outside of the Java heap")
+public class OffHeapDataContainer implements DataContainer {
+
+   private static final Log log = LogFactory.getLog(OffHeapDataContainer.class);
+
+   /*
+    * Record layout, all offsets in bytes:
+    *
+    *  0 next record in the same bucket
+    *  8 previous record in the access order list
+    * 16 next record in the access order list
+    * 24 hash of the key
+    * 28 length of the marshalled key
+    * 32 length of the marshalled value
+    * 40 created timestamp
+    * 48 last used timestamp
+    * 56 lifespan
+    * 64 maxIdle
+    * 72 marshalled key followed by marshalled value
+    */
+   static final int NEXT = 0;
+   static final int LRU_PREV = 8;
+   static final int LRU_NEXT = 16;
+   static final int HASH = 24;
+   static final int KEY_LENGTH = 28;
+   static final int VALUE_LENGTH = 32;
+   static final int CREATED = 40;
+   static final int LAST_USED = 48;
+   static final int LIFESPAN = 56;
+   static final int MAX_IDLE = 64;
+   static final int HEADER_SIZE = 72;
+
+   static final int MAX_SEGMENTS = 1 << 16;
+   static final int MIN_BUCKETS_PER_SEGMENT = 16;
+   static final float LOAD_FACTOR = 0.75f;
+
+   private StreamingMarshaller marshaller;
+   private EvictionManager evictionManager;
+
+   private int concurrencyLevel = -1;
+   private int maxEntries = -1;
+   private EvictionStrategy evictionStrategy;
+   private int initialCapacity = 1024;
+
+   private volatile Segment[] segments;
+   private int segmentShift;
+   private int segmentMask;
+
+   /**
+    * Used when the container is configured by class name.  Sizing and eviction settings are read from the cache's
+    * {@link Configuration} when the container is wired, unless overridden through the setters.
+    */
+   public OffHeapDataContainer() {
+   }
+
+   public OffHeapDataContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy, StreamingMarshaller marshaller) {
+      this.concurrencyLevel = concurrencyLevel;
+      this.maxEntries = maxEntries;
+      this.evictionStrategy = strategy;
+      this.marshaller = marshaller;
+      createSegments();
+   }
+
+   @Inject
+   public void initialize(Configuration configuration, StreamingMarshaller marshaller, EvictionManager evictionManager) {
+      if (this.marshaller == null) this.marshaller = marshaller;
+      this.evictionManager = evictionManager;
+      if (concurrencyLevel < 0) concurrencyLevel = configuration.getConcurrencyLevel();
+      if (evictionStrategy == null) {
+         evictionStrategy = configuration.getEvictionStrategy();
+         maxEntries = configuration.getEvictionMaxEntries();
+      }
+   }
+
+   @Start(priority = 1)
+   public void start() {
+      if (segments == null) createSegments();
+   }
+
+   /**
+    * Releases all native memory held by this container.  The container may be restarted afterwards, in which case it
+    * will be empty.
+    */
+   @Stop(priority = 1000)
+   public void stop() {
+      Segment[] segs = segments;
+      if (segs == null) return;
+      segments = null;
+      for (Segment s : segs) s.release();
+   }
+
+   public void setConcurrencyLevel(int concurrencyLevel) {
+      this.concurrencyLevel = concurrencyLevel;
+   }
+
+   public void setInitialCapacity(int initialCapacity) {
+      this.initialCapacity = initialCapacity;
+   }
+
+   private void createSegments() {
+      if (evictionStrategy == null) evictionStrategy = EvictionStrategy.NONE;
+      if (evictionStrategy == EvictionStrategy.LIRS)
+         log.debug("LIRS eviction is approximated by LRU in the off-heap data container");
+
+      int level = concurrencyLevel <= 0 ? 16 : Math.min(concurrencyLevel, MAX_SEGMENTS);
+      int shift = 0;
+      int ssize = 1;
+      while (ssize < level) {
+         ++shift;
+         ssize <<= 1;
+      }
+      segmentShift = 32 - shift;
+      segmentMask = ssize - 1;
+
+      boolean bounded = evictionStrategy != EvictionStrategy.NONE && maxEntries > 0;
+      int perSegmentMax = bounded ? Math.max(1, maxEntries / ssize) : -1;
+      int buckets = MIN_BUCKETS_PER_SEGMENT;
+      while (buckets < initialCapacity / ssize) buckets <<= 1;
+
+      Segment[] segs = new Segment[ssize];
+      for (int i = 0; i < ssize; i++) segs[i] = new Segment(buckets, perSegmentMax);
+      segments = segs;
+   }
+
+   /**
+    * Same supplemental hash as {@link java.util.concurrent.ConcurrentHashMap}, defending against poor quality hash
+    * codes since both segment and bucket are chosen by the bits of the hash.
+    */
+   private static int hash(int h) {
+      h += (h << 15) ^ 0xffffcd7d;
+      h ^= (h >>> 10);
+      h += (h << 3);
+      h ^= (h >>> 6);
+      h += (h << 2) + (h << 14);
+      return h ^ (h >>> 16);
+   }
+
+   private Segment segmentFor(int hash) {
+      Segment[] segs = segments;
+      if (segs == null) throw new IllegalStateException("Off-heap data container is not running");
+      return segs[(hash >>> segmentShift) & segmentMask];
+   }
+
+   private byte[] marshall(Object o) {
+      try {
+         return marshaller.objectToByteBuffer(o);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException("Interrupted while marshalling " + o, e);
+      } catch (Exception e) {
+         throw new CacheException("Unable to marshall " + o + " for off-heap storage", e);
+      }
+   }
+
+   private Object unmarshall(byte[] bytes) {
+      try {
+         return marshaller.objectFromByteBuffer(bytes);
+      } catch (Exception e) {
+         throw new CacheException("Unable to unmarshall entry from off-heap storage", e);
+      }
+   }
+
+   /**
+    * Encodes a key into the form stored in, and matched against, records.  Equal keys must encode to equal bytes.
+    * Marshalls the key by default.
+    */
+   protected byte[] keyToBytes(Object key) {
+      return marshall(key);
+   }
+
+   /**
+    * Encodes a value into the form stored in records.  Marshalls the value by default.
+    */
+   protected byte[] valueToBytes(Object value) {
+      return marshall(value);
+   }
+
+   /**
+    * Reads the key stored at the given address.  Called while holding the segment lock, since the record may be freed
+    * as soon as it is released, so implementations should do no more than copy what they need; further decoding
+    * belongs in {@link #toKey(Object)}.  Copies the bytes by default.
+    */
+   protected Object readKey(long address, int length) {
+      return OffHeapMemory.copyToArray(address, length);
+   }
+
+   /**
+    * Reads the value stored at the given address, under the same constraints as {@link #readKey(long, int)}.
+    */
+   protected Object readValue(long address, int length) {
+      return OffHeapMemory.copyToArray(address, length);
+   }
+
+   /**
+    * Turns what {@link #readKey(long, int)} returned into the key, outside of the segment lock.  Unmarshalls by
+    * default.
+    */
+   protected Object toKey(Object read) {
+      return unmarshall((byte[]) read);
+   }
+
+   /**
+    * Turns what {@link #readValue(long, int)} returned into the value, outside of the segment lock.  Unmarshalls by
+    * default.
+    */
+   protected Object toValue(Object read) {
+      return unmarshall((byte[]) read);
+   }
+
+   private InternalCacheEntry materialize(Object key, RecordCopy copy) {
+      if (copy == null) return null;
+      if (key == null) key = toKey(copy.key);
+      return InternalEntryFactory.create(key, toValue(copy.value), copy.created, copy.lifespan, copy.lastUsed, copy.maxIdle);
+   }
+
+   public InternalCacheEntry get(Object k) {
+      int h = hash(k.hashCode());
+      return materialize(k, segmentFor(h).get(keyToBytes(k), h, true));
+   }
+
+   public InternalCacheEntry peek(Object k) {
+      int h = hash(k.hashCode());
+      return materialize(k, segmentFor(h).get(keyToBytes(k), h, false));
+   }
+
+   public void put(Object k, Object v, long lifespan, long maxIdle) {
+      int h = hash(k.hashCode());
+      Map<Object, InternalCacheEntry> evicted = segmentFor(h).put(keyToBytes(k), valueToBytes(v), h, lifespan, maxIdle);
+      if (evicted != null && evictionManager != null) evictionManager.onEntryEviction(evicted);
+   }
+
+   public boolean containsKey(Object k) {
+      int h = hash(k.hashCode());
+      return segmentFor(h).containsKey(keyToBytes(k), h);
+   }
+
+   public InternalCacheEntry remove(Object k) {
+      int h = hash(k.hashCode());
+      return materialize(k, segmentFor(h).remove(keyToBytes(k), h));
+   }
+
+   public int size() {
+      Segment[] segs = segments;
+      if (segs == null) return 0;
+      long sum = 0;
+      for (Segment s : segs) sum += s.count;
+      return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+   }
+
+   public void clear() {
+      Segment[] segs = segments;
+      if (segs == null) return;
+      for (Segment s : segs) s.clear();
+   }
+
+   public Set<Object> keySet() {
+      return new KeySet();
+   }
+
+   public Collection<Object> values() {
+      return new Values();
+   }
+
+   public Set<InternalCacheEntry> entrySet() {
+      return new EntrySet();
+   }
+
+   public void purgeExpired() {
+      Segment[] segs = segments;
+      if (segs == null) return;
+      long now = System.currentTimeMillis();
+      int purged = 0;
+      for (Segment s : segs) purged += s.purgeExpired(now);
+      if (log.isTraceEnabled()) log.trace("Purged %s expired entries from off-heap storage", purged);
+   }
+
+   /**
+    * Iterates over detached copies of the entries in this container.  Iteration proceeds one segment at a time and
+    * reflects the state of each segment at the moment the iterator reached it.
+    */
+   public Iterator<InternalCacheEntry> iterator() {
+      return new EntryIterator();
+   }
+
+   @ManagedAttribute(description = "Number of bytes of native memory used by entries and the hash index")
+   @Metric(displayName = "Off-heap memory used")
+   public long getOffHeapMemoryUsed() {
+      Segment[] segs = segments;
+      if (segs == null) return 0;
+      long sum = 0;
+      for (Segment s : segs) sum += s.memoryUsed;
+      return sum;
+   }
+
+   @ManagedAttribute(description = "Number of entries stored off-heap")
+   @Metric(displayName = "Number of off-heap entries")
+   public int getNumberOfEntries() {
+      return size();
+   }
+
+   static boolean isExpired(long address, long now) {
+      long lifespan = OffHeapMemory.getLong(address + LIFESPAN);
+      if (lifespan > -1 && OffHeapMemory.getLong(address + CREATED) + lifespan < now) return true;
+      long maxIdle = OffHeapMemory.getLong(address + MAX_IDLE);
+      return maxIdle > -1 && OffHeapMemory.getLong(address + LAST_USED) + maxIdle < now;
+   }
+
+   /**
+    * Heap copy of a record, taken while holding the segment lock so that unmarshalling can happen outside of it.
+    */
+   final class RecordCopy {
+      final Object key;
+      final Object value;
+      final long created;
+      final long lastUsed;
+      final long lifespan;
+      final long maxIdle;
+
+      RecordCopy(long address, boolean copyKey) {
+         int keyLength = OffHeapMemory.getInt(address + KEY_LENGTH);
+         int valueLength = OffHeapMemory.getInt(address + VALUE_LENGTH);
+         key = copyKey ? readKey(address + HEADER_SIZE, keyLength) : null;
+         value = readValue(address + HEADER_SIZE + keyLength, valueLength);
+         created = OffHeapMemory.getLong(address + CREATED);
+         lastUsed = OffHeapMemory.getLong(address + LAST_USED);
+         lifespan = OffHeapMemory.getLong(address + LIFESPAN);
+         maxIdle = OffHeapMemory.getLong(address + MAX_IDLE);
+      }
+   }
+
+   /**
+    * A segment owns an off-heap bucket table and the records hashed into it.  Unlike the segments of
+    * {@link java.util.concurrent.ConcurrentHashMap}, reads are also performed under the lock since a concurrent
+    * removal frees the memory a reader would otherwise be looking at.
+    */
+   final class Segment extends ReentrantLock {
+
+      private static final long serialVersionUID = 6142987523453267113L;
+
+      long table;
+      int tableLength;
+      int threshold;
+      volatile int count;
+      volatile long memoryUsed;
+      final int maxEntries;
+      final int initialTableLength;
+      // access order list, head is the most recently used record
+      long lruHead;
+      long lruTail;
+
+      Segment(int tableLength, int maxEntries) {
+         this.maxEntries = maxEntries;
+         this.initialTableLength = tableLength;
+         allocateTable(tableLength);
+         memoryUsed = (long) tableLength << 3;
+      }
+
+      private void allocateTable(int length) {
+         table = OffHeapMemory.allocateZeroed((long) length << 3);
+         tableLength = length;
+         threshold = (int) (length * LOAD_FACTOR);
+      }
+
+      private long bucketAddress(int hash) {
+         return table + ((long) (hash & (tableLength - 1)) << 3);
+      }
+
+      private long find(byte[] key, int hash) {
+         long address = OffHeapMemory.getLong(bucketAddress(hash));
+         while (address != 0) {
+            if (OffHeapMemory.getInt(address + HASH) == hash
+                  && OffHeapMemory.equalsArray(address + HEADER_SIZE, OffHeapMemory.getInt(address + KEY_LENGTH), key))
+               return address;
+            address = OffHeapMemory.getLong(address + NEXT);
+         }
+         return 0;
+      }
+
+      RecordCopy get(byte[] key, int hash, boolean touch) {
+         lock();
+         try {
+            if (count == 0) return null;
+            long address = find(key, hash);
+            if (address == 0) return null;
+            if (touch) {
+               long now = System.currentTimeMillis();
+               if (isExpired(address, now)) {
+                  unlinkAndFree(address, hash);
+                  return null;
+               }
+               OffHeapMemory.putLong(address + LAST_USED, now);
+               moveToHead(address);
+            }
+            return new RecordCopy(address, false);
+         } finally {
+            unlock();
+         }
+      }
+
+      boolean containsKey(byte[] key, int hash) {
+         lock();
+         try {
+            if (count == 0) return false;
+            long address = find(key, hash);
+            if (address == 0) return false;
+            if (isExpired(address, System.currentTimeMillis())) {
+               unlinkAndFree(address, hash);
+               return false;
+            }
+            return true;
+         } finally {
+            unlock();
+         }
+      }
+
+      Map<Object, InternalCacheEntry> put(byte[] key, byte[] value, int hash, long lifespan, long maxIdle) {
+         long size = HEADER_SIZE + key.length + value.length;
+         long record = OffHeapMemory.allocate(size);
+         long now = System.currentTimeMillis();
+         OffHeapMemory.putInt(record + HASH, hash);
+         OffHeapMemory.putInt(record + KEY_LENGTH, key.length);
+         OffHeapMemory.putInt(record + VALUE_LENGTH, value.length);
+         OffHeapMemory.putLong(record + CREATED, now);
+         OffHeapMemory.putLong(record + LAST_USED, now);
+         OffHeapMemory.putLong(record + LIFESPAN, lifespan);
+         OffHeapMemory.putLong(record + MAX_IDLE, maxIdle);
+         OffHeapMemory.copyFromArray(key, 0, record + HEADER_SIZE, key.length);
+         OffHeapMemory.copyFromArray(value, 0, record + HEADER_SIZE + key.length, value.length);
+
+         List<RecordCopy> evicted = null;
+         lock();
+         try {
+            long existing = find(key, hash);
+            if (existing != 0) unlinkAndFree(existing, hash);
+            if (count + 1 > threshold) rehash();
+
+            long bucket = bucketAddress(hash);
+            OffHeapMemory.putLong(record + NEXT, OffHeapMemory.getLong(bucket));
+            OffHeapMemory.putLong(bucket, record);
+            OffHeapMemory.putLong(record + LRU_PREV, 0);
+            OffHeapMemory.putLong(record + LRU_NEXT, 0);
+            linkAtHead(record);
+            memoryUsed += size;
+            count++;
+
+            if (maxEntries > 0) {
+               while (count > maxEntries && lruTail != record) {
+                  long victim = lruTail;
+                  if (evicted == null) evicted = new ArrayList<RecordCopy>(2);
+                  evicted.add(new RecordCopy(victim, true));
+                  unlinkAndFree(victim, OffHeapMemory.getInt(victim + HASH));
+               }
+            }
+         } finally {
+            unlock();
+         }
+
+         if (evicted == null) return null;
+         Map<Object, InternalCacheEntry> evictedEntries = new HashMap<Object, InternalCacheEntry>(evicted.size() * 2);
+         for (RecordCopy copy : evicted) {
+            InternalCacheEntry ice = materialize(null, copy);
+            evictedEntries.put(ice.getKey(), ice);
+         }
+         return evictedEntries;
+      }
+
+      RecordCopy remove(byte[] key, int hash) {
+         lock();
+         try {
+            if (count == 0) return null;
+            long address = find(key, hash);
+            if (address == 0) return null;
+            RecordCopy copy = isExpired(address, System.currentTimeMillis()) ? null : new RecordCopy(address, false);
+            unlinkAndFree(address, hash);
+            return copy;
+         } finally {
+            unlock();
+         }
+      }
+
+      int purgeExpired(long now) {
+         lock();
+         try {
+            int purged = 0;
+            for (int i = 0; i < tableLength; i++) {
+               long address = OffHeapMemory.getLong(table + ((long) i << 3));
+               while (address != 0) {
+                  long next = OffHeapMemory.getLong(address + NEXT);
+                  if (isExpired(address, now)) {
+                     unlinkAndFree(address, OffHeapMemory.getInt(address + HASH));
+                     purged++;
+                  }
+                  address = next;
+               }
+            }
+            return purged;
+         } finally {
+            unlock();
+         }
+      }
+
+      /**
+       * Copies all live records of this segment, used by iterators.
+       */
+      List<RecordCopy> snapshot() {
+         lock();
+         try {
+            if (table == 0) return new ArrayList<RecordCopy>(0);
+            List<RecordCopy> copies = new ArrayList<RecordCopy>(count);
+            long now = System.currentTimeMillis();
+            for (long address = lruHead; address != 0; address = OffHeapMemory.getLong(address + LRU_NEXT)) {
+               if (!isExpired(address, now)) copies.add(new RecordCopy(address, true));
+            }
+            return copies;
+         } finally {
+            unlock();
+         }
+      }
+
+      void clear() {
+         lock();
+         try {
+            freeRecords();
+            if (table != 0) OffHeapMemory.free(table);
+            allocateTable(initialTableLength);
+            memoryUsed = (long) tableLength << 3;
+         } finally {
+            unlock();
+         }
+      }
+
+      void release() {
+         lock();
+         try {
+            freeRecords();
+            if (table != 0) OffHeapMemory.free(table);
+            table = 0;
+            tableLength = 0;
+            memoryUsed = 0;
+         } finally {
+            unlock();
+         }
+      }
+
+      private void freeRecords() {
+         long address = lruHead;
+         while (address != 0) {
+            long next = OffHeapMemory.getLong(address + LRU_NEXT);
+            OffHeapMemory.free(address);
+            address = next;
+         }
+         lruHead = 0;
+         lruTail = 0;
+         count = 0;
+      }
+
+      private void rehash() {
+         long oldTable = table;
+         int oldLength = tableLength;
+         if (oldLength >= 1 << 30) return;
+         allocateTable(oldLength << 1);
+         for (int i = 0; i < oldLength; i++) {
+            long address = OffHeapMemory.getLong(oldTable + ((long) i << 3));
+            while (address != 0) {
+               long next = OffHeapMemory.getLong(address + NEXT);
+               long bucket = bucketAddress(OffHeapMemory.getInt(address + HASH));
+               OffHeapMemory.putLong(address + NEXT, OffHeapMemory.getLong(bucket));
+               OffHeapMemory.putLong(bucket, address);
+               address = next;
+            }
+         }
+         OffHeapMemory.free(oldTable);
+         memoryUsed += (long) oldLength << 3;
+      }
+
+      private void unlinkAndFree(long address, int hash) {
+         // unlink from the bucket chain
+         long bucket = bucketAddress(hash);
+         long current = OffHeapMemory.getLong(bucket);
+         long previous = 0;
+         while (current != 0 && current != address) {
+            previous = current;
+            current = OffHeapMemory.getLong(current + NEXT);
+         }
+         if (current == 0) throw new IllegalStateException("Off-heap record not found in its bucket");
+         long next = OffHeapMemory.getLong(address + NEXT);
+         if (previous == 0)
+            OffHeapMemory.putLong(bucket, next);
+         else
+            OffHeapMemory.putLong(previous + NEXT, next);
+
+         unlinkFromAccessList(address);
+         memoryUsed -= HEADER_SIZE + OffHeapMemory.getInt(address + KEY_LENGTH) + OffHeapMemory.getInt(address + VALUE_LENGTH);
+         count--;
+         OffHeapMemory.free(address);
+      }
+
+      private void linkAtHead(long address) {
+         OffHeapMemory.putLong(address + LRU_PREV, 0);
+         OffHeapMemory.putLong(address + LRU_NEXT, lruHead);
+         if (lruHead != 0) OffHeapMemory.putLong(lruHead + LRU_PREV, address);
+         lruHead = address;
+         if (lruTail == 0) lruTail = address;
+      }
+
+      private void unlinkFromAccessList(long address) {
+         long prev = OffHeapMemory.getLong(address + LRU_PREV);
+         long next = OffHeapMemory.getLong(address + LRU_NEXT);
+         if (prev == 0) lruHead = next; else OffHeapMemory.putLong(prev + LRU_NEXT, next);
+         if (next == 0) lruTail = prev; else OffHeapMemory.putLong(next + LRU_PREV, prev);
+      }
+
+      private void moveToHead(long address) {
+         if (lruHead == address) return;
+         unlinkFromAccessList(address);
+         linkAtHead(address);
+      }
+   }
+
+   private class EntryIterator implements Iterator<InternalCacheEntry> {
+      private int nextSegment;
+      private Iterator<RecordCopy> current;
+      private final Segment[] segs = segments;
+
+      public boolean hasNext() {
+         while (current == null || !current.hasNext()) {
+            if (segs == null || nextSegment >= segs.length) return false;
+            current = segs[nextSegment++].snapshot().iterator();
+         }
+         return true;
+      }
+
+      public InternalCacheEntry next() {
+         if (!hasNext()) throw new NoSuchElementException();
+         return materialize(null, current.next());
+      }
+
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   private class KeySet extends AbstractSet<Object> {
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<Object>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public Object next() {
+               return it.next().getKey();
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+         return o != null && containsKey(o);
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+
+   private class Values extends AbstractCollection<Object> {
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<Object>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public Object next() {
+               return it.next().getValue();
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+
+   private class EntrySet extends AbstractSet<InternalCacheEntry> {
+      @Override
+      public boolean contains(Object o) {
+         if (!(o instanceof Map.Entry)) return false;
+         @SuppressWarnings("rawtypes")
+         Map.Entry e = (Map.Entry) o;
+         InternalCacheEntry ice = peek(e.getKey());
+         return ice != null && ice.getValue().equals(e.getValue());
+      }
+
+      @Override
+      public Iterator<InternalCacheEntry> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<InternalCacheEntry>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public InternalCacheEntry next() {
+               return Immutables.immutableInternalCacheEntry(it.next());
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+}
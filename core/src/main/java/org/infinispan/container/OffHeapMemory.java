@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import java.lang.reflect.Field;
+
+import org.infinispan.CacheException;
+
+import sun.misc.Unsafe;
+
+/**
+ * Thin wrapper around {@link sun.misc.Unsafe} used to allocate and access memory outside of the Java heap.  Memory
+ * returned by {@link #allocate(long)} is not managed by the garbage collector, so every address must eventually be
+ * handed back via {@link #free(long)}.
+ * <p/>
+ * No bounds checking is performed by any of the accessors: callers are responsible for only touching memory they own.
+ *
+ * @since 5.0
+ */
+public final class OffHeapMemory {
+
+   private static final Unsafe UNSAFE;
+   private static final long BYTE_ARRAY_BASE_OFFSET;
+
+   static {
+      try {
+         Field f = Unsafe.class.getDeclaredField("theUnsafe");
+         f.setAccessible(true);
+         UNSAFE = (Unsafe) f.get(null);
+         BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+      } catch (Exception e) {
+         throw new CacheException("Unable to access sun.misc.Unsafe, off-heap storage is not supported on this JVM", e);
+      }
+   }
+
+   private OffHeapMemory() {
+   }
+
+   /**
+    * Allocates a block of native memory.  The contents of the block are not initialized.
+    *
+    * @param bytes number of bytes to allocate
+    * @return address of the block
+    */
+   public static long allocate(long bytes) {
+      return UNSAFE.allocateMemory(bytes);
+   }
+
+   /**
+    * Allocates a block of native memory with all bytes set to zero.
+    *
+    * @param bytes number of bytes to allocate
+    * @return address of the block
+    */
+   public static long allocateZeroed(long bytes) {
+      long address = UNSAFE.allocateMemory(bytes);
+      UNSAFE.setMemory(address, bytes, (byte) 0);
+      return address;
+   }
+
+   /**
+    * Releases a block previously returned by {@link #allocate(long)} or {@link #allocateZeroed(long)}.
+    *
+    * @param address address of the block
+    */
+   public static void free(long address) {
+      UNSAFE.freeMemory(address);
+   }
+
+   public static long getLong(long address) {
+      return UNSAFE.getLong(address);
+   }
+
+   public static void putLong(long address, long value) {
+      UNSAFE.putLong(address, value);
+   }
+
+   public static int getInt(long address) {
+      return UNSAFE.getInt(address);
+   }
+
+   public static void putInt(long address, int value) {
+      UNSAFE.putInt(address, value);
+   }
+
+   public static byte getByte(long address) {
+      return UNSAFE.getByte(address);
+   }
+
+   /**
+    * Copies a region of a byte array into native memory.
+    */
+   public static void copyFromArray(byte[] src, int srcOffset, long address, int length) {
+      UNSAFE.copyMemory(src, BYTE_ARRAY_BASE_OFFSET + srcOffset, null, address, length);
+   }
+
+   /**
+    * Copies native memory into a newly allocated byte array.
+    */
+   public static byte[] copyToArray(long address, int length) {
+      byte[] dest = new byte[length];
+      UNSAFE.copyMemory(null, address, dest, BYTE_ARRAY_BASE_OFFSET, length);
+      return dest;
+   }
+
+   /**
+    * Compares a region of native memory with the contents of a byte array.
+    *
+    * @return true if the <tt>length</tt> bytes starting at <tt>address</tt> are identical to <tt>bytes</tt>
+    */
+   public static boolean equalsArray(long address, int length, byte[] bytes) {
+      if (length != bytes.length) return false;
+      int i = 0;
+      for (; i + 8 <= length; i += 8) {
+         if (UNSAFE.getLong(address + i) != UNSAFE.getLong(bytes, BYTE_ARRAY_BASE_OFFSET + i)) return false;
+      }
+      for (; i < length; i++) {
+         if (UNSAFE.getByte(address + i) != bytes[i]) return false;
+      }
+      return true;
+   }
+}
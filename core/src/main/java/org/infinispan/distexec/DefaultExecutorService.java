@@ -42,7 +42,6 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.TimeUnit;
@@ -64,6 +63,7 @@ import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.responses.SuccessfulResponse;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.jgroups.SuspectException;
 import org.infinispan.util.Util;
 import org.infinispan.util.concurrent.FutureListener;
 import org.infinispan.util.concurrent.NotifyingFuture;
@@ -83,6 +83,13 @@ import org.infinispan.util.logging.LogFactory;
  * or {@link Externalizable}. Also the value returned from a callable must be {@link Serializable}
  * or {@link Externalizable}. Unfortunately if the value returned is not serializable then a
  * {@link NotSerializableException} will be thrown.
+ * <p>
+ * 
+ * Tasks are scheduled with locality in mind: a task submitted with input keys is executed on the
+ * node owning most of them, and tasks executed on this node run on the bounded worker pool of the
+ * cache's {@link DistributedTaskManager}, which also publishes execution metrics for this node. If
+ * the node executing a task leaves the cluster, the task is transparently executed again on
+ * another node, chosen the same way.
  * 
  * @author Vladimir Blagojevic
  * @since 5.0
@@ -91,12 +98,14 @@ import org.infinispan.util.logging.LogFactory;
 public class DefaultExecutorService extends AbstractExecutorService implements DistributedExecutorService {
 
    private static final Log log = LogFactory.getLog(DefaultExecutorService.class);
+   private static final int MAX_FAILOVERS = 3;
    protected final AtomicBoolean isShutdown = new AtomicBoolean(false);
    protected final AdvancedCache cache;
    protected final RpcManager rpc;
    protected final InterceptorChain invoker;
    protected final CommandsFactory factory;
    protected final Marshaller marshaller;
+   protected final DistributedTaskManager taskManager;
 
    /**
     * Create a new DefaultExecutorService given a master cache node. All distributed task executions
@@ -121,6 +130,7 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
       this.invoker = registry.getComponent(InterceptorChain.class);
       this.factory = registry.getComponent(CommandsFactory.class);
       this.marshaller = globalRegistry.getComponent(StreamingMarshaller.class);
+      this.taskManager = registry.getComponent(DistributedTaskManager.class);
    }
 
    @Override
@@ -308,15 +318,11 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
       if(inputKeysSpecified(input)){
          Map<Address, List<K>> nodesKeysMap = mapKeysToNodes(input);
          Address me = rpc.getAddress();
-         DistributedExecuteCommand<T> c = factory.buildDistributedExecuteCommand(task, me, Arrays.asList(input));
+         Address target = selectOwnerOfMostKeys(nodesKeysMap);
+         DistributedExecuteCommand<T> c = factory.buildDistributedExecuteCommand(
+                  target.equals(me) ? clone(task) : task, me, Arrays.asList(input));
          DistributedRunnableFuture<T> f = new DistributedRunnableFuture<T>(c);
-         ArrayList<Address> nodes = new ArrayList<Address>(nodesKeysMap.keySet());
-         boolean invokeOnSelf = (nodes.size() == 1 && nodes.get(0).equals(me));
-         if (invokeOnSelf) {
-            executeFuture(me, f);
-         } else {
-            executeFuture(randomClusterMemberExcludingSelf(nodes), f);
-         }
+         executeFuture(target, f);
          return f;
       } else {
          return submit(task);
@@ -373,6 +379,7 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
    }
 
    protected <T> void executeFuture(Address address, DistributedRunnableFuture<T> f) {
+      f.executionTarget = address;
       if (rpc.getAddress().equals(address)) {
          invokeLocally(f);
       } else {
@@ -399,7 +406,7 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
             public Object call() throws Exception {
                Map<Address,Response> rspMap = new HashMap<Address, Response>();   
                Object result = null;
-               future.getCommand().init(cache);
+               future.getCommand().init(cache, taskManager);
                try {
                   result = future.getCommand().perform(null);
                   rspMap.put(rpc.getAddress(), new SuccessfulResponse(result));
@@ -412,9 +419,7 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
                return result;
             }
          };
-         final FutureTask<Object> task = new FutureTask<Object>(call);
-         future.setNetworkFuture((Future<T>) task);         
-         task.run();
+         future.setNetworkFuture((Future<T>) taskManager.submit(call));
       } catch (Throwable e1) {
          log.warn("Falied local execution ", e1);
       }
@@ -436,6 +441,42 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
       return addressToKey;
    }
 
+   /**
+    * Picks the node owning most of the given keys, preferring this node in case of a tie.
+    */
+   protected <K> Address selectOwnerOfMostKeys(Map<Address, List<K>> nodesKeysMap) {
+      Address me = rpc.getAddress();
+      Address selected = null;
+      int selectedKeys = -1;
+      for (Entry<Address, List<K>> e : nodesKeysMap.entrySet()) {
+         int numKeys = e.getValue().size();
+         if (numKeys > selectedKeys || (numKeys == selectedKeys && e.getKey().equals(me))) {
+            selected = e.getKey();
+            selectedKeys = numKeys;
+         }
+      }
+      return selected;
+   }
+
+   /**
+    * Picks the node a task should be executed on after the node executing it left the cluster.
+    */
+   protected Address selectFailoverTarget(Collection<Object> keys, Address failed) {
+      List<Address> members = new ArrayList<Address>(rpc.getTransport().getMembers());
+      members.remove(failed);
+      if (keys != null && !keys.isEmpty()) {
+         Address owner = selectOwnerOfMostKeys(mapKeysToNodes(keys.toArray()));
+         // the consistent hash might not reflect the new view yet
+         if (members.contains(owner)) return owner;
+      }
+      Address me = rpc.getAddress();
+      if (members.size() > 1) {
+         List<Address> chosen = randomClusterMembers(members, 1);
+         if (!chosen.isEmpty()) return chosen.get(0);
+      }
+      return me;
+   }
+
    protected List<Address> randomClusterMembers(int numNeeded) {
       List<Address> members = new ArrayList<Address>(rpc.getTransport().getMembers());
       return randomClusterMembers(members, numNeeded);
@@ -484,10 +525,12 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
     * @author Mircea Markus
     * @author Vladimir Blagojevic
     */
-   private static class DistributedRunnableFuture<V> implements RunnableFuture<V>, NotifyingNotifiableFuture<V> {
+   private class DistributedRunnableFuture<V> implements RunnableFuture<V>, NotifyingNotifiableFuture<V> {
 
       protected final DistributedExecuteCommand<V> distCommand;
       protected volatile Future<V> f;
+      protected volatile Address executionTarget;
+      private int failovers;
 
       /**
        * Creates a <tt>DistributedRunnableFuture</tt> that will upon running, execute the given
@@ -525,8 +568,15 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
        * 
        */
       public V get() throws InterruptedException, ExecutionException {
-         Object response = f.get();
-         return retrieveResult(response);      
+         while (true) {
+            Future<V> current = f;
+            try {
+               Object response = current.get();
+               return retrieveResult(response);
+            } catch (ExecutionException e) {
+               if (!failOver(current, e)) throw e;
+            }
+         }
       }
 
       /**
@@ -534,8 +584,41 @@ public class DefaultExecutorService extends AbstractExecutorService implements D
        */
       public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
                TimeoutException {
-         Object response = f.get(timeout, unit);
-         return retrieveResult(response);      
+         long deadline = System.nanoTime() + unit.toNanos(timeout);
+         while (true) {
+            Future<V> current = f;
+            try {
+               Object response = current.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+               return retrieveResult(response);
+            } catch (ExecutionException e) {
+               if (!failOver(current, e)) throw e;
+            }
+         }
+      }
+
+      /**
+       * Executes this task again on another node if it failed because the node executing it left the cluster.
+       * 
+       * @return true if the task is being executed again
+       */
+      private synchronized boolean failOver(Future<V> failedFuture, ExecutionException e) {
+         if (f != failedFuture) return true; // another thread already failed over
+         if (!isCausedBySuspicion(e) || failovers >= MAX_FAILOVERS || isShutdown.get()) return false;
+         failovers++;
+         Address failed = executionTarget;
+         Address target = selectFailoverTarget(distCommand.getKeys(), failed);
+         log.debug("Node %s executing %s left the cluster, executing it again on %s", failed, distCommand, target);
+         taskManager.taskFailedOver();
+         executeFuture(target, this);
+         return true;
+      }
+
+      private boolean isCausedBySuspicion(Throwable t) {
+         while (t != null) {
+            if (t instanceof SuspectException) return true;
+            t = t.getCause();
+         }
+         return false;
       }
 
       @Override
@@ -0,0 +1,69 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distexec;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+
+/**
+ * Executes distributed tasks on this node, and keeps track of their execution.
+ * <p>
+ * Tasks submitted locally run on a bounded pool of worker threads, sized after the number of available
+ * processors. Tasks sent by other nodes run on the thread delivering them, but are accounted for all the same.
+ * 
+ * @see DefaultExecutorService
+ * 
+ * @since 5.0
+ */
+@Scope(Scopes.NAMED_CACHE)
+public interface DistributedTaskManager {
+
+   /**
+    * Submits a task for execution on the worker pool of this node. A task submitted by a task already running on
+    * the worker pool is executed by the submitting thread, so that tasks waiting for tasks they submitted can never
+    * starve the pool.
+    * 
+    * @param task
+    *           task to execute
+    * @return a future holding the result of the task
+    */
+   <T> Future<T> submit(Callable<T> task);
+
+   /**
+    * Executes a task in the calling thread, recording its execution time.
+    * 
+    * @param task
+    *           task to execute
+    * @return the result of the task
+    */
+   <T> T execute(Callable<T> task) throws Exception;
+
+   /**
+    * Records that a task submitted from this node had to be executed again on another node, after the node
+    * executing it left the cluster.
+    */
+   void taskFailedOver();
+}
@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distexec;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Units;
+
+/**
+ * Default implementation of {@link DistributedTaskManager}. Worker threads are started on demand and time out when
+ * idle, so caches that never execute distributed tasks don't hold on to any thread.
+ * 
+ * @since 5.0
+ */
+@MBean(objectName = "DistributedTaskManager", description = "Executes distributed tasks on this node")
+public class DistributedTaskManagerImpl implements DistributedTaskManager {
+   private static final Log log = LogFactory.getLog(DistributedTaskManagerImpl.class);
+   private static final AtomicInteger threadCounter = new AtomicInteger(0);
+
+   private final ThreadPoolExecutor workers;
+   private final AtomicInteger activeTasks = new AtomicInteger(0);
+   private final AtomicLong executedTasks = new AtomicLong(0);
+   private final AtomicLong totalExecutionTime = new AtomicLong(0);
+   private final AtomicLong failedOverTasks = new AtomicLong(0);
+
+   public DistributedTaskManagerImpl() {
+      int numWorkers = Runtime.getRuntime().availableProcessors();
+      workers = new ThreadPoolExecutor(numWorkers, numWorkers, 60, TimeUnit.SECONDS,
+                                       new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+         public Thread newThread(Runnable r) {
+            return new WorkerThread(r, DistributedTaskManagerImpl.this);
+         }
+      });
+      workers.allowCoreThreadTimeOut(true);
+   }
+
+   @Override
+   public <T> Future<T> submit(Callable<T> task) {
+      Thread current = Thread.currentThread();
+      if (current instanceof WorkerThread && ((WorkerThread) current).owner == this) {
+         FutureTask<T> inline = new FutureTask<T>(task);
+         inline.run();
+         return inline;
+      }
+      return workers.submit(task);
+   }
+
+   @Override
+   public <T> T execute(Callable<T> task) throws Exception {
+      activeTasks.incrementAndGet();
+      long start = System.nanoTime();
+      try {
+         return task.call();
+      } finally {
+         totalExecutionTime.addAndGet(System.nanoTime() - start);
+         executedTasks.incrementAndGet();
+         activeTasks.decrementAndGet();
+      }
+   }
+
+   @Override
+   public void taskFailedOver() {
+      failedOverTasks.incrementAndGet();
+   }
+
+   @Stop
+   public void stop() {
+      int pending = workers.shutdownNow().size();
+      if (pending > 0) log.debug("Discarded %s distributed tasks pending execution", pending);
+   }
+
+   @ManagedAttribute(description = "Number of locally submitted tasks waiting for a worker thread")
+   @Metric(displayName = "Number of queued tasks", displayType = DisplayType.SUMMARY)
+   public int getQueueSize() {
+      return workers.getQueue().size();
+   }
+
+   @ManagedAttribute(description = "Number of tasks currently executing on this node")
+   @Metric(displayName = "Number of executing tasks", displayType = DisplayType.SUMMARY)
+   public int getActiveTasks() {
+      return activeTasks.get();
+   }
+
+   @ManagedAttribute(description = "Number of tasks executed on this node")
+   @Metric(displayName = "Number of executed tasks", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getExecutedTasks() {
+      return executedTasks.get();
+   }
+
+   @ManagedAttribute(description = "Average execution time of tasks executed on this node, in milliseconds")
+   @Metric(displayName = "Average task execution time", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public long getAverageExecutionTime() {
+      long executed = executedTasks.get();
+      return executed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalExecutionTime.get() / executed);
+   }
+
+   @ManagedAttribute(description = "Number of tasks submitted from this node that were executed again after their node left")
+   @Metric(displayName = "Number of failed over tasks", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getFailedOverTasks() {
+      return failedOverTasks.get();
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component")
+   @Operation(displayName = "Reset statistics")
+   public void resetStatistics() {
+      executedTasks.set(0);
+      totalExecutionTime.set(0);
+      failedOverTasks.set(0);
+   }
+
+   private static class WorkerThread extends Thread {
+      final DistributedTaskManagerImpl owner;
+
+      WorkerThread(Runnable r, DistributedTaskManagerImpl owner) {
+         super(r, "DistributedTaskWorker-" + threadCounter.incrementAndGet());
+         this.owner = owner;
+         setDaemon(true);
+      }
+   }
+}
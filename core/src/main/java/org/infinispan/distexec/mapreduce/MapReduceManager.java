@@ -0,0 +1,63 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distexec.mapreduce;
+
+import java.util.Map;
+
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+
+/**
+ * Holds the intermediate results of MapReduceTasks whose reduce phase is distributed across the cluster. Each node
+ * receives the partially reduced values of the intermediate keys it owns from every node that ran the map phase, and
+ * reduces them as they arrive.
+ * 
+ * @see MapReduceTask#reducedOnOwners(boolean)
+ * 
+ * @since 5.0
+ */
+@Scope(Scopes.NAMED_CACHE)
+public interface MapReduceManager {
+
+   /**
+    * Reduces partially reduced values into the intermediate results held for a task. Null values are skipped, and a
+    * reducer returning null drops the value reduced so far for that key.
+    * 
+    * @param taskId
+    *           id of the task the values belong to
+    * @param reducer
+    *           reducer to use; not used concurrently by other threads
+    * @param partialResults
+    *           partially reduced values, keyed by intermediate key
+    */
+   void combine(String taskId, Reducer<Object, Object> reducer, Map<Object, Object> partialResults);
+
+   /**
+    * Removes and returns the intermediate results held for a task.
+    * 
+    * @param taskId
+    *           id of the task
+    * @return reduced values keyed by intermediate key, never null
+    */
+   Map<Object, Object> remove(String taskId);
+}
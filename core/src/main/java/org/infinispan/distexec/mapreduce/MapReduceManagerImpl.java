@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distexec.mapreduce;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+/**
+ * Default implementation of {@link MapReduceManager}. Values received concurrently from different nodes are reduced
+ * without locking, by atomically replacing the value held for an intermediate key with its reduction.
+ * 
+ * @since 5.0
+ */
+public class MapReduceManagerImpl implements MapReduceManager {
+   private static final Log log = LogFactory.getLog(MapReduceManagerImpl.class);
+
+   private final ConcurrentMap<String, ConcurrentMap<Object, Object>> tasks = new ConcurrentHashMap<String, ConcurrentMap<Object, Object>>();
+
+   @Override
+   public void combine(String taskId, Reducer<Object, Object> reducer, Map<Object, Object> partialResults) {
+      ConcurrentMap<Object, Object> results = tasks.get(taskId);
+      if (results == null) {
+         results = new ConcurrentHashMap<Object, Object>();
+         ConcurrentMap<Object, Object> existing = tasks.putIfAbsent(taskId, results);
+         if (existing != null) results = existing;
+      }
+      for (Entry<Object, Object> e : partialResults.entrySet()) {
+         Object key = e.getKey();
+         Object value = e.getValue();
+         if (value == null) continue;
+         while (true) {
+            Object previous = results.putIfAbsent(key, value);
+            if (previous == null) break;
+            Object reduced = reducer.reduce(key, Arrays.asList(previous, value).iterator());
+            if (reduced == null ? results.remove(key, previous) : results.replace(key, previous, reduced)) break;
+         }
+      }
+      if (log.isTraceEnabled()) log.trace("Combined %s intermediate keys into results of task %s", partialResults.size(), taskId);
+   }
+
+   @Override
+   public Map<Object, Object> remove(String taskId) {
+      Map<Object, Object> results = tasks.remove(taskId);
+      return results == null ? Collections.<Object, Object>emptyMap() : results;
+   }
+
+   @Stop
+   public void stop() {
+      tasks.clear();
+   }
+}
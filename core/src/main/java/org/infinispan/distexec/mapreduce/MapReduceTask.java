@@ -23,6 +23,7 @@
 package org.infinispan.distexec.mapreduce;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -30,6 +31,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -41,7 +43,10 @@ import org.infinispan.Cache;
 import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.read.ReduceCommand;
+import org.infinispan.container.DataContainer;
 import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distexec.DistributedTaskManager;
 import org.infinispan.distribution.DistributionManager;
 import org.infinispan.factories.ComponentRegistry;
 import org.infinispan.factories.GlobalComponentRegistry;
@@ -74,6 +79,12 @@ import org.infinispan.util.logging.LogFactory;
  * 
  * Unless otherwise specified using {@link MapReduceTask#onKeys(Object...)} filter all available 
  * key/value pairs of a specified cache will be used as input data for this task.
+ * <p>
+ * 
+ * By default intermediate results are sent to and reduced by the node executing the task. Tasks producing 
+ * many intermediate keys should use {@link MapReduceTask#reducedOnOwners(boolean)} so that intermediate keys 
+ * are reduced in parallel by their owners, or {@link MapReduceTask#execute(String)} so that final results 
+ * are stored in a cache rather than sent to the node executing the task.
  * 
  * For example, MapReduceTask that counts number of word occurrences in a particular cache where 
  * keys and values are String instances could be written as follows:
@@ -137,6 +148,8 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
    private Mapper<KIn, VIn, KOut, VOut> mapper;
    private Reducer<KOut, VOut> reducer;
 
+   private boolean reducedOnOwners;
+
    private final Collection<KIn> keys;
    private final AdvancedCache<KIn, VIn> cache;
    protected final Marshaller marshaller;
@@ -213,6 +226,24 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
       return this;
    }
 
+   /**
+    * Specifies whether the reduce phase of this task should be distributed.
+    * <p>
+    * By default, each node sends the values it reduced locally to the node executing this task, which
+    * performs the final reduction of all intermediate keys. When the reduce phase is distributed,
+    * intermediate keys are instead partitioned by the consistent hash of the cache, and the values of each
+    * intermediate key are sent to and reduced by the owner of the key, in parallel on all nodes. Only
+    * final results, if any, are sent to the node executing this task.
+    * 
+    * @param reducedOnOwners
+    *           true if intermediate keys should be reduced on their owners
+    * @return this task
+    */
+   public MapReduceTask<KIn, VIn, KOut, VOut> reducedOnOwners(boolean reducedOnOwners) {
+      this.reducedOnOwners = reducedOnOwners;
+      return this;
+   }
+
    /**
     * Executes this task across Infinispan cluster nodes.
     * 
@@ -220,12 +251,58 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
     */
    @SuppressWarnings("unchecked")
    public Map<KOut, VOut> execute() throws CacheException {
+      ensureMapperAndReducerSet();
+      if (reducedOnOwners)
+         return executeWithDistributedReduce(null, true);
+
+      Map<Address, Object> results = executeMapPhase(null);
+
+      // we have results from all nodes now, group intermediate keys for final reduction
+      Map<KOut, List<VOut>> reduceMap = new HashMap<KOut, List<VOut>>();
+      for (Object nodeResult : results.values()) {
+         groupKeys(reduceMap, (Map<KOut, VOut>) nodeResult);
+      }
+
+      // final reduce
+      Map<KOut, VOut> result = new HashMap<KOut, VOut>();
+      for (Entry<KOut, List<VOut>> entry : reduceMap.entrySet()) {
+         VOut reduced = reducer.reduce(entry.getKey(), (entry.getValue()).iterator());
+         result.put(entry.getKey(), reduced);
+      }
+      return result;
+   }
+
+   /**
+    * Executes this task across Infinispan cluster nodes, reducing intermediate keys on their owners,
+    * which store final results in the specified cache rather than returning them.
+    * 
+    * @param resultsCacheName
+    *           name of the cache final results are stored in; the cache has to be defined on all nodes
+    */
+   public void execute(String resultsCacheName) throws CacheException {
+      if (resultsCacheName == null)
+         throw new NullPointerException("A valid name of a cache to store results in is needed " + resultsCacheName);
+      ensureMapperAndReducerSet();
+      executeWithDistributedReduce(resultsCacheName, false);
+   }
+
+   private void ensureMapperAndReducerSet() {
       if (mapper == null)
          throw new NullPointerException("A valid reference of Mapper is not set " + mapper);
       
       if (reducer == null)
          throw new NullPointerException("A valid reference of Reducer is not set " + reducer);
-            
+   }
+
+   /**
+    * Invokes the map phase of this task on all involved nodes, including this one.
+    * 
+    * @param taskId
+    *           id of the task if intermediate keys are to be reduced on their owners, null otherwise
+    * @return values returned by each node
+    */
+   @SuppressWarnings("unchecked")
+   protected Map<Address, Object> executeMapPhase(String taskId) throws CacheException {
       ComponentRegistry registry = cache.getComponentRegistry();
       RpcManager rpc = cache.getRpcManager();
       InvocationContextContainer icc = cache.getInvocationContextContainer();
@@ -237,7 +314,7 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
       MapReduceCommand selfCmd = null;
       Map<Address, Response> results = new HashMap<Address, Response>();
       if (inputTaskKeysEmpty()) {
-         cmd = factory.buildMapReduceCommand(mapper, reducer, rpc.getAddress(), keys);
+         cmd = factory.buildMapReduceCommand(mapper, reducer, rpc.getAddress(), keys, taskId);
          selfCmd = cmd;
          try {
             log.debug("Invoking %s across entire cluster ", cmd);
@@ -255,9 +332,9 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
             Address address = e.getKey();
             List<KIn> keys = e.getValue();
             if (address.equals(rpc.getAddress())) {
-               selfCmd = factory.buildMapReduceCommand(clone(mapper), clone(reducer), rpc.getAddress(), keys);
+               selfCmd = factory.buildMapReduceCommand(clone(mapper), clone(reducer), rpc.getAddress(), keys, taskId);
             } else {
-               cmd = factory.buildMapReduceCommand(mapper, reducer, rpc.getAddress(), keys);
+               cmd = factory.buildMapReduceCommand(mapper, reducer, rpc.getAddress(), keys, taskId);
                try {
                   log.debug("Invoking %s on %s", cmd, address);
                   MapReduceFuture future = new MapReduceFuture();
@@ -280,46 +357,99 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
             }            
          }
       }
-      boolean selfInvoke = selfCmd != null;
-      Object localCommandResult = null;
-      if (selfInvoke) {
-         log.debug("Invoking %s locally", cmd);
-         selfCmd.init(factory, invoker, icc, dm, rpc.getAddress());
+      Map<Address, Object> nodeResults = new HashMap<Address, Object>();
+      for (Entry<Address, Response> e : results.entrySet()) {
+         nodeResults.put(e.getKey(), responseValue(e.getKey(), e.getValue()));
+      }
+      if (selfCmd != null) {
+         log.debug("Invoking %s locally", selfCmd);
+         selfCmd.init(factory, invoker, icc, dm, rpc.getAddress(), registry.getComponent(DataContainer.class),
+                  registry.getComponent(StreamingMarshaller.class));
+         selfCmd.initDistributedReduce(rpc, registry.getComponent(MapReduceManager.class));
+         selfCmd.initWorkerPool(registry.getComponent(DistributedTaskManager.class));
          try {
-            localCommandResult = selfCmd.perform(null);
-            log.debug("Invoked %s locally", cmd);
+            nodeResults.put(rpc.getAddress(), selfCmd.perform(null));
+            log.debug("Invoked %s locally", selfCmd);
          } catch (Throwable e1) {
             throw new CacheException("Could not invoke MapReduce task locally ", e1);
          }
       }
+      return nodeResults;
+   }
 
-      // we have results from all nodes now, group intermediate keys for final reduction
-      Map<KOut, List<VOut>> reduceMap = new HashMap<KOut, List<VOut>>();
-      for (Entry<Address, Response> e : results.entrySet()) {
-         Response rsp = e.getValue();
-         if (rsp.isSuccessful() && rsp.isValid()) {            
-            Map<KOut, VOut> reducedResponse = (Map<KOut, VOut>) ((SuccessfulResponse) rsp).getResponseValue();
-            groupKeys(reduceMap, reducedResponse);
-         } else if (rsp instanceof ExceptionResponse) {
-            throw new CacheException("MapReduce task on remote node " + e.getKey()
-                     + " threw Exception", ((ExceptionResponse) rsp).getException());
-         } else {
-            throw new CacheException("MapReduce task on remote node " + e.getKey() + " failed ");
+   /**
+    * Executes this task reducing intermediate keys on their owners.
+    * 
+    * @param resultsCacheName
+    *           name of the cache owners store final results in, or null
+    * @param returnResults
+    *           whether owners should return final results
+    * @return final results if requested, an empty map otherwise
+    */
+   @SuppressWarnings("unchecked")
+   protected Map<KOut, VOut> executeWithDistributedReduce(String resultsCacheName, boolean returnResults) throws CacheException {
+      String taskId = UUID.randomUUID().toString();
+      boolean completed = false;
+      try {
+         executeMapPhase(taskId);
+         Map<KOut, VOut> result = new HashMap<KOut, VOut>();
+         for (Object nodeResult : completeReducePhase(taskId, resultsCacheName, returnResults).values()) {
+            for (Entry<KOut, VOut> e : ((Map<KOut, VOut>) nodeResult).entrySet()) {
+               VOut existing = result.put(e.getKey(), e.getValue());
+               // only if ownership changed while the task was running
+               if (existing != null)
+                  result.put(e.getKey(), reducer.reduce(e.getKey(), Arrays.asList(existing, e.getValue()).iterator()));
+            }
+         }
+         completed = true;
+         return result;
+      } finally {
+         if (!completed) {
+            try {
+               // discard whatever intermediate results the owners hold
+               completeReducePhase(taskId, null, false);
+            } catch (Exception e) {
+               log.debug("Could not discard intermediate results of task %s", taskId);
+            }
          }
       }
+   }
 
-      if (selfInvoke) {
-         groupKeys(reduceMap, (Map<KOut, VOut>) localCommandResult);
+   private Map<Address, Object> completeReducePhase(String taskId, String resultsCacheName, boolean returnResults) throws CacheException {
+      ComponentRegistry registry = cache.getComponentRegistry();
+      RpcManager rpc = cache.getRpcManager();
+      CommandsFactory factory = registry.getComponent(CommandsFactory.class);
+      ReduceCommand cmd = factory.buildCompleteReduceCommand(taskId, resultsCacheName, returnResults);
+      Map<Address, Object> nodeResults = new HashMap<Address, Object>();
+      try {
+         log.debug("Invoking %s across entire cluster ", cmd);
+         Map<Address, Response> responses = rpc.invokeRemotely(null, cmd, true, false);
+         for (Entry<Address, Response> e : responses.entrySet()) {
+            nodeResults.put(e.getKey(), responseValue(e.getKey(), e.getValue()));
+         }
+      } catch (CacheException e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new CacheException("Could not complete reduce phase of MapReduce task on remote nodes ", e);
+      }
+      cmd.init(registry.getComponent(MapReduceManager.class), cache.getCacheManager());
+      try {
+         nodeResults.put(rpc.getAddress(), cmd.perform(null));
+      } catch (Throwable e) {
+         throw new CacheException("Could not complete reduce phase of MapReduce task locally ", e);
       }
+      return nodeResults;
+   }
 
-      // final reduce
-      //TODO parallelize into Executor
-      Map<KOut, VOut> result = new HashMap<KOut, VOut>();
-      for (Entry<KOut, List<VOut>> entry : reduceMap.entrySet()) {
-         VOut reduced = reducer.reduce(entry.getKey(), (entry.getValue()).iterator());
-         result.put(entry.getKey(), reduced);
+   private Object responseValue(Address address, Response rsp) {
+      if (rsp.isSuccessful() && rsp.isValid()) {
+         return ((SuccessfulResponse) rsp).getResponseValue();
+      } else if (rsp instanceof ExceptionResponse) {
+         throw new CacheException("MapReduce task on remote node " + address
+                  + " threw Exception", ((ExceptionResponse) rsp).getException());
+      } else {
+         throw new CacheException("MapReduce task on remote node " + address + " failed ");
       }
-      return result;
    }
 
    /**
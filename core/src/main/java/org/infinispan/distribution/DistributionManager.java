@@ -32,6 +32,7 @@ import org.infinispan.distribution.ch.NodeTopologyInfo;
 import org.infinispan.distribution.ch.TopologyInfo;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.remoting.transport.Address;
 
@@ -116,6 +117,19 @@ public interface DistributionManager {
     */
    InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext ctx) throws Exception;
 
+   /**
+    * Retrieves several cache entries from remote sources.  Keys are grouped by owner using {@link #locateAll(java.util.Collection)}
+    * and a single {@link org.infinispan.commands.remote.ClusteredGetAllCommand} is sent to each owner, with all owners
+    * being contacted in parallel.  Keys an owner is unsure about (e.g., due to a rehash in progress) are retrieved
+    * individually using {@link #retrieveFromRemoteSource(Object, org.infinispan.context.InvocationContext)}.
+    *
+    * @param keys keys to look up
+    * @param ctx
+    * @return a map of the keys found to their internal cache entries.  Keys that cannot be located are not present in the map.
+    * @throws Exception if something bad happens
+    */
+   Map<Object, InternalCacheEntry> retrieveFromRemoteSources(Collection<Object> keys, InvocationContext ctx) throws Exception;
+
    /**
     * Retrieves the consistent hash instance currently in use, which may be an instance of the configured ConsistentHash
     * instance (which defaults to {@link org.infinispan.distribution.ch.DefaultConsistentHash}, or an instance of
@@ -206,6 +220,37 @@ public interface DistributionManager {
 
    void applyState(ConsistentHash newConsistentHash, Map<Object,InternalCacheValue> state, RemoteTransactionLogger transactionLogger, boolean forLeave);
 
+   /**
+    * Applies a single chunk of state received during a rehash.  Unlike {@link #applyState(org.infinispan.distribution.ch.ConsistentHash, java.util.Map, RemoteTransactionLogger, boolean)},
+    * this does not drain the state provider's transaction log, which should only happen once all chunks have been
+    * applied.
+    *
+    * @param newConsistentHash consistent hash to use to determine whether keys are local
+    * @param chunk chunk of state to apply
+    */
+   void applyStateChunk(ConsistentHash newConsistentHash, Map<Object,InternalCacheValue> chunk);
+
+   /**
+    * Starts streaming state to a receiver, replacing any transfer to the same receiver still in progress.
+    *
+    * @param receiver node pulling state
+    * @param chunker generates the state for the receiver
+    * @return the first chunk of state, empty if there is no state to send
+    * @throws CacheLoaderException if state could not be loaded from the cache store
+    */
+   Map<Object, InternalCacheValue> startOutboundStateTransfer(Address receiver, StateChunker chunker) throws CacheLoaderException;
+
+   /**
+    * Retrieves the next chunk of state for a receiver that started a transfer using {@link #startOutboundStateTransfer(org.infinispan.remoting.transport.Address, StateChunker)}.
+    *
+    * @param receiver node pulling state
+    * @return the next chunk of state, empty once all state has been sent
+    * @throws CacheLoaderException if state could not be loaded from the cache store
+    * @throws org.infinispan.CacheException if no transfer to <tt>receiver</tt> is in progress, e.g. because the request
+    *         is a late or duplicate one, so that the receiver does not mistake it for the end of the transfer
+    */
+   Map<Object, InternalCacheValue> nextOutboundStateChunk(Address receiver) throws CacheLoaderException;
+
    void setRehashInProgress(boolean value);
 
    TopologyInfo getTopologyInfo();
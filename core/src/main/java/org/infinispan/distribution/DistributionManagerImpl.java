@@ -24,6 +24,7 @@ package org.infinispan.distribution;
 
 import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
@@ -48,6 +49,7 @@ import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderManager;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.notifications.Listener;
@@ -66,10 +68,12 @@ import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.DeferredReturnFuture;
 import org.infinispan.util.concurrent.ReclosableLatch;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
 import org.rhq.helpers.pluginAnnotations.agent.Parameter;
@@ -84,6 +88,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -154,6 +159,15 @@ public class DistributionManagerImpl implements DistributionManager {
    private final Condition acksArrived = leaveAcksLock.newCondition();
    private final Set<Address> leaveRehashAcks = new CopyOnWriteArraySet<Address>(); // this needs to be threadsafe!
 
+   /**
+    * State being streamed to other nodes as part of a rehash, keyed on the receiver of the state
+    */
+   private final ConcurrentMap<Address, StateChunker> outboundStateTransfers = new ConcurrentHashMap<Address, StateChunker>();
+   private final AtomicLong stateChunksSent = new AtomicLong(0);
+   private final AtomicLong stateEntriesSent = new AtomicLong(0);
+   private final AtomicLong stateChunksReceived = new AtomicLong(0);
+   private final AtomicLong stateEntriesReceived = new AtomicLong(0);
+
    final CountDownLatch finalJoinPhaseLatch = new CountDownLatch(1);
    volatile boolean enteredFinalJoinPhase = false;
    InboundInvocationHandler inboundInvocationHandler;
@@ -267,6 +281,7 @@ public class DistributionManagerImpl implements DistributionManager {
       } else {
          Address leaver = MembershipArithmetic.getMemberLeft(oldMembers, newMembers);
          log.info("This is a LEAVE event!  Node %s has just left", leaver);
+         outboundStateTransfers.remove(leaver);
 
 
          try {
@@ -443,6 +458,81 @@ public class DistributionManagerImpl implements DistributionManager {
       return null;
    }
 
+   @SuppressWarnings("unchecked")
+   public Map<Object, InternalCacheEntry> retrieveFromRemoteSources(Collection<Object> keys, InvocationContext ctx) throws Exception {
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>();
+      if (keys.isEmpty()) return result;
+
+      // group keys by the first remote owner, so that each owner is contacted only once
+      Map<Address, List<Object>> keysPerOwner = new HashMap<Address, List<Object>>();
+      for (Map.Entry<Object, List<Address>> e : locateAll(keys).entrySet()) {
+         for (Address owner : e.getValue()) {
+            if (owner.equals(self)) continue;
+            List<Object> ownerKeys = keysPerOwner.get(owner);
+            if (ownerKeys == null) {
+               ownerKeys = new ArrayList<Object>();
+               keysPerOwner.put(owner, ownerKeys);
+            }
+            ownerKeys.add(e.getKey());
+            break;
+         }
+      }
+      if (keysPerOwner.isEmpty()) return result;
+
+      // issue all but the first RPC in the background, and the first one in the caller's thread
+      Map<Address, DeferredReturnFuture> futures = new HashMap<Address, DeferredReturnFuture>();
+      Address first = null;
+      for (Map.Entry<Address, List<Object>> e : keysPerOwner.entrySet()) {
+         if (first == null) {
+            first = e.getKey();
+            continue;
+         }
+         ClusteredGetAllCommand get = cf.buildClusteredGetAllCommand(e.getValue(), ctx.getFlags());
+         DeferredReturnFuture future = new DeferredReturnFuture();
+         rpcManager.invokeRemotelyInFuture(Collections.singleton(e.getKey()), get, false, future, configuration.getSyncReplTimeout());
+         futures.put(e.getKey(), future);
+      }
+
+      List<Object> unsure = new LinkedList<Object>();
+      ClusteredGetAllCommand get = cf.buildClusteredGetAllCommand(keysPerOwner.get(first), ctx.getFlags());
+      Map<Address, Response> responses = rpcManager.invokeRemotely(Collections.singleton(first), get, ResponseMode.SYNCHRONOUS,
+                                                                   configuration.getSyncReplTimeout(), false);
+      addClusteredGetAllResults(responses.get(first), keysPerOwner.get(first), result, unsure);
+      for (Map.Entry<Address, DeferredReturnFuture> e : futures.entrySet()) {
+         Map<Address, Response> r = (Map<Address, Response>) e.getValue().get();
+         addClusteredGetAllResults(r == null ? null : r.get(e.getKey()), keysPerOwner.get(e.getKey()), result, unsure);
+      }
+
+      if (!unsure.isEmpty()) {
+         if (trace) log.trace("Falling back to single key lookups for %s keys", unsure.size());
+         for (Object key : unsure) {
+            InternalCacheEntry ice = retrieveFromRemoteSource(key, ctx);
+            if (ice != null) result.put(key, ice);
+         }
+      }
+      return result;
+   }
+
+   @SuppressWarnings("unchecked")
+   private void addClusteredGetAllResults(Response response, List<Object> requested, Map<Object, InternalCacheEntry> result, List<Object> unsure) {
+      if (!(response instanceof SuccessfulResponse)) {
+         // no usable response from this owner: the remaining owners of these keys may still have them
+         unsure.addAll(requested);
+         return;
+      }
+      Map<Object, InternalCacheValue> values = (Map<Object, InternalCacheValue>) ((SuccessfulResponse) response).getResponseValue();
+      boolean rehashing = isRehashInProgress() || !isJoinComplete();
+      for (Object key : requested) {
+         InternalCacheValue value = values.get(key);
+         if (value != null) {
+            result.put(key, value.toInternalCacheEntry(key));
+         } else if (values.containsKey(key) || rehashing) {
+            // the owner is unsure, or may not have received the key yet
+            unsure.add(key);
+         }
+      }
+   }
+
    public ConsistentHash getConsistentHash() {
       return consistentHash;
    }
@@ -493,6 +583,7 @@ public class DistributionManagerImpl implements DistributionManager {
             oldConsistentHash = null;
          }
          joiner.set(null);
+         outboundStateTransfers.remove(a);
       } else {
          topologyInfo.addNodeTopologyInfo(a, nodeTopologyInfo);
          if (trace) log.trace("Node topology info added(%s).  Topology info is %s", nodeTopologyInfo, topologyInfo);
@@ -510,6 +601,7 @@ public class DistributionManagerImpl implements DistributionManager {
 
    @Override
    public void informRehashOnLeave(Address sender) {
+      outboundStateTransfers.remove(sender);
       leaveAcksLock.lock();
       try {
          leaveRehashAcks.add(sender);
@@ -547,10 +639,18 @@ public class DistributionManagerImpl implements DistributionManager {
    }
 
    public void applyState(ConsistentHash consistentHash, Map<Object, InternalCacheValue> state, RemoteTransactionLogger tlog, boolean forLeave) {
-      if (trace) log.trace("Applying the following keys: %s", state.keySet());
+      if (!state.isEmpty()) applyStateChunk(consistentHash, state);
+
+      if (!forLeave) drainLocalTransactionLog(tlog);
+
+      if (trace) log.trace("%s has completed applying state", self);
+   }
+
+   public void applyStateChunk(ConsistentHash consistentHash, Map<Object, InternalCacheValue> chunk) {
+      if (trace) log.trace("Applying the following keys: %s", chunk.keySet());
 
       int retryCount = 3; // in case we have issues applying state.
-      Map<Object, InternalCacheValue> pendingApplications = state;
+      Map<Object, InternalCacheValue> pendingApplications = chunk;
       for (int i = 0; i < retryCount; i++) {
          pendingApplications = applyStateMap(consistentHash, pendingApplications, true);
          if (pendingApplications.isEmpty()) break;
@@ -558,9 +658,71 @@ public class DistributionManagerImpl implements DistributionManager {
       // one last go
       if (!pendingApplications.isEmpty()) applyStateMap(consistentHash, pendingApplications, false);
 
-      if (!forLeave) drainLocalTransactionLog(tlog);
+      stateChunksReceived.incrementAndGet();
+      stateEntriesReceived.addAndGet(chunk.size());
+   }
 
-      if (trace) log.trace("%s has completed applying state", self);
+   public Map<Object, InternalCacheValue> startOutboundStateTransfer(Address receiver, StateChunker chunker) throws CacheLoaderException {
+      if (outboundStateTransfers.put(receiver, chunker) != null && log.isDebugEnabled())
+         log.debug("Restarting state transfer to %s, which was already in progress", receiver);
+      return nextOutboundStateChunk(receiver);
+   }
+
+   public Map<Object, InternalCacheValue> nextOutboundStateChunk(Address receiver) throws CacheLoaderException {
+      StateChunker chunker = outboundStateTransfers.get(receiver);
+      if (chunker == null) {
+         // an empty chunk would end the receiver's transfer as if all state had been sent
+         throw new CacheException("Received a request for state from " + receiver + ", but no state transfer to this node is in progress");
+      }
+      Map<Object, InternalCacheValue> chunk = chunker.nextChunk();
+      if (chunk.isEmpty()) {
+         outboundStateTransfers.remove(receiver, chunker);
+         if (trace) log.trace("Completed sending state to %s", receiver);
+      } else {
+         stateChunksSent.incrementAndGet();
+         stateEntriesSent.addAndGet(chunk.size());
+         if (trace) log.trace("Sending chunk of %s entries to %s", chunk.size(), receiver);
+      }
+      return chunk;
+   }
+
+   @ManagedAttribute(description = "Number of chunks of state sent to other nodes during rehashes")
+   @Metric(displayName = "Number of state chunks sent", measurementType = MeasurementType.TRENDSUP)
+   public long getStateChunksSent() {
+      return stateChunksSent.get();
+   }
+
+   @ManagedAttribute(description = "Number of entries sent to other nodes during rehashes")
+   @Metric(displayName = "Number of state entries sent", measurementType = MeasurementType.TRENDSUP)
+   public long getStateEntriesSent() {
+      return stateEntriesSent.get();
+   }
+
+   @ManagedAttribute(description = "Number of chunks of state received from other nodes during rehashes")
+   @Metric(displayName = "Number of state chunks received", measurementType = MeasurementType.TRENDSUP)
+   public long getStateChunksReceived() {
+      return stateChunksReceived.get();
+   }
+
+   @ManagedAttribute(description = "Number of entries received from other nodes during rehashes")
+   @Metric(displayName = "Number of state entries received", measurementType = MeasurementType.TRENDSUP)
+   public long getStateEntriesReceived() {
+      return stateEntriesReceived.get();
+   }
+
+   @ManagedAttribute(description = "Number of nodes this node is currently streaming state to")
+   @Metric(displayName = "Number of outbound state transfers in progress")
+   public int getOutboundStateTransfersInProgress() {
+      return outboundStateTransfers.size();
+   }
+
+   @ManagedOperation(description = "Resets state transfer statistics")
+   @Operation(displayName = "Reset state transfer statistics")
+   public void resetStateTransferStatistics() {
+      stateChunksSent.set(0);
+      stateEntriesSent.set(0);
+      stateChunksReceived.set(0);
+      stateEntriesReceived.set(0);
    }
 
    public void setRehashInProgress(boolean value) {
@@ -645,6 +807,7 @@ public class DistributionManagerImpl implements DistributionManager {
    }
 
    public void abortJoin(Address joiner) {
+      outboundStateTransfers.remove(joiner);
       if (this.joiner.compareAndSet(joiner, null)) {
          if (consistentHash instanceof UnionConsistentHash)
             consistentHash = ((UnionConsistentHash) consistentHash).getOldConsistentHash();
@@ -22,6 +22,7 @@
  */
 package org.infinispan.distribution;
 
+import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.write.InvalidateCommand;
@@ -51,6 +52,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.infinispan.commands.control.RehashControlCommand.Type.PULL_STATE_CHUNK;
 import static org.infinispan.remoting.rpc.ResponseMode.SYNCHRONOUS;
 
 /**
@@ -155,25 +157,50 @@ public abstract class RehashTask implements Callable<Void> {
          this.newConsistentHash = newConsistentHash;
       }
 
+      /**
+       * Pulls state from the state provider one chunk at a time, applying each chunk before requesting the next one.
+       * The provider only generates a chunk when asked for it, so neither side ever holds more than a single chunk of
+       * state in memory.  Once an empty chunk is received, the provider's transaction log is drained.
+       */
       @Override
       public Void call() throws Exception {
          // This call will cause the sender to start logging transactions - BEFORE generating state.
-         Map<Address, Response> resps = rpcManager.invokeRemotely(Collections.singleton(stateProvider), command, SYNCHRONOUS, configuration.getRehashRpcTimeout(), true);
-         for (Response r : resps.values()) {
-            if (r instanceof SuccessfulResponse) {
-               Map<Object, InternalCacheValue> state = getStateFromResponse((SuccessfulResponse) r);
-               distributionManager.applyState(newConsistentHash, state, new RemoteTransactionLoggerImpl(cf, stateProvider, rpcManager), isForLeave());
-            }
+         Map<Object, InternalCacheValue> chunk = pullChunk(command);
+         if (chunk == null) return null;
+
+         ReplicableCommand nextChunkCommand = cf.buildRehashControlCommand(PULL_STATE_CHUNK, self);
+         int chunks = 0;
+         while (!chunk.isEmpty()) {
+            distributionManager.applyStateChunk(newConsistentHash, chunk);
+            chunks++;
+            chunk = pullChunk(nextChunkCommand);
+            if (chunk == null) throw new CacheException("State provider " + stateProvider + " failed to send state after " + chunks + " chunks");
          }
+         if (log.isDebugEnabled()) log.debug("Applied %s chunks of state from %s", chunks, stateProvider);
 
+         Map<Object, InternalCacheValue> none = Collections.emptyMap();
+         distributionManager.applyState(newConsistentHash, none, new RemoteTransactionLoggerImpl(cf, stateProvider, rpcManager), isForLeave());
          return null;
       }
 
       protected abstract boolean isForLeave();
 
+      /**
+       * @return the chunk of state sent by the provider, or null if it did not respond successfully
+       */
+      private Map<Object, InternalCacheValue> pullChunk(ReplicableCommand c) {
+         Map<Address, Response> resps = rpcManager.invokeRemotely(Collections.singleton(stateProvider), c, SYNCHRONOUS, configuration.getRehashRpcTimeout(), true);
+         for (Response r : resps.values()) {
+            if (r instanceof SuccessfulResponse) return getStateFromResponse((SuccessfulResponse) r);
+         }
+         return null;
+      }
+
       @SuppressWarnings("unchecked")
       private Map<Object, InternalCacheValue> getStateFromResponse(SuccessfulResponse r) {
-         return (Map<Object, InternalCacheValue>) r.getResponseValue();
+         Map<Object, InternalCacheValue> state = (Map<Object, InternalCacheValue>) r.getResponseValue();
+         if (state == null) return Collections.emptyMap();
+         return state;
       }
    }
 }
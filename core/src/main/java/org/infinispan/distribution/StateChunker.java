@@ -0,0 +1,135 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.DefaultEntrySizeCalculator;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.util.ReadOnlyDataContainerBackedKeySet;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Generates the state to be sent to a single receiver during a rehash in bounded chunks, rather than materializing
+ * all of it up front.  In-memory entries are visited first, followed by entries which only exist in the cache store
+ * (if any).
+ * <p/>
+ * Chunks are pulled by the receiver one at a time, and the next one is only requested once the previous one has been
+ * applied, so at most one chunk per receiver is in memory on either side at any point in time.  An empty chunk
+ * signals the end of the state.
+ *
+ * @see org.infinispan.commands.control.RehashControlCommand
+ * @since 5.0
+ */
+public class StateChunker {
+
+   private static final Log log = LogFactory.getLog(StateChunker.class);
+
+   /**
+    * Decides which keys belong to the state being generated.
+    */
+   public interface KeyFilter {
+      boolean accept(Object key);
+   }
+
+   private final DataContainer dataContainer;
+   private final CacheStore cacheStore;
+   private final KeyFilter filter;
+   private final int maxEntries;
+   private final long maxBytes;
+   private final DefaultEntrySizeCalculator sizeCalculator = new DefaultEntrySizeCalculator();
+
+   private Iterator<InternalCacheEntry> inMemory;
+   private Iterator<Object> storedKeys;
+   private boolean exhausted;
+
+   public StateChunker(DataContainer dataContainer, CacheStore cacheStore, KeyFilter filter, int maxEntries, long maxBytes) {
+      this.dataContainer = dataContainer;
+      this.cacheStore = cacheStore;
+      this.filter = filter;
+      this.maxEntries = maxEntries > 0 ? maxEntries : Integer.MAX_VALUE;
+      this.maxBytes = maxBytes;
+      this.inMemory = dataContainer.iterator();
+   }
+
+   /**
+    * @return the next chunk of state, or an empty map if all state has been sent
+    */
+   public synchronized Map<Object, InternalCacheValue> nextChunk() throws CacheLoaderException {
+      Map<Object, InternalCacheValue> chunk = new HashMap<Object, InternalCacheValue>();
+      long bytes = 0;
+      while (!exhausted && chunk.size() < maxEntries && (maxBytes <= 0 || bytes < maxBytes)) {
+         InternalCacheEntry ice = nextEntry();
+         if (ice == null) {
+            exhausted = true;
+         } else {
+            chunk.put(ice.getKey(), ice.toInternalCacheValue());
+            if (maxBytes > 0) bytes += sizeCalculator.calculateSize(ice.getKey(), ice);
+         }
+      }
+      return chunk;
+   }
+
+   public synchronized boolean isExhausted() {
+      return exhausted;
+   }
+
+   private InternalCacheEntry nextEntry() throws CacheLoaderException {
+      if (inMemory != null) {
+         while (inMemory.hasNext()) {
+            InternalCacheEntry ice = inMemory.next();
+            if (filter.accept(ice.getKey())) return ice;
+         }
+         inMemory = null;
+         if (cacheStore != null)
+            storedKeys = cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer)).iterator();
+      }
+      if (storedKeys != null) {
+         while (storedKeys.hasNext()) {
+            Object k = storedKeys.next();
+            if (filter.accept(k)) {
+               InternalCacheEntry ice = load(k);
+               if (ice != null) return ice;
+            }
+         }
+         storedKeys = null;
+      }
+      return null;
+   }
+
+   private InternalCacheEntry load(Object k) {
+      try {
+         return cacheStore.load(k);
+      } catch (CacheLoaderException cle) {
+         log.warn("Unable to load " + k + " from cache loader", cle);
+      }
+      return null;
+   }
+}
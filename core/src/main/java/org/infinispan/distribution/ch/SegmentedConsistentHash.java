@@ -0,0 +1,260 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.ch;
+
+import org.infinispan.marshall.Ids;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.Util;
+import org.infinispan.util.hash.Hash;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import static java.lang.Math.min;
+
+/**
+ * A {@link DefaultConsistentHash} that divides the hash space into a fixed number of segments and precomputes the
+ * owners of every segment when the set of caches changes.
+ * <p />
+ * Nodes are placed on the wheel exactly as {@link DefaultConsistentHash} places them, and there is one segment per
+ * wheel slot, so keys are mapped to the same owners.  Locating a key however is a hash plus two array lookups, rather
+ * than a {@link java.util.SortedMap#tailMap(Object)} walk, and the returned lists are immutable views over a shared
+ * array of owners which are cached per segment and replication count, so repeated lookups do not allocate.
+ * <p />
+ * Owners are also exposed per segment (see {@link #getSegment(Object)} and {@link #getSegmentOwners(int, int)}), so
+ * that rehashing code can compare an old and a new hash one segment at a time instead of one key at a time.
+ *
+ * @since 5.0
+ */
+public class SegmentedConsistentHash extends DefaultConsistentHash {
+
+   /**
+    * The number of segments the hash space is divided into.  This is fixed, so that two instances built from
+    * different sets of caches can be compared segment by segment.
+    */
+   public static final int NUM_SEGMENTS = HASH_SPACE;
+
+   private volatile SegmentTable table = SegmentTable.EMPTY;
+
+   public SegmentedConsistentHash() {
+   }
+
+   public SegmentedConsistentHash(Hash hash) {
+      super(hash);
+   }
+
+   @Override
+   public void setCaches(Set<Address> newCaches) {
+      super.setCaches(newCaches);
+      buildSegmentTable();
+   }
+
+   private void buildSegmentTable() {
+      Address[] ring = new Address[positions.size()];
+      int[] ringPositions = new int[ring.length];
+      int i = 0;
+      for (Map.Entry<Integer, Address> e : positions.entrySet()) {
+         ringPositions[i] = e.getKey();
+         ring[i++] = getRealAddress(e.getValue());
+      }
+
+      int[] primaryOwners = new int[ring.length == 0 ? 0 : NUM_SEGMENTS];
+      if (ring.length > 0) {
+         // walk the segments and the wheel together: a segment is owned by the first node at or after its start
+         int owner = 0;
+         for (int segment = 0; segment < NUM_SEGMENTS; segment++) {
+            while (owner < ring.length && ringPositions[owner] < segment) owner++;
+            primaryOwners[segment] = owner == ring.length ? 0 : owner;
+         }
+      }
+      table = new SegmentTable(ring, primaryOwners);
+      if (trace) log.trace("Built segment table for %s nodes and %s segments", ring.length, primaryOwners.length);
+   }
+
+   /**
+    * @return the number of segments the hash space is divided into
+    */
+   public int getNumSegments() {
+      return NUM_SEGMENTS;
+   }
+
+   /**
+    * @param key key to map
+    * @return the segment the key belongs to, between 0 and {@link #getNumSegments()} - 1
+    */
+   public int getSegment(Object key) {
+      return getNormalizedHash(key);
+   }
+
+   /**
+    * Returns the owners of a segment.  The returned list is immutable and is shared between callers.
+    *
+    * @param segment   segment, as returned by {@link #getSegment(Object)}
+    * @param replCount replication count (number of copies)
+    * @return the owners of every key in the segment, primary owner first
+    */
+   public List<Address> getSegmentOwners(int segment, int replCount) {
+      return table.owners(segment, replCount);
+   }
+
+   @Override
+   public List<Address> locate(Object key, int replCount) {
+      return table.owners(getNormalizedHash(key), replCount);
+   }
+
+   @Override
+   public boolean isKeyLocalToAddress(Address target, Object key, int replCount) {
+      return table.isOwner(target, getNormalizedHash(key), replCount);
+   }
+
+   @Override
+   public String toString() {
+      return "SegmentedConsistentHash{" +
+            "addresses =" + positions +
+            ", segments =" + NUM_SEGMENTS +
+            '}';
+   }
+
+   /**
+    * The precomputed owners.  Instances are never modified once built, apart from the benign, racy caching of owner
+    * lists: two threads may build the same list concurrently, or one may drop a list cached by the other, but all
+    * results are equal and immutable, so the worst case is an extra allocation.
+    */
+   private static final class SegmentTable {
+
+      static final SegmentTable EMPTY = new SegmentTable(new Address[0], new int[0]);
+
+      // real addresses, in the order they appear on the wheel
+      final Address[] ring;
+      // index into ring of the primary owner of each segment
+      final int[] primaryOwners;
+      // owner lists, by primary owner and replication count - 1, filled in on first use
+      final OwnerList[][] ownerLists;
+
+      SegmentTable(Address[] ring, int[] primaryOwners) {
+         this.ring = ring;
+         this.primaryOwners = primaryOwners;
+         this.ownerLists = new OwnerList[ring.length][];
+      }
+
+      List<Address> owners(int segment, int replCount) {
+         int numOwners = min(replCount, ring.length);
+         if (numOwners <= 0) return Collections.emptyList();
+         int primary = primaryOwners[segment];
+         OwnerList[] byReplCount = ownerLists[primary];
+         if (byReplCount == null || byReplCount.length < numOwners) {
+            OwnerList[] grown = new OwnerList[numOwners];
+            if (byReplCount != null) System.arraycopy(byReplCount, 0, grown, 0, byReplCount.length);
+            ownerLists[primary] = byReplCount = grown;
+         }
+         OwnerList owners = byReplCount[numOwners - 1];
+         if (owners == null) {
+            owners = new OwnerList(ring, primary, numOwners);
+            byReplCount[numOwners - 1] = owners;
+         }
+         return owners;
+      }
+
+      boolean isOwner(Address target, int segment, int replCount) {
+         int numOwners = min(replCount, ring.length);
+         if (numOwners <= 0) return false;
+         int index = primaryOwners[segment];
+         for (int i = 0; i < numOwners; i++) {
+            if (ring[index].equals(target)) return true;
+            if (++index == ring.length) index = 0;
+         }
+         return false;
+      }
+   }
+
+   /**
+    * An immutable view of {@code size} consecutive wheel positions, starting at {@code start} and wrapping around.
+    */
+   private static final class OwnerList extends AbstractList<Address> implements RandomAccess {
+
+      private final Address[] ring;
+      private final int start;
+      private final int size;
+
+      OwnerList(Address[] ring, int start, int size) {
+         this.ring = ring;
+         this.start = start;
+         this.size = size;
+      }
+
+      @Override
+      public Address get(int index) {
+         if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+         int i = start + index;
+         return ring[i < ring.length ? i : i - ring.length];
+      }
+
+      @Override
+      public int size() {
+         return size;
+      }
+
+      @Override
+      public int indexOf(Object o) {
+         for (int i = 0; i < size; i++) {
+            if (get(i).equals(o)) return i;
+         }
+         return -1;
+      }
+
+      @Override
+      public boolean contains(Object o) {
+         return indexOf(o) >= 0;
+      }
+   }
+
+   public static class Externalizer extends AbstractWheelConsistentHash.Externalizer<SegmentedConsistentHash> {
+      @Override
+      protected SegmentedConsistentHash instance() {
+         return new SegmentedConsistentHash();
+      }
+
+      @Override
+      public SegmentedConsistentHash readObject(ObjectInput unmarshaller) throws IOException, ClassNotFoundException {
+         SegmentedConsistentHash ch = super.readObject(unmarshaller);
+         ch.buildSegmentTable();
+         return ch;
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.SEGMENTED_CONSISTENT_HASH;
+      }
+
+      @Override
+      public Set<Class<? extends SegmentedConsistentHash>> getTypeClasses() {
+         return Util.<Class<? extends SegmentedConsistentHash>>asSet(SegmentedConsistentHash.class);
+      }
+   }
+}
@@ -26,12 +26,12 @@ import org.infinispan.CacheException;
 import org.infinispan.Version;
 import org.infinispan.config.Configuration;
 import org.infinispan.config.ConfigurationException;
-import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.DefaultFactoryFor;
 import org.infinispan.factories.annotations.Inject;
-import org.infinispan.factories.annotations.Start;
-import org.infinispan.factories.annotations.Stop;
 import org.infinispan.factories.annotations.SurvivesRestarts;
+import org.infinispan.factories.components.ComponentMetadata;
+import org.infinispan.factories.components.ComponentMetadata.InjectMethodMetadata;
+import org.infinispan.factories.components.ComponentMetadata.PrioritizedMethodMetadata;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
 import org.infinispan.lifecycle.ComponentStatus;
@@ -43,7 +43,6 @@ import org.infinispan.util.ModuleProperties;
 import org.infinispan.util.ReflectionUtil;
 import org.infinispan.util.logging.Log;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -101,6 +100,8 @@ public abstract class AbstractComponentRegistry implements Lifecycle, Cloneable
 
    private static final Object NULL_COMPONENT = new Object();
 
+   private static final InjectMethodMetadata[] NO_INJECTION_METHODS = new InjectMethodMetadata[0];
+
    // component and method containers
    private final Map<String, Component> componentLookup = new HashMap<String, Component>(1);
 
@@ -139,10 +140,11 @@ public abstract class AbstractComponentRegistry implements Lifecycle, Cloneable
       try {
          // don't use the reflection cache for wireDependencies calls since these are not managed by the ComponentRegistry
          // and may be invoked at any time, even after the cache starts.
-         List<Method> methods = getAllMethodsViaReflection(target.getClass(), Inject.class);
+         ComponentMetadata metadata = ComponentMetadata.scan(target.getClass());
 
          // search for anything we need to inject
-         for (Method method : methods) invokeInjectionMethod(target, method);
+         for (InjectMethodMetadata method : metadata.getInjectMethods())
+            invokeInjectionMethod(target, method);
       }
       catch (Exception e) {
          throw new ConfigurationException("Unable to configure component (type: " + target.getClass() + ", instance " + target + ")", e);
@@ -192,7 +194,7 @@ public abstract class AbstractComponentRegistry implements Lifecycle, Cloneable
    }
 
    public final void registerComponent(Object component, String name) {
-      boolean nonVolatile = ReflectionUtil.isAnnotationPresent(component.getClass(), SurvivesRestarts.class);
+      boolean nonVolatile = getComponentMetadata(component.getClass()).isSurvivesRestarts();
       registerComponentInternal(component, name, nonVolatile);
    }
 
@@ -246,44 +248,21 @@ public abstract class AbstractComponentRegistry implements Lifecycle, Cloneable
     * @param c component to add dependencies to
     */
    protected void addComponentDependencies(Component c) {
-      Class type = c.instance.getClass();
-      List<Method> methods = getAllMethodsViaReflection(type, Inject.class);
-      c.injectionMethods.clear();
-      c.injectionMethods.addAll(methods);
+      c.injectionMethods = getComponentMetadata(c.instance.getClass()).getInjectMethods();
    }
 
    @SuppressWarnings("unchecked")
-   protected void invokeInjectionMethod(Object o, Method m) {
+   protected void invokeInjectionMethod(Object o, InjectMethodMetadata m) {
       Class[] dependencies = m.getParameterTypes();
-      Annotation[][] parameterAnnotations = m.getParameterAnnotations();
+      String[] componentNames = m.getComponentNames();
       Object[] params = new Object[dependencies.length];
       if (getLog().isTraceEnabled())
-         getLog().trace("Injecting dependencies for method [%s] on an instance of [%s].", m, o.getClass().getName());
+         getLog().trace("Injecting dependencies for method [%s] on an instance of [%s].", m.getMethod(), o.getClass().getName());
       for (int i = 0; i < dependencies.length; i++) {
-         params[i] = getOrCreateComponent(dependencies[i], getComponentName(dependencies[i], parameterAnnotations, i));
+         params[i] = getOrCreateComponent(dependencies[i], componentNames[i]);
       }
 
-      ReflectionUtil.invokeAccessibly(o, m, params);
-   }
-
-   private String getComponentName(Class component, Annotation[][] annotations, int paramNumber) {
-      String name;
-      if (annotations == null ||
-              annotations.length <= paramNumber ||
-              (name = findComponentName(annotations[paramNumber])) == null) return component.getName();
-
-      return name;
-   }
-
-   private String findComponentName(Annotation[] annotations) {
-      if (annotations != null && annotations.length > 0) {
-         for (Annotation a : annotations) {
-            if (a instanceof ComponentName) {
-               return ((ComponentName) a).value();
-            }
-         }
-      }
-      return null;
+      ReflectionUtil.invokeAccessibly(o, m.getMethod(), params);
    }
 
    /**
@@ -548,21 +527,20 @@ public abstract class AbstractComponentRegistry implements Lifecycle, Cloneable
          c.startMethods.clear();
          c.stopMethods.clear();
 
-         List<Method> methods = getAllMethodsViaReflection(c.instance.getClass(), Start.class);
-         for (Method m : methods) {
+         ComponentMetadata metadata = getComponentMetadata(c.instance.getClass());
+         for (PrioritizedMethodMetadata m : metadata.getStartMethods()) {
             PrioritizedMethod em = new PrioritizedMethod();
             em.component = c;
-            em.method = m;
-            em.priority = m.getAnnotation(Start.class).priority();
+            em.method = m.getMethod();
+            em.priority = m.getPriority();
             c.startMethods.add(em);
          }
 
-         methods = getAllMethodsViaReflection(c.instance.getClass(), Stop.class);
-         for (Method m : methods) {
+         for (PrioritizedMethodMetadata m : metadata.getStopMethods()) {
             PrioritizedMethod em = new PrioritizedMethod();
             em.component = c;
-            em.method = m;
-            em.priority = m.getAnnotation(Stop.class).priority();
+            em.method = m.getMethod();
+            em.priority = m.getPriority();
             c.stopMethods.add(em);
          }
       }
@@ -815,8 +793,8 @@ public abstract class AbstractComponentRegistry implements Lifecycle, Cloneable
       return dolly;
    }
 
-   private List<Method> getAllMethodsViaReflection(Class c, Class<? extends Annotation> annotationType) {
-      return reflectionCache.getAllMethods(c, annotationType);
+   private ComponentMetadata getComponentMetadata(Class c) {
+      return reflectionCache.getComponentMetadata(c);
    }
 
    /**
@@ -835,7 +813,7 @@ public abstract class AbstractComponentRegistry implements Lifecycle, Cloneable
       /**
        * List of injection methods used to inject dependencies into the component
        */
-      List<Method> injectionMethods = new ArrayList<Method>(2);
+      InjectMethodMetadata[] injectionMethods = NO_INJECTION_METHODS;
       List<PrioritizedMethod> startMethods = new ArrayList<PrioritizedMethod>(2);
       List<PrioritizedMethod> stopMethods = new ArrayList<PrioritizedMethod>(2);
       /**
@@ -856,7 +834,7 @@ public abstract class AbstractComponentRegistry implements Lifecycle, Cloneable
        * Injects dependencies into this component.
        */
       public void injectDependencies() {
-         for (Method m : injectionMethods) invokeInjectionMethod(instance, m);
+         for (InjectMethodMetadata m : injectionMethods) invokeInjectionMethod(instance, m);
       }
 
       public Object getInstance() {
@@ -58,12 +58,13 @@ public class DataContainerFactory extends AbstractNamedCacheComponentFactory imp
             case FIFO:
             case LIRS:
                int maxEntries = configuration.getEvictionMaxEntries();
-               //handle case when < 0 value signifies unbounded container 
-               if(maxEntries < 0) {
+               long maxBytes = configuration.getEvictionMaxBytes();
+               //handle case when < 0 value signifies unbounded container, unless bounded by weight alone
+               if(maxEntries < 0 && maxBytes <= 0) {
                    return (T) DefaultDataContainer.unBoundedDataContainer(level);
                }
                EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
-               return (T) DefaultDataContainer.boundedDataContainer(level, maxEntries, st, policy);
+               return (T) DefaultDataContainer.boundedDataContainer(level, maxEntries, maxBytes, st, policy);
             default:
                throw new ConfigurationException("Unknown eviction strategy "
                         + configuration.getEvictionStrategy());
@@ -150,6 +150,7 @@ public class InterceptorChainFactory extends AbstractNamedCacheComponentFactory
       interceptorChain.appendInterceptor(callInterceptor);
       if (log.isTraceEnabled()) log.trace("Finished building default interceptor chain.");
       buildCustomInterceptors(interceptorChain, configuration.getCustomInterceptors());
+      if (configuration.isUseCompiledInterceptorChain()) interceptorChain.setCompiled(true);
       return interceptorChain;
    }
 
@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.factories.components;
+
+import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.factories.annotations.SurvivesRestarts;
+import org.infinispan.util.ReflectionUtil;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Everything the component registry needs to know about a component class: the methods to inject dependencies into,
+ * with the names of the components to inject, the lifecycle methods with their priorities, and whether the component
+ * survives restarts.
+ * <p/>
+ * Instances are obtained from a {@link org.infinispan.manager.ReflectionCache}, which takes them from the
+ * {@link ComponentMetadataIndex} generated at build time when possible, and otherwise builds them with {@link
+ * #scan(Class)}.  All methods held are already accessible.
+ *
+ * @since 5.0
+ */
+public final class ComponentMetadata {
+   private final boolean survivesRestarts;
+   private final InjectMethodMetadata[] injectMethods;
+   private final PrioritizedMethodMetadata[] startMethods;
+   private final PrioritizedMethodMetadata[] stopMethods;
+
+   ComponentMetadata(boolean survivesRestarts, InjectMethodMetadata[] injectMethods,
+                     PrioritizedMethodMetadata[] startMethods, PrioritizedMethodMetadata[] stopMethods) {
+      this.survivesRestarts = survivesRestarts;
+      this.injectMethods = injectMethods;
+      this.startMethods = startMethods;
+      this.stopMethods = stopMethods;
+   }
+
+   /**
+    * Builds the metadata of a class by inspecting its annotations, including those inherited from its superclasses
+    * and interfaces.
+    *
+    * @param type component class
+    * @return metadata for the class, never null
+    */
+   public static ComponentMetadata scan(Class<?> type) {
+      List<Method> methods = ReflectionUtil.getAllMethods(type, Inject.class);
+      InjectMethodMetadata[] injectMethods = new InjectMethodMetadata[methods.size()];
+      int i = 0;
+      for (Method m : methods) {
+         Class<?>[] parameterTypes = m.getParameterTypes();
+         Annotation[][] parameterAnnotations = m.getParameterAnnotations();
+         String[] componentNames = new String[parameterTypes.length];
+         for (int p = 0; p < parameterTypes.length; p++)
+            componentNames[p] = componentName(parameterTypes[p], parameterAnnotations[p]);
+         injectMethods[i++] = new InjectMethodMetadata(m, parameterTypes, componentNames);
+      }
+
+      methods = ReflectionUtil.getAllMethods(type, Start.class);
+      PrioritizedMethodMetadata[] startMethods = new PrioritizedMethodMetadata[methods.size()];
+      i = 0;
+      for (Method m : methods) startMethods[i++] = new PrioritizedMethodMetadata(m, m.getAnnotation(Start.class).priority());
+
+      methods = ReflectionUtil.getAllMethods(type, Stop.class);
+      PrioritizedMethodMetadata[] stopMethods = new PrioritizedMethodMetadata[methods.size()];
+      i = 0;
+      for (Method m : methods) stopMethods[i++] = new PrioritizedMethodMetadata(m, m.getAnnotation(Stop.class).priority());
+
+      boolean survivesRestarts = ReflectionUtil.isAnnotationPresent(type, SurvivesRestarts.class);
+      return new ComponentMetadata(survivesRestarts, injectMethods, startMethods, stopMethods);
+   }
+
+   private static String componentName(Class<?> parameterType, Annotation[] annotations) {
+      for (Annotation a : annotations) {
+         if (a instanceof ComponentName) return ((ComponentName) a).value();
+      }
+      return parameterType.getName();
+   }
+
+   public boolean isSurvivesRestarts() {
+      return survivesRestarts;
+   }
+
+   public InjectMethodMetadata[] getInjectMethods() {
+      return injectMethods;
+   }
+
+   public PrioritizedMethodMetadata[] getStartMethods() {
+      return startMethods;
+   }
+
+   public PrioritizedMethodMetadata[] getStopMethods() {
+      return stopMethods;
+   }
+
+   /**
+    * @return true if the class has no injection or lifecycle methods and does not survive restarts
+    */
+   public boolean isEmpty() {
+      return !survivesRestarts && injectMethods.length == 0 && startMethods.length == 0 && stopMethods.length == 0;
+   }
+
+   /**
+    * A method annotated with {@link Inject}, along with the types and registry names of the components it takes.
+    */
+   public static final class InjectMethodMetadata {
+      private final Method method;
+      private final Class<?>[] parameterTypes;
+      private final String[] componentNames;
+
+      InjectMethodMetadata(Method method, Class<?>[] parameterTypes, String[] componentNames) {
+         method.setAccessible(true);
+         this.method = method;
+         this.parameterTypes = parameterTypes;
+         this.componentNames = componentNames;
+      }
+
+      public Method getMethod() {
+         return method;
+      }
+
+      public Class<?>[] getParameterTypes() {
+         return parameterTypes;
+      }
+
+      public String[] getComponentNames() {
+         return componentNames;
+      }
+   }
+
+   /**
+    * A method annotated with {@link Start} or {@link Stop}, along with its priority.
+    */
+   public static final class PrioritizedMethodMetadata {
+      private final Method method;
+      private final int priority;
+
+      PrioritizedMethodMetadata(Method method, int priority) {
+         method.setAccessible(true);
+         this.method = method;
+         this.priority = priority;
+      }
+
+      public Method getMethod() {
+         return method;
+      }
+
+      public int getPriority() {
+         return priority;
+      }
+   }
+}
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.factories.components;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the {@link ComponentMetadataIndex} of all the concrete classes in a directory of compiled classes, and
+ * writes it into that directory as {@link ComponentMetadataIndex#RESOURCE}, so that it is packaged with the classes.
+ * Run during the build, after the classes are compiled.
+ *
+ * @since 5.0
+ */
+public class ComponentMetadataGenerator {
+
+   public static void main(String[] args) throws Exception {
+      File classesDir = new File(args.length > 0 ? args[0] : System.getProperty("user.dir"));
+      if (!classesDir.isDirectory())
+         throw new IllegalArgumentException("Not a directory of compiled classes: " + classesDir.getAbsolutePath());
+
+      List<String> classNames = new ArrayList<String>();
+      findClasses(classesDir, "", classNames);
+      Collections.sort(classNames);
+
+      // class names are sorted, so that the index is the same from one build to the next
+      Map<Class<?>, ComponentMetadata> metadata = new LinkedHashMap<Class<?>, ComponentMetadata>();
+      ClassLoader cl = ComponentMetadataGenerator.class.getClassLoader();
+      int skipped = 0;
+      for (String className : classNames) {
+         try {
+            Class<?> c = Class.forName(className, false, cl);
+            if (c.isInterface() || c.isAnnotation() || Modifier.isAbstract(c.getModifiers())) continue;
+            ComponentMetadata cm = ComponentMetadata.scan(c);
+            if (!cm.isEmpty()) metadata.put(c, cm);
+         } catch (Throwable t) {
+            // classes depending on optional libraries cannot always be loaded; they will be inspected at runtime
+            skipped++;
+         }
+      }
+
+      File index = new File(classesDir, ComponentMetadataIndex.RESOURCE);
+      index.getParentFile().mkdirs();
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index)));
+      try {
+         ComponentMetadataIndex.write(metadata, out);
+      } finally {
+         out.close();
+      }
+      System.out.println("Indexed component metadata of " + metadata.size() + " classes in " + index.getAbsolutePath() +
+            " (" + index.length() + " bytes, " + skipped + " classes could not be loaded)");
+   }
+
+   private static void findClasses(File dir, String packagePrefix, List<String> classNames) throws IOException {
+      File[] files = dir.listFiles();
+      if (files == null) throw new IOException("Unable to list " + dir.getAbsolutePath());
+      for (File f : files) {
+         String name = f.getName();
+         if (f.isDirectory()) {
+            findClasses(f, packagePrefix + name + ".", classNames);
+         } else if (name.endsWith(".class")) {
+            classNames.add(packagePrefix + name.substring(0, name.length() - ".class".length()));
+         }
+      }
+   }
+}
@@ -0,0 +1,357 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.factories.components;
+
+import org.infinispan.factories.components.ComponentMetadata.InjectMethodMetadata;
+import org.infinispan.factories.components.ComponentMetadata.PrioritizedMethodMetadata;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An index of {@link ComponentMetadata}, generated at build time by {@link ComponentMetadataGenerator} and loaded from
+ * every {@link #RESOURCE} found on the class path.
+ * <p/>
+ * The index records methods by declaring class, name and parameter types, so resolving the metadata of an indexed class
+ * only needs {@link Class#getDeclaredMethods()} on the classes declaring those methods, instead of inspecting the
+ * annotations of every method in the class hierarchy.  Parameter component names and lifecycle priorities are read
+ * straight from the index.
+ * <p/>
+ * Each entry also holds a fingerprint of the class hierarchy: the names of the classes inspected for annotated methods
+ * and their number of declared methods.  A class whose hierarchy no longer matches its fingerprint, for example because
+ * a method was added since the index was generated, is not resolved, so that its metadata is built by reflection
+ * rather than silently missing new {@code @Inject}, {@code @Start} or {@code @Stop} methods.
+ * <p/>
+ * The format is a table of all distinct strings, followed by the entries, which refer to strings by their position in
+ * the table:
+ * <pre>
+ * int version
+ * unsigned short number of strings, then each string in modified UTF-8
+ * int number of entries, then for each entry:
+ *    class name, int fingerprint, boolean survives restarts,
+ *    inject methods: count, then declaring class, name, parameter count, then parameter type and component name for
+ *                    each parameter
+ *    start methods, stop methods: count, then declaring class, name and int priority for each method
+ * </pre>
+ * Counts within an entry, and references to strings, are unsigned shorts.
+ *
+ * @since 5.0
+ */
+public final class ComponentMetadataIndex {
+   private static final Log log = LogFactory.getLog(ComponentMetadataIndex.class);
+
+   /**
+    * Name of the class path resource holding the index.
+    */
+   public static final String RESOURCE = "META-INF/infinispan-component-metadata.idx";
+
+   static final int VERSION = 2;
+
+   private static final String[] NO_PARAMETERS = new String[0];
+
+   private static volatile ComponentMetadataIndex instance;
+
+   final Map<String, IndexEntry> entries;
+
+   ComponentMetadataIndex(Map<String, IndexEntry> entries) {
+      this.entries = entries;
+   }
+
+   /**
+    * @return the index loaded from the class path, which is empty if no index could be found
+    */
+   public static ComponentMetadataIndex getInstance() {
+      ComponentMetadataIndex index = instance;
+      if (index == null) {
+         synchronized (ComponentMetadataIndex.class) {
+            index = instance;
+            if (index == null) instance = index = load(ComponentMetadataIndex.class.getClassLoader());
+         }
+      }
+      return index;
+   }
+
+   static ComponentMetadataIndex load(ClassLoader cl) {
+      Map<String, IndexEntry> entries = new HashMap<String, IndexEntry>();
+      try {
+         Enumeration<URL> resources = cl == null ? ClassLoader.getSystemResources(RESOURCE) : cl.getResources(RESOURCE);
+         while (resources.hasMoreElements()) {
+            URL url = resources.nextElement();
+            InputStream is = url.openStream();
+            try {
+               entries.putAll(read(new DataInputStream(new BufferedInputStream(is))));
+            } finally {
+               Util.close(is);
+            }
+            if (log.isTraceEnabled()) log.trace("Loaded component metadata index from %s", url);
+         }
+      } catch (IOException e) {
+         log.debug("Unable to load the component metadata index, component metadata will be built by reflection", e);
+         entries.clear();
+      }
+      return new ComponentMetadataIndex(entries);
+   }
+
+   public int size() {
+      return entries.size();
+   }
+
+   /**
+    * Resolves the indexed metadata of a class.
+    *
+    * @param type component class
+    * @return the metadata of the class, or null if it is not indexed or the index does not match the class
+    */
+   public ComponentMetadata resolve(Class<?> type) {
+      IndexEntry entry = entries.get(type.getName());
+      if (entry == null) return null;
+      if (entry.fingerprint != fingerprint(type)) {
+         log.debug("Component metadata index does not match %s, falling back to reflection: the class hierarchy changed", type);
+         return null;
+      }
+      try {
+         Map<String, Method[]> declaredMethods = new HashMap<String, Method[]>(4);
+         InjectMethodMetadata[] injectMethods = new InjectMethodMetadata[entry.injectMethods.length];
+         for (int i = 0; i < injectMethods.length; i++) {
+            MethodEntry m = entry.injectMethods[i];
+            Method method = findMethod(type, m, declaredMethods);
+            injectMethods[i] = new InjectMethodMetadata(method, method.getParameterTypes(), m.componentNames);
+         }
+         PrioritizedMethodMetadata[] startMethods = new PrioritizedMethodMetadata[entry.startMethods.length];
+         for (int i = 0; i < startMethods.length; i++) {
+            MethodEntry m = entry.startMethods[i];
+            startMethods[i] = new PrioritizedMethodMetadata(findMethod(type, m, declaredMethods), m.priority);
+         }
+         PrioritizedMethodMetadata[] stopMethods = new PrioritizedMethodMetadata[entry.stopMethods.length];
+         for (int i = 0; i < stopMethods.length; i++) {
+            MethodEntry m = entry.stopMethods[i];
+            stopMethods[i] = new PrioritizedMethodMetadata(findMethod(type, m, declaredMethods), m.priority);
+         }
+         return new ComponentMetadata(entry.survivesRestarts, injectMethods, startMethods, stopMethods);
+      } catch (NoSuchMethodException e) {
+         log.debug("Component metadata index does not match %s, falling back to reflection: %s", type, e.getMessage());
+         return null;
+      }
+   }
+
+   private static Method findMethod(Class<?> type, MethodEntry entry, Map<String, Method[]> declaredMethods) throws NoSuchMethodException {
+      Method[] methods = declaredMethods.get(entry.declaringClass);
+      if (methods == null) {
+         Class<?> declaringClass = findInHierarchy(type, entry.declaringClass);
+         if (declaringClass == null)
+            throw new NoSuchMethodException(entry.declaringClass + " is not a supertype of " + type.getName());
+         methods = declaringClass.getDeclaredMethods();
+         declaredMethods.put(entry.declaringClass, methods);
+      }
+      for (Method m : methods) {
+         if (m.getName().equals(entry.name) && parameterTypesMatch(m.getParameterTypes(), entry.parameterTypes)) return m;
+      }
+      throw new NoSuchMethodException(entry.declaringClass + "." + entry.name);
+   }
+
+   private static boolean parameterTypesMatch(Class<?>[] types, String[] names) {
+      if (types.length != names.length) return false;
+      for (int i = 0; i < types.length; i++) {
+         if (!types[i].getName().equals(names[i])) return false;
+      }
+      return true;
+   }
+
+   private static Class<?> findInHierarchy(Class<?> type, String name) {
+      if (type == null) return null;
+      if (type.getName().equals(name)) return type;
+      Class<?> found = findInHierarchy(type.getSuperclass(), name);
+      if (found != null) return found;
+      for (Class<?> ifc : type.getInterfaces()) {
+         found = findInHierarchy(ifc, name);
+         if (found != null) return found;
+      }
+      return null;
+   }
+
+   /**
+    * Fingerprints the class hierarchy of <tt>type</tt> as inspected by {@link ComponentMetadata#scan(Class)}: the class,
+    * its superclasses and the interfaces they implement directly.
+    */
+   static int fingerprint(Class<?> type) {
+      int fingerprint = 0;
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+         fingerprint = fingerprint(fingerprint, c);
+         for (Class<?> ifc : c.getInterfaces()) fingerprint = fingerprint(fingerprint, ifc);
+      }
+      return fingerprint;
+   }
+
+   private static int fingerprint(int fingerprint, Class<?> c) {
+      fingerprint = 31 * fingerprint + c.getName().hashCode();
+      return 31 * fingerprint + c.getDeclaredMethods().length;
+   }
+
+   /**
+    * Writes an index of the given metadata.
+    *
+    * @param metadata metadata to write, keyed by class
+    * @param out      where to write the index
+    */
+   static void write(Map<Class<?>, ComponentMetadata> metadata, DataOutput out) throws IOException {
+      Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+      for (Map.Entry<Class<?>, ComponentMetadata> e : metadata.entrySet()) {
+         intern(strings, e.getKey().getName());
+         for (InjectMethodMetadata m : e.getValue().getInjectMethods()) {
+            intern(strings, m.getMethod());
+            for (Class<?> p : m.getParameterTypes()) intern(strings, p.getName());
+            for (String n : m.getComponentNames()) intern(strings, n);
+         }
+         for (PrioritizedMethodMetadata m : e.getValue().getStartMethods()) intern(strings, m.getMethod());
+         for (PrioritizedMethodMetadata m : e.getValue().getStopMethods()) intern(strings, m.getMethod());
+      }
+      if (strings.size() > 0xFFFF) throw new IOException("Too many distinct names to index: " + strings.size());
+
+      out.writeInt(VERSION);
+      out.writeShort(strings.size());
+      for (String s : strings.keySet()) out.writeUTF(s);
+
+      out.writeInt(metadata.size());
+      for (Map.Entry<Class<?>, ComponentMetadata> e : metadata.entrySet()) {
+         ComponentMetadata cm = e.getValue();
+         out.writeShort(strings.get(e.getKey().getName()));
+         out.writeInt(fingerprint(e.getKey()));
+         out.writeBoolean(cm.isSurvivesRestarts());
+         out.writeShort(cm.getInjectMethods().length);
+         for (InjectMethodMetadata m : cm.getInjectMethods()) {
+            writeMethod(m.getMethod(), strings, out);
+            Class<?>[] parameterTypes = m.getParameterTypes();
+            out.writeShort(parameterTypes.length);
+            for (int i = 0; i < parameterTypes.length; i++) {
+               out.writeShort(strings.get(parameterTypes[i].getName()));
+               out.writeShort(strings.get(m.getComponentNames()[i]));
+            }
+         }
+         writePrioritizedMethods(cm.getStartMethods(), strings, out);
+         writePrioritizedMethods(cm.getStopMethods(), strings, out);
+      }
+   }
+
+   private static void intern(Map<String, Integer> strings, Method m) {
+      intern(strings, m.getDeclaringClass().getName());
+      intern(strings, m.getName());
+      for (Class<?> p : m.getParameterTypes()) intern(strings, p.getName());
+   }
+
+   private static void intern(Map<String, Integer> strings, String s) {
+      if (!strings.containsKey(s)) strings.put(s, strings.size());
+   }
+
+   private static void writeMethod(Method m, Map<String, Integer> strings, DataOutput out) throws IOException {
+      out.writeShort(strings.get(m.getDeclaringClass().getName()));
+      out.writeShort(strings.get(m.getName()));
+   }
+
+   private static void writePrioritizedMethods(PrioritizedMethodMetadata[] methods, Map<String, Integer> strings, DataOutput out) throws IOException {
+      out.writeShort(methods.length);
+      for (PrioritizedMethodMetadata m : methods) {
+         writeMethod(m.getMethod(), strings, out);
+         // lifecycle methods take no parameters
+         out.writeInt(m.getPriority());
+      }
+   }
+
+   static Map<String, IndexEntry> read(DataInput in) throws IOException {
+      int version = in.readInt();
+      if (version != VERSION) throw new IOException("Unsupported component metadata index version " + version);
+      String[] strings = new String[in.readUnsignedShort()];
+      for (int i = 0; i < strings.length; i++) strings[i] = in.readUTF();
+
+      int size = in.readInt();
+      Map<String, IndexEntry> entries = new HashMap<String, IndexEntry>(size * 4 / 3 + 1);
+      for (int e = 0; e < size; e++) {
+         String className = strings[in.readUnsignedShort()];
+         IndexEntry entry = new IndexEntry();
+         entry.fingerprint = in.readInt();
+         entry.survivesRestarts = in.readBoolean();
+         entry.injectMethods = new MethodEntry[in.readUnsignedShort()];
+         for (int i = 0; i < entry.injectMethods.length; i++) {
+            MethodEntry m = readMethod(strings, in);
+            int numParameters = in.readUnsignedShort();
+            m.parameterTypes = new String[numParameters];
+            m.componentNames = new String[numParameters];
+            for (int p = 0; p < numParameters; p++) {
+               m.parameterTypes[p] = strings[in.readUnsignedShort()];
+               m.componentNames[p] = strings[in.readUnsignedShort()];
+            }
+            entry.injectMethods[i] = m;
+         }
+         entry.startMethods = readPrioritizedMethods(strings, in);
+         entry.stopMethods = readPrioritizedMethods(strings, in);
+         entries.put(className, entry);
+      }
+      return entries;
+   }
+
+   private static MethodEntry readMethod(String[] strings, DataInput in) throws IOException {
+      MethodEntry m = new MethodEntry();
+      m.declaringClass = strings[in.readUnsignedShort()];
+      m.name = strings[in.readUnsignedShort()];
+      return m;
+   }
+
+   private static MethodEntry[] readPrioritizedMethods(String[] strings, DataInput in) throws IOException {
+      MethodEntry[] methods = new MethodEntry[in.readUnsignedShort()];
+      for (int i = 0; i < methods.length; i++) {
+         MethodEntry m = readMethod(strings, in);
+         m.parameterTypes = NO_PARAMETERS;
+         m.priority = in.readInt();
+         methods[i] = m;
+      }
+      return methods;
+   }
+
+   static final class IndexEntry {
+      int fingerprint;
+      boolean survivesRestarts;
+      MethodEntry[] injectMethods;
+      MethodEntry[] startMethods;
+      MethodEntry[] stopMethods;
+   }
+
+   static final class MethodEntry {
+      String declaringClass;
+      String name;
+      String[] parameterTypes;
+      String[] componentNames;
+      int priority;
+   }
+}
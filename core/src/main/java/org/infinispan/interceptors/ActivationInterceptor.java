@@ -22,6 +22,7 @@
  */
 package org.infinispan.interceptors;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.PutMapCommand;
@@ -93,6 +94,13 @@ public class ActivationInterceptor extends CacheLoaderInterceptor {
       return retval;
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      Object retval = super.visitGetAllCommand(ctx, command);
+      removeFromStore(command.getKeys().toArray());
+      return retval;
+   }
+
    private void removeFromStore(Object... keys) throws CacheLoaderException {
       if (!clm.isShared()) {
          for (Object k : keys) {
@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.InvalidateCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
@@ -92,6 +93,14 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
       return invokeNextInterceptor(ctx, command);
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      for (Object key : command.getKeys()) {
+         if (key != null) loadIfNeededAndUpdateStats(ctx, key);
+      }
+      return invokeNextInterceptor(ctx, command);
+   }
+
    @Override
    public Object visitInvalidateCommand(InvocationContext ctx, InvalidateCommand command) throws Throwable {
       Object[] keys;
@@ -22,18 +22,25 @@
  */
 package org.infinispan.interceptors;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.tx.CommitCommand;
+import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.write.EvictCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.PutMapCommand;
 import org.infinispan.commands.write.RemoveCommand;
 import org.infinispan.container.DataContainer;
 import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.base.JmxStatsCommandInterceptor;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.stats.Histogram;
+import org.infinispan.stats.LatencyType;
+import org.infinispan.stats.StripedHistogram;
 import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
@@ -45,7 +52,10 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Captures cache management statistics
+ * Captures cache management statistics.
+ * <p/>
+ * Besides counters and average timings, the latencies of individual operations are recorded, with nanosecond
+ * resolution, in a {@link StripedHistogram} per {@link LatencyType}, so that percentiles can be reported.
  *
  * @author Jerry Gauthier
  * @since 4.0
@@ -63,6 +73,11 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    private AtomicLong reset = new AtomicLong(start.get());
    private AtomicLong removeHits = new AtomicLong(0);
    private AtomicLong removeMisses = new AtomicLong(0);
+   private final StripedHistogram[] latencies = new StripedHistogram[LatencyType.values().length];
+
+   public CacheMgmtInterceptor() {
+      for (int i = 0; i < latencies.length; i++) latencies[i] = new StripedHistogram();
+   }
 
    private DataContainer dataContainer;
 
@@ -80,9 +95,9 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
 
    @Override
    public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
+      long t2 = System.nanoTime();
       if (retval == null) {
          missTimes.getAndAdd(t2 - t1);
          misses.incrementAndGet();
@@ -90,15 +105,37 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
          hitTimes.getAndAdd(t2 - t1);
          hits.incrementAndGet();
       }
+      if (!ctx.isOriginLocal())
+         record(LatencyType.CLUSTERED_GET, t2 - t1);
+      else
+         record(retval == null ? LatencyType.GET_MISS : LatencyType.GET_HIT, t2 - t1);
+      return retval;
+   }
+
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      long t1 = System.nanoTime();
+      Map<?, ?> retval = (Map<?, ?>) invokeNextInterceptor(ctx, command);
+      long t2 = System.nanoTime();
+      int requested = command.getKeys().size();
+      int found = retval == null ? 0 : retval.size();
+      if (requested > 0) {
+         // the time taken is split across all keys in proportion to hits and misses
+         long hitTime = (t2 - t1) * found / requested;
+         hitTimes.getAndAdd(hitTime);
+         missTimes.getAndAdd(t2 - t1 - hitTime);
+         hits.addAndGet(found);
+         misses.addAndGet(requested - found);
+      }
       return retval;
    }
 
    @Override
    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
       Map data = command.getMap();
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
+      long t2 = System.nanoTime();
 
       if (data != null && !data.isEmpty()) {
          storeTimes.getAndAdd(t2 - t1);
@@ -110,25 +147,59 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @Override
    //Map.put(key,value) :: oldValue
    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
+      long t2 = System.nanoTime();
       storeTimes.getAndAdd(t2 - t1);
       stores.incrementAndGet();
+      record(LatencyType.PUT, t2 - t1);
       return retval;
    }
 
    @Override
    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
+      long t2 = System.nanoTime();
       if (retval == null) {
          removeMisses.incrementAndGet();
       } else {
          removeHits.incrementAndGet();
       }
+      record(LatencyType.REMOVE, t2 - t1);
+      return retval;
+   }
+
+   @Override
+   public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
+      if (!command.isOnePhaseCommit()) return invokeNextInterceptor(ctx, command);
+      long t1 = System.nanoTime();
+      Object retval = invokeNextInterceptor(ctx, command);
+      record(LatencyType.COMMIT, System.nanoTime() - t1);
       return retval;
    }
 
+   @Override
+   public Object visitCommitCommand(TxInvocationContext ctx, CommitCommand command) throws Throwable {
+      long t1 = System.nanoTime();
+      Object retval = invokeNextInterceptor(ctx, command);
+      record(LatencyType.COMMIT, System.nanoTime() - t1);
+      return retval;
+   }
+
+   private void record(LatencyType type, long nanos) {
+      latencies[type.ordinal()].record(nanos);
+   }
+
+   /**
+    * @param type kind of operation
+    * @return a snapshot of the latencies, in nanoseconds, recorded for the given kind of operation since the
+    *         statistics were last reset
+    */
+   public Histogram getLatencies(LatencyType type) {
+      return latencies[type.ordinal()].snapshot();
+   }
+
    @ManagedAttribute(description = "Number of cache attribute hits")
    @Metric(displayName = "Number of cache hits", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getHits() {
@@ -188,7 +259,7 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
       long total = hits.get() + misses.get();
       if (total == 0)
          return 0;
-      return (hitTimes.get() + missTimes.get()) / total;
+      return TimeUnit.NANOSECONDS.toMillis((hitTimes.get() + missTimes.get()) / total);
    }
 
    @ManagedAttribute(description = "Average number of milliseconds for a write operation in the cache")
@@ -196,7 +267,151 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    public long getAverageWriteTime() {
       if (stores.get() == 0)
          return 0;
-      return (storeTimes.get()) / stores.get();
+      return TimeUnit.NANOSECONDS.toMillis(storeTimes.get() / stores.get());
+   }
+
+   @ManagedAttribute(description = "Median latency of get hits, in nanoseconds")
+   @Metric(displayName = "Get hit latency (median, ns)", displayType = DisplayType.SUMMARY)
+   public long getGetHitLatencyP50() {
+      return getLatencies(LatencyType.GET_HIT).getValueAtPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile latency of get hits, in nanoseconds")
+   @Metric(displayName = "Get hit latency (99th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getGetHitLatencyP99() {
+      return getLatencies(LatencyType.GET_HIT).getValueAtPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile latency of get hits, in nanoseconds")
+   @Metric(displayName = "Get hit latency (99.9th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getGetHitLatencyP999() {
+      return getLatencies(LatencyType.GET_HIT).getValueAtPercentile(99.9);
+   }
+
+   @ManagedAttribute(description = "Maximum latency of get hits, in nanoseconds")
+   @Metric(displayName = "Get hit latency (max, ns)", displayType = DisplayType.SUMMARY)
+   public long getGetHitLatencyMax() {
+      return getLatencies(LatencyType.GET_HIT).getMax();
+   }
+
+   @ManagedAttribute(description = "Median latency of get misses, in nanoseconds")
+   @Metric(displayName = "Get miss latency (median, ns)", displayType = DisplayType.SUMMARY)
+   public long getGetMissLatencyP50() {
+      return getLatencies(LatencyType.GET_MISS).getValueAtPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile latency of get misses, in nanoseconds")
+   @Metric(displayName = "Get miss latency (99th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getGetMissLatencyP99() {
+      return getLatencies(LatencyType.GET_MISS).getValueAtPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile latency of get misses, in nanoseconds")
+   @Metric(displayName = "Get miss latency (99.9th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getGetMissLatencyP999() {
+      return getLatencies(LatencyType.GET_MISS).getValueAtPercentile(99.9);
+   }
+
+   @ManagedAttribute(description = "Maximum latency of get misses, in nanoseconds")
+   @Metric(displayName = "Get miss latency (max, ns)", displayType = DisplayType.SUMMARY)
+   public long getGetMissLatencyMax() {
+      return getLatencies(LatencyType.GET_MISS).getMax();
+   }
+
+   @ManagedAttribute(description = "Median latency of puts, in nanoseconds")
+   @Metric(displayName = "Put latency (median, ns)", displayType = DisplayType.SUMMARY)
+   public long getPutLatencyP50() {
+      return getLatencies(LatencyType.PUT).getValueAtPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile latency of puts, in nanoseconds")
+   @Metric(displayName = "Put latency (99th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getPutLatencyP99() {
+      return getLatencies(LatencyType.PUT).getValueAtPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile latency of puts, in nanoseconds")
+   @Metric(displayName = "Put latency (99.9th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getPutLatencyP999() {
+      return getLatencies(LatencyType.PUT).getValueAtPercentile(99.9);
+   }
+
+   @ManagedAttribute(description = "Maximum latency of puts, in nanoseconds")
+   @Metric(displayName = "Put latency (max, ns)", displayType = DisplayType.SUMMARY)
+   public long getPutLatencyMax() {
+      return getLatencies(LatencyType.PUT).getMax();
+   }
+
+   @ManagedAttribute(description = "Median latency of removals, in nanoseconds")
+   @Metric(displayName = "Remove latency (median, ns)", displayType = DisplayType.SUMMARY)
+   public long getRemoveLatencyP50() {
+      return getLatencies(LatencyType.REMOVE).getValueAtPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile latency of removals, in nanoseconds")
+   @Metric(displayName = "Remove latency (99th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getRemoveLatencyP99() {
+      return getLatencies(LatencyType.REMOVE).getValueAtPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile latency of removals, in nanoseconds")
+   @Metric(displayName = "Remove latency (99.9th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getRemoveLatencyP999() {
+      return getLatencies(LatencyType.REMOVE).getValueAtPercentile(99.9);
+   }
+
+   @ManagedAttribute(description = "Maximum latency of removals, in nanoseconds")
+   @Metric(displayName = "Remove latency (max, ns)", displayType = DisplayType.SUMMARY)
+   public long getRemoveLatencyMax() {
+      return getLatencies(LatencyType.REMOVE).getMax();
+   }
+
+   @ManagedAttribute(description = "Median latency of gets served for other nodes, in nanoseconds")
+   @Metric(displayName = "Clustered get latency (median, ns)", displayType = DisplayType.SUMMARY)
+   public long getClusteredGetLatencyP50() {
+      return getLatencies(LatencyType.CLUSTERED_GET).getValueAtPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile latency of gets served for other nodes, in nanoseconds")
+   @Metric(displayName = "Clustered get latency (99th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getClusteredGetLatencyP99() {
+      return getLatencies(LatencyType.CLUSTERED_GET).getValueAtPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile latency of gets served for other nodes, in nanoseconds")
+   @Metric(displayName = "Clustered get latency (99.9th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getClusteredGetLatencyP999() {
+      return getLatencies(LatencyType.CLUSTERED_GET).getValueAtPercentile(99.9);
+   }
+
+   @ManagedAttribute(description = "Maximum latency of gets served for other nodes, in nanoseconds")
+   @Metric(displayName = "Clustered get latency (max, ns)", displayType = DisplayType.SUMMARY)
+   public long getClusteredGetLatencyMax() {
+      return getLatencies(LatencyType.CLUSTERED_GET).getMax();
+   }
+
+   @ManagedAttribute(description = "Median latency of transaction commits, in nanoseconds")
+   @Metric(displayName = "Commit latency (median, ns)", displayType = DisplayType.SUMMARY)
+   public long getCommitLatencyP50() {
+      return getLatencies(LatencyType.COMMIT).getValueAtPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile latency of transaction commits, in nanoseconds")
+   @Metric(displayName = "Commit latency (99th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getCommitLatencyP99() {
+      return getLatencies(LatencyType.COMMIT).getValueAtPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile latency of transaction commits, in nanoseconds")
+   @Metric(displayName = "Commit latency (99.9th percentile, ns)", displayType = DisplayType.SUMMARY)
+   public long getCommitLatencyP999() {
+      return getLatencies(LatencyType.COMMIT).getValueAtPercentile(99.9);
+   }
+
+   @ManagedAttribute(description = "Maximum latency of transaction commits, in nanoseconds")
+   @Metric(displayName = "Commit latency (max, ns)", displayType = DisplayType.SUMMARY)
+   public long getCommitLatencyMax() {
+      return getLatencies(LatencyType.COMMIT).getMax();
    }
 
    @ManagedAttribute(description = "Number of entries currently in the cache")
@@ -229,6 +444,7 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
       storeTimes.set(0);
       removeHits.set(0);
       removeMisses.set(0);
+      for (StripedHistogram h : latencies) h.reset();
       reset.set(System.currentTimeMillis());
    }
 }
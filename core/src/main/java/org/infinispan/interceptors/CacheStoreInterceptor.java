@@ -48,15 +48,20 @@ import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.loaders.CacheLoaderManager;
 import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.decorators.AbstractDelegatingStore;
+import org.infinispan.loaders.decorators.AsyncStore;
+import org.infinispan.loaders.decorators.ChainingCacheStore;
 import org.infinispan.loaders.modifications.Clear;
 import org.infinispan.loaders.modifications.Modification;
 import org.infinispan.loaders.modifications.Remove;
 import org.infinispan.loaders.modifications.Store;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Units;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -64,6 +69,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.infinispan.context.Flag.SKIP_CACHE_STORE;
@@ -84,6 +90,7 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
    final AtomicLong cacheStores = new AtomicLong(0);
    CacheStore store;
    private CacheLoaderManager loaderManager;
+   private List<AsyncStore> asyncStores;
 
    public CacheStoreInterceptor() {
       log = LogFactory.getLog(getClass());
@@ -98,6 +105,8 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
    @Start(priority = 15)
    protected void start() {
       store = loaderManager.getCacheStore();
+      asyncStores = new ArrayList<AsyncStore>();
+      collectAsyncStores(store, asyncStores);
       this.setStatisticsEnabled(configuration.isExposeJmxStatistics());
       loaderConfig = configuration.getCacheLoaderManagerConfig();
       txStores = new ConcurrentHashMap<GlobalTransaction, Integer>(64, 0.75f, configuration.getConcurrencyLevel());
@@ -349,6 +358,42 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
       return cacheStores.get();
    }
 
+   @ManagedAttribute(description = "Number of modifications waiting to be applied by asynchronous cache stores")
+   @Metric(displayName = "Async store queue size", displayType = DisplayType.SUMMARY)
+   public int getAsyncStoreQueueSize() {
+      int size = 0;
+      for (AsyncStore s : asyncStores) size += s.getQueueSize();
+      return size;
+   }
+
+   @ManagedAttribute(description = "Number of batches of modifications flushed by asynchronous cache stores")
+   @Metric(displayName = "Async store flushes", measurementType = MeasurementType.TRENDSUP)
+   public long getAsyncStoreFlushes() {
+      long flushes = 0;
+      for (AsyncStore s : asyncStores) flushes += s.getFlushCount();
+      return flushes;
+   }
+
+   @ManagedAttribute(description = "Average number of milliseconds taken by asynchronous cache stores to flush a batch of modifications")
+   @Metric(displayName = "Async store average flush time", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public long getAsyncStoreAverageFlushTime() {
+      long flushes = 0, nanos = 0;
+      for (AsyncStore s : asyncStores) {
+         flushes += s.getFlushCount();
+         nanos += s.getFlushTimeNanos();
+      }
+      return flushes == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos / flushes);
+   }
+
+   private static void collectAsyncStores(CacheStore s, List<AsyncStore> found) {
+      if (s instanceof AsyncStore) found.add((AsyncStore) s);
+      if (s instanceof AbstractDelegatingStore) {
+         collectAsyncStores(((AbstractDelegatingStore) s).getDelegate(), found);
+      } else if (s instanceof ChainingCacheStore) {
+         for (CacheStore chained : ((ChainingCacheStore) s).getStores().keySet()) collectAsyncStores(chained, found);
+      }
+   }
+
    InternalCacheEntry getStoredEntry(Object key, InvocationContext ctx) {
       CacheEntry entry = ctx.lookupEntry(key);
       if (entry instanceof InternalCacheEntry) {
@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.interceptors;
+
+import org.infinispan.commands.AbstractVisitor;
+import org.infinispan.commands.VisitableCommand;
+import org.infinispan.commands.Visitor;
+import org.infinispan.commands.write.InvalidateCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per command type dispatch tables for a compiled {@link InterceptorChain}.
+ * <p/>
+ * Most interceptors only override a few of the visitXXX methods and pass every other command on through {@link
+ * CommandInterceptor#handleDefault(InvocationContext, VisitableCommand)}.  For every type of command that is invoked,
+ * this table works out which of the interceptors actually act on it, i.e. override the visit method the command
+ * dispatches to or <tt>handleDefault()</tt>, and routes the command only through those, so interceptors that would
+ * merely pass it on are not visited at all.
+ * <p/>
+ * Routes are computed the first time a command type is seen, using the actual command to find the visit method it
+ * dispatches to.  A table is immutable with respect to the chain it was built for; the chain builds a new table
+ * whenever it is modified.
+ *
+ * @since 5.0
+ */
+public final class CommandDispatchTable {
+
+   private static final Log log = LogFactory.getLog(CommandDispatchTable.class);
+
+   private static final Class<?>[] HANDLE_DEFAULT_PARAMS = {InvocationContext.class, VisitableCommand.class};
+   private static final Class<?>[] INVALIDATE_PARAMS = {InvocationContext.class, InvalidateCommand.class};
+
+   private final CommandInterceptor[] interceptors;
+   private final Position[] positions;
+
+   /**
+    * Route per command type.  Element 0 is the first interceptor acting on the command, and element i + 1 is the
+    * first interceptor acting on it after the interceptor at position i in the chain.  Copied on write.
+    */
+   private volatile Map<Class<?>, CommandInterceptor[]> routes = Collections.emptyMap();
+
+   CommandDispatchTable(List<CommandInterceptor> chain) {
+      interceptors = chain.toArray(new CommandInterceptor[chain.size()]);
+      positions = new Position[interceptors.length];
+      for (int i = 0; i < positions.length; i++) positions[i] = new Position(i + 1);
+   }
+
+   Position getPosition(int index) {
+      return positions[index];
+   }
+
+   /**
+    * @return the first interceptor in the chain that acts on the given command
+    */
+   CommandInterceptor first(InvocationContext ctx, VisitableCommand command) {
+      return route(ctx, command)[0];
+   }
+
+   private CommandInterceptor[] route(InvocationContext ctx, VisitableCommand command) {
+      CommandInterceptor[] route = routes.get(command.getClass());
+      if (route == null) route = compile(ctx, command);
+      return route;
+   }
+
+   private CommandInterceptor[] compile(InvocationContext ctx, VisitableCommand command) {
+      Method visitMethod = findVisitMethod(ctx, command);
+      CommandInterceptor[] route = new CommandInterceptor[interceptors.length + 1];
+      CommandInterceptor nextActing = null;
+      for (int i = interceptors.length - 1; i >= 0; i--) {
+         route[i + 1] = nextActing;
+         if (visitMethod == null || actsOn(interceptors[i].getClass(), visitMethod)) nextActing = interceptors[i];
+      }
+      route[0] = nextActing;
+      if (log.isTraceEnabled())
+         log.trace("Compiled route for %s: %s", command.getClass().getSimpleName(), Arrays.asList(route));
+
+      // several threads may compile the same route concurrently; they all compute the same thing.
+      Map<Class<?>, CommandInterceptor[]> copy = new HashMap<Class<?>, CommandInterceptor[]>(routes);
+      copy.put(command.getClass(), route);
+      routes = copy;
+      return route;
+   }
+
+   /**
+    * Finds the {@link Visitor} method a command dispatches to, by letting it visit a probe.
+    *
+    * @return the visit method, or null if it could not be determined, in which case the command is routed through
+    *         every interceptor
+    */
+   private static Method findVisitMethod(InvocationContext ctx, VisitableCommand command) {
+      final Method[] visited = new Method[1];
+      Visitor probe = (Visitor) Proxy.newProxyInstance(Visitor.class.getClassLoader(), new Class<?>[]{Visitor.class},
+            new InvocationHandler() {
+               public Object invoke(Object proxy, Method method, Object[] args) {
+                  if (visited[0] == null) visited[0] = method;
+                  return null;
+               }
+            });
+      try {
+         command.acceptVisitor(ctx, probe);
+      } catch (Throwable t) {
+         log.debug("Unable to determine the visit method of %s, it will be routed through all interceptors", command.getClass());
+         return null;
+      }
+      return visited[0];
+   }
+
+   private static boolean actsOn(Class<?> interceptorClass, Method visitMethod) {
+      if (isOverridden(interceptorClass, "handleDefault", HANDLE_DEFAULT_PARAMS, CommandInterceptor.class))
+         return true;
+      if (isOverridden(interceptorClass, visitMethod.getName(), visitMethod.getParameterTypes(), AbstractVisitor.class))
+         return true;
+      // AbstractVisitor dispatches L1 invalidations to visitInvalidateCommand()
+      return visitMethod.getName().equals("visitInvalidateL1Command")
+            && isOverridden(interceptorClass, "visitInvalidateCommand", INVALIDATE_PARAMS, AbstractVisitor.class);
+   }
+
+   /**
+    * @return true if the method is declared by the given class or any of its superclasses below the base class
+    */
+   private static boolean isOverridden(Class<?> clazz, String name, Class<?>[] params, Class<?> base) {
+      for (Class<?> c = clazz; c != null && c != base; c = c.getSuperclass()) {
+         try {
+            c.getDeclaredMethod(name, params);
+            return true;
+         } catch (NoSuchMethodException e) {
+            // keep looking
+         }
+      }
+      return false;
+   }
+
+   /**
+    * The position of an interceptor in the chain this table was built for.
+    */
+   public final class Position {
+      private final int routeIndex;
+
+      Position(int routeIndex) {
+         this.routeIndex = routeIndex;
+      }
+
+      /**
+       * @return the next interceptor in the chain that acts on the given command, or null if there is none
+       */
+      public CommandInterceptor next(InvocationContext ctx, VisitableCommand command) {
+         return route(ctx, command)[routeIndex];
+      }
+   }
+}
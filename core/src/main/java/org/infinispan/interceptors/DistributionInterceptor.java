@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -57,6 +58,7 @@ import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -132,6 +134,78 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
       return returnValue;
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      boolean isRehashInProgress = !dm.isJoinComplete() || dm.isRehashInProgress();
+      Map<Object, Object> returnValue = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+      if (returnValue == null) return null;
+
+      if (isL1CacheEnabled && !ctx.isOriginLocal()) {
+         for (Object key : returnValue.keySet()) l1Manager.addRequestor(key, ctx.getOrigin());
+      }
+
+      if (!ctx.isOriginLocal() || ctx.hasFlag(Flag.SKIP_REMOTE_LOOKUP)) return returnValue;
+
+      // collect all keys that need a remote lookup, so that each owner is contacted only once
+      List<Object> toStoreInL1 = new LinkedList<Object>();
+      List<Object> toFetch = new LinkedList<Object>();
+      for (Object key : command.getKeys()) {
+         if (!needsRemoteGet(ctx, key, !returnValue.containsKey(key))) continue;
+         boolean isMappedToLocalNode = dm.getLocality(key).isLocal();
+         if (!isMappedToLocalNode && isNotInL1(key)) {
+            toStoreInL1.add(key);
+            toFetch.add(key);
+         } else if (isMappedToLocalNode && isRehashInProgress) {
+            if (trace)
+               log.trace("Key %s is mapped to local node %s, but a rehash is in progress so may need to look elsewhere", key, rpcManager.getAddress());
+            toFetch.add(key);
+         }
+      }
+      if (toFetch.isEmpty()) return returnValue;
+
+      if (trace) log.trace("Doing a remote get for keys %s", toFetch);
+      Map<Object, InternalCacheEntry> entries = dm.retrieveFromRemoteSources(toFetch, ctx);
+      if (entries.isEmpty()) return returnValue;
+
+      // entries retrieved from other owners are stored in L1 (or the context) in a single pass
+      Map<Long, Map<Object, Object>> l1EntriesPerLifespan = null;
+      for (Object key : toStoreInL1) {
+         InternalCacheEntry ice = entries.get(key);
+         if (ice == null) continue;
+         if (isL1CacheEnabled) {
+            if (l1EntriesPerLifespan == null) l1EntriesPerLifespan = new HashMap<Long, Map<Object, Object>>();
+            long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
+            Map<Object, Object> l1Entries = l1EntriesPerLifespan.get(lifespan);
+            if (l1Entries == null) {
+               l1Entries = new HashMap<Object, Object>();
+               l1EntriesPerLifespan.put(lifespan, l1Entries);
+            }
+            l1Entries.put(ice.getKey(), ice.getValue());
+            entryFactory.wrapEntryForWriting(ctx, key, true, false, ctx.hasLockedKey(key), false, false);
+         } else {
+            CacheEntry ce = ctx.lookupEntry(key);
+            if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
+               if (ce != null && ce.isChanged())
+                  ce.setValue(ice.getValue());
+               else
+                  ctx.putLookedUpEntry(key, ice);
+            }
+         }
+      }
+      if (l1EntriesPerLifespan != null) {
+         for (Map.Entry<Long, Map<Object, Object>> e : l1EntriesPerLifespan.entrySet()) {
+            if (trace) log.trace("Caching %s remotely retrieved entries in L1", e.getValue().size());
+            PutMapCommand put = cf.buildPutMapCommand(e.getValue(), e.getKey(), -1, ctx.getFlags());
+            invokeNextInterceptor(ctx, put);
+         }
+      }
+
+      for (Map.Entry<Object, InternalCacheEntry> e : entries.entrySet())
+         returnValue.put(e.getKey(), command.isReturnCacheEntries() ? e.getValue() : e.getValue().getValue());
+      return returnValue;
+   }
+
    private boolean needsRemoteGet(InvocationContext ctx, Object key, boolean retvalCheck) {
       CacheEntry entry;
       return retvalCheck && !ctx.hasFlag(Flag.SKIP_REMOTE_LOOKUP) && ((entry = ctx.lookupEntry(key)) == null || entry.isNull() || entry.isLockPlaceholder());
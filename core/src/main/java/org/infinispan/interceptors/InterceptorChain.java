@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Knows how to build and manage an chain of interceptors. Also in charge with invoking methods on the chain.
@@ -55,6 +56,18 @@ public class InterceptorChain {
     */
    private volatile CommandInterceptor firstInChain;
 
+   /**
+    * incremented every time the chain is modified
+    */
+   private final AtomicInteger modificationCount = new AtomicInteger();
+
+   private volatile boolean compiled;
+
+   /**
+    * dispatch tables of the chain if it is compiled, null otherwise
+    */
+   private volatile CommandDispatchTable dispatchTable;
+
    /**
     * Constructs an interceptor chain having the supplied interceptor as first.
     */
@@ -95,6 +108,7 @@ public class InterceptorChain {
       if (position == 0) {
          interceptor.setNext(firstInChain);
          firstInChain = interceptor;
+         chainModified();
          return;
       }
       if (firstInChain == null) return;
@@ -104,6 +118,7 @@ public class InterceptorChain {
          if (++index == position) {
             interceptor.setNext(it.getNext());
             it.setNext(interceptor);
+            chainModified();
             return;
          }
          it = it.getNext();
@@ -121,6 +136,7 @@ public class InterceptorChain {
       if (firstInChain == null) return;
       if (position == 0) {
          firstInChain = firstInChain.getNext();
+         chainModified();
          return;
       }
       CommandInterceptor it = firstInChain;
@@ -129,6 +145,7 @@ public class InterceptorChain {
          if (++index == position) {
             if (it.getNext() == null) return; //nothing to remove
             it.setNext(it.getNext().getNext());
+            chainModified();
             return;
          }
          it = it.getNext();
@@ -184,6 +201,7 @@ public class InterceptorChain {
          prevIt = it;
          it = it.getNext();
       }
+      chainModified();
    }
 
    /**
@@ -197,6 +215,7 @@ public class InterceptorChain {
          if (it.getClass().equals(afterInterceptor)) {
             toAdd.setNext(it.getNext());
             it.setNext(toAdd);
+            chainModified();
             return true;
          }
          it = it.getNext();
@@ -213,6 +232,7 @@ public class InterceptorChain {
       if (firstInChain.getClass().equals(beforeInterceptor)) {
          toAdd.setNext(firstInChain);
          firstInChain = toAdd;
+         chainModified();
          return true;
       }
       CommandInterceptor it = firstInChain;
@@ -220,6 +240,7 @@ public class InterceptorChain {
          if (it.getNext().getClass().equals(beforeInterceptor)) {
             toAdd.setNext(it.getNext());
             it.setNext(toAdd);
+            chainModified();
             return true;
          }
          it = it.getNext();
@@ -238,6 +259,7 @@ public class InterceptorChain {
       if (firstInChain.getClass().equals(toBeReplacedInterceptorType)) {
          replacingInterceptor.setNext(firstInChain.getNext());
          firstInChain = replacingInterceptor;
+         chainModified();
          return true;
       }
       CommandInterceptor it = firstInChain;
@@ -247,6 +269,7 @@ public class InterceptorChain {
          if (current.getClass().equals(toBeReplacedInterceptorType)) {
             replacingInterceptor.setNext(current.getNext());
             previous.setNext(replacingInterceptor);
+            chainModified();
             return true;
          }
          previous = current;
@@ -264,6 +287,7 @@ public class InterceptorChain {
       it.setNext(ci);
       // make sure we nullify the "next" pointer in the last interceptors.
       ci.setNext(null);
+      chainModified();
    }
 
    /**
@@ -271,7 +295,8 @@ public class InterceptorChain {
     */
    public Object invoke(InvocationContext ctx, VisitableCommand command) {
       try {
-         return command.acceptVisitor(ctx, firstInChain);
+         CommandDispatchTable table = dispatchTable;
+         return command.acceptVisitor(ctx, table == null ? firstInChain : table.first(ctx, command));
       } catch (CacheException e) {
          if (e.getCause() instanceof InterruptedException)
             Thread.currentThread().interrupt();
@@ -298,6 +323,56 @@ public class InterceptorChain {
     */
    public void setFirstInChain(CommandInterceptor interceptor) {
       this.firstInChain = interceptor;
+      chainModified();
+   }
+
+   /**
+    * Returns a counter that changes every time interceptors are added to, removed from or replaced in the chain.
+    * Allows callers that derive state from the shape of the chain to detect when it needs to be recomputed, without
+    * walking the chain on every invocation.
+    *
+    * @return the current modification count of the chain
+    */
+   public int getModificationCount() {
+      return modificationCount.get();
+   }
+
+   /**
+    * Switches the chain between walking every interceptor for every command, and routing each type of command only
+    * through the interceptors that override the visit method it dispatches to (or <tt>handleDefault()</tt>), skipping
+    * interceptors that would merely pass it on.  See {@link CommandDispatchTable}.
+    * <p/>
+    * A compiled chain must only be modified through the methods of this class, since the dispatch tables are rebuilt
+    * when it is modified.
+    *
+    * @param compiled true to compile the chain, false to go back to visiting every interceptor
+    */
+   public synchronized void setCompiled(boolean compiled) {
+      if (this.compiled == compiled) return;
+      this.compiled = compiled;
+      chainModified();
+   }
+
+   /**
+    * @return true if the chain routes commands using per command type dispatch tables, false otherwise
+    */
+   public boolean isCompiled() {
+      return compiled;
+   }
+
+   private synchronized void chainModified() {
+      modificationCount.incrementAndGet();
+      if (!compiled) {
+         dispatchTable = null;
+         for (CommandInterceptor interceptor : asList()) interceptor.setDispatchPosition(null);
+      } else {
+         List<CommandInterceptor> interceptors = asList();
+         CommandDispatchTable table = new CommandDispatchTable(interceptors);
+         int i = 0;
+         for (CommandInterceptor interceptor : interceptors) interceptor.setDispatchPosition(table.getPosition(i++));
+         dispatchTable = table;
+         if (log.isDebugEnabled()) log.debug("Compiled interceptor chain: " + this);
+      }
    }
 
    /**
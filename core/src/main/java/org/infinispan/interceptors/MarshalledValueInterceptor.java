@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.ValuesCommand;
@@ -37,7 +38,9 @@ import org.infinispan.container.entries.InternalEntryFactory;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
 import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.marshall.CompactionPolicy;
 import org.infinispan.marshall.MarshalledValue;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.Immutables;
@@ -49,6 +52,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -70,12 +74,18 @@ import static org.infinispan.marshall.MarshalledValue.isTypeExcluded;
  */
 public class MarshalledValueInterceptor extends CommandInterceptor {
    private StreamingMarshaller marshaller;
+   private CompactionPolicy compactionPolicy = CompactionPolicy.KEEP_INSTANCE;
 
    @Inject
    protected void injectMarshaller(StreamingMarshaller marshaller) {
       this.marshaller = marshaller;
    }
 
+   @Start
+   protected void startInterceptor() {
+      compactionPolicy = configuration.getStoreAsBinaryCompactionPolicy();
+   }
+
    @Override
    public Object visitLockControlCommand(TxInvocationContext ctx, LockControlCommand command) throws Throwable {
       if (command.multipleKeys()) {
@@ -171,6 +181,32 @@ public class MarshalledValueInterceptor extends CommandInterceptor {
       return processRetVal(retVal, ctx);
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      List<Object> keys = new ArrayList<Object>(command.getKeys().size());
+      for (Object key : command.getKeys()) {
+         if (!isTypeExcluded(key.getClass())) {
+            MarshalledValue mv = createMarshalledValue(key, ctx);
+            compact(mv);
+            keys.add(mv);
+         } else {
+            keys.add(key);
+         }
+      }
+      command.setKeys(keys);
+      Map<Object, Object> retVal = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+      if (retVal == null || !ctx.isOriginLocal()) return retVal;
+      Map<Object, Object> copy = new HashMap<Object, Object>(retVal.size() * 4 / 3 + 1);
+      for (Map.Entry<Object, Object> entry : retVal.entrySet()) {
+         Object key = entry.getKey();
+         if (key instanceof MarshalledValue) {
+            key = ((MarshalledValue) key).get();
+         }
+         copy.put(key, processRetVal(entry.getValue(), ctx));
+      }
+      return copy;
+   }
+
    @Override
    public Object visitKeySetCommand(InvocationContext ctx, KeySetCommand command) throws Throwable {
       Set keys = (Set) invokeNextInterceptor(ctx, command);
@@ -271,7 +307,7 @@ public class MarshalledValueInterceptor extends CommandInterceptor {
 
    private void compact(MarshalledValue mv) {
       if (mv == null) return;
-      mv.compact(false, false);
+      compactionPolicy.compact(mv);
    }
 
    private Object processRetVal(Object retVal, InvocationContext ctx) throws IOException, ClassNotFoundException {
@@ -33,6 +33,7 @@ import org.infinispan.context.InvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.interceptors.CommandDispatchTable;
 import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.remoting.InboundInvocationHandler;
 import org.infinispan.util.logging.Log;
@@ -66,6 +67,11 @@ import org.infinispan.util.logging.LogFactory;
 public abstract class CommandInterceptor extends AbstractVisitor {
    private CommandInterceptor next;
 
+   /**
+    * position of this interceptor in the dispatch tables of a compiled chain, or null if the chain is not compiled
+    */
+   private volatile CommandDispatchTable.Position dispatchPosition;
+
    protected Log log;
    protected boolean trace;
 
@@ -116,7 +122,19 @@ public abstract class CommandInterceptor extends AbstractVisitor {
     * @throws Throwable in the event of problems
     */
    public final Object invokeNextInterceptor(InvocationContext ctx, VisitableCommand command) throws Throwable {
-      return command.acceptVisitor(ctx, next);
+      CommandDispatchTable.Position position = dispatchPosition;
+      return command.acceptVisitor(ctx, position == null ? next : position.next(ctx, command));
+   }
+
+   /**
+    * Sets the position of this interceptor in the dispatch tables of a compiled {@link InterceptorChain}, which
+    * {@link #invokeNextInterceptor(InvocationContext, VisitableCommand)} then uses to skip interceptors that do not act
+    * on the command.  Maintained by the chain.
+    *
+    * @param dispatchPosition position in the chain's dispatch tables, or null if the chain is not compiled
+    */
+   public final void setDispatchPosition(CommandDispatchTable.Position dispatchPosition) {
+      this.dispatchPosition = dispatchPosition;
    }
 
    /**
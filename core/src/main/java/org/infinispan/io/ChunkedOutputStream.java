@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.io;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An output stream that collects what is written to it in a list of chunks rather than in a single array, so that
+ * running out of space never means copying everything written so far into a larger array, as {@link
+ * ExposedByteArrayOutputStream} does. Chunks grow with the amount of data written, up to {@link #MAX_CHUNK_SIZE}.
+ * <p/>
+ * {@link #toByteBuffer()} hands out the first chunk as is when everything fitted in it and it is not mostly empty,
+ * and otherwise trims it or gathers the chunks into a single, exactly sized array. Either way, every byte written is copied at most twice, however far the
+ * initial size was off.
+ *
+ * @since 5.0
+ */
+@NotThreadSafe
+public class ChunkedOutputStream extends OutputStream {
+
+   /**
+    * Size beyond which chunks stop growing.
+    */
+   public static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024; // 4MB
+
+   /**
+    * Unused space at the end of a lone initial chunk that {@link #toByteBuffer()} tolerates rather than trims off, as
+    * long as the chunk is at least half full.
+    */
+   private static final int MAX_UNTRIMMED_WASTE = 1024;
+
+   private List<byte[]> fullChunks;
+   private byte[] chunk;
+   private int count;
+   private int size;
+
+   public ChunkedOutputStream(int initialSize) {
+      if (initialSize < 0) throw new IllegalArgumentException("Negative initial size: " + initialSize);
+      chunk = new byte[initialSize];
+   }
+
+   @Override
+   public void write(int b) {
+      if (count == chunk.length) nextChunk(1);
+      chunk[count++] = (byte) b;
+      size++;
+   }
+
+   @Override
+   public void write(byte[] b, int off, int len) {
+      if (off < 0 || len < 0 || off > b.length - len) throw new IndexOutOfBoundsException();
+      while (len > 0) {
+         if (count == chunk.length) nextChunk(len);
+         int n = Math.min(len, chunk.length - count);
+         System.arraycopy(b, off, chunk, count, n);
+         count += n;
+         size += n;
+         off += n;
+         len -= n;
+      }
+   }
+
+   /**
+    * @return number of bytes written so far
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Returns the bytes written so far. The buffer returned is not copied by subsequent writes, and so must not be
+    * modified by the caller if the stream is written to afterwards.
+    */
+   public ByteBuffer toByteBuffer() {
+      if (fullChunks == null && chunk.length - count > Math.max(count, MAX_UNTRIMMED_WASTE)) {
+         // an initial size far off the mark would otherwise be handed on, and held on to, with the output
+         byte[] trimmed = new byte[count];
+         System.arraycopy(chunk, 0, trimmed, 0, count);
+         chunk = trimmed;
+      } else if (fullChunks != null) {
+         byte[] all = new byte[size];
+         int pos = 0;
+         for (byte[] c : fullChunks) {
+            System.arraycopy(c, 0, all, pos, c.length);
+            pos += c.length;
+         }
+         System.arraycopy(chunk, 0, all, pos, count);
+         fullChunks = null;
+         chunk = all;
+         count = size;
+      }
+      return new ByteBuffer(chunk, 0, count);
+   }
+
+   private void nextChunk(int minSize) {
+      if (fullChunks == null) fullChunks = new ArrayList<byte[]>(4);
+      if (chunk.length > 0) fullChunks.add(chunk);
+      // grow with the data written, so that the number of chunks stays logarithmic in the size of the output
+      int grown = Math.min(Math.max(size, 128), MAX_CHUNK_SIZE);
+      chunk = new byte[Math.max(Math.min(minSize, MAX_CHUNK_SIZE), grown)];
+      count = 0;
+   }
+}
@@ -22,7 +22,6 @@
  */
 package org.infinispan.loaders.decorators;
 
-import net.jcip.annotations.GuardedBy;
 import org.infinispan.Cache;
 import org.infinispan.CacheException;
 import org.infinispan.container.entries.InternalCacheEntry;
@@ -36,28 +35,28 @@ import org.infinispan.loaders.modifications.Remove;
 import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.transaction.xa.GlobalTransaction;
-import org.infinispan.util.concurrent.locks.containers.ReentrantPerEntryLockContainer;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * The AsyncStore is a delegating CacheStore that extends AbstractDelegatingStore, overriding methods to that should not
@@ -74,7 +73,15 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * to define whether cache loader operations are to be asynchronous.  If not specified, a cache loader operation is
  * assumed synchronous and this decorator is not applied.
  * <p/>
- * Write operations affecting same key are now coalesced so that only the final state is actually stored.
+ * Callers append modifications to a lock-free queue, which is drained by a single coordinator thread.  The coordinator
+ * coalesces write operations affecting the same key, so that only the final state is actually stored, and hands each
+ * coalesced batch to the decorated store as a single one-phase {@link CacheStore#prepare(java.util.List,
+ * org.infinispan.transaction.xa.GlobalTransaction, boolean)}, allowing stores to apply the batch in one transaction.
+ * Large batches are split by key across the configured thread pool.  Since batches are applied one after the other,
+ * and keys within a batch are distinct, no per-key locking is needed.
+ * <p/>
+ * The queue is bounded by {@link AsyncStoreConfig#getModificationQueueSize()}: when it is full, callers block until the
+ * coordinator has flushed enough modifications, i.e. the store temporarily behaves synchronously.
  * <p/>
  *
  * @author Manik Surtani
@@ -86,32 +93,39 @@ public class AsyncStore extends AbstractDelegatingStore {
    private static final Log log = LogFactory.getLog(AsyncStore.class);
    private static final boolean trace = log.isTraceEnabled();
    private static final AtomicInteger threadId = new AtomicInteger(0);
-   private final AtomicBoolean stopped = new AtomicBoolean(true);
-   
-   private final AsyncStoreConfig asyncStoreConfig;
-   private Map<GlobalTransaction, List<? extends Modification>> transactions;
-   
+   private static final int MAX_RETRIES = 3;
+
+   /**
+    * A flush is only split across the thread pool if every worker gets at least this many keys.
+    */
+   private static final int MIN_KEYS_PER_WORKER = 128;
+
    /**
     * This is used as marker to shutdown the AsyncStoreCoordinator
     */
    private static final Modification QUIT_SIGNAL = new Clear();
-   
+
+   private final AtomicBoolean stopped = new AtomicBoolean(true);
+   private final AsyncStoreConfig asyncStoreConfig;
+   private Map<GlobalTransaction, List<? extends Modification>> transactions;
+
+   private final Queue<Modification> changesQueue = new ConcurrentLinkedQueue<Modification>();
+   private final AtomicInteger queuedModifications = new AtomicInteger(0);
    /**
-    * clear() is performed in sync by the one thread of storeCoordinator, while blocking all
-    * other threads interacting with the decorated store.
+    * Number of callers between their check that the store is running and their modification being queued; the
+    * coordinator only exits after a stop once there are none left.
     */
-   private final ReadWriteLock clearAllLock = new ReentrantReadWriteLock();
-   private final Lock clearAllReadLock = clearAllLock.readLock();
-   private final Lock clearAllWriteLock = clearAllLock.writeLock();
-   private final Lock stateMapLock = new ReentrantLock();
-   
+   private final AtomicInteger activeEnqueuers = new AtomicInteger(0);
+   private volatile Semaphore queueCapacity;
+   private volatile int modificationQueueSize;
+   private volatile Thread coordinator;
+
    ExecutorService executor;
    private int concurrencyLevel;
-   @GuardedBy("stateMapLock")
-   protected ConcurrentMap<Object, Modification> state;
-   private ReleaseAllLockContainer lockContainer;
-   private final LinkedBlockingQueue<Modification> changesDeque = new LinkedBlockingQueue<Modification>();
-   public volatile boolean lastAsyncProcessorShutsDownExecutor = false;
+
+   private final AtomicLong flushes = new AtomicLong(0);
+   private final AtomicLong flushedModifications = new AtomicLong(0);
+   private final AtomicLong flushTimeNanos = new AtomicLong(0);
 
    public AsyncStore(CacheStore delegate, AsyncStoreConfig asyncStoreConfig) {
       super(delegate);
@@ -122,27 +136,23 @@ public class AsyncStore extends AbstractDelegatingStore {
    public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
       super.init(config, cache, m);
       concurrencyLevel = cache == null || cache.getConfiguration() == null ? 16 : cache.getConfiguration().getConcurrencyLevel();
-      lockContainer = new ReleaseAllLockContainer(concurrencyLevel);
       transactions = new ConcurrentHashMap<GlobalTransaction, List<? extends Modification>>(64, 0.75f, concurrencyLevel);
    }
 
    @Override
    public void store(InternalCacheEntry ed) {
-      enqueue(new Store(ed));
+      enqueue(new Store(ed), 1);
    }
 
    @Override
    public boolean remove(Object key) {
-      enqueue(new Remove(key));
+      enqueue(new Remove(key), 1);
       return true;
    }
 
    @Override
    public void clear() {
-      Clear clear = new Clear();
-      checkNotStopped(); //check we can change the changesDeque
-      changesDeque.clear();
-      enqueue(clear);
+      enqueue(new Clear(), 1);
    }
 
    @Override
@@ -167,48 +177,52 @@ public class AsyncStore extends AbstractDelegatingStore {
    
    protected void enqueueModificationsList(List<? extends Modification> mods) throws CacheLoaderException {
       if (mods != null && !mods.isEmpty()) {
-         enqueue(new ModificationsList(mods));
+         enqueue(new ModificationsList(mods), mods.size());
       }
    }
 
    @Override
    public void start() throws CacheLoaderException {
-      state = newStateMap();
       log.info("Async cache loader starting %s", this);
+      modificationQueueSize = asyncStoreConfig.getModificationQueueSize();
+      queueCapacity = new Semaphore(modificationQueueSize);
+      queuedModifications.set(0);
       stopped.set(false);
-      lastAsyncProcessorShutsDownExecutor = false;
       super.start();
       int poolSize = asyncStoreConfig.getThreadPoolSize();
       executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
-               // note the use of poolSize+1 as maximum workingQueue together with DiscardPolicy:
-               // this way when a new AsyncProcessor is started unnecessarily we discard it
-               // before it takes locks to perform no work
-               // this way we save memory from the executor queue, CPU, and also avoid
-               // any possible RejectedExecutionException.
-               new LinkedBlockingQueue<Runnable>(poolSize + 1),
+               new LinkedBlockingQueue<Runnable>(),
                new ThreadFactory() {
                   public Thread newThread(Runnable r) {
                      Thread t = new Thread(r, "CoalescedAsyncStore-" + threadId.getAndIncrement());
                      t.setDaemon(true);
                      return t;
                   }
-               },
-               new ThreadPoolExecutor.DiscardPolicy()
+               }
          );
-      startStoreCoordinator();
-   }
-
-   private void startStoreCoordinator() {
-      ExecutorService storeCoordinator = Executors.newFixedThreadPool(1);
-      storeCoordinator.execute( new AsyncStoreCoordinator() );
-      storeCoordinator.shutdown();
+      Thread t = new Thread(new AsyncStoreCoordinator(), "AsyncStoreCoordinator-" + threadId.getAndIncrement());
+      t.setDaemon(true);
+      coordinator = t;
+      t.start();
    }
 
    @Override
    public void stop() throws CacheLoaderException {
-      stopped.set(true);
+      if (stopped.getAndSet(true)) {
+         // never started or already stopped; releasing the waiters' permits again would overflow the semaphore
+         return;
+      }
       try {
-         changesDeque.put(QUIT_SIGNAL);
+         changesQueue.add(QUIT_SIGNAL);
+         // callers blocked on a full queue must not wait for a coordinator that is about to exit; their modifications
+         // are still drained after the quit signal
+         queueCapacity.release(Integer.MAX_VALUE / 2);
+         LockSupport.unpark(coordinator);
+         long timeout = TimeUnit.SECONDS.toMillis(asyncStoreConfig.getShutdownTimeout());
+         coordinator.join(timeout);
+         if (coordinator.isAlive())
+            log.error("Timed out waiting for AsyncStore to push all state to the decorated store; %s modifications are pending", queuedModifications.get());
+         executor.shutdown();
          executor.awaitTermination(asyncStoreConfig.getShutdownTimeout(), TimeUnit.SECONDS);
       } catch (InterruptedException e) {
          log.error("Interrupted or timeout while waiting for AsyncStore worker threads to push all state to the decorated store", e);
@@ -217,21 +231,13 @@ public class AsyncStore extends AbstractDelegatingStore {
       super.stop();
    }
 
+   /**
+    * Applies a batch of coalesced modifications, each key being present at most once, to the decorated store.  By
+    * default the batch is passed to the decorated store as a single one-phase prepare.
+    */
    protected void applyModificationsSync(ConcurrentMap<Object, Modification> mods) throws CacheLoaderException {
-      Set<Map.Entry<Object, Modification>> entries = mods.entrySet();
-      for (Map.Entry<Object, Modification> entry : entries) {
-         Modification mod = entry.getValue();
-         switch (mod.getType()) {
-            case STORE:
-               super.store(((Store) mod).getStoredEntry());
-               break;
-            case REMOVE:
-               super.remove(entry.getKey());
-               break;
-            default:
-               throw new IllegalArgumentException("Unexpected modification type " + mod.getType());
-         }
-      }
+      List<Modification> list = new ArrayList<Modification>(mods.values());
+      super.prepare(list, null, true);
    }
    
    protected boolean applyClear() {
@@ -252,264 +258,251 @@ public class AsyncStore extends AbstractDelegatingStore {
       }
    }
 
-   private void enqueue(Modification mod) {
-      try {
-         checkNotStopped();
-         if (trace) log.trace("Enqueuing modification %s", mod);
-         changesDeque.add(mod);
-      } catch (Exception e) {
-         throw new CacheException("Unable to enqueue asynchronous task", e);
-      }
+   /**
+    * @return the number of modifications waiting to be flushed to the decorated store
+    */
+   public int getQueueSize() {
+      return queuedModifications.get();
    }
 
-   private void checkNotStopped() {
-      if (stopped.get()) {
-         throw new CacheException("AsyncStore stopped; no longer accepting more entries.");
-      }
+   /**
+    * @return the number of batches flushed to the decorated store
+    */
+   public long getFlushCount() {
+      return flushes.get();
    }
 
-   private void acquireLock(Lock lock) {
-      try {
-         if (!lock.tryLock(asyncStoreConfig.getFlushLockTimeout(), TimeUnit.MILLISECONDS))
-            throw new CacheException("Unable to acquire lock on update map");
-      } catch (InterruptedException ie) {
-         // restore interrupted status
-         Thread.currentThread().interrupt();
-      }
+   /**
+    * @return the number of coalesced modifications flushed to the decorated store
+    */
+   public long getFlushedModificationCount() {
+      return flushedModifications.get();
    }
 
    /**
-    * Processes modifications taking the latest updates from a state map.
+    * @return the total time, in nanoseconds, spent flushing batches to the decorated store
     */
-   class AsyncProcessor implements Runnable {
-      private final Set<Object> lockedKeys = new HashSet<Object>();
-      boolean runAgainAfterWaiting = false;
+   public long getFlushTimeNanos() {
+      return flushTimeNanos.get();
+   }
 
-      public void run() {
-         clearAllReadLock.lock();
-         try {
-            innerRun();
-         } catch (Throwable t) {
-            runAgainAfterWaiting = false;
-            log.error("Unexpected error", t);
-         } finally {
-            clearAllReadLock.unlock();
-         }
-         if (runAgainAfterWaiting) {
+   /**
+    * @return the average time, in milliseconds, taken to flush a batch to the decorated store
+    */
+   public long getAverageFlushTime() {
+      long count = flushes.get();
+      return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(flushTimeNanos.get() / count);
+   }
+
+   private void enqueue(Modification mod, int count) {
+      activeEnqueuers.incrementAndGet();
+      try {
+         checkNotStopped();
+         int permits = permitsFor(count);
+         if (!queueCapacity.tryAcquire(permits)) {
+            if (trace) log.trace("Modification queue is full, waiting for modifications to be flushed");
             try {
-               Thread.sleep(10);
+               queueCapacity.acquire(permits);
             } catch (InterruptedException e) {
-               // just speedup ignoring more sleep but still make sure to store all data
+               Thread.currentThread().interrupt();
+               throw new CacheException("Interrupted while waiting to enqueue asynchronous task", e);
             }
-            ensureMoreWorkIsHandled();
          }
+         if (trace) log.trace("Enqueuing modification %s", mod);
+         queuedModifications.addAndGet(count);
+         changesQueue.add(mod);
+      } finally {
+         activeEnqueuers.decrementAndGet();
       }
-      
-      private void innerRun() {
-         final ConcurrentMap<Object, Modification> swap;
-         if (trace) log.trace("Checking for modifications");
-         try {
-            acquireLock(stateMapLock);
-            try {
-               swap = state;
-               state = newStateMap();
-
-               // This needs to be done within the stateMapLock section, because if a key is in use,
-               // we need to put it back in the state
-               // map for later processing and we don't wanna do it in such way that we override a
-               // newer value that might
-               // have been taken already for processing by another instance of this same code.
-               // AsyncStoreCoordinator doesn't need to acquired the same lock as values put by it
-               // will never be overwritten (putIfAbsent below)
-               for (Object key : swap.keySet()) {
-                  if (trace) log.trace("Going to process mod key: %s", key);
-                  boolean acquired = false;
-                  try {
-                     acquired = lockContainer.acquireLock(key, 0, TimeUnit.NANOSECONDS) != null;
-                  } catch (InterruptedException e) {
-                     log.error("interrupted on acquireLock %s, 0 nanoseconds!", e);
-                     Thread.currentThread().interrupt();
-                     return;
-                  }
-                  if (trace)
-                     log.trace("Lock for key %s was acquired=%s", key, acquired);
-                  if (!acquired) {
-                     Modification prev = swap.remove(key);
-                     Modification didPut = state.putIfAbsent(key, prev); // don't overwrite more recently put work
-                     if (didPut == null) {
-                        // otherwise a new job is being spawned by the arbiter, so no need to create
-                        // a new worker
-                        runAgainAfterWaiting = true;
-                     }
-                  } else {
-                     lockedKeys.add(key);
-                  }
-               }
-            } finally {
-               stateMapLock.unlock();
-            }
-
-            if (swap.isEmpty()) {
-               if (lastAsyncProcessorShutsDownExecutor && runAgainAfterWaiting == false) {
-                  executor.shutdown();
-               }
-               return;
-            } else {
-               if (trace)
-                  log.trace("Apply %s modifications", swap.size());
-               int maxRetries = 3;
-               int attemptNumber = 0;
-               boolean successful;
-               do {
-                  if (attemptNumber > 0 && log.isDebugEnabled())
-                     log.debug("Retrying due to previous failure. %s attempts left.", maxRetries - attemptNumber);
-                  successful = put(swap);
-                  attemptNumber++;
-               } while (!successful && attemptNumber <= maxRetries);
-
-               if (!successful)
-                  log.warn("Unable to process some async modifications after " + maxRetries + " retries!");
+      LockSupport.unpark(coordinator);
+   }
 
-            }
-         } finally {
-            lockContainer.releaseLocks(lockedKeys);
-            lockedKeys.clear();
-         }
-      }
+   private int permitsFor(int count) {
+      // a list larger than the whole queue must still be accepted, as it is never split
+      return Math.min(count, modificationQueueSize);
+   }
 
-      boolean put(ConcurrentMap<Object, Modification> mods) {
-         try {
-            AsyncStore.this.applyModificationsSync(mods);
-            return true;
-         } catch (Exception e) {
-            if (log.isDebugEnabled()) log.debug("Failed to process async modifications", e);
-            return false;
-         }
+   private void checkNotStopped() {
+      if (stopped.get()) {
+         throw new CacheException("AsyncStore stopped; no longer accepting more entries.");
       }
    }
 
    private ConcurrentMap<Object, Modification> newStateMap() {
       return new ConcurrentHashMap<Object, Modification>(64, 0.75f, concurrencyLevel);
    }
-   
-   private static class ReleaseAllLockContainer extends ReentrantPerEntryLockContainer {
-      private ReleaseAllLockContainer(int concurrencyLevel) {
-         super(concurrencyLevel);
-      }
-
-      void releaseLocks(Set<Object> keys) {
-         for (Object key : keys) {
-            if (trace) log.trace("Release lock for key %s", key);
-            releaseLock(key);
-         }
-      }
-   }
 
-   private void ensureMoreWorkIsHandled() {
-           executor.execute(new AsyncProcessor());
-   }
-   
+   /**
+    * Drains the modification queue, coalescing modifications per key, and flushes them to the decorated store.
+    */
    private class AsyncStoreCoordinator implements Runnable {
+      private ConcurrentMap<Object, Modification> batch = newStateMap();
 
       @Override
       public void run() {
+         boolean quit = false;
          while (true) {
             try {
-               Modification take = changesDeque.take();
-               if (take == QUIT_SIGNAL) {
-                  lastAsyncProcessorShutsDownExecutor = true;
-                  ensureMoreWorkIsHandled();
-                  return;
-               }
-               else {
-                  handleSafely(take);
+               if (quit) {
+                  // callers that got past the stopped check before stop() may still be adding modifications, so only
+                  // exit once none are left and everything they added has been flushed
+                  drainAndFlush();
+                  if (activeEnqueuers.get() == 0 && changesQueue.isEmpty()) return;
+                  LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+               } else {
+                  quit = drainAndFlush();
+                  if (!quit && changesQueue.isEmpty()) LockSupport.park(this);
                }
-            } catch (InterruptedException e) {
-               log.error("AsyncStoreCoordinator interrupted", e);
-               return;
             } catch (Throwable t) {
-               log.error("Unexpected error in AsyncStoreCoordinator thread. AsyncStore is dead!", t);
+               log.error("Unexpected error in AsyncStoreCoordinator thread", t);
             }
          }
       }
 
-      private void handleSafely(Modification mod) {
-         try {
+      /**
+       * @return true if the quit signal was received
+       */
+      private boolean drainAndFlush() {
+         int drained = 0;
+         Modification mod;
+         while (drained < modificationQueueSize && (mod = changesQueue.poll()) != null) {
+            if (mod == QUIT_SIGNAL) {
+               flush();
+               return true;
+            }
             if (trace) log.trace("taking from modification queue: %s", mod);
-            handle(mod, false);
-         } catch (Exception e) {
-            log.error("Error while handling Modification in AsyncStore", e);
+            int count = 1;
+            if (mod.getType() == Modification.Type.LIST) {
+               List<? extends Modification> list = ((ModificationsList) mod).getList();
+               count = list.size();
+               for (Modification m : list) coalesce(m);
+            } else {
+               coalesce(mod);
+            }
+            drained += count;
+            queuedModifications.addAndGet(-count);
+            queueCapacity.release(permitsFor(count));
          }
+         flush();
+         return false;
       }
 
-      private void handle(Modification mod, boolean nested) {
-         boolean asyncProcessorNeeded = false;
+      private void coalesce(Modification mod) {
          switch (mod.getType()) {
             case STORE:
-               Store store = (Store) mod;
-               stateMapLock.lock();
-               state.put(store.getStoredEntry().getKey(), store);
-               stateMapLock.unlock();
-               asyncProcessorNeeded = true;
+               batch.put(((Store) mod).getStoredEntry().getKey(), mod);
                break;
             case REMOVE:
-               Remove remove = (Remove) mod;
-               stateMapLock.lock();
-               state.put(remove.getKey(), remove);
-               stateMapLock.unlock();
-               asyncProcessorNeeded = true;
+               batch.put(((Remove) mod).getKey(), mod);
                break;
             case CLEAR:
+               // cancel any other scheduled changes
+               batch.clear();
                performClear();
                break;
             case PURGE_EXPIRED:
+               flush();
                delegatePurgeExpired();
                break;
-            case LIST:
-               applyModificationsList((ModificationsList) mod);
-               asyncProcessorNeeded = true;
-               break;
             default:
                throw new IllegalArgumentException("Unexpected modification type " + mod.getType());
          }
-         if (asyncProcessorNeeded && !nested) {
-            // we know when it's possible for some work to be done, starting short-lived
-            // AsyncProcessor(s) simplifies shutdown process.
-             ensureMoreWorkIsHandled();
+      }
+
+      private void flush() {
+         if (batch.isEmpty()) return;
+         ConcurrentMap<Object, Modification> mods = batch;
+         batch = newStateMap();
+         if (trace) log.trace("Apply %s modifications", mods.size());
+         long start = System.nanoTime();
+         int workers = Math.min(asyncStoreConfig.getThreadPoolSize(), mods.size() / MIN_KEYS_PER_WORKER);
+         if (workers <= 1) {
+            applyWithRetries(mods);
+         } else {
+            List<ConcurrentMap<Object, Modification>> partitions = partition(mods, workers);
+            List<Future<?>> futures = new ArrayList<Future<?>>(workers - 1);
+            for (final ConcurrentMap<Object, Modification> partition : partitions.subList(1, partitions.size())) {
+               futures.add(executor.submit(new Runnable() {
+                  public void run() {
+                     applyWithRetries(partition);
+                  }
+               }));
+            }
+            applyWithRetries(partitions.get(0));
+            // the next batch may contain the same keys, so wait for all workers before carrying on
+            for (Future<?> future : futures) awaitUninterruptibly(future);
          }
+         flushes.incrementAndGet();
+         flushedModifications.addAndGet(mods.size());
+         flushTimeNanos.addAndGet(System.nanoTime() - start);
       }
 
-      private void applyModificationsList(ModificationsList mod) {
-         for (Modification m : mod.getList()) {
-            handle(m, true);
+      private List<ConcurrentMap<Object, Modification>> partition(ConcurrentMap<Object, Modification> mods, int workers) {
+         List<ConcurrentMap<Object, Modification>> partitions = new ArrayList<ConcurrentMap<Object, Modification>>(workers);
+         for (int i = 0; i < workers; i++) partitions.add(newStateMap());
+         for (Map.Entry<Object, Modification> e : mods.entrySet()) {
+            int index = (e.getKey().hashCode() & Integer.MAX_VALUE) % workers;
+            partitions.get(index).put(e.getKey(), e.getValue());
          }
+         return partitions;
       }
 
-      private void performClear() {
-         state.clear(); // cancel any other scheduled changes
-         clearAllWriteLock.lock(); // ensure no other tasks concurrently working
+      private void awaitUninterruptibly(Future<?> future) {
+         boolean interrupted = false;
          try {
-            // to acquire clearAllWriteLock we might have had to wait for N AsyncProcessor to have finished
-            // (as they have to release all clearAllReadLock),
-            // so as they might have put back some work to the state map, clear the state map again inside the writeLock:
-            state.clear();
-            if (trace) log.trace("Performed clear operation");
-            int maxRetries = 3;
-            int attemptNumber = 0;
-            boolean successful = false;
-            do {
-               if (attemptNumber > 0 && log.isDebugEnabled())
-                  log.debug("Retrying clear() due to previous failure. %s attempts left.", maxRetries - attemptNumber);
-               successful = applyClear();
-               attemptNumber++;
-            } while (!successful && attemptNumber <= maxRetries);
-            if (!successful) {
-               log.error("Clear() operation in async store could not be performed");
+            while (true) {
+               try {
+                  future.get();
+                  return;
+               } catch (InterruptedException e) {
+                  interrupted = true;
+               } catch (ExecutionException e) {
+                  log.error("Unexpected error applying async modifications", e.getCause());
+                  return;
+               }
             }
          } finally {
-            clearAllWriteLock.unlock();
+            if (interrupted) Thread.currentThread().interrupt();
+         }
+      }
+
+      private void applyWithRetries(ConcurrentMap<Object, Modification> mods) {
+         int attemptNumber = 0;
+         boolean successful;
+         do {
+            if (attemptNumber > 0 && log.isDebugEnabled())
+               log.debug("Retrying due to previous failure. %s attempts left.", MAX_RETRIES - attemptNumber);
+            successful = put(mods);
+            attemptNumber++;
+         } while (!successful && attemptNumber <= MAX_RETRIES);
+
+         if (!successful)
+            log.warn("Unable to process some async modifications after " + MAX_RETRIES + " retries!");
+      }
+
+      private boolean put(ConcurrentMap<Object, Modification> mods) {
+         try {
+            AsyncStore.this.applyModificationsSync(mods);
+            return true;
+         } catch (Exception e) {
+            if (log.isDebugEnabled()) log.debug("Failed to process async modifications", e);
+            return false;
          }
       }
 
+      private void performClear() {
+         if (trace) log.trace("Performing clear operation");
+         int attemptNumber = 0;
+         boolean successful;
+         do {
+            if (attemptNumber > 0 && log.isDebugEnabled())
+               log.debug("Retrying clear() due to previous failure. %s attempts left.", MAX_RETRIES - attemptNumber);
+            successful = applyClear();
+            attemptNumber++;
+         } while (!successful && attemptNumber <= MAX_RETRIES);
+         if (!successful) {
+            log.error("Clear() operation in async store could not be performed");
+         }
+      }
    }
 }
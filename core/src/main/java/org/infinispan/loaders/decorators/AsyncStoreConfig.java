@@ -66,6 +66,9 @@ public class AsyncStoreConfig extends AbstractDecoratorConfigurationBean {
    @ConfigurationDocRef(bean=AsyncStoreConfig.class,targetElement="setShutdownTimeout")
    protected Long shutdownTimeout = 7200L;
 
+   @ConfigurationDocRef(bean=AsyncStoreConfig.class,targetElement="setModificationQueueSize")
+   protected Integer modificationQueueSize = 1024;
+
    @XmlAttribute
    public Boolean isEnabled() {
       return enabled;
@@ -118,7 +121,7 @@ public class AsyncStoreConfig extends AbstractDecoratorConfigurationBean {
 
    /**
     * Timeout to acquire the lock which guards the state to be flushed to the cache store
-    * periodically.
+    * periodically. Modifications are now queued without locking, so this setting is ignored.
     * 
     * @param stateLockTimeout
     * @deprecated The visibility of this method will be reduced. Use {@link #flushLockTimeout(Long)} instead.
@@ -132,7 +135,7 @@ public class AsyncStoreConfig extends AbstractDecoratorConfigurationBean {
    
    /**
     * Timeout to acquire the lock which guards the state to be flushed to the cache store
-    * periodically.
+    * periodically. Modifications are now queued without locking, so this setting is ignored.
     * 
     * @param stateLockTimeout
     */
@@ -174,6 +177,38 @@ public class AsyncStoreConfig extends AbstractDecoratorConfigurationBean {
       return this;
    }
 
+   @XmlAttribute
+   public Integer getModificationQueueSize() {
+      return modificationQueueSize;
+   }
+
+   /**
+    * Maximum number of modifications waiting to be applied to the cache store. If modifications
+    * are made faster than the cache store can apply them, callers block until the queue can
+    * accept more modifications, i.e. the store behaves synchronously until the queue drains.
+    * 
+    * @param modificationQueueSize
+    * @deprecated The visibility of this method will be reduced. Use {@link #modificationQueueSize(Integer)} instead.
+    */
+   @Deprecated
+   public void setModificationQueueSize(Integer modificationQueueSize) {
+      testImmutability("modificationQueueSize");
+      this.modificationQueueSize = modificationQueueSize;
+   }
+
+   /**
+    * Maximum number of modifications waiting to be applied to the cache store. If modifications
+    * are made faster than the cache store can apply them, callers block until the queue can
+    * accept more modifications, i.e. the store behaves synchronously until the queue drains.
+    * 
+    * @param modificationQueueSize
+    */
+   public AsyncStoreConfig modificationQueueSize(Integer modificationQueueSize) {
+      testImmutability("modificationQueueSize");
+      this.modificationQueueSize = modificationQueueSize;
+      return this;
+   }
+
    @Override
    public AsyncStoreConfig clone() {
       return (AsyncStoreConfig) super.clone();
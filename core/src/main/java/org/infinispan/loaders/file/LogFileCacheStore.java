@@ -0,0 +1,697 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.file;
+
+import org.infinispan.Cache;
+import org.infinispan.config.ConfigurationException;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.loaders.AbstractCacheStore;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.loaders.file.LogFileCacheStoreConfig.FsyncMode;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * A log-structured filesystem based {@link org.infinispan.loaders.CacheStore}.
+ * <p/>
+ * Unlike the {@link FileCacheStore}, which rewrites a whole bucket file on every modification, this store only ever
+ * appends records to the end of the active log file.  An in-memory index maps every key to the file and offset of its
+ * most recent record, so a {@link #load(Object)} is a single positional read, and {@link #containsKey(Object)} and
+ * {@link #purgeExpired()} do not touch the disk at all.
+ * <p/>
+ * Each record is laid out as follows:
+ * <pre>
+ *    [body length: int][type: byte][expiry time: long][key length: int][key][value][CRC32 of body: int]
+ * </pre>
+ * where the value is a marshalled {@link InternalCacheValue} for stores and is absent for removals (tombstones).
+ * <p/>
+ * Once the active file reaches the configured maximum size it is closed and a new one is started.  Closed files whose
+ * proportion of superseded records exceeds the compaction threshold are compacted in the background: their live
+ * records are appended to the active file and the file is deleted.
+ * <p/>
+ * On startup the index is rebuilt by replaying all log files in order.  A partially written record at the end of a
+ * file, e.g. as a result of a crash, fails its checksum and the file is truncated at the last valid record.
+ *
+ * @see LogFileCacheStoreConfig
+ * @since 5.0
+ */
+@CacheLoaderMetadata(configurationClass = LogFileCacheStoreConfig.class)
+public class LogFileCacheStore extends AbstractCacheStore {
+
+   private static final Log log = LogFactory.getLog(LogFileCacheStore.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   static final String FILE_SUFFIX = ".log";
+
+   private static final byte PUT = 1;
+   private static final byte REMOVE = 2;
+   private static final int LENGTH_SIZE = 4;
+   private static final int CRC_SIZE = 4;
+   // type + expiry time + key length
+   private static final int BODY_HEADER_SIZE = 1 + 8 + 4;
+
+   private LogFileCacheStoreConfig config;
+   private File root;
+   private FsyncMode fsyncMode;
+   private long maxFileSize;
+   private double compactionThreshold;
+
+   private ConcurrentMap<Object, IndexEntry> index;
+   private final ConcurrentSkipListMap<Integer, LogFile> files = new ConcurrentSkipListMap<Integer, LogFile>();
+   private final ReentrantLock writeLock = new ReentrantLock();
+   private volatile LogFile activeFile;
+   private ScheduledExecutorService maintenanceService;
+
+   @Override
+   public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
+      super.init(config, cache, m);
+      this.config = (LogFileCacheStoreConfig) config;
+   }
+
+   public Class<? extends CacheLoaderConfig> getConfigurationClass() {
+      return LogFileCacheStoreConfig.class;
+   }
+
+   public File getRoot() {
+      return root;
+   }
+
+   @Override
+   public void start() throws CacheLoaderException {
+      super.start();
+      String location = config.getLocation();
+      if (location == null || location.trim().length() == 0)
+         location = "Infinispan-LogFileCacheStore"; // use relative path!
+      location += File.separator + cache.getName();
+      root = new File(location);
+      if (!root.exists()) {
+         if (!root.mkdirs()) {
+            log.warn("Problems creating the directory: " + root);
+         }
+      }
+      if (!root.exists()) {
+         throw new ConfigurationException("Directory " + root.getAbsolutePath() + " does not exist and cannot be created!");
+      }
+
+      fsyncMode = config.fsyncModeValue();
+      maxFileSize = config.getMaxFileSize();
+      compactionThreshold = config.getCompactionThreshold();
+      index = new ConcurrentHashMap<Object, IndexEntry>(64, 0.75f, getConcurrencyLevel());
+
+      try {
+         rebuildIndex();
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to rebuild index from log files in " + root, e);
+      }
+
+      boolean periodicSync = fsyncMode == FsyncMode.PERIODIC && config.getFsyncInterval() > 0;
+      boolean compaction = config.getCompactionInterval() > 0;
+      if (periodicSync || compaction) {
+         final String threadName = cache.getName() + '-' + getClass().getSimpleName() + "-Maintenance";
+         maintenanceService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+               Thread t = new Thread(r, threadName);
+               t.setDaemon(true);
+               return t;
+            }
+         });
+         if (periodicSync) {
+            maintenanceService.scheduleWithFixedDelay(new Runnable() {
+               @Override
+               public void run() {
+                  sync();
+               }
+            }, config.getFsyncInterval(), config.getFsyncInterval(), TimeUnit.MILLISECONDS);
+         }
+         if (compaction) {
+            maintenanceService.scheduleWithFixedDelay(new Runnable() {
+               @Override
+               public void run() {
+                  compact();
+               }
+            }, config.getCompactionInterval(), config.getCompactionInterval(), TimeUnit.MILLISECONDS);
+         }
+      }
+   }
+
+   @Override
+   public void stop() throws CacheLoaderException {
+      super.stop();
+      if (maintenanceService != null) maintenanceService.shutdownNow();
+      writeLock.lock();
+      try {
+         LogFile active = activeFile;
+         if (active != null && fsyncMode != FsyncMode.NEVER) active.force();
+         for (LogFile f : files.values()) f.close();
+         files.clear();
+         activeFile = null;
+      } finally {
+         writeLock.unlock();
+      }
+   }
+
+   public InternalCacheEntry load(Object key) throws CacheLoaderException {
+      while (true) {
+         IndexEntry ie = index.get(key);
+         if (ie == null || ie.isExpired(System.currentTimeMillis())) return null;
+         try {
+            byte[] record = ie.file.read(ie.offset, ie.size);
+            checkRecord(record, ie.file, ie.offset);
+            int keyLength = readInt(record, LENGTH_SIZE + 1 + 8);
+            int valueOffset = LENGTH_SIZE + BODY_HEADER_SIZE + keyLength;
+            InternalCacheValue icv = (InternalCacheValue) marshaller.objectFromByteBuffer(record, valueOffset, record.length - CRC_SIZE - valueOffset);
+            return icv.toInternalCacheEntry(key);
+         } catch (ClosedChannelException e) {
+            // The record was relocated by compaction, in which case the index points elsewhere by now
+            if (index.get(key) == ie) throw new CacheLoaderException("Log file " + ie.file + " has been closed", e);
+         } catch (IOException e) {
+            throw new CacheLoaderException("Problems reading entry for key " + key, e);
+         } catch (ClassNotFoundException e) {
+            throw new CacheLoaderException("Unable to unmarshall entry for key " + key, e);
+         }
+      }
+   }
+
+   @Override
+   public boolean containsKey(Object key) throws CacheLoaderException {
+      IndexEntry ie = index.get(key);
+      return ie != null && !ie.isExpired(System.currentTimeMillis());
+   }
+
+   public Set<InternalCacheEntry> loadAll() throws CacheLoaderException {
+      return load(Integer.MAX_VALUE);
+   }
+
+   public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
+      if (numEntries < 0) return loadAll();
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      for (Object key : index.keySet()) {
+         if (result.size() >= numEntries) break;
+         InternalCacheEntry ice = load(key);
+         if (ice != null) result.add(ice);
+      }
+      return result;
+   }
+
+   public Set<Object> loadAllKeys(Set<Object> keysToExclude) throws CacheLoaderException {
+      long now = System.currentTimeMillis();
+      Set<Object> result = new HashSet<Object>();
+      for (Map.Entry<Object, IndexEntry> e : index.entrySet()) {
+         Object key = e.getKey();
+         if (!e.getValue().isExpired(now) && (keysToExclude == null || !keysToExclude.contains(key)))
+            result.add(key);
+      }
+      return result;
+   }
+
+   public void store(InternalCacheEntry entry) throws CacheLoaderException {
+      Object key = entry.getKey();
+      long expiryTime = entry.canExpire() ? entry.getExpiryTime() : -1;
+      ByteBuffer record = encode(PUT, expiryTime, marshall(key), marshall(entry.toInternalCacheValue()));
+      LogFile written;
+      writeLock.lock();
+      try {
+         IndexEntry ie = append(record, expiryTime);
+         retire(index.put(key, ie));
+         written = ie.file;
+      } catch (IOException e) {
+         throw new CacheLoaderException("Problems storing entry with key " + key, e);
+      } finally {
+         writeLock.unlock();
+      }
+      if (fsyncMode == FsyncMode.PER_WRITE) written.force();
+   }
+
+   public boolean remove(Object key) throws CacheLoaderException {
+      IndexEntry existing = index.get(key);
+      return existing != null && remove(key, existing, false);
+   }
+
+   public void clear() throws CacheLoaderException {
+      writeLock.lock();
+      try {
+         int nextId = activeFile == null ? 0 : activeFile.id + 1;
+         for (LogFile f : files.values()) {
+            f.close();
+            if (!f.file.delete()) log.warn("Had problems removing file %s", f.file);
+         }
+         files.clear();
+         index.clear();
+         activeFile = createLogFile(nextId);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Problems clearing log files in " + root, e);
+      } finally {
+         writeLock.unlock();
+      }
+   }
+
+   @Override
+   protected void purgeInternal() throws CacheLoaderException {
+      if (trace) log.trace("purgeInternal()");
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Object, IndexEntry> e : index.entrySet()) {
+         IndexEntry ie = e.getValue();
+         if (ie.isExpired(now)) remove(e.getKey(), ie, true);
+      }
+   }
+
+   public void toStream(ObjectOutput outputStream) throws CacheLoaderException {
+      try {
+         Set<InternalCacheEntry> entries = loadAll();
+         marshaller.objectToObjectStream(entries.size(), outputStream);
+         for (InternalCacheEntry ice : entries) marshaller.objectToObjectStream(ice, outputStream);
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O exception while generating stream", e);
+      }
+   }
+
+   public void fromStream(ObjectInput inputStream) throws CacheLoaderException {
+      try {
+         int numEntries = (Integer) marshaller.objectFromObjectStream(inputStream);
+         for (int i = 0; i < numEntries; i++) {
+            store((InternalCacheEntry) marshaller.objectFromObjectStream(inputStream));
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O error", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unexpected exception", e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheLoaderException("Interrupted while reading stream", e);
+      }
+   }
+
+   /**
+    * Forces the active log file to disk.
+    */
+   void sync() {
+      LogFile active = activeFile;
+      if (active != null) {
+         try {
+            active.force();
+         } catch (CacheLoaderException e) {
+            log.warn("Problems syncing log file " + active, e);
+         }
+      }
+   }
+
+   /**
+    * Compacts every closed log file whose proportion of superseded records is at least the configured compaction
+    * threshold.  Only ever invoked from the single maintenance thread, or directly in tests.
+    */
+   void compact() {
+      for (LogFile f : files.values()) {
+         if (f == activeFile) continue;
+         long size = f.size;
+         if (size == 0 || (double) f.garbage.get() / size >= compactionThreshold) {
+            try {
+               compact(f);
+            } catch (Exception e) {
+               log.warn("Problems compacting log file " + f, e);
+            }
+         }
+      }
+   }
+
+   int getLogFileCount() {
+      return files.size();
+   }
+
+   private void compact(final LogFile f) throws IOException, CacheLoaderException {
+      if (trace) log.trace("Compacting %s (%s bytes, %s garbage)", f, f.size, f.garbage.get());
+      scan(f, new RecordHandler() {
+         @Override
+         public void handle(long offset, byte[] record, byte type, long expiryTime, Object key) throws IOException {
+            writeLock.lock();
+            try {
+               if (type == PUT) {
+                  IndexEntry ie = index.get(key);
+                  if (ie != null && ie.file == f && ie.offset == offset)
+                     index.put(key, append(ByteBuffer.wrap(record), ie.expiryTime));
+               } else if (!index.containsKey(key) && !files.isEmpty() && files.firstKey() < f.id) {
+                  // older files may still hold a store for this key, so the tombstone has to be kept around
+                  IndexEntry tombstone = append(ByteBuffer.wrap(record), -1);
+                  tombstone.file.garbage.addAndGet(tombstone.size);
+               }
+            } finally {
+               writeLock.unlock();
+            }
+         }
+      });
+
+      writeLock.lock();
+      try {
+         // relocated records have to be durable before the original is deleted
+         if (activeFile != null) activeFile.force();
+         files.remove(f.id, f);
+      } finally {
+         writeLock.unlock();
+      }
+      f.close();
+      if (!f.file.delete()) log.warn("Had problems removing file %s", f.file);
+   }
+
+   private boolean remove(Object key, IndexEntry expected, boolean onlyIfExpected) throws CacheLoaderException {
+      ByteBuffer record = encode(REMOVE, -1, marshall(key), null);
+      LogFile written;
+      writeLock.lock();
+      try {
+         IndexEntry old;
+         if (onlyIfExpected) {
+            old = index.remove(key, expected) ? expected : null;
+         } else {
+            old = index.remove(key);
+         }
+         if (old == null) return false;
+         retire(old);
+         IndexEntry tombstone = append(record, -1);
+         tombstone.file.garbage.addAndGet(tombstone.size);
+         written = tombstone.file;
+      } catch (IOException e) {
+         throw new CacheLoaderException("Problems removing entry with key " + key, e);
+      } finally {
+         writeLock.unlock();
+      }
+      if (fsyncMode == FsyncMode.PER_WRITE) written.force();
+      return true;
+   }
+
+   /**
+    * Appends a record to the active log file, rolling over to a new file if needed.  Must be called with the write
+    * lock held.
+    */
+   private IndexEntry append(ByteBuffer record, long expiryTime) throws IOException {
+      LogFile file = activeFile;
+      if (file == null) throw new IllegalStateException("Store " + root + " is not started");
+      int size = record.remaining();
+      if (file.size > 0 && file.size + size > maxFileSize) file = roll(file);
+      long offset = file.size;
+      while (record.hasRemaining()) {
+         file.channel.write(record, offset + size - record.remaining());
+      }
+      file.size = offset + size;
+      return new IndexEntry(file, offset, size, expiryTime);
+   }
+
+   private LogFile roll(LogFile current) throws IOException {
+      if (fsyncMode != FsyncMode.NEVER) current.channel.force(false);
+      LogFile next = createLogFile(current.id + 1);
+      activeFile = next;
+      if (trace) log.trace("Rolled over from %s to %s", current, next);
+      return next;
+   }
+
+   private LogFile createLogFile(int id) throws IOException {
+      LogFile f = new LogFile(id, new File(root, fileName(id)));
+      files.put(id, f);
+      return f;
+   }
+
+   private void retire(IndexEntry old) {
+      if (old != null) old.file.garbage.addAndGet(old.size);
+   }
+
+   private void rebuildIndex() throws IOException, CacheLoaderException {
+      File[] logs = root.listFiles(new FilenameFilter() {
+         @Override
+         public boolean accept(File dir, String name) {
+            return name.endsWith(FILE_SUFFIX) && fileId(name) >= 0;
+         }
+      });
+      if (logs == null) logs = new File[0];
+      int[] ids = new int[logs.length];
+      for (int i = 0; i < logs.length; i++) ids[i] = fileId(logs[i].getName());
+      Arrays.sort(ids);
+
+      final long now = System.currentTimeMillis();
+      for (int id : ids) {
+         final LogFile f = createLogFile(id);
+         long valid = scan(f, new RecordHandler() {
+            @Override
+            public void handle(long offset, byte[] record, byte type, long expiryTime, Object key) {
+               if (type == PUT) {
+                  IndexEntry ie = new IndexEntry(f, offset, record.length, expiryTime);
+                  if (ie.isExpired(now)) {
+                     retire(ie);
+                     retire(index.remove(key));
+                  } else {
+                     retire(index.put(key, ie));
+                  }
+               } else {
+                  f.garbage.addAndGet(record.length);
+                  retire(index.remove(key));
+               }
+            }
+         });
+         long length = f.channel.size();
+         if (valid < length) {
+            log.warn("Log file %s is corrupt or was not completely written, truncating it from %s to %s bytes", f.file, length, valid);
+            f.channel.truncate(valid);
+         }
+         f.size = valid;
+      }
+      activeFile = files.isEmpty() ? createLogFile(0) : files.lastEntry().getValue();
+      if (log.isDebugEnabled()) log.debug("Rebuilt index of %s entries from %s log files in %s", index.size(), files.size(), root);
+   }
+
+   /**
+    * Reads all the records of a log file in order, passing them to the given handler.
+    *
+    * @return the offset just after the last complete and valid record of the file
+    */
+   private long scan(LogFile f, RecordHandler handler) throws IOException, CacheLoaderException {
+      long offset = 0;
+      long length = f.file.length();
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f.file)));
+      try {
+         while (offset + LENGTH_SIZE + BODY_HEADER_SIZE + CRC_SIZE <= length) {
+            int bodyLength = in.readInt();
+            if (bodyLength < BODY_HEADER_SIZE || offset + LENGTH_SIZE + bodyLength + CRC_SIZE > length) break;
+            byte[] record = new byte[LENGTH_SIZE + bodyLength + CRC_SIZE];
+            writeInt(record, 0, bodyLength);
+            in.readFully(record, LENGTH_SIZE, bodyLength + CRC_SIZE);
+            if (!isValid(record)) break;
+            byte type = record[LENGTH_SIZE];
+            long expiryTime = readLong(record, LENGTH_SIZE + 1);
+            int keyLength = readInt(record, LENGTH_SIZE + 1 + 8);
+            if (keyLength < 0 || BODY_HEADER_SIZE + keyLength > bodyLength) break;
+            Object key = unmarshall(record, LENGTH_SIZE + BODY_HEADER_SIZE, keyLength);
+            handler.handle(offset, record, type, expiryTime, key);
+            offset += record.length;
+         }
+      } catch (EOFException e) {
+         // torn record at the end of the file
+      } finally {
+         Util.close(in);
+      }
+      return offset;
+   }
+
+   private static ByteBuffer encode(byte type, long expiryTime, byte[] key, byte[] value) {
+      int valueLength = value == null ? 0 : value.length;
+      int bodyLength = BODY_HEADER_SIZE + key.length + valueLength;
+      ByteBuffer buf = ByteBuffer.allocate(LENGTH_SIZE + bodyLength + CRC_SIZE);
+      buf.putInt(bodyLength).put(type).putLong(expiryTime).putInt(key.length).put(key);
+      if (value != null) buf.put(value);
+      CRC32 crc = new CRC32();
+      crc.update(buf.array(), LENGTH_SIZE, bodyLength);
+      buf.putInt((int) crc.getValue());
+      buf.flip();
+      return buf;
+   }
+
+   private static boolean isValid(byte[] record) {
+      int bodyLength = record.length - LENGTH_SIZE - CRC_SIZE;
+      CRC32 crc = new CRC32();
+      crc.update(record, LENGTH_SIZE, bodyLength);
+      return (int) crc.getValue() == readInt(record, LENGTH_SIZE + bodyLength);
+   }
+
+   private static void checkRecord(byte[] record, LogFile f, long offset) throws CacheLoaderException {
+      if (!isValid(record))
+         throw new CacheLoaderException("Checksum mismatch for record at offset " + offset + " of " + f.file);
+   }
+
+   private static int readInt(byte[] b, int pos) {
+      return ((b[pos] & 0xFF) << 24) | ((b[pos + 1] & 0xFF) << 16) | ((b[pos + 2] & 0xFF) << 8) | (b[pos + 3] & 0xFF);
+   }
+
+   private static long readLong(byte[] b, int pos) {
+      return ((long) readInt(b, pos) << 32) | (readInt(b, pos + 4) & 0xFFFFFFFFL);
+   }
+
+   private static void writeInt(byte[] b, int pos, int v) {
+      b[pos] = (byte) (v >>> 24);
+      b[pos + 1] = (byte) (v >>> 16);
+      b[pos + 2] = (byte) (v >>> 8);
+      b[pos + 3] = (byte) v;
+   }
+
+   private byte[] marshall(Object o) throws CacheLoaderException {
+      try {
+         return marshaller.objectToByteBuffer(o);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to marshall " + o, e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheLoaderException("Interrupted while marshalling " + o, e);
+      }
+   }
+
+   private Object unmarshall(byte[] b, int offset, int length) throws CacheLoaderException {
+      try {
+         return marshaller.objectFromByteBuffer(b, offset, length);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to unmarshall key", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unable to unmarshall key", e);
+      }
+   }
+
+   static String fileName(int id) {
+      String s = Integer.toString(id);
+      StringBuilder sb = new StringBuilder(8 + FILE_SUFFIX.length());
+      for (int i = s.length(); i < 8; i++) sb.append('0');
+      return sb.append(s).append(FILE_SUFFIX).toString();
+   }
+
+   static int fileId(String name) {
+      try {
+         return Integer.parseInt(name.substring(0, name.length() - FILE_SUFFIX.length()));
+      } catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   private interface RecordHandler {
+      void handle(long offset, byte[] record, byte type, long expiryTime, Object key) throws IOException, CacheLoaderException;
+   }
+
+   /**
+    * Location of the most recent record for a key.
+    */
+   private static final class IndexEntry {
+      final LogFile file;
+      final long offset;
+      final int size;
+      final long expiryTime;
+
+      IndexEntry(LogFile file, long offset, int size, long expiryTime) {
+         this.file = file;
+         this.offset = offset;
+         this.size = size;
+         this.expiryTime = expiryTime;
+      }
+
+      boolean isExpired(long now) {
+         return expiryTime > 0 && expiryTime < now;
+      }
+   }
+
+   /**
+    * A single log file.  Its size is only ever modified with the write lock held, whereas reads are positional and do
+    * not need any locking.
+    */
+   private static final class LogFile {
+      final int id;
+      final File file;
+      final RandomAccessFile raf;
+      final FileChannel channel;
+      final AtomicLong garbage = new AtomicLong();
+      volatile long size;
+
+      LogFile(int id, File file) throws IOException {
+         this.id = id;
+         this.file = file;
+         this.raf = new RandomAccessFile(file, "rw");
+         this.channel = raf.getChannel();
+      }
+
+      byte[] read(long offset, int length) throws IOException {
+         ByteBuffer buf = ByteBuffer.allocate(length);
+         while (buf.hasRemaining()) {
+            if (channel.read(buf, offset + buf.position()) < 0)
+               throw new EOFException("Unexpected end of " + file + " reading " + length + " bytes at " + offset);
+         }
+         return buf.array();
+      }
+
+      void force() throws CacheLoaderException {
+         try {
+            channel.force(false);
+         } catch (ClosedChannelException e) {
+            // the file was cleared or compacted concurrently, nothing left to sync
+         } catch (IOException e) {
+            throw new CacheLoaderException("Unable to sync " + file, e);
+         }
+      }
+
+      void close() {
+         try {
+            raf.close();
+         } catch (IOException e) {
+            log.warn("Problems closing file " + file, e);
+         }
+      }
+
+      @Override
+      public String toString() {
+         return file.getName();
+      }
+   }
+}
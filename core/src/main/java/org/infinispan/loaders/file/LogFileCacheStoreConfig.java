@@ -0,0 +1,189 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.file;
+
+import org.infinispan.loaders.AbstractCacheStoreConfig;
+
+/**
+ * Configures {@link org.infinispan.loaders.file.LogFileCacheStore}.  This allows you to tune a number of
+ * characteristics of the {@link LogFileCacheStore}.
+ * <p/>
+ *    <ul>
+ *       <li><tt>location</tt> - a location on disk where the store can write its log files.  This defaults to
+ * <tt>Infinispan-LogFileCacheStore</tt> in the current working directory.</li>
+ *       <li><tt>maxFileSize</tt> - the size, in bytes, after which the active log file is closed and a new one is
+ * started.  Smaller files are compacted more quickly, larger files mean fewer open file handles.  By default, this is
+ * set to <tt>16777216</tt> (16MB).</li>
+ *       <li><tt>fsyncMode</tt> - when appended records are forced to disk.  <tt>NEVER</tt> leaves this to the
+ * operating system, <tt>PER_WRITE</tt> forces every write before returning and <tt>PERIODIC</tt> forces the active
+ * file every <tt>fsyncInterval</tt> milliseconds.  By default, this is set to <tt>NEVER</tt>.</li>
+ *       <li><tt>fsyncInterval</tt> - the interval, in milliseconds, between forced writes when using the
+ * <tt>PERIODIC</tt> fsync mode.  By default, this is set to <tt>1000</tt>.</li>
+ *       <li><tt>compactionThreshold</tt> - the ratio of dead bytes to total bytes in a closed log file above which the
+ * file is compacted, i.e. its live records are copied to the active file and the file is deleted.  By default, this
+ * is set to <tt>0.5</tt>.</li>
+ *       <li><tt>compactionInterval</tt> - how often, in milliseconds, closed log files are checked for compaction.  A
+ * value smaller than or equal to <tt>0</tt> disables background compaction.  By default, this is set to
+ * <tt>10000</tt>.</li>
+ *       <li><tt>purgeSynchronously</tt> - whether {@link org.infinispan.loaders.CacheStore#purgeExpired()} calls happen
+ * synchronously or not.  By default, this is set to <tt>false</tt>.</li>
+ *    </ul>
+ *
+ * @since 5.0
+ */
+public class LogFileCacheStoreConfig extends AbstractCacheStoreConfig {
+
+   private static final long serialVersionUID = -4289318945471843027L;
+
+   /**
+    * Policies controlling when appended records are forced to disk.
+    */
+   public static enum FsyncMode {
+      NEVER, PER_WRITE, PERIODIC
+   }
+
+   private String location = "Infinispan-LogFileCacheStore";
+   private long maxFileSize = 16 * 1024 * 1024;
+   private String fsyncMode = FsyncMode.NEVER.name();
+   private long fsyncInterval = 1000;
+   private double compactionThreshold = 0.5;
+   private long compactionInterval = 10000;
+
+   public LogFileCacheStoreConfig() {
+      setCacheLoaderClassName(LogFileCacheStore.class.getName());
+   }
+
+   public String getLocation() {
+      return location;
+   }
+
+   public void setLocation(String location) {
+      testImmutability("location");
+      this.location = location;
+   }
+
+   public LogFileCacheStoreConfig location(String location) {
+      setLocation(location);
+      return this;
+   }
+
+   public long getMaxFileSize() {
+      return maxFileSize;
+   }
+
+   public void setMaxFileSize(long maxFileSize) {
+      testImmutability("maxFileSize");
+      this.maxFileSize = maxFileSize;
+   }
+
+   public LogFileCacheStoreConfig maxFileSize(long maxFileSize) {
+      setMaxFileSize(maxFileSize);
+      return this;
+   }
+
+   public String getFsyncMode() {
+      return fsyncMode;
+   }
+
+   public void setFsyncMode(String fsyncMode) {
+      testImmutability("fsyncMode");
+      this.fsyncMode = fsyncMode;
+   }
+
+   public LogFileCacheStoreConfig fsyncMode(FsyncMode fsyncMode) {
+      setFsyncMode(fsyncMode.name());
+      return this;
+   }
+
+   FsyncMode fsyncModeValue() {
+      return fsyncMode == null ? FsyncMode.NEVER : FsyncMode.valueOf(fsyncMode.trim().toUpperCase());
+   }
+
+   public long getFsyncInterval() {
+      return fsyncInterval;
+   }
+
+   public void setFsyncInterval(long fsyncInterval) {
+      testImmutability("fsyncInterval");
+      this.fsyncInterval = fsyncInterval;
+   }
+
+   public LogFileCacheStoreConfig fsyncInterval(long fsyncInterval) {
+      setFsyncInterval(fsyncInterval);
+      return this;
+   }
+
+   public double getCompactionThreshold() {
+      return compactionThreshold;
+   }
+
+   public void setCompactionThreshold(double compactionThreshold) {
+      testImmutability("compactionThreshold");
+      this.compactionThreshold = compactionThreshold;
+   }
+
+   public LogFileCacheStoreConfig compactionThreshold(double compactionThreshold) {
+      setCompactionThreshold(compactionThreshold);
+      return this;
+   }
+
+   public long getCompactionInterval() {
+      return compactionInterval;
+   }
+
+   public void setCompactionInterval(long compactionInterval) {
+      testImmutability("compactionInterval");
+      this.compactionInterval = compactionInterval;
+   }
+
+   public LogFileCacheStoreConfig compactionInterval(long compactionInterval) {
+      setCompactionInterval(compactionInterval);
+      return this;
+   }
+
+   // Method overrides below are used to make configuration more fluent.
+
+   @Override
+   public LogFileCacheStoreConfig purgeOnStartup(Boolean purgeOnStartup) {
+      super.purgeOnStartup(purgeOnStartup);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig purgeSynchronously(Boolean purgeSynchronously) {
+      super.purgeSynchronously(purgeSynchronously);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig fetchPersistentState(Boolean fetchPersistentState) {
+      super.fetchPersistentState(fetchPersistentState);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig ignoreModifications(Boolean ignoreModifications) {
+      super.ignoreModifications(ignoreModifications);
+      return this;
+   }
+}
@@ -22,6 +22,8 @@
  */
 package org.infinispan.manager;
 
+import org.infinispan.factories.components.ComponentMetadata;
+import org.infinispan.factories.components.ComponentMetadataIndex;
 import org.infinispan.util.ConcurrentWeakKeyHashMap;
 import org.infinispan.util.ReflectionUtil;
 
@@ -39,6 +41,7 @@ import java.util.concurrent.ConcurrentMap;
 public class ReflectionCache {
 
    private final ConcurrentMap<ClassClassKey, List<Method>> methodsWithAnnotationCache = new ConcurrentWeakKeyHashMap<ClassClassKey, List<Method>>();
+   private final ConcurrentMap<Class, ComponentMetadata> componentMetadataCache = new ConcurrentWeakKeyHashMap<Class, ComponentMetadata>();
 
    public List<Method> getAllMethods(Class type, Class<? extends Annotation> annotationType) {
       ClassClassKey key = new ClassClassKey(type, annotationType);
@@ -51,8 +54,27 @@ public class ReflectionCache {
       return annotated;
    }
 
+   /**
+    * Returns the metadata of a component class, resolved from the {@link ComponentMetadataIndex} generated at build
+    * time if the class is indexed, or built by inspecting its annotations otherwise.
+    *
+    * @param type component class
+    * @return metadata of the class, never null
+    */
+   public ComponentMetadata getComponentMetadata(Class type) {
+      ComponentMetadata metadata = componentMetadataCache.get(type);
+      if (metadata != null)
+         return metadata;
+
+      metadata = ComponentMetadataIndex.getInstance().resolve(type);
+      if (metadata == null) metadata = ComponentMetadata.scan(type);
+      ComponentMetadata existing = componentMetadataCache.putIfAbsent(type, metadata);
+      return existing == null ? metadata : existing;
+   }
+
    public void stop() {
       methodsWithAnnotationCache.clear();
+      componentMetadataCache.clear();
    }
 
    private static class ClassClassKey {
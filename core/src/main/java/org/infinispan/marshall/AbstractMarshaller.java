@@ -38,6 +38,9 @@ public abstract class AbstractMarshaller implements Marshaller {
 
    protected static final int DEFAULT_BUF_SIZE = 512;
 
+   protected final BufferPool bufferPool = new BufferPool();
+   protected final BufferSizeEstimator sizeEstimator = new BufferSizeEstimator();
+
    /**
     * This is a convenience method for converting an object into a {@link org.infinispan.io.ByteBuffer} which takes
     * an estimated size as parameter. A {@link org.infinispan.io.ByteBuffer} allows direct access to the byte
@@ -68,6 +71,33 @@ public abstract class AbstractMarshaller implements Marshaller {
       return bytes;
    }
 
+   /**
+    * Copies the bytes written to a pooled buffer out into an exactly sized array, and records the size against the
+    * type of <tt>o</tt>.
+    */
+   protected byte[] copyAndRecord(Object o, ExposedByteArrayOutputStream baos) {
+      int length = baos.size();
+      byte[] bytes = new byte[length];
+      System.arraycopy(baos.getRawBuffer(), 0, bytes, 0, length);
+      sizeEstimator.record(o, length);
+      return bytes;
+   }
+
+   /**
+    * Pool of buffers for marshalling calls whose output is copied before returning. Callers outside the marshaller,
+    * such as {@link MarshalledValue}, may use it too as long as buffers never escape the call.
+    */
+   public BufferPool getBufferPool() {
+      return bufferPool;
+   }
+
+   /**
+    * Learnt marshalled sizes per type, used to size buffers up front.
+    */
+   public BufferSizeEstimator getSizeEstimator() {
+      return sizeEstimator;
+   }
+
    @Override
    public Object objectFromByteBuffer(byte[] buf) throws IOException, ClassNotFoundException {
       return objectFromByteBuffer(buf, 0, buf.length);
@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.io.ExposedByteArrayOutputStream;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per thread pools of {@link ExposedByteArrayOutputStream}s used by marshallers when the marshalled bytes are copied
+ * out before the call returns, so that the buffer itself can be reused by the next call on the same thread.
+ * <p/>
+ * Buffers are kept in power of two size classes, from {@link #MIN_POOLED_SIZE} to {@link #MAX_POOLED_SIZE}, with a
+ * couple of slots per class so that nested marshalling calls (e.g. a marshalled value serialized while a command is
+ * being marshalled) each get their own buffer. Buffers that outgrow the largest size class are not retained, which
+ * bounds the memory held by each thread.
+ * <p/>
+ * Buffers obtained via {@link #acquire(int)} must never escape the caller, and must be handed back via {@link
+ * #release(ExposedByteArrayOutputStream)} once their contents have been copied.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public final class BufferPool {
+
+   public static final int MIN_POOLED_SIZE = 1 << 7; // 128 bytes
+   public static final int MAX_POOLED_SIZE = 1 << 15; // 32KB
+
+   private static final int MIN_SHIFT = 7;
+   private static final int SIZE_CLASSES = 15 - MIN_SHIFT + 1;
+   private static final int SLOTS_PER_CLASS = 2;
+
+   private final ThreadLocal<PooledOutputStream[]> pools = new ThreadLocal<PooledOutputStream[]>() {
+      @Override
+      protected PooledOutputStream[] initialValue() {
+         return new PooledOutputStream[SIZE_CLASSES * SLOTS_PER_CLASS];
+      }
+   };
+
+   private final AtomicLong acquisitions = new AtomicLong();
+   private final AtomicLong reuses = new AtomicLong();
+   private final AtomicLong resizes = new AtomicLong();
+   private final AtomicLong discards = new AtomicLong();
+
+   /**
+    * Obtains an empty buffer able to hold at least <tt>estimatedSize</tt> bytes without resizing, reusing one
+    * previously released by the calling thread if possible.
+    */
+   public ExposedByteArrayOutputStream acquire(int estimatedSize) {
+      acquisitions.incrementAndGet();
+      PooledOutputStream stream = null;
+      if (estimatedSize <= MAX_POOLED_SIZE) {
+         int sizeClass = ceilingSizeClass(estimatedSize);
+         PooledOutputStream[] pool = pools.get();
+         // buffers that grew while in use are filed under the class their capacity rounds down to, so the class
+         // below may hold one large enough; one from the class above fits just as well and saves an allocation
+         int end = Math.min(sizeClass + 2, SIZE_CLASSES) * SLOTS_PER_CLASS;
+         for (int i = Math.max(sizeClass - 1, 0) * SLOTS_PER_CLASS; i < end; i++) {
+            if (pool[i] != null && pool[i].getRawBuffer().length >= estimatedSize) {
+               stream = pool[i];
+               pool[i] = null;
+               reuses.incrementAndGet();
+               break;
+            }
+         }
+         if (stream == null) stream = new PooledOutputStream(capacityOf(sizeClass));
+      } else {
+         stream = new PooledOutputStream(estimatedSize);
+      }
+      stream.acquiredCapacity = stream.getRawBuffer().length;
+      return stream;
+   }
+
+   /**
+    * Hands a buffer obtained via {@link #acquire(int)} back to the pool of the calling thread. Streams that were not
+    * obtained from a pool are ignored.
+    */
+   public void release(ExposedByteArrayOutputStream stream) {
+      if (!(stream instanceof PooledOutputStream)) return;
+      PooledOutputStream pooled = (PooledOutputStream) stream;
+      int capacity = pooled.getRawBuffer().length;
+      if (capacity > pooled.acquiredCapacity) resizes.incrementAndGet();
+      if (capacity > MAX_POOLED_SIZE) {
+         discards.incrementAndGet();
+         return;
+      }
+      pooled.reset();
+      PooledOutputStream[] pool = pools.get();
+      int start = floorSizeClass(capacity) * SLOTS_PER_CLASS;
+      for (int i = start; i < start + SLOTS_PER_CLASS; i++) {
+         if (pool[i] == null) {
+            pool[i] = pooled;
+            return;
+         }
+      }
+      discards.incrementAndGet();
+   }
+
+   /**
+    * @return number of buffers handed out by {@link #acquire(int)}
+    */
+   public long getAcquisitions() {
+      return acquisitions.get();
+   }
+
+   /**
+    * @return number of acquisitions served by a previously released buffer
+    */
+   public long getReuses() {
+      return reuses.get();
+   }
+
+   /**
+    * @return number of buffers that had to grow beyond the capacity they were acquired with
+    */
+   public long getResizes() {
+      return resizes.get();
+   }
+
+   /**
+    * @return number of released buffers that were dropped, either because they were too large to retain or because
+    *         the slots of their size class were taken
+    */
+   public long getDiscards() {
+      return discards.get();
+   }
+
+   public void resetStatistics() {
+      acquisitions.set(0);
+      reuses.set(0);
+      resizes.set(0);
+      discards.set(0);
+   }
+
+   static int capacityOf(int sizeClass) {
+      return 1 << (sizeClass + MIN_SHIFT);
+   }
+
+   /**
+    * Smallest size class whose capacity holds <tt>size</tt> bytes.
+    */
+   static int ceilingSizeClass(int size) {
+      if (size <= MIN_POOLED_SIZE) return 0;
+      return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+   }
+
+   /**
+    * Largest size class whose capacity does not exceed <tt>size</tt> bytes.
+    */
+   static int floorSizeClass(int size) {
+      if (size <= MIN_POOLED_SIZE) return 0;
+      return 31 - Integer.numberOfLeadingZeros(size) - MIN_SHIFT;
+   }
+
+   private static final class PooledOutputStream extends ExposedByteArrayOutputStream {
+      int acquiredCapacity;
+
+      PooledOutputStream(int size) {
+         super(size);
+      }
+   }
+}
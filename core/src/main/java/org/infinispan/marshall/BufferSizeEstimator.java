@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.util.ConcurrentWeakKeyHashMap;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Learns how large the marshalled form of each type tends to be, so that marshallers can size their buffers up front
+ * instead of growing them while writing.
+ * <p/>
+ * An estimate jumps straight up to any larger size observed, so that the next instance of the type does not need a
+ * resize, but only decays slowly towards smaller ones, so that types whose sizes vary settle near the top of their
+ * range. Sizes are capped at {@link BufferPool#MAX_POOLED_SIZE}: larger buffers are not pooled anyway, and an
+ * occasional huge instance must not leave many later, ordinary ones with oversized buffers while the estimate decays.
+ * Keys are weakly referenced so that estimates do not pin classes of undeployed applications.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public final class BufferSizeEstimator {
+
+   private final ConcurrentMap<Class<?>, Estimate> estimates = new ConcurrentWeakKeyHashMap<Class<?>, Estimate>();
+
+   /**
+    * @return the expected marshalled size of <tt>o</tt>, or <tt>defaultSize</tt> if nothing has been learnt about its
+    *         type yet
+    */
+   public int estimate(Object o, int defaultSize) {
+      if (o == null) return defaultSize;
+      Estimate e = estimates.get(o.getClass());
+      if (e == null) return defaultSize;
+      int size = e.size;
+      // a little headroom, so that slightly larger instances still fit
+      return Math.min(size + (size >> 3), BufferPool.MAX_POOLED_SIZE);
+   }
+
+   /**
+    * Records the marshalled size of <tt>o</tt>.
+    */
+   public void record(Object o, int size) {
+      if (o == null) return;
+      if (size > BufferPool.MAX_POOLED_SIZE) size = BufferPool.MAX_POOLED_SIZE;
+      Class<?> type = o.getClass();
+      Estimate e = estimates.get(type);
+      if (e == null) {
+         e = estimates.putIfAbsent(type, new Estimate(size));
+         if (e == null) return;
+      }
+      e.update(size);
+   }
+
+   private static final class Estimate {
+      // updates may race, which at worst loses a sample
+      volatile int size;
+
+      Estimate(int size) {
+         this.size = size;
+      }
+
+      void update(int observed) {
+         int current = size;
+         if (observed > current)
+            size = observed;
+         else if (observed < current)
+            size = current - ((current - observed) >> 3);
+      }
+   }
+}
@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+/**
+ * Determines which representations a {@link MarshalledValue} held by a cache keeps once the invocation that created or
+ * converted it has completed, when <tt>storeAsBinary</tt> is enabled.
+ *
+ * @since 5.0
+ */
+public enum CompactionPolicy {
+   /**
+    * If both forms exist, the serialized form is released. This is the default, and favours reads by local callers.
+    */
+   KEEP_INSTANCE,
+   /**
+    * If both forms exist, the deserialized instance is released, so that each read by a local caller deserializes
+    * afresh. This favours memory footprint and class loader isolation.
+    */
+   KEEP_SERIALIZED,
+   /**
+    * Both forms are retained once created, so that hot entries read locally and replicated or stored never need to be
+    * converted again, at the cost of holding both in memory.
+    */
+   KEEP_BOTH;
+
+   /**
+    * Compacts the given value according to this policy.
+    */
+   public void compact(MarshalledValue mv) {
+      switch (this) {
+         case KEEP_INSTANCE:
+            mv.compact(false, false);
+            break;
+         case KEEP_SERIALIZED:
+            mv.compact(true, false);
+            break;
+         default:
+            mv.setEqualityPreferenceForInstance(true);
+      }
+   }
+}
@@ -96,4 +96,6 @@ public interface Ids {
 
    int COMPLETE_TX_COMMAND = 71;
    int GET_IN_DOUBT_TX_INFO_COMMAND = 72;
+
+   int SEGMENTED_CONSISTENT_HASH = 73;
 }
@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import org.infinispan.atomic.AtomicHashMap;
+import org.infinispan.atomic.AtomicHashMapDelta;
+import org.infinispan.atomic.ClearOperation;
+import org.infinispan.atomic.PutOperation;
+import org.infinispan.atomic.RemoveOperation;
+import org.infinispan.container.entries.ImmortalCacheEntry;
+import org.infinispan.container.entries.ImmortalCacheValue;
+import org.infinispan.container.entries.MortalCacheEntry;
+import org.infinispan.container.entries.MortalCacheValue;
+import org.infinispan.container.entries.TransientCacheEntry;
+import org.infinispan.container.entries.TransientCacheValue;
+import org.infinispan.container.entries.TransientMortalCacheEntry;
+import org.infinispan.container.entries.TransientMortalCacheValue;
+import org.infinispan.distribution.RemoteTransactionLogDetails;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.NodeTopologyInfo;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
+import org.infinispan.distribution.ch.UnionConsistentHash;
+import org.infinispan.distribution.ch.VirtualAddress;
+import org.infinispan.loaders.bucket.Bucket;
+import org.infinispan.marshall.exts.ArrayListExternalizer;
+import org.infinispan.marshall.exts.LinkedListExternalizer;
+import org.infinispan.marshall.exts.MapExternalizer;
+import org.infinispan.marshall.exts.ReplicableCommandExternalizer;
+import org.infinispan.marshall.exts.SetExternalizer;
+import org.infinispan.marshall.exts.SingletonListExternalizer;
+import org.infinispan.remoting.responses.ExceptionResponse;
+import org.infinispan.remoting.responses.ExtendedResponse;
+import org.infinispan.remoting.responses.RequestIgnoredResponse;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.responses.UnsuccessfulResponse;
+import org.infinispan.remoting.responses.UnsureResponse;
+import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
+import org.infinispan.transaction.TransactionLog;
+import org.infinispan.transaction.xa.DldGlobalTransaction;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.transaction.xa.recovery.InDoubtTxInfoImpl;
+import org.infinispan.transaction.xa.recovery.RecoveryAwareDldGlobalTransaction;
+import org.infinispan.transaction.xa.recovery.RecoveryAwareGlobalTransaction;
+import org.infinispan.transaction.xa.recovery.SerializableXid;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.Immutables;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The set of {@link AdvancedExternalizer}s that Infinispan ships for its own types, keyed by the identifiers in
+ * {@link Ids}. Every {@link StreamingMarshaller} implementation registers this same set so that internal types are
+ * written identically regardless of which marshaller is plugged in.
+ *
+ * @since 5.0
+ */
+public final class InternalExternalizers {
+
+   private InternalExternalizers() {
+   }
+
+   /**
+    * Creates a fresh set of internal externalizers. Externalizers that need collaborators, such as
+    * {@link ReplicableCommandExternalizer} or {@link MarshalledValue.Externalizer}, are returned uninjected.
+    *
+    * @return a new, mutable set of internal externalizers
+    */
+   public static Set<AdvancedExternalizer> load() {
+      Set<AdvancedExternalizer> exts = new HashSet<AdvancedExternalizer>();
+      exts.add(new ArrayListExternalizer());
+      exts.add(new LinkedListExternalizer());
+      exts.add(new MapExternalizer());
+      exts.add(new SetExternalizer());
+      exts.add(new SingletonListExternalizer());
+
+      exts.add(new GlobalTransaction.Externalizer());
+      exts.add(new RecoveryAwareGlobalTransaction.Externalizer());
+      exts.add(new DldGlobalTransaction.Externalizer());
+      exts.add(new RecoveryAwareDldGlobalTransaction.Externalizer());
+      exts.add(new JGroupsAddress.Externalizer());
+      exts.add(new Immutables.ImmutableMapWrapperExternalizer());
+      exts.add(new MarshalledValue.Externalizer());
+
+      exts.add(new TransactionLog.LogEntry.Externalizer());
+      exts.add(new ExtendedResponse.Externalizer());
+      exts.add(new SuccessfulResponse.Externalizer());
+      exts.add(new ExceptionResponse.Externalizer());
+      exts.add(new RequestIgnoredResponse.Externalizer());
+      exts.add(new UnsuccessfulResponse.Externalizer());
+      exts.add(new UnsureResponse.Externalizer());
+
+      exts.add(new ReplicableCommandExternalizer());
+
+      exts.add(new ImmortalCacheEntry.Externalizer());
+      exts.add(new MortalCacheEntry.Externalizer());
+      exts.add(new TransientCacheEntry.Externalizer());
+      exts.add(new TransientMortalCacheEntry.Externalizer());
+      exts.add(new ImmortalCacheValue.Externalizer());
+      exts.add(new MortalCacheValue.Externalizer());
+      exts.add(new TransientCacheValue.Externalizer());
+      exts.add(new TransientMortalCacheValue.Externalizer());
+
+      exts.add(new AtomicHashMap.Externalizer());
+      exts.add(new Bucket.Externalizer());
+      exts.add(new AtomicHashMapDelta.Externalizer());
+      exts.add(new PutOperation.Externalizer());
+      exts.add(new RemoveOperation.Externalizer());
+      exts.add(new ClearOperation.Externalizer());
+      exts.add(new DefaultConsistentHash.Externalizer());
+      exts.add(new UnionConsistentHash.Externalizer());
+      exts.add(new NodeTopologyInfo.Externalizer());
+      exts.add(new TopologyAwareConsistentHash.Externalizer());
+      exts.add(new SegmentedConsistentHash.Externalizer());
+      exts.add(new ByteArrayKey.Externalizer());
+
+      exts.add(new RemoteTransactionLogDetails.Externalizer());
+      exts.add(new SerializableXid.XidExternalizer());
+      exts.add(new VirtualAddress.Externalizer());
+      exts.add(new InDoubtTxInfoImpl.Externalizer());
+      return exts;
+   }
+}
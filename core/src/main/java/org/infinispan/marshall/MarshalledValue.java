@@ -36,6 +36,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Wrapper that wraps cached data, providing lazy deserialization using the calling thread's context class loader.
@@ -43,6 +44,10 @@ import java.util.Set;
  * The {@link org.infinispan.interceptors.MarshalledValueInterceptor} handles transparent wrapping/unwrapping of cached
  * data.
  * <p/>
+ * The serialized and deserialized forms are held in a single immutable snapshot that is replaced by compare-and-set,
+ * so that reads never block. Concurrent conversions of the same value may both do the work, but only one result is
+ * kept.
+ * <p/>
  *
  * @author Manik Surtani (<a href="mailto:manik@jboss.org">manik@jboss.org</a>)
  * @author Mircea.Markus@jboss.com
@@ -51,8 +56,11 @@ import java.util.Set;
  * @since 4.0
  */
 public class MarshalledValue {
-   volatile protected Object instance;
-   volatile protected byte[] raw;
+   private static final AtomicReferenceFieldUpdater<MarshalledValue, Representation> STATE_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater(MarshalledValue.class, Representation.class, "state");
+
+   // never holds a representation with both forms null
+   private volatile Representation state;
    volatile private int cachedHashCode = 0;
    // by default equals() will test on the instance rather than the byte array if conversion is required.
    private transient volatile boolean equalityPreferenceForInstance = true;
@@ -61,7 +69,7 @@ public class MarshalledValue {
    public MarshalledValue(Object instance, boolean equalityPreferenceForInstance, StreamingMarshaller marshaller) throws NotSerializableException {
       if (instance == null) throw new NullPointerException("Null values cannot be wrapped as MarshalledValues!");
 
-      this.instance = instance;
+      this.state = new Representation(instance, null);
       this.equalityPreferenceForInstance = equalityPreferenceForInstance;
       this.marshaller = marshaller;
    }
@@ -73,43 +81,75 @@ public class MarshalledValue {
 
    public void init(byte[] raw, int cachedHashCode) {
       // for unmarshalling
-      this.raw = raw;
+      this.state = new Representation(null, raw);
       this.cachedHashCode = cachedHashCode;
    }
 
-   public synchronized void serialize() {
-      if (raw == null) {
+   public void serialize() {
+      serializedForm();
+   }
+
+   public void deserialize() {
+      deserializedForm();
+   }
+
+   private byte[] serializedForm() {
+      byte[] raw = null;
+      while (true) {
+         Representation current = state;
+         if (current.raw != null) return current.raw;
+         // Do NOT drop the instance over here, since it may be used elsewhere (e.g., in a cache listener).
+         // this will be compacted by the MarshalledValueInterceptor when the call returns.
+         if (raw == null) raw = marshall(current.instance);
+         if (STATE_UPDATER.compareAndSet(this, current, new Representation(current.instance, raw))) return raw;
+      }
+   }
+
+   private Object deserializedForm() {
+      Object instance = null;
+      while (true) {
+         Representation current = state;
+         if (current.instance != null) return current.instance;
+         if (instance == null) {
+            try {
+               // StreamingMarshaller underneath deals with making sure the right classloader is set.
+               instance = marshaller.objectFromByteBuffer(current.raw);
+            }
+            catch (Exception e) {
+               throw new CacheException("Unable to unmarshall value", e);
+            }
+         }
+         if (STATE_UPDATER.compareAndSet(this, current, new Representation(instance, current.raw))) return instance;
+      }
+   }
+
+   private byte[] marshall(Object instance) {
+      try {
+         BufferPool pool = null;
+         BufferSizeEstimator estimator = null;
+         if (marshaller instanceof AbstractMarshaller) {
+            pool = ((AbstractMarshaller) marshaller).getBufferPool();
+            estimator = ((AbstractMarshaller) marshaller).getSizeEstimator();
+         }
+         int estimatedSize = estimator == null ? 128 : estimator.estimate(instance, 128);
+         ExposedByteArrayOutputStream baos = pool == null ? new ExposedByteArrayOutputStream(estimatedSize) : pool.acquire(estimatedSize);
          try {
-            // Do NOT set instance to null over here, since it may be used elsewhere (e.g., in a cache listener).
-            // this will be compacted by the MarshalledValueInterceptor when the call returns.
-            ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(128);
             ObjectOutput out = marshaller.startObjectOutput(baos, true);
             try {
                marshaller.objectToObjectStream(instance, out);
             } finally {
                marshaller.finishObjectOutput(out);
             }
-            byte[] buf = baos.getRawBuffer();
             int length = baos.size();
-            raw = new byte[length];
-            System.arraycopy(buf, 0, raw, 0, length);
-         } catch (Exception e) {
-            throw new CacheException("Unable to marshall value " + instance, e);
+            byte[] raw = new byte[length];
+            System.arraycopy(baos.getRawBuffer(), 0, raw, 0, length);
+            if (estimator != null) estimator.record(instance, length);
+            return raw;
          } finally {
-            
-         }
-      }
-   }
-
-   public synchronized void deserialize() {
-      if (instance == null) {
-         try {
-            // StreamingMarshaller underneath deals with making sure the right classloader is set.
-            instance = marshaller.objectFromByteBuffer(raw);
-         }
-         catch (Exception e) {
-            throw new CacheException("Unable to unmarshall value", e);
+            if (pool != null) pool.release(baos);
          }
+      } catch (Exception e) {
+         throw new CacheException("Unable to marshall value " + instance, e);
       }
    }
 
@@ -130,39 +170,46 @@ public class MarshalledValue {
       // reset the equalityPreference
       equalityPreferenceForInstance = true;
       if (force) {
-         if (preferSerializedRepresentation && raw == null) serialize();
-         else if (!preferSerializedRepresentation && instance == null) deserialize();
+         if (preferSerializedRepresentation) serializedForm();
+         else deserializedForm();
       }
 
-      if (instance != null && raw != null) {
+      while (true) {
+         Representation current = state;
          // need to lose one representation!
-
-         if (preferSerializedRepresentation) {
-            nullifyInstance();
-         } else {
-            raw = null;
-         }
+         if (current.instance == null || current.raw == null) return;
+         Representation compacted = preferSerializedRepresentation ?
+               new Representation(null, current.raw) : new Representation(current.instance, null);
+         if (STATE_UPDATER.compareAndSet(this, current, compacted)) return;
       }
    }
 
-   private synchronized void nullifyInstance() {
-      instance = null;
+   public byte[] getRaw() {
+      byte[] raw = state.raw;
+      return raw != null ? raw : serializedForm();
    }
 
-   public byte[] getRaw() {
-      if (raw == null) serialize();
-      return raw;
+   /**
+    * Returns the 'cached' instance, deserializing it if needed. Never blocks: concurrent callers racing to
+    * deserialize the same value all return an equal instance, and only one of them is retained.
+    */
+   public Object get() {
+      Object instance = state.instance;
+      return instance != null ? instance : deserializedForm();
    }
 
    /**
-    * Returns the 'cached' instance. Impl note: this method is synchronized so that it synchronizez with the code that
-    * nullifies the instance.
-    *
-    * @see #nullifyInstance()
+    * @return the deserialized instance if currently held, without deserializing
     */
-   public synchronized Object get() {
-      if (instance == null) deserialize();
-      return instance;
+   Object peekInstance() {
+      return state.instance;
+   }
+
+   /**
+    * @return the serialized form if currently held, without serializing
+    */
+   byte[] peekRaw() {
+      return state.raw;
    }
 
    @Override
@@ -171,43 +218,43 @@ public class MarshalledValue {
       if (o == null || getClass() != o.getClass()) return false;
 
       MarshalledValue that = (MarshalledValue) o;
+      Representation mine = state;
+      Representation theirs = that.state;
 
       // if both versions are serialized or deserialized, just compare the relevant representations.
-      if (raw != null && that.raw != null) return Arrays.equals(raw, that.raw);
-      if (instance != null && that.instance != null) return instance.equals(that.instance);
+      if (mine.raw != null && theirs.raw != null) return Arrays.equals(mine.raw, theirs.raw);
+      if (mine.instance != null && theirs.instance != null) return mine.instance.equals(theirs.instance);
 
       // if conversion of one representation to the other is necessary, then see which we prefer converting.
       if (equalityPreferenceForInstance && that.equalityPreferenceForInstance) {
-         if (instance == null) deserialize();
-         if (that.instance == null) that.deserialize();
-         return instance.equals(that.instance);
+         return get().equals(that.get());
       } else {
-         if (raw == null) serialize();
-         if (that.raw == null) that.serialize();
-         return Arrays.equals(raw, that.raw);
+         return Arrays.equals(getRaw(), that.getRaw());
       }
    }
 
    @Override
    public int hashCode() {
-      if (cachedHashCode == 0) {
+      int hashCode = cachedHashCode;
+      if (hashCode == 0) {
          // always calculate the hashcode based on the instance since this is where we're getting the equals()
-         if (instance == null) deserialize();
-         cachedHashCode = instance.hashCode();
-         if (cachedHashCode == 0) // degenerate case
+         hashCode = get().hashCode();
+         if (hashCode == 0) // degenerate case
          {
-            cachedHashCode = 0xFEED;
+            hashCode = 0xFEED;
          }
+         cachedHashCode = hashCode;
       }
-      return cachedHashCode;
+      return hashCode;
    }
 
    @Override
    public String toString() {
+      Representation current = state;
       StringBuilder sb = new StringBuilder()
          .append("MarshalledValue{")
-         .append("instance=").append(instance != null ? instance.toString() : "<serialized>")
-         .append(", serialized=").append(raw != null ?  Util.printArray(raw, false) : "false")
+         .append("instance=").append(current.instance != null ? current.instance.toString() : "<serialized>")
+         .append(", serialized=").append(current.raw != null ?  Util.printArray(current.raw, false) : "false")
          .append(", cachedHashCode=").append(cachedHashCode)
          .append("}@").append(Util.hexIdHashCode(this));
       return sb.toString();
@@ -233,6 +280,19 @@ public class MarshalledValue {
             ReplicableCommand.class.isAssignableFrom(type) || type.equals(MarshalledValue.class);
    }
 
+   /**
+    * Immutable snapshot of the forms held, swapped atomically so that readers never observe a value with neither.
+    */
+   private static final class Representation {
+      final Object instance;
+      final byte[] raw;
+
+      Representation(Object instance, byte[] raw) {
+         this.instance = instance;
+         this.raw = raw;
+      }
+   }
+
    public static class Externalizer extends AbstractExternalizer<MarshalledValue> {
       private StreamingMarshaller marshaller;
       
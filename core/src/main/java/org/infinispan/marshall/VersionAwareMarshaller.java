@@ -28,12 +28,19 @@ import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
 import org.infinispan.io.ByteBuffer;
+import org.infinispan.io.ChunkedOutputStream;
 import org.infinispan.io.ExposedByteArrayOutputStream;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.marshall.jboss.JBossMarshaller;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
@@ -49,6 +56,7 @@ import java.io.OutputStream;
  * @author Galder Zamarreño
  * @since 4.0
  */
+@MBean(objectName = "Marshaller", description = "Marshalls commands and values to and from byte streams")
 public class VersionAwareMarshaller extends AbstractMarshaller implements StreamingMarshaller {
    private static final Log log = LogFactory.getLog(VersionAwareMarshaller.class);
    private boolean trace = log.isTraceEnabled();
@@ -85,14 +93,71 @@ public class VersionAwareMarshaller extends AbstractMarshaller implements Stream
       defaultMarshaller.stop();
    }
 
+   @ManagedAttribute(description = "Number of buffers handed out for marshalling calls whose output is copied")
+   @Metric(displayName = "Number of buffer acquisitions", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getBufferAcquisitions() {
+      return bufferPool.getAcquisitions();
+   }
+
+   @ManagedAttribute(description = "Number of buffer acquisitions served by a pooled buffer rather than a new allocation")
+   @Metric(displayName = "Number of buffer reuses", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getBufferReuses() {
+      return bufferPool.getReuses();
+   }
+
+   @ManagedAttribute(description = "Percentage of buffer acquisitions served by a pooled buffer")
+   @Metric(displayName = "Buffer reuse ratio", displayType = DisplayType.SUMMARY)
+   public double getBufferReuseRatio() {
+      long acquisitions = bufferPool.getAcquisitions();
+      return acquisitions == 0 ? 0 : 100d * bufferPool.getReuses() / acquisitions;
+   }
+
+   @ManagedAttribute(description = "Number of buffers that had to grow while marshalling")
+   @Metric(displayName = "Number of buffer resizes", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getBufferResizes() {
+      return bufferPool.getResizes();
+   }
+
+   @ManagedAttribute(description = "Number of buffers dropped instead of being returned to the pool")
+   @Metric(displayName = "Number of buffer discards", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getBufferDiscards() {
+      return bufferPool.getDiscards();
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component")
+   @Operation(displayName = "Reset statistics")
+   public void resetStatistics() {
+      bufferPool.resetStatistics();
+   }
+
    protected int getCustomMarshallerVersionInt() {
       return CUSTOM_MARSHALLER;
    }
 
    @Override
    protected ByteBuffer objectToBuffer(Object obj, int estimatedSize) throws IOException, InterruptedException {
-      ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(estimatedSize);
-      ObjectOutput out = startObjectOutput(baos, false);
+      // the returned buffer wraps the stream's array, so it can't come from the pool, nor be sized by the learnt
+      // estimate, as a chunk sized for a large instance would be handed on oversized; collecting chunks spares large
+      // payloads that outgrow the caller's estimate from being copied again on every resize
+      ChunkedOutputStream out = new ChunkedOutputStream(estimatedSize);
+      objectToStream(obj, out);
+      sizeEstimator.record(obj, out.size());
+      return out.toByteBuffer();
+   }
+
+   @Override
+   public byte[] objectToByteBuffer(Object obj, int estimatedSize) throws IOException, InterruptedException {
+      ExposedByteArrayOutputStream baos = bufferPool.acquire(sizeEstimator.estimate(obj, estimatedSize));
+      try {
+         objectToStream(obj, baos);
+         return copyAndRecord(obj, baos);
+      } finally {
+         bufferPool.release(baos);
+      }
+   }
+
+   private void objectToStream(Object obj, OutputStream os) throws IOException, InterruptedException {
+      ObjectOutput out = startObjectOutput(os, false);
       try {
          defaultMarshaller.objectToObjectStream(obj, out);
       } catch (java.io.NotSerializableException nse) {
@@ -109,13 +174,11 @@ public class VersionAwareMarshaller extends AbstractMarshaller implements Stream
       } finally {
          finishObjectOutput(out);
       }
-      return new ByteBuffer(baos.getRawBuffer(), 0, baos.size());
    }
 
    @Override
    public Object objectFromByteBuffer(byte[] bytes, int offset, int len) throws IOException, ClassNotFoundException {
-      ByteArrayInputStream is = new ByteArrayInputStream(bytes, offset, len);
-      ObjectInput in = startObjectInput(is, false);
+      ObjectInput in = readVersion(defaultMarshaller.startObjectInput(bytes, offset, len));
       Object o = null;
       try {
          o = defaultMarshaller.objectFromObjectStream(in);
@@ -158,7 +221,10 @@ public class VersionAwareMarshaller extends AbstractMarshaller implements Stream
 
    @Override   
    public ObjectInput startObjectInput(InputStream is, boolean isReentrant) throws IOException {
-      ObjectInput in = defaultMarshaller.startObjectInput(is, isReentrant);
+      return readVersion(defaultMarshaller.startObjectInput(is, isReentrant));
+   }
+
+   private ObjectInput readVersion(ObjectInput in) throws IOException {
       int versionId;
       try {
          versionId = in.readShort();
@@ -0,0 +1,209 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.binary;
+
+import org.infinispan.commands.RemoteCommandsFactory;
+import org.infinispan.config.AdvancedExternalizerConfig;
+import org.infinispan.config.ConfigurationException;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.marshall.AdvancedExternalizer;
+import org.infinispan.marshall.Externalizer;
+import org.infinispan.marshall.Ids;
+import org.infinispan.marshall.InternalExternalizers;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.marshall.SerializeWith;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.marshall.exts.ReplicableCommandExternalizer;
+import org.infinispan.util.ConcurrentWeakKeyHashMap;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps types to the externalizers {@link BinaryMarshaller} writes them with, and externalizer ids back to
+ * externalizers when reading. The internal and user configured {@link AdvancedExternalizer}s are registered once at
+ * construction time and never change afterwards; how any other type is handled is worked out the first time it is
+ * seen and cached in a {@link TypeInfo}.
+ *
+ * @since 5.0
+ */
+final class BinaryExternalizerTable {
+   private static final Log log = LogFactory.getLog(BinaryExternalizerTable.class);
+
+   private final Map<Class<?>, Writer> writers = new HashMap<Class<?>, Writer>();
+   private final AdvancedExternalizer[] internalReaders = new AdvancedExternalizer[Ids.MAX_ID];
+   private final Map<Integer, AdvancedExternalizer> foreignReaders = new HashMap<Integer, AdvancedExternalizer>();
+   private final ConcurrentMap<Class<?>, TypeInfo> types = new ConcurrentWeakKeyHashMap<Class<?>, TypeInfo>();
+
+   BinaryExternalizerTable(RemoteCommandsFactory cmdFactory, StreamingMarshaller marshaller, GlobalConfiguration globalCfg) {
+      for (AdvancedExternalizer ext : InternalExternalizers.load()) {
+         if (ext instanceof ReplicableCommandExternalizer)
+            ((ReplicableCommandExternalizer) ext).inject(cmdFactory);
+         if (ext instanceof MarshalledValue.Externalizer)
+            ((MarshalledValue.Externalizer) ext).inject(marshaller);
+         addInternalExternalizer(ext);
+      }
+      loadForeignExternalizers(globalCfg);
+      if (log.isTraceEnabled())
+         log.trace("Binary externalizer table started with writers for: %s", writers.keySet());
+   }
+
+   /**
+    * @return the externalizer registered for exactly this type, or null if there is none
+    */
+   Writer getWriter(Class<?> type) {
+      return writers.get(type);
+   }
+
+   AdvancedExternalizer getInternalReader(int id) {
+      return id < internalReaders.length ? internalReaders[id] : null;
+   }
+
+   AdvancedExternalizer getForeignReader(int id) {
+      return foreignReaders.get(id);
+   }
+
+   boolean hasWriter(Class<?> type) {
+      return writers.containsKey(type);
+   }
+
+   TypeInfo getTypeInfo(Class<?> type) {
+      TypeInfo info = types.get(type);
+      if (info == null) {
+         info = TypeInfo.resolve(type);
+         TypeInfo existing = types.putIfAbsent(type, info);
+         if (existing != null) info = existing;
+      }
+      return info;
+   }
+
+   private void addInternalExternalizer(AdvancedExternalizer ext) {
+      int id = ext.getId();
+      if (id < 0 || id >= Ids.MAX_ID)
+         throw new ConfigurationException(String.format(
+               "Internal %s externalizer is using an id(%d) that exceeed the limit. It needs to be smaller than %d",
+               ext, id, Ids.MAX_ID));
+      AdvancedExternalizer prev = internalReaders[id];
+      if (prev != null && prev.getClass() != ext.getClass())
+         throw new ConfigurationException(String.format(
+               "Duplicate id found! AdvancedExternalizer id=%d for %s is shared by another externalizer (%s)",
+               id, ext.getClass().getName(), prev.getClass().getName()));
+      internalReaders[id] = ext;
+      addWriters(new Writer(id, false, ext));
+   }
+
+   private void loadForeignExternalizers(GlobalConfiguration globalCfg) {
+      List<AdvancedExternalizerConfig> configs = globalCfg.getExternalizers();
+      for (AdvancedExternalizerConfig config : configs) {
+         AdvancedExternalizer ext = config.getAdvancedExternalizer() != null ? config.getAdvancedExternalizer()
+               : (AdvancedExternalizer) Util.getInstance(config.getExternalizerClass());
+         // Same precedence as the JBoss Marshalling based table: configured id first, then the externalizer's own.
+         Integer id = config.getId() != null ? config.getId() : ext.getId();
+         if (id == null)
+            throw new ConfigurationException(String.format(
+                  "No advanced externalizer identifier set for externalizer %s", ext.getClass().getName()));
+         if (id < 0)
+            throw new ConfigurationException(String.format(
+                  "Foreign %s externalizer is using a negative id(%d). Only positive id values are allowed.", ext, id));
+         AdvancedExternalizer prev = foreignReaders.put(id, ext);
+         if (prev != null && prev.getClass() != ext.getClass())
+            throw new ConfigurationException(String.format(
+                  "Duplicate id found! AdvancedExternalizer id=%d for %s is shared by another externalizer (%s)",
+                  id, ext.getClass().getName(), prev.getClass().getName()));
+         addWriters(new Writer(id, true, ext));
+      }
+   }
+
+   private void addWriters(Writer writer) {
+      @SuppressWarnings("unchecked")
+      Iterable<Class<?>> typeClasses = writer.externalizer.getTypeClasses();
+      boolean empty = true;
+      for (Class<?> typeClass : typeClasses) {
+         writers.put(typeClass, writer);
+         empty = false;
+      }
+      if (empty)
+         throw new ConfigurationException(String.format(
+               "AdvancedExternalizer's getTypeClasses for %s must return a non-empty set",
+               writer.externalizer.getClass().getName()));
+   }
+
+   /**
+    * An {@link AdvancedExternalizer} together with the id it is written under.
+    */
+   static final class Writer {
+      final int id;
+      final boolean foreign;
+      final AdvancedExternalizer externalizer;
+
+      Writer(int id, boolean foreign, AdvancedExternalizer externalizer) {
+         this.id = id;
+         this.foreign = foreign;
+         this.externalizer = externalizer;
+      }
+   }
+
+   /**
+    * How a type without a registered {@link AdvancedExternalizer} is marshalled.
+    */
+   static final class TypeInfo {
+      static final int ENUM = 0;
+      static final int EXTERNALIZED = 1;
+      static final int GENERATED = 2;
+      static final int SERIALIZED = 3;
+      static final int UNSUPPORTED = 4;
+
+      final int kind;
+      final Object[] enumConstants;
+      final Externalizer externalizer;
+      final GeneratedExternalizer generated;
+
+      private TypeInfo(int kind, Object[] enumConstants, Externalizer externalizer, GeneratedExternalizer generated) {
+         this.kind = kind;
+         this.enumConstants = enumConstants;
+         this.externalizer = externalizer;
+         this.generated = generated;
+      }
+
+      static TypeInfo resolve(Class<?> type) {
+         if (type.isEnum())
+            return new TypeInfo(ENUM, type.getEnumConstants(), null, null);
+
+         SerializeWith serializeWith = type.getAnnotation(SerializeWith.class);
+         if (serializeWith != null)
+            return new TypeInfo(EXTERNALIZED, null, Util.getInstance(serializeWith.value()), null);
+
+         GeneratedExternalizer generated = GeneratedExternalizer.generate(type);
+         if (generated != null)
+            return new TypeInfo(GENERATED, null, null, generated);
+
+         return new TypeInfo(Serializable.class.isAssignableFrom(type) ? SERIALIZED : UNSUPPORTED, null, null, null);
+      }
+   }
+}
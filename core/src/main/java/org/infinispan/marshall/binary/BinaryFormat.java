@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.binary;
+
+/**
+ * Wire format constants used by {@link BinaryMarshaller}. Every object written starts with one of these tags, which
+ * tells the reader how the remaining bytes of the object are laid out.
+ *
+ * @since 5.0
+ */
+interface BinaryFormat {
+   /**
+    * Written once at the start of every stream or buffer, so that data produced by a different marshaller (or a
+    * different revision of this one) is rejected instead of misread.
+    */
+   int VERSION = 1;
+
+   int NULL = 0;
+   int STRING = 1;
+   int BYTE_ARRAY = 2;
+   int TRUE = 3;
+   int FALSE = 4;
+   int BYTE = 5;
+   int SHORT = 6;
+   int CHAR = 7;
+   int INT = 8;
+   int LONG = 9;
+   int FLOAT = 10;
+   int DOUBLE = 11;
+   // an internal AdvancedExternalizer, followed by its one byte id from org.infinispan.marshall.Ids
+   int INTERNAL = 12;
+   // a user AdvancedExternalizer registered in the global configuration, followed by its id as a varint
+   int FOREIGN = 13;
+   // a class annotated with @SerializeWith, followed by a class reference
+   int EXTERNALIZED = 14;
+   // a user type marshalled field by field through a GeneratedExternalizer, followed by a class reference
+   int GENERATED = 15;
+   // a back reference to an object already written through a GeneratedExternalizer in the same stream
+   int REFERENCE = 16;
+   int ENUM = 17;
+   int OBJECT_ARRAY = 18;
+   // anything else that implements java.io.Serializable, written as a length prefixed Java serialization payload
+   int SERIALIZED = 19;
+}
@@ -0,0 +1,269 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.binary;
+
+import org.infinispan.CacheException;
+import org.infinispan.commands.RemoteCommandsFactory;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.io.ByteBuffer;
+import org.infinispan.marshall.AbstractMarshaller;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.ConcurrentWeakKeyHashMap;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link StreamingMarshaller} that writes a compact binary format directly into byte arrays, without going through
+ * JBoss Marshalling. It can be plugged in as the global marshaller with
+ * {@link org.infinispan.config.FluentGlobalConfiguration.SerializationConfig#marshallerClass(Class)}. Since the
+ * format differs from that of {@link org.infinispan.marshall.VersionAwareMarshaller}, all nodes in a cluster, and any
+ * persistent cache store, must use the same marshaller.
+ * <p/>
+ * Types are handled, in order of preference, by:
+ * <ul>
+ *    <li>built in encodings for <tt>null</tt>, strings, byte arrays and boxed primitives,</li>
+ *    <li>the internal {@link org.infinispan.marshall.AdvancedExternalizer}s and any configured by the user, exactly
+ *        as with the default marshaller,</li>
+ *    <li>enums, object arrays and types annotated with {@link org.infinispan.marshall.SerializeWith},</li>
+ *    <li>a {@link GeneratedExternalizer} built on first use for plain serializable user types,</li>
+ *    <li>and finally Java serialization for anything else that is {@link java.io.Serializable}.</li>
+ * </ul>
+ * Each thread keeps one output and one input that are reused from call to call, so marshalling to a byte array
+ * allocates little more than the resulting array. Nested marshalling on the same thread, for example from within an
+ * externalizer, is detected and served by a fresh output or input.
+ *
+ * @since 5.0
+ */
+public class BinaryMarshaller extends AbstractMarshaller implements StreamingMarshaller {
+   private static final Log log = LogFactory.getLog(BinaryMarshaller.class);
+
+   /**
+    * Per thread buffers that grow beyond this size while marshalling a large object are dropped afterwards, rather
+    * than pinning that memory for the lifetime of the thread.
+    */
+   private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+   private ClassLoader loader;
+   private RemoteCommandsFactory remoteCommandsFactory;
+   private GlobalConfiguration globalCfg;
+   private volatile BinaryExternalizerTable table;
+
+   private final ConcurrentMap<Class, Boolean> isMarshallableMap = new ConcurrentWeakKeyHashMap<Class, Boolean>();
+
+   private final ThreadLocal<BinaryObjectOutput> outputTL = new ThreadLocal<BinaryObjectOutput>() {
+      @Override
+      protected BinaryObjectOutput initialValue() {
+         return new BinaryObjectOutput(DEFAULT_BUF_SIZE);
+      }
+   };
+
+   private final ThreadLocal<BinaryObjectInput> inputTL = new ThreadLocal<BinaryObjectInput>() {
+      @Override
+      protected BinaryObjectInput initialValue() {
+         return new BinaryObjectInput(BinaryMarshaller.this, DEFAULT_BUF_SIZE);
+      }
+   };
+
+   @Inject
+   public void inject(ClassLoader loader, RemoteCommandsFactory remoteCommandsFactory, GlobalConfiguration globalCfg) {
+      this.loader = loader;
+      this.remoteCommandsFactory = remoteCommandsFactory;
+      this.globalCfg = globalCfg;
+   }
+
+   @Start(priority = 9) // should start before Transport component
+   public void start() {
+      if (log.isDebugEnabled()) log.debug("Using binary marshaller");
+      table = new BinaryExternalizerTable(remoteCommandsFactory, this, globalCfg);
+   }
+
+   @Stop(priority = 11) // Stop after transport to avoid send/receive and marshaller not being ready
+   public void stop() {
+      table = null;
+      isMarshallableMap.clear();
+   }
+
+   @Override
+   public byte[] objectToByteBuffer(Object obj, int estimatedSize) throws IOException, InterruptedException {
+      BinaryObjectOutput out = acquireOutput(null);
+      try {
+         out.writeByte(BinaryFormat.VERSION);
+         writeObject(obj, out);
+         byte[] bytes = new byte[out.size()];
+         System.arraycopy(out.getRawBuffer(), 0, bytes, 0, bytes.length);
+         return bytes;
+      } finally {
+         releaseOutput(out);
+      }
+   }
+
+   @Override
+   protected ByteBuffer objectToBuffer(Object o, int estimatedSize) throws IOException, InterruptedException {
+      // The per thread buffer is reused, so what is handed out has to be a copy anyway
+      byte[] bytes = objectToByteBuffer(o, estimatedSize);
+      return new ByteBuffer(bytes, 0, bytes.length);
+   }
+
+   @Override
+   public Object objectFromByteBuffer(byte[] buf, int offset, int length) throws IOException, ClassNotFoundException {
+      BinaryObjectInput in = inputTL.get();
+      if (in.inUse) in = new BinaryObjectInput(this, DEFAULT_BUF_SIZE);
+      in.start(getTable(), buf, offset, length);
+      try {
+         readVersion(in);
+         return in.readObject();
+      } finally {
+         in.finish(MAX_RETAINED_BUFFER_SIZE);
+      }
+   }
+
+   @Override
+   public ObjectOutput startObjectOutput(OutputStream os, boolean isReentrant) throws IOException {
+      // Reentrant use is detected through the in use flag, so isReentrant does not need special treatment
+      BinaryObjectOutput out = acquireOutput(os);
+      try {
+         out.writeByte(BinaryFormat.VERSION);
+      } catch (IOException e) {
+         releaseOutput(out);
+         throw e;
+      }
+      return out;
+   }
+
+   @Override
+   public void finishObjectOutput(ObjectOutput oo) {
+      try {
+         releaseOutput((BinaryObjectOutput) oo);
+      } catch (IOException e) {
+         if (log.isDebugEnabled()) log.debug("Unable to flush marshalled output", e);
+      }
+   }
+
+   @Override
+   public void objectToObjectStream(Object obj, ObjectOutput out) throws IOException {
+      out.writeObject(obj);
+   }
+
+   @Override
+   public ObjectInput startObjectInput(InputStream is, boolean isReentrant) throws IOException {
+      BinaryObjectInput in = inputTL.get();
+      if (in.inUse) in = new BinaryObjectInput(this, DEFAULT_BUF_SIZE);
+      in.start(getTable(), is);
+      try {
+         readVersion(in);
+      } catch (IOException e) {
+         in.finish(MAX_RETAINED_BUFFER_SIZE);
+         throw e;
+      }
+      return in;
+   }
+
+   @Override
+   public void finishObjectInput(ObjectInput oi) {
+      if (oi != null) ((BinaryObjectInput) oi).finish(MAX_RETAINED_BUFFER_SIZE);
+   }
+
+   @Override
+   public Object objectFromObjectStream(ObjectInput in) throws IOException, ClassNotFoundException, InterruptedException {
+      return in.readObject();
+   }
+
+   @Override
+   public boolean isMarshallable(Object o) {
+      Class clazz = o.getClass();
+      Boolean isClassMarshallable = isMarshallableMap.get(clazz);
+      if (isClassMarshallable != null) return isClassMarshallable;
+
+      boolean isMarshallable = true;
+      try {
+         objectToByteBuffer(o);
+      } catch (Exception e) {
+         isMarshallable = false;
+      }
+      isMarshallableMap.putIfAbsent(clazz, isMarshallable);
+      return isMarshallable;
+   }
+
+   /**
+    * Loads a class named in a stream, trying the thread context class loader first and then the class loader the
+    * marshaller was configured with.
+    */
+   Class<?> loadClass(String name) throws ClassNotFoundException {
+      ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+      if (tccl != null) {
+         try {
+            return Class.forName(name, false, tccl);
+         } catch (ClassNotFoundException e) {
+            // fall back to the configured class loader
+         }
+      }
+      return Class.forName(name, false, loader != null ? loader : BinaryMarshaller.class.getClassLoader());
+   }
+
+   private void writeObject(Object obj, BinaryObjectOutput out) throws IOException, InterruptedException {
+      try {
+         out.writeObject(obj);
+      } catch (java.io.NotSerializableException nse) {
+         if (log.isDebugEnabled()) log.debug("Object is not serializable", nse);
+         throw new org.infinispan.marshall.NotSerializableException(nse.getMessage(), nse.getCause());
+      } catch (IOException ioe) {
+         if (ioe.getCause() instanceof InterruptedException) throw (InterruptedException) ioe.getCause();
+         throw ioe;
+      }
+   }
+
+   private BinaryObjectOutput acquireOutput(OutputStream sink) {
+      BinaryObjectOutput out = outputTL.get();
+      if (out.inUse) out = new BinaryObjectOutput(DEFAULT_BUF_SIZE);
+      out.start(getTable(), sink);
+      return out;
+   }
+
+   private void releaseOutput(BinaryObjectOutput out) throws IOException {
+      out.finish(MAX_RETAINED_BUFFER_SIZE);
+   }
+
+   private BinaryExternalizerTable getTable() {
+      BinaryExternalizerTable t = table;
+      if (t == null)
+         throw new CacheException("Cache manager is either starting up or shutting down, so the binary marshaller is not available");
+      return t;
+   }
+
+   private void readVersion(BinaryObjectInput in) throws IOException {
+      int version = in.readUnsignedByte();
+      if (version != BinaryFormat.VERSION)
+         throw new IOException(String.format(
+               "Stream was not written by this marshaller: expected format version %d but read %d", BinaryFormat.VERSION, version));
+   }
+}
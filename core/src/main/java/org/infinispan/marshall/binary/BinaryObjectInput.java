@@ -0,0 +1,474 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.binary;
+
+import org.infinispan.CacheException;
+import org.infinispan.marshall.AdvancedExternalizer;
+import org.infinispan.marshall.binary.BinaryExternalizerTable.TypeInfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+
+import static org.infinispan.marshall.binary.BinaryFormat.*;
+
+/**
+ * The {@link ObjectInput} handed out by {@link BinaryMarshaller}, reading what {@link BinaryObjectOutput} writes.
+ * When reading from a byte array the array is read in place; when reading from a stream, bytes are pulled into an
+ * internal buffer that is reused across calls on the same thread. Like any buffered reader, it may read ahead of the
+ * last object returned.
+ *
+ * @since 5.0
+ */
+final class BinaryObjectInput implements ObjectInput {
+   private final BinaryMarshaller marshaller;
+   private final int initialCapacity;
+   private BinaryExternalizerTable table;
+   private byte[] buf;
+   private int pos;
+   private int limit;
+   private InputStream source;
+   private byte[] streamBuf;
+   private ArrayList<Class<?>> classes;
+   private ArrayList<Object> references;
+   boolean inUse;
+
+   BinaryObjectInput(BinaryMarshaller marshaller, int initialCapacity) {
+      this.marshaller = marshaller;
+      this.initialCapacity = initialCapacity;
+   }
+
+   void start(BinaryExternalizerTable table, byte[] bytes, int offset, int length) {
+      this.table = table;
+      this.buf = bytes;
+      this.pos = offset;
+      this.limit = offset + length;
+      this.source = null;
+      this.inUse = true;
+   }
+
+   void start(BinaryExternalizerTable table, InputStream source) {
+      if (streamBuf == null) streamBuf = new byte[initialCapacity];
+      this.table = table;
+      this.buf = streamBuf;
+      this.pos = 0;
+      this.limit = 0;
+      this.source = source;
+      this.inUse = true;
+   }
+
+   /**
+    * Forgets the state of the stream read so that the input can be reused. A stream buffer that grew past
+    * <tt>maxRetained</tt> bytes is released rather than kept around.
+    */
+   void finish(int maxRetained) {
+      buf = null;
+      source = null;
+      table = null;
+      if (classes != null) classes.clear();
+      if (references != null) references.clear();
+      if (streamBuf != null && streamBuf.length > maxRetained) streamBuf = null;
+      inUse = false;
+   }
+
+   @Override
+   public Object readObject() throws ClassNotFoundException, IOException {
+      int tag = readUnsignedByte();
+      switch (tag) {
+         case NULL:
+            return null;
+         case STRING:
+            return readString();
+         case BYTE_ARRAY:
+            byte[] bytes = new byte[readVInt()];
+            readFully(bytes);
+            return bytes;
+         case TRUE:
+            return Boolean.TRUE;
+         case FALSE:
+            return Boolean.FALSE;
+         case BYTE:
+            return readByte();
+         case SHORT:
+            return readShort();
+         case CHAR:
+            return readChar();
+         case INT:
+            int i = readVInt();
+            return (i >>> 1) ^ -(i & 1);
+         case LONG:
+            long l = readVLong();
+            return (l >>> 1) ^ -(l & 1);
+         case FLOAT:
+            return readFloat();
+         case DOUBLE:
+            return readDouble();
+         case INTERNAL:
+            return readExternalized(table.getInternalReader(readUnsignedByte()), "internal");
+         case FOREIGN:
+            return readExternalized(table.getForeignReader(readVInt()), "foreign");
+         case ENUM:
+            return readEnum();
+         case OBJECT_ARRAY:
+            return readObjectArray();
+         case EXTERNALIZED:
+            Class<?> type = readClass();
+            TypeInfo info = table.getTypeInfo(type);
+            if (info.kind != TypeInfo.EXTERNALIZED)
+               throw new InvalidClassException(type.getName(), "Not annotated with @SerializeWith on this node");
+            return info.externalizer.readObject(this);
+         case GENERATED:
+            return readGenerated();
+         case REFERENCE:
+            int handle = readVInt();
+            if (references == null || handle >= references.size())
+               throw new StreamCorruptedException("Invalid back reference " + handle);
+            return references.get(handle);
+         case SERIALIZED:
+            return readSerialized();
+         default:
+            throw new StreamCorruptedException("Unknown object tag " + tag);
+      }
+   }
+
+   private Object readExternalized(AdvancedExternalizer ext, String kind) throws IOException, ClassNotFoundException {
+      if (ext == null)
+         throw new CacheException(String.format(
+               "Type of data read is unknown. The %s externalizer id read is not amongst known externalizers.", kind));
+      return ext.readObject(this);
+   }
+
+   private Object readEnum() throws IOException, ClassNotFoundException {
+      Class<?> type = readClass();
+      int ordinal = readVInt();
+      TypeInfo info = table.getTypeInfo(type);
+      if (info.kind != TypeInfo.ENUM || ordinal >= info.enumConstants.length)
+         throw new InvalidClassException(type.getName(), "No enum constant with ordinal " + ordinal);
+      return info.enumConstants[ordinal];
+   }
+
+   private Object readObjectArray() throws IOException, ClassNotFoundException {
+      Class<?> componentType = readClass();
+      int length = readVInt();
+      Object[] array = (Object[]) Array.newInstance(componentType, length);
+      for (int i = 0; i < length; i++) array[i] = readObject();
+      return array;
+   }
+
+   private Object readGenerated() throws IOException, ClassNotFoundException {
+      int known = classes == null ? 0 : classes.size();
+      Class<?> type = readClass();
+      TypeInfo info = table.getTypeInfo(type);
+      if (info.kind != TypeInfo.GENERATED)
+         throw new InvalidClassException(type.getName(), "Not eligible for a generated externalizer on this node");
+      if (classes.size() > known && readInt() != info.generated.getFingerprint())
+         throw new InvalidClassException(type.getName(), "Local class has a different field layout than the one written");
+      Object obj = info.generated.newInstance();
+      // Register before reading fields, so that fields referring back to this object resolve to it
+      if (references == null) references = new ArrayList<Object>();
+      references.add(obj);
+      info.generated.readFields(this, obj);
+      return obj;
+   }
+
+   private Object readSerialized() throws IOException, ClassNotFoundException {
+      int length = readVInt();
+      InputStream is;
+      if (limit - pos >= length) {
+         is = new ByteArrayInputStream(buf, pos, length);
+         pos += length;
+      } else {
+         byte[] bytes = new byte[length];
+         readFully(bytes);
+         is = new ByteArrayInputStream(bytes);
+      }
+      return new ClassLoaderAwareObjectInputStream(is, marshaller).readObject();
+   }
+
+   private Class<?> readClass() throws IOException, ClassNotFoundException {
+      int index = readVInt();
+      if (index == 0) {
+         Class<?> type = marshaller.loadClass(readString());
+         if (classes == null) classes = new ArrayList<Class<?>>();
+         classes.add(type);
+         return type;
+      }
+      if (classes == null || index > classes.size())
+         throw new StreamCorruptedException("Invalid class reference " + index);
+      return classes.get(index - 1);
+   }
+
+   String readString() throws IOException {
+      int len = readVInt();
+      char[] chars = new char[len];
+      int i = 0;
+      while (i < len) {
+         if (limit - pos >= 3) {
+            // Enough bytes buffered for the widest encoding of a char, so no bounds checks needed
+            int b = buf[pos++] & 0xFF;
+            if (b < 0x80)
+               chars[i++] = (char) b;
+            else if ((b & 0xE0) == 0xC0)
+               chars[i++] = (char) (((b & 0x1F) << 6) | (buf[pos++] & 0x3F));
+            else
+               chars[i++] = (char) (((b & 0x0F) << 12) | ((buf[pos++] & 0x3F) << 6) | (buf[pos++] & 0x3F));
+         } else {
+            int b = readUnsignedByte();
+            if (b < 0x80)
+               chars[i++] = (char) b;
+            else if ((b & 0xE0) == 0xC0)
+               chars[i++] = (char) (((b & 0x1F) << 6) | (readUnsignedByte() & 0x3F));
+            else
+               chars[i++] = (char) (((b & 0x0F) << 12) | ((readUnsignedByte() & 0x3F) << 6) | (readUnsignedByte() & 0x3F));
+         }
+      }
+      return new String(chars);
+   }
+
+   int readVInt() throws IOException {
+      int i = 0;
+      for (int shift = 0; ; shift += 7) {
+         int b = readUnsignedByte();
+         i |= (b & 0x7F) << shift;
+         if ((b & 0x80) == 0) return i;
+      }
+   }
+
+   long readVLong() throws IOException {
+      long l = 0;
+      for (int shift = 0; ; shift += 7) {
+         int b = readUnsignedByte();
+         l |= (long) (b & 0x7F) << shift;
+         if ((b & 0x80) == 0) return l;
+      }
+   }
+
+   private void require(int bytes) throws IOException {
+      if (limit - pos >= bytes) return;
+      if (source == null) throw new EOFException();
+      int remaining = limit - pos;
+      if (buf.length < bytes) {
+         byte[] grown = new byte[Math.max(bytes, buf.length << 1)];
+         System.arraycopy(buf, pos, grown, 0, remaining);
+         buf = streamBuf = grown;
+      } else if (pos > 0) {
+         System.arraycopy(buf, pos, buf, 0, remaining);
+      }
+      pos = 0;
+      limit = remaining;
+      while (limit < bytes) {
+         int read = source.read(buf, limit, buf.length - limit);
+         if (read < 0) throw new EOFException();
+         limit += read;
+      }
+   }
+
+   private boolean refill() throws IOException {
+      if (source == null) return false;
+      pos = 0;
+      limit = 0;
+      int read = source.read(buf, 0, buf.length);
+      if (read <= 0) return false;
+      limit = read;
+      return true;
+   }
+
+   @Override
+   public int read() throws IOException {
+      if (pos == limit && !refill()) return -1;
+      return buf[pos++] & 0xFF;
+   }
+
+   @Override
+   public int read(byte[] b) throws IOException {
+      return read(b, 0, b.length);
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) return 0;
+      if (pos == limit && !refill()) return -1;
+      int n = Math.min(len, limit - pos);
+      System.arraycopy(buf, pos, b, off, n);
+      pos += n;
+      return n;
+   }
+
+   @Override
+   public long skip(long n) throws IOException {
+      long skipped = Math.min(n, limit - pos);
+      pos += skipped;
+      if (skipped < n && source != null) skipped += source.skip(n - skipped);
+      return skipped;
+   }
+
+   @Override
+   public int available() throws IOException {
+      return limit - pos + (source != null ? source.available() : 0);
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (source != null) source.close();
+   }
+
+   @Override
+   public void readFully(byte[] b) throws IOException {
+      readFully(b, 0, b.length);
+   }
+
+   @Override
+   public void readFully(byte[] b, int off, int len) throws IOException {
+      int buffered = Math.min(len, limit - pos);
+      System.arraycopy(buf, pos, b, off, buffered);
+      pos += buffered;
+      off += buffered;
+      len -= buffered;
+      if (len == 0) return;
+      if (source == null) throw new EOFException();
+      // Large reads go straight from the stream to the caller's array
+      while (len > 0) {
+         int read = source.read(b, off, len);
+         if (read < 0) throw new EOFException();
+         off += read;
+         len -= read;
+      }
+   }
+
+   @Override
+   public int skipBytes(int n) throws IOException {
+      return (int) skip(n);
+   }
+
+   @Override
+   public boolean readBoolean() throws IOException {
+      require(1);
+      return buf[pos++] != 0;
+   }
+
+   @Override
+   public byte readByte() throws IOException {
+      require(1);
+      return buf[pos++];
+   }
+
+   @Override
+   public int readUnsignedByte() throws IOException {
+      require(1);
+      return buf[pos++] & 0xFF;
+   }
+
+   @Override
+   public short readShort() throws IOException {
+      require(2);
+      return (short) (((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF));
+   }
+
+   @Override
+   public int readUnsignedShort() throws IOException {
+      require(2);
+      return ((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF);
+   }
+
+   @Override
+   public char readChar() throws IOException {
+      return (char) readUnsignedShort();
+   }
+
+   @Override
+   public int readInt() throws IOException {
+      require(4);
+      return ((buf[pos++] & 0xFF) << 24) | ((buf[pos++] & 0xFF) << 16) | ((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF);
+   }
+
+   @Override
+   public long readLong() throws IOException {
+      require(8);
+      return ((long) readIntUnchecked() << 32) | (readIntUnchecked() & 0xFFFFFFFFL);
+   }
+
+   private int readIntUnchecked() {
+      return ((buf[pos++] & 0xFF) << 24) | ((buf[pos++] & 0xFF) << 16) | ((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF);
+   }
+
+   @Override
+   public float readFloat() throws IOException {
+      return Float.intBitsToFloat(readInt());
+   }
+
+   @Override
+   public double readDouble() throws IOException {
+      return Double.longBitsToDouble(readLong());
+   }
+
+   @Override
+   public String readLine() throws IOException {
+      StringBuilder sb = new StringBuilder();
+      int c = read();
+      if (c < 0) return null;
+      while (c >= 0 && c != '\n') {
+         if (c == '\r') {
+            if ((pos < limit || refill()) && buf[pos] == '\n') pos++;
+            break;
+         }
+         sb.append((char) c);
+         c = read();
+      }
+      return sb.toString();
+   }
+
+   @Override
+   public String readUTF() throws IOException {
+      return readString();
+   }
+
+   /**
+    * Resolves classes of Java serialized payloads the same way the rest of the stream does.
+    */
+   private static final class ClassLoaderAwareObjectInputStream extends ObjectInputStream {
+      private final BinaryMarshaller marshaller;
+
+      ClassLoaderAwareObjectInputStream(InputStream in, BinaryMarshaller marshaller) throws IOException {
+         super(in);
+         this.marshaller = marshaller;
+      }
+
+      @Override
+      protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+         try {
+            return marshaller.loadClass(desc.getName());
+         } catch (ClassNotFoundException e) {
+            // Primitive types and arrays of them
+            return super.resolveClass(desc);
+         }
+      }
+   }
+}
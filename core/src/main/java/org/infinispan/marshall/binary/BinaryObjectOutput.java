@@ -0,0 +1,423 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.binary;
+
+import org.infinispan.io.ExposedByteArrayOutputStream;
+import org.infinispan.marshall.AdvancedExternalizer;
+import org.infinispan.marshall.binary.BinaryExternalizerTable.TypeInfo;
+import org.infinispan.marshall.binary.BinaryExternalizerTable.Writer;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+
+import static org.infinispan.marshall.binary.BinaryFormat.*;
+
+/**
+ * The {@link ObjectOutput} handed out by {@link BinaryMarshaller}. Bytes are written straight into a growable array
+ * that the marshaller reuses across calls on the same thread. When writing to a stream, the array is flushed to the
+ * stream whenever it fills up instead of growing, so memory use stays bounded for large state transfers.
+ * <p/>
+ * Class names and objects written through a {@link GeneratedExternalizer} are remembered for the lifetime of the
+ * output, so each class name is only written once, and shared or cyclic references are written as back references.
+ * Both tables are only allocated when user types are actually written.
+ *
+ * @since 5.0
+ */
+final class BinaryObjectOutput implements ObjectOutput {
+   private static final int MAX_CHARS_RESERVED = 1 << 20;
+   private final int initialCapacity;
+   private BinaryExternalizerTable table;
+   private byte[] buf;
+   private int pos;
+   private OutputStream sink;
+   private IdentityHashMap<Class<?>, Integer> classes;
+   private IdentityHashMap<Object, Integer> references;
+   boolean inUse;
+
+   BinaryObjectOutput(int initialCapacity) {
+      this.initialCapacity = initialCapacity;
+      this.buf = new byte[initialCapacity];
+   }
+
+   /**
+    * Prepares the output for a new stream.
+    *
+    * @param table externalizers of the marshaller currently running
+    * @param sink stream that bytes are flushed to, or null to accumulate everything in the internal buffer
+    */
+   void start(BinaryExternalizerTable table, OutputStream sink) {
+      this.table = table;
+      this.pos = 0;
+      this.sink = sink;
+      this.inUse = true;
+   }
+
+   /**
+    * Flushes any pending bytes to the sink and forgets the state of the stream written, so that the output can be
+    * reused. Buffers that grew past <tt>maxRetained</tt> bytes are released rather than kept around.
+    */
+   void finish(int maxRetained) throws IOException {
+      try {
+         if (sink != null) flushBuffer();
+      } finally {
+         sink = null;
+         table = null;
+         pos = 0;
+         if (classes != null) classes.clear();
+         if (references != null) references.clear();
+         if (buf.length > maxRetained) buf = new byte[initialCapacity];
+         inUse = false;
+      }
+   }
+
+   byte[] getRawBuffer() {
+      return buf;
+   }
+
+   int size() {
+      return pos;
+   }
+
+   @Override
+   public void writeObject(Object obj) throws IOException {
+      if (obj == null) {
+         writeByte(NULL);
+         return;
+      }
+      Class<?> type = obj.getClass();
+      if (type == String.class) {
+         writeByte(STRING);
+         writeString((String) obj);
+      } else if (type == byte[].class) {
+         byte[] bytes = (byte[]) obj;
+         writeByte(BYTE_ARRAY);
+         writeVInt(bytes.length);
+         write(bytes, 0, bytes.length);
+      } else if (type == Integer.class) {
+         writeByte(INT);
+         writeVInt(zigZag((Integer) obj));
+      } else if (type == Long.class) {
+         writeByte(LONG);
+         writeVLong(zigZag((Long) obj));
+      } else if (type == Boolean.class) {
+         writeByte((Boolean) obj ? TRUE : FALSE);
+      } else if (type == Byte.class) {
+         writeByte(BYTE);
+         writeByte((Byte) obj);
+      } else if (type == Short.class) {
+         writeByte(SHORT);
+         writeShort((Short) obj);
+      } else if (type == Character.class) {
+         writeByte(CHAR);
+         writeChar((Character) obj);
+      } else if (type == Float.class) {
+         writeByte(FLOAT);
+         writeFloat((Float) obj);
+      } else if (type == Double.class) {
+         writeByte(DOUBLE);
+         writeDouble((Double) obj);
+      } else {
+         Writer writer = table.getWriter(type);
+         if (writer != null)
+            writeExternalized(writer, obj);
+         else
+            writeUserObject(type, obj);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private void writeExternalized(Writer writer, Object obj) throws IOException {
+      if (writer.foreign) {
+         writeByte(FOREIGN);
+         writeVInt(writer.id);
+      } else {
+         writeByte(INTERNAL);
+         writeByte(writer.id);
+      }
+      ((AdvancedExternalizer<Object>) writer.externalizer).writeObject(this, obj);
+   }
+
+   @SuppressWarnings("unchecked")
+   private void writeUserObject(Class<?> type, Object obj) throws IOException {
+      if (type.isArray() && !type.getComponentType().isPrimitive()) {
+         Object[] array = (Object[]) obj;
+         writeByte(OBJECT_ARRAY);
+         writeClass(type.getComponentType());
+         writeVInt(array.length);
+         for (Object element : array) writeObject(element);
+         return;
+      }
+
+      if (obj instanceof Enum) type = ((Enum<?>) obj).getDeclaringClass();
+      TypeInfo info = table.getTypeInfo(type);
+      switch (info.kind) {
+         case TypeInfo.ENUM:
+            writeByte(ENUM);
+            writeClass(type);
+            writeVInt(((Enum<?>) obj).ordinal());
+            break;
+         case TypeInfo.EXTERNALIZED:
+            writeByte(EXTERNALIZED);
+            writeClass(type);
+            info.externalizer.writeObject(this, obj);
+            break;
+         case TypeInfo.GENERATED:
+            if (references == null) references = new IdentityHashMap<Object, Integer>();
+            Integer handle = references.get(obj);
+            if (handle != null) {
+               writeByte(REFERENCE);
+               writeVInt(handle);
+            } else {
+               references.put(obj, references.size());
+               writeByte(GENERATED);
+               if (writeClass(type)) writeInt(info.generated.getFingerprint());
+               info.generated.writeObject(this, obj);
+            }
+            break;
+         case TypeInfo.SERIALIZED:
+            writeSerialized(obj);
+            break;
+         default:
+            throw new NotSerializableException(type.getName());
+      }
+   }
+
+   private void writeSerialized(Object obj) throws IOException {
+      ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(128);
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeObject(obj);
+      oos.close();
+      writeByte(SERIALIZED);
+      writeVInt(baos.size());
+      write(baos.getRawBuffer(), 0, baos.size());
+   }
+
+   /**
+    * Writes a class reference: 0 followed by the class name the first time a class is written to this output, or its
+    * index plus one afterwards.
+    *
+    * @return true if the class was written in full, false if a back reference was written
+    */
+   private boolean writeClass(Class<?> type) throws IOException {
+      if (classes == null) classes = new IdentityHashMap<Class<?>, Integer>();
+      Integer index = classes.get(type);
+      if (index != null) {
+         writeVInt(index + 1);
+         return false;
+      }
+      classes.put(type, classes.size());
+      writeVInt(0);
+      writeString(type.getName());
+      return true;
+   }
+
+   /**
+    * Strings are written as their length in chars followed by each char in UTF-8 style, one to three bytes, without
+    * the 64k limit of {@link java.io.DataOutput#writeUTF(String)}.
+    */
+   void writeString(String s) throws IOException {
+      int len = s.length();
+      writeVInt(len);
+      for (int i = 0; i < len; i++) {
+         if (buf.length - pos < 3) reserveForChars(len - i);
+         char c = s.charAt(i);
+         if (c < 0x80 && c > 0) {
+            buf[pos++] = (byte) c;
+         } else if (c < 0x800) {
+            buf[pos++] = (byte) (0xC0 | (c >> 6));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+         } else {
+            buf[pos++] = (byte) (0xE0 | (c >> 12));
+            buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+         }
+      }
+   }
+
+   private void reserveForChars(int chars) throws IOException {
+      // When streaming, flushing makes room; otherwise grow once for the whole remainder of the string
+      ensureCapacity(sink != null ? 3 : Math.min(chars, MAX_CHARS_RESERVED) * 3);
+   }
+
+   void writeVInt(int i) throws IOException {
+      ensureCapacity(5);
+      while ((i & ~0x7F) != 0) {
+         buf[pos++] = (byte) ((i & 0x7F) | 0x80);
+         i >>>= 7;
+      }
+      buf[pos++] = (byte) i;
+   }
+
+   void writeVLong(long l) throws IOException {
+      ensureCapacity(10);
+      while ((l & ~0x7FL) != 0) {
+         buf[pos++] = (byte) ((l & 0x7F) | 0x80);
+         l >>>= 7;
+      }
+      buf[pos++] = (byte) l;
+   }
+
+   private static int zigZag(int i) {
+      return (i << 1) ^ (i >> 31);
+   }
+
+   private static long zigZag(long l) {
+      return (l << 1) ^ (l >> 63);
+   }
+
+   private void ensureCapacity(int bytes) throws IOException {
+      if (buf.length - pos >= bytes) return;
+      if (sink != null) {
+         flushBuffer();
+         if (buf.length >= bytes) return;
+      }
+      byte[] grown = new byte[Math.max(buf.length << 1, pos + bytes)];
+      System.arraycopy(buf, 0, grown, 0, pos);
+      buf = grown;
+   }
+
+   private void flushBuffer() throws IOException {
+      if (pos > 0) {
+         sink.write(buf, 0, pos);
+         pos = 0;
+      }
+   }
+
+   @Override
+   public void write(int b) throws IOException {
+      ensureCapacity(1);
+      buf[pos++] = (byte) b;
+   }
+
+   @Override
+   public void write(byte[] b) throws IOException {
+      write(b, 0, b.length);
+   }
+
+   @Override
+   public void write(byte[] b, int off, int len) throws IOException {
+      if (sink != null && len >= buf.length) {
+         // Too big to be worth copying, hand it straight to the stream
+         flushBuffer();
+         sink.write(b, off, len);
+         return;
+      }
+      ensureCapacity(len);
+      System.arraycopy(b, off, buf, pos, len);
+      pos += len;
+   }
+
+   @Override
+   public void writeBoolean(boolean v) throws IOException {
+      write(v ? 1 : 0);
+   }
+
+   @Override
+   public void writeByte(int v) throws IOException {
+      write(v);
+   }
+
+   @Override
+   public void writeShort(int v) throws IOException {
+      ensureCapacity(2);
+      buf[pos++] = (byte) (v >> 8);
+      buf[pos++] = (byte) v;
+   }
+
+   @Override
+   public void writeChar(int v) throws IOException {
+      writeShort(v);
+   }
+
+   @Override
+   public void writeInt(int v) throws IOException {
+      ensureCapacity(4);
+      buf[pos++] = (byte) (v >> 24);
+      buf[pos++] = (byte) (v >> 16);
+      buf[pos++] = (byte) (v >> 8);
+      buf[pos++] = (byte) v;
+   }
+
+   @Override
+   public void writeLong(long v) throws IOException {
+      ensureCapacity(8);
+      buf[pos++] = (byte) (v >> 56);
+      buf[pos++] = (byte) (v >> 48);
+      buf[pos++] = (byte) (v >> 40);
+      buf[pos++] = (byte) (v >> 32);
+      buf[pos++] = (byte) (v >> 24);
+      buf[pos++] = (byte) (v >> 16);
+      buf[pos++] = (byte) (v >> 8);
+      buf[pos++] = (byte) v;
+   }
+
+   @Override
+   public void writeFloat(float v) throws IOException {
+      writeInt(Float.floatToIntBits(v));
+   }
+
+   @Override
+   public void writeDouble(double v) throws IOException {
+      writeLong(Double.doubleToLongBits(v));
+   }
+
+   @Override
+   public void writeBytes(String s) throws IOException {
+      int len = s.length();
+      ensureCapacity(len);
+      for (int i = 0; i < len; i++) buf[pos++] = (byte) s.charAt(i);
+   }
+
+   @Override
+   public void writeChars(String s) throws IOException {
+      int len = s.length();
+      ensureCapacity(len << 1);
+      for (int i = 0; i < len; i++) {
+         char c = s.charAt(i);
+         buf[pos++] = (byte) (c >> 8);
+         buf[pos++] = (byte) c;
+      }
+   }
+
+   @Override
+   public void writeUTF(String s) throws IOException {
+      writeString(s);
+   }
+
+   @Override
+   public void flush() throws IOException {
+      if (sink != null) {
+         flushBuffer();
+         sink.flush();
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      flush();
+   }
+}
@@ -0,0 +1,296 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.binary;
+
+import org.infinispan.CacheException;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An externalizer built at runtime for a user type that has no {@link org.infinispan.marshall.AdvancedExternalizer}
+ * or {@link org.infinispan.marshall.SerializeWith} annotation. It writes the same fields Java serialization would
+ * (every non-static, non-transient field of every serializable class in the hierarchy) but without any of the class
+ * descriptor, block data or handle table overhead of {@link java.io.ObjectOutputStream}.
+ * <p/>
+ * Field accessors are resolved once per class, and the reflective calls made through them are turned into generated
+ * bytecode accessors by the JVM after a few invocations, so the steady state cost is close to that of a hand written
+ * externalizer.
+ * <p/>
+ * Only plain types are eligible: the class must be a concrete {@link Serializable} (and not {@link Externalizable})
+ * type outside the JDK, declare a no-arg constructor, and neither it nor its superclasses may customise serialization
+ * through <tt>writeObject</tt>, <tt>readObject</tt>, <tt>readObjectNoData</tt>, <tt>writeReplace</tt>,
+ * <tt>readResolve</tt> or <tt>serialPersistentFields</tt>. Anything else is left to Java serialization.
+ *
+ * @since 5.0
+ */
+final class GeneratedExternalizer {
+   private static final int BOOLEAN = 0;
+   private static final int BYTE = 1;
+   private static final int SHORT = 2;
+   private static final int CHAR = 3;
+   private static final int INT = 4;
+   private static final int LONG = 5;
+   private static final int FLOAT = 6;
+   private static final int DOUBLE = 7;
+   private static final int OBJECT = 8;
+
+   private static final Comparator<Field> BY_NAME = new Comparator<Field>() {
+      @Override
+      public int compare(Field f1, Field f2) {
+         return f1.getName().compareTo(f2.getName());
+      }
+   };
+
+   private final Class<?> type;
+   private final Constructor<?> constructor;
+   private final Field[] fields;
+   private final int[] kinds;
+   private final int fingerprint;
+
+   private GeneratedExternalizer(Class<?> type, Constructor<?> constructor, Field[] fields) {
+      this.type = type;
+      this.constructor = constructor;
+      this.fields = fields;
+      this.kinds = new int[fields.length];
+      int hash = type.getName().hashCode();
+      for (int i = 0; i < fields.length; i++) {
+         kinds[i] = kindOf(fields[i].getType());
+         hash = 31 * hash + fields[i].getDeclaringClass().getName().hashCode();
+         hash = 31 * hash + fields[i].getName().hashCode();
+         hash = 31 * hash + fields[i].getType().getName().hashCode();
+      }
+      this.fingerprint = hash;
+   }
+
+   /**
+    * Builds an externalizer for the given type.
+    *
+    * @return the externalizer, or null if the type is not eligible and has to be handled by Java serialization
+    */
+   static GeneratedExternalizer generate(Class<?> type) {
+      if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+            || type.isArray() || type.isInterface() || type.isEnum() || Modifier.isAbstract(type.getModifiers())
+            || Proxy.isProxyClass(type) || isPlatformClass(type))
+         return null;
+
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+         if (hasCustomSerialization(c)) return null;
+      }
+
+      try {
+         Constructor<?> constructor = type.getDeclaredConstructor();
+         // Superclass fields come first, and fields of each class are sorted by name so that the layout does not
+         // depend on the order reflection happens to return them in.
+         LinkedList<Field> layout = new LinkedList<Field>();
+         for (Class<?> c = type; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass()) {
+            List<Field> declared = new ArrayList<Field>();
+            for (Field f : c.getDeclaredFields()) {
+               int mod = f.getModifiers();
+               if (!Modifier.isStatic(mod) && !Modifier.isTransient(mod)) declared.add(f);
+            }
+            Collections.sort(declared, BY_NAME);
+            layout.addAll(0, declared);
+         }
+         Field[] fields = layout.toArray(new Field[layout.size()]);
+         constructor.setAccessible(true);
+         for (Field f : fields) f.setAccessible(true);
+         return new GeneratedExternalizer(type, constructor, fields);
+      } catch (NoSuchMethodException e) {
+         return null;
+      } catch (SecurityException e) {
+         return null;
+      }
+   }
+
+   /**
+    * A hash of the field layout. It is written the first time a type appears in a stream, so that a reader whose
+    * version of the class has a different shape fails fast instead of reading garbage.
+    */
+   int getFingerprint() {
+      return fingerprint;
+   }
+
+   Class<?> getType() {
+      return type;
+   }
+
+   void writeObject(ObjectOutput output, Object object) throws IOException {
+      try {
+         for (int i = 0; i < fields.length; i++) {
+            Field f = fields[i];
+            switch (kinds[i]) {
+               case BOOLEAN:
+                  output.writeBoolean(f.getBoolean(object));
+                  break;
+               case BYTE:
+                  output.writeByte(f.getByte(object));
+                  break;
+               case SHORT:
+                  output.writeShort(f.getShort(object));
+                  break;
+               case CHAR:
+                  output.writeChar(f.getChar(object));
+                  break;
+               case INT:
+                  output.writeInt(f.getInt(object));
+                  break;
+               case LONG:
+                  output.writeLong(f.getLong(object));
+                  break;
+               case FLOAT:
+                  output.writeFloat(f.getFloat(object));
+                  break;
+               case DOUBLE:
+                  output.writeDouble(f.getDouble(object));
+                  break;
+               default:
+                  output.writeObject(f.get(object));
+            }
+         }
+      } catch (IllegalAccessException e) {
+         throw new CacheException("Unable to read fields of " + type.getName(), e);
+      }
+   }
+
+   /**
+    * Creates an empty instance. Callers register it as a back reference target before {@link #readFields} so that
+    * cyclic graphs resolve to the same instance.
+    */
+   Object newInstance() throws IOException {
+      try {
+         return constructor.newInstance();
+      } catch (Exception e) {
+         InvalidClassException ice = new InvalidClassException(type.getName(), "Unable to instantiate through no-arg constructor");
+         ice.initCause(e);
+         throw ice;
+      }
+   }
+
+   void readFields(ObjectInput input, Object object) throws IOException, ClassNotFoundException {
+      try {
+         for (int i = 0; i < fields.length; i++) {
+            Field f = fields[i];
+            switch (kinds[i]) {
+               case BOOLEAN:
+                  f.setBoolean(object, input.readBoolean());
+                  break;
+               case BYTE:
+                  f.setByte(object, input.readByte());
+                  break;
+               case SHORT:
+                  f.setShort(object, input.readShort());
+                  break;
+               case CHAR:
+                  f.setChar(object, input.readChar());
+                  break;
+               case INT:
+                  f.setInt(object, input.readInt());
+                  break;
+               case LONG:
+                  f.setLong(object, input.readLong());
+                  break;
+               case FLOAT:
+                  f.setFloat(object, input.readFloat());
+                  break;
+               case DOUBLE:
+                  f.setDouble(object, input.readDouble());
+                  break;
+               default:
+                  f.set(object, input.readObject());
+            }
+         }
+      } catch (IllegalAccessException e) {
+         throw new CacheException("Unable to set fields of " + type.getName(), e);
+      } catch (IllegalArgumentException e) {
+         InvalidClassException ice = new InvalidClassException(type.getName(), "Incompatible field value read from stream");
+         ice.initCause(e);
+         throw ice;
+      }
+   }
+
+   private static int kindOf(Class<?> fieldType) {
+      if (!fieldType.isPrimitive()) return OBJECT;
+      if (fieldType == boolean.class) return BOOLEAN;
+      if (fieldType == byte.class) return BYTE;
+      if (fieldType == short.class) return SHORT;
+      if (fieldType == char.class) return CHAR;
+      if (fieldType == int.class) return INT;
+      if (fieldType == long.class) return LONG;
+      if (fieldType == float.class) return FLOAT;
+      return DOUBLE;
+   }
+
+   private static boolean isPlatformClass(Class<?> type) {
+      String name = type.getName();
+      return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.");
+   }
+
+   private static boolean hasCustomSerialization(Class<?> c) {
+      return hasDeclaredMethod(c, "writeObject", ObjectOutputStream.class)
+            || hasDeclaredMethod(c, "readObject", ObjectInputStream.class)
+            || hasDeclaredMethod(c, "readObjectNoData")
+            || hasDeclaredMethod(c, "writeReplace")
+            || hasDeclaredMethod(c, "readResolve")
+            || hasDeclaredField(c, "serialPersistentFields");
+   }
+
+   private static boolean hasDeclaredMethod(Class<?> c, String name, Class<?>... params) {
+      try {
+         c.getDeclaredMethod(name, params);
+         return true;
+      } catch (NoSuchMethodException e) {
+         return false;
+      }
+   }
+
+   private static boolean hasDeclaredField(Class<?> c, String name) {
+      try {
+         c.getDeclaredField(name);
+         return true;
+      } catch (NoSuchFieldException e) {
+         return false;
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "GeneratedExternalizer{type=" + type.getName() + ", fields=" + Arrays.toString(fields) + '}';
+   }
+}
@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.jboss;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.jboss.marshalling.ByteInput;
+
+/**
+ * A {@link ByteInput} reading straight from a region of a byte array, which can be pointed at another array once done
+ * with, so that unmarshalling from a byte array needs neither an input stream nor a stream adapter per call.
+ *
+ * @since 5.0
+ */
+@NotThreadSafe
+final class ByteArrayInput implements ByteInput {
+   private byte[] buf;
+   private int pos;
+   private int limit;
+
+   void start(byte[] buf, int offset, int length) {
+      this.buf = buf;
+      this.pos = offset;
+      this.limit = offset + length;
+   }
+
+   /**
+    * Drops the reference to the array read, so that an idle input does not keep a large buffer reachable.
+    */
+   void finish() {
+      buf = null;
+      pos = 0;
+      limit = 0;
+   }
+
+   @Override
+   public int read() {
+      return pos < limit ? buf[pos++] & 0xff : -1;
+   }
+
+   @Override
+   public int read(byte[] b) {
+      return read(b, 0, b.length);
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len) {
+      if (len == 0) return 0;
+      if (pos >= limit) return -1;
+      int n = Math.min(len, limit - pos);
+      System.arraycopy(buf, pos, b, off, n);
+      pos += n;
+      return n;
+   }
+
+   @Override
+   public int available() {
+      return limit - pos;
+   }
+
+   @Override
+   public long skip(long n) {
+      if (n <= 0) return 0;
+      int skipped = (int) Math.min(n, limit - pos);
+      pos += skipped;
+      return skipped;
+   }
+
+   @Override
+   public void close() {
+   }
+}
@@ -24,58 +24,17 @@
 package org.infinispan.marshall.jboss;
 
 import org.infinispan.CacheException;
-import org.infinispan.atomic.AtomicHashMap;
-import org.infinispan.atomic.AtomicHashMapDelta;
-import org.infinispan.atomic.ClearOperation;
-import org.infinispan.atomic.PutOperation;
-import org.infinispan.atomic.RemoveOperation;
 import org.infinispan.commands.RemoteCommandsFactory;
 import org.infinispan.config.AdvancedExternalizerConfig;
 import org.infinispan.config.ConfigurationException;
-import org.infinispan.config.AdvancedExternalizerConfig;
 import org.infinispan.config.GlobalConfiguration;
-import org.infinispan.container.entries.ImmortalCacheEntry;
-import org.infinispan.container.entries.ImmortalCacheValue;
-import org.infinispan.container.entries.MortalCacheEntry;
-import org.infinispan.container.entries.MortalCacheValue;
-import org.infinispan.container.entries.TransientCacheEntry;
-import org.infinispan.container.entries.TransientCacheValue;
-import org.infinispan.container.entries.TransientMortalCacheEntry;
-import org.infinispan.container.entries.TransientMortalCacheValue;
-import org.infinispan.distribution.RemoteTransactionLogDetails;
-import org.infinispan.distribution.ch.DefaultConsistentHash;
-import org.infinispan.distribution.ch.NodeTopologyInfo;
-import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
-import org.infinispan.distribution.ch.UnionConsistentHash;
-import org.infinispan.distribution.ch.VirtualAddress;
 import org.infinispan.io.UnsignedNumeric;
-import org.infinispan.loaders.bucket.Bucket;
 import org.infinispan.marshall.AdvancedExternalizer;
 import org.infinispan.marshall.Ids;
+import org.infinispan.marshall.InternalExternalizers;
 import org.infinispan.marshall.MarshalledValue;
 import org.infinispan.marshall.StreamingMarshaller;
-import org.infinispan.marshall.exts.ArrayListExternalizer;
-import org.infinispan.marshall.exts.LinkedListExternalizer;
-import org.infinispan.marshall.exts.MapExternalizer;
 import org.infinispan.marshall.exts.ReplicableCommandExternalizer;
-import org.infinispan.marshall.exts.SetExternalizer;
-import org.infinispan.marshall.exts.SingletonListExternalizer;
-import org.infinispan.remoting.responses.ExceptionResponse;
-import org.infinispan.remoting.responses.ExtendedResponse;
-import org.infinispan.remoting.responses.RequestIgnoredResponse;
-import org.infinispan.remoting.responses.SuccessfulResponse;
-import org.infinispan.remoting.responses.UnsuccessfulResponse;
-import org.infinispan.remoting.responses.UnsureResponse;
-import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
-import org.infinispan.transaction.TransactionLog;
-import org.infinispan.transaction.xa.DldGlobalTransaction;
-import org.infinispan.transaction.xa.GlobalTransaction;
-import org.infinispan.transaction.xa.recovery.InDoubtTxInfoImpl;
-import org.infinispan.transaction.xa.recovery.RecoveryAwareDldGlobalTransaction;
-import org.infinispan.transaction.xa.recovery.RecoveryAwareGlobalTransaction;
-import org.infinispan.transaction.xa.recovery.SerializableXid;
-import org.infinispan.util.ByteArrayKey;
-import org.infinispan.util.Immutables;
 import org.infinispan.util.Util;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -125,57 +84,10 @@ class ExternalizerTable implements ObjectTable {
    private volatile boolean started;
 
    private void initInternalExternalizers() {
-      internalExternalizers.add(new ArrayListExternalizer());
-      internalExternalizers.add(new LinkedListExternalizer());
-      internalExternalizers.add(new MapExternalizer());
-      internalExternalizers.add(new SetExternalizer());
-      internalExternalizers.add(new SingletonListExternalizer());
-
-      internalExternalizers.add(new GlobalTransaction.Externalizer());
-      internalExternalizers.add(new RecoveryAwareGlobalTransaction.Externalizer());
-      internalExternalizers.add(new DldGlobalTransaction.Externalizer());
-      internalExternalizers.add(new RecoveryAwareDldGlobalTransaction.Externalizer());
-      internalExternalizers.add(new JGroupsAddress.Externalizer());
-      internalExternalizers.add(new Immutables.ImmutableMapWrapperExternalizer());
-      internalExternalizers.add(new MarshalledValue.Externalizer());
-
-      internalExternalizers.add(new TransactionLog.LogEntry.Externalizer());
-      internalExternalizers.add(new ExtendedResponse.Externalizer());
-      internalExternalizers.add(new SuccessfulResponse.Externalizer());
-      internalExternalizers.add(new ExceptionResponse.Externalizer());
-      internalExternalizers.add(new RequestIgnoredResponse.Externalizer());
-      internalExternalizers.add(new UnsuccessfulResponse.Externalizer());
-      internalExternalizers.add(new UnsureResponse.Externalizer());
-
-      internalExternalizers.add(new ReplicableCommandExternalizer());
-
-      internalExternalizers.add(new ImmortalCacheEntry.Externalizer());
-      internalExternalizers.add(new MortalCacheEntry.Externalizer());
-      internalExternalizers.add(new TransientCacheEntry.Externalizer());
-      internalExternalizers.add(new TransientMortalCacheEntry.Externalizer());
-      internalExternalizers.add(new ImmortalCacheValue.Externalizer());
-      internalExternalizers.add(new MortalCacheValue.Externalizer());
-      internalExternalizers.add(new TransientCacheValue.Externalizer());
-      internalExternalizers.add(new TransientMortalCacheValue.Externalizer());
-
-      internalExternalizers.add(new AtomicHashMap.Externalizer());
-      internalExternalizers.add(new Bucket.Externalizer());
-      internalExternalizers.add(new AtomicHashMapDelta.Externalizer());
-      internalExternalizers.add(new PutOperation.Externalizer());
-      internalExternalizers.add(new RemoveOperation.Externalizer());
-      internalExternalizers.add(new ClearOperation.Externalizer());
-      internalExternalizers.add(new DefaultConsistentHash.Externalizer());
-      internalExternalizers.add(new UnionConsistentHash.Externalizer());
-      internalExternalizers.add(new NodeTopologyInfo.Externalizer());
-      internalExternalizers.add(new TopologyAwareConsistentHash.Externalizer());
-      internalExternalizers.add(new ByteArrayKey.Externalizer());
-
-      internalExternalizers.add(new RemoteTransactionLogDetails.Externalizer());
-      internalExternalizers.add(new SerializableXid.XidExternalizer());
-      internalExternalizers.add(new VirtualAddress.Externalizer());
-      internalExternalizers.add(new InDoubtTxInfoImpl.Externalizer());
+      internalExternalizers.addAll(InternalExternalizers.load());
    }
 
+
    void addInternalExternalizer(AdvancedExternalizer ext) {
       internalExternalizers.add(ext);
    }
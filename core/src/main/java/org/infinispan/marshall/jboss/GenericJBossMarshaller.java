@@ -24,6 +24,7 @@ package org.infinispan.marshall.jboss;
 
 import org.infinispan.CacheException;
 import org.infinispan.io.ByteBuffer;
+import org.infinispan.io.ChunkedOutputStream;
 import org.infinispan.io.ExposedByteArrayOutputStream;
 import org.infinispan.marshall.AbstractMarshaller;
 import org.infinispan.util.ConcurrentWeakKeyHashMap;
@@ -38,7 +39,6 @@ import org.jboss.marshalling.TraceInformation;
 import org.jboss.marshalling.Unmarshaller;
 import org.jboss.marshalling.reflect.SunReflectiveCreator;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
@@ -117,6 +117,17 @@ public class GenericJBossMarshaller extends AbstractMarshaller {
       }
    };
 
+   /**
+    * Input over byte arrays for the thread local unmarshaller. It shares the lifetime of the thread local unmarshaller,
+    * so it is only ever used for non reentrant unmarshalling.
+    */
+   private ThreadLocal<ByteArrayInput> byteInputTL = new ThreadLocal<ByteArrayInput>() {
+      @Override
+      protected ByteArrayInput initialValue() {
+         return new ByteArrayInput();
+      }
+   };
+
    public void objectToObjectStream(Object obj, ObjectOutput out) throws IOException {
       ClassLoader toUse = defaultCl;
       Thread current = Thread.currentThread();
@@ -139,14 +150,33 @@ public class GenericJBossMarshaller extends AbstractMarshaller {
 
    @Override
    protected ByteBuffer objectToBuffer(Object o, int estimatedSize) throws IOException {
-      ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(estimatedSize);
-      ObjectOutput marshaller = startObjectOutput(baos, false);
+      // the returned buffer wraps the stream's array, so it can't come from the pool, nor be sized by the learnt
+      // estimate, as a chunk sized for a large instance would be handed on oversized; collecting chunks spares large
+      // payloads that outgrow the caller's estimate from being copied again on every resize
+      ChunkedOutputStream out = new ChunkedOutputStream(estimatedSize);
+      objectToStream(o, out);
+      sizeEstimator.record(o, out.size());
+      return out.toByteBuffer();
+   }
+
+   @Override
+   public byte[] objectToByteBuffer(Object o, int estimatedSize) throws IOException {
+      ExposedByteArrayOutputStream baos = bufferPool.acquire(sizeEstimator.estimate(o, estimatedSize));
+      try {
+         objectToStream(o, baos);
+         return copyAndRecord(o, baos);
+      } finally {
+         bufferPool.release(baos);
+      }
+   }
+
+   private void objectToStream(Object o, OutputStream os) throws IOException {
+      ObjectOutput marshaller = startObjectOutput(os, false);
       try {
          objectToObjectStream(o, marshaller);
       } finally {
          finishObjectOutput(marshaller);
       }
-      return new ByteBuffer(baos.getRawBuffer(), 0, baos.size());
    }
 
    public ObjectOutput startObjectOutput(OutputStream os, boolean isReentrant) throws IOException {
@@ -178,8 +208,7 @@ public class GenericJBossMarshaller extends AbstractMarshaller {
    @Override
    public Object objectFromByteBuffer(byte[] buf, int offset, int length) throws IOException,
            ClassNotFoundException {
-      ByteArrayInputStream is = new ByteArrayInputStream(buf, offset, length);
-      ObjectInput unmarshaller = startObjectInput(is, false);
+      ObjectInput unmarshaller = startObjectInput(buf, offset, length);
       Object o = null;
       try {
          o = objectFromObjectStream(unmarshaller);
@@ -205,6 +234,22 @@ public class GenericJBossMarshaller extends AbstractMarshaller {
       return unmarshaller;
    }
 
+   /**
+    * Starts the thread local unmarshaller reading from a region of a byte array, without wrapping the array in a
+    * stream. Must be paired with {@link #finishObjectInput(java.io.ObjectInput)}.
+    */
+   public ObjectInput startObjectInput(byte[] buf, int offset, int length) throws IOException {
+      Unmarshaller unmarshaller = unmarshallerTL.get();
+      ByteArrayInput input = byteInputTL.get();
+      input.start(buf, offset, length);
+
+      if (log.isTraceEnabled())
+         log.trace("Start unmarshaller after retrieving marshaller from thread local");
+
+      unmarshaller.start(input);
+      return unmarshaller;
+   }
+
    public Object objectFromObjectStream(ObjectInput in) throws IOException, ClassNotFoundException {
       return in.readObject();
    }   
@@ -217,6 +262,7 @@ public class GenericJBossMarshaller extends AbstractMarshaller {
          if (oi != null) ((Unmarshaller) oi).finish();
       } catch (IOException ignored) {
       }
+      if (oi == unmarshallerTL.get()) byteInputTL.get().finish();
    }
 
    @Override
@@ -26,10 +26,8 @@ import org.infinispan.CacheException;
 import org.infinispan.factories.KnownComponentNames;
 import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
-import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
 import org.infinispan.util.ReflectionUtil;
-import org.infinispan.util.concurrent.WithinThreadExecutor;
 import org.infinispan.util.logging.Log;
 
 import java.lang.annotation.Annotation;
@@ -41,8 +39,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Functionality common to both {@link org.infinispan.notifications.cachemanagerlistener.CacheManagerNotifierImpl} and
@@ -52,11 +54,15 @@ import java.util.concurrent.ExecutorService;
  */
 public abstract class AbstractListenerImpl {
 
-   protected final Map<Class<? extends Annotation>, List<ListenerInvocation>> listenersMap = new HashMap<Class<? extends Annotation>, List<ListenerInvocation>>(16, 0.99f);
+   /**
+    * Maximum number of events delivered to an asynchronous listener by a single task, before the task is resubmitted
+    * so that other listeners sharing the async executor get a turn.
+    */
+   private static final int MAX_ASYNC_BATCH = 64;
 
+   protected final Map<Class<? extends Annotation>, List<ListenerInvocation>> listenersMap = new HashMap<Class<? extends Annotation>, List<ListenerInvocation>>(16, 0.99f);
 
-   // two separate executor services, one for sync and one for async listeners
-   protected ExecutorService syncProcessor;
+   // sync listeners are invoked in the caller's thread, async ones on this executor
    protected ExecutorService asyncProcessor;
 
 
@@ -65,11 +71,6 @@ public abstract class AbstractListenerImpl {
       this.asyncProcessor = executor;
    }
 
-   @Start (priority = 9)
-   public void start() {
-      syncProcessor = new WithinThreadExecutor();
-   }
-
    /**
     * Removes all listeners from the notifier
     */
@@ -119,13 +120,15 @@ public abstract class AbstractListenerImpl {
 
    /**
     * Loops through all valid methods on the object passed in, and caches the relevant methods as {@link
-    * ListenerInvocation} for invocation by reflection.
+    * ListenerInvocation} for invocation by reflection.  All the methods of an asynchronous listener share a single
+    * {@link AsyncDelivery}, so that the listener sees events in the order they were fired.
     *
     * @param listener object to be considered as a listener.
     */
    @SuppressWarnings("unchecked")
    private void validateAndAddListenerInvocation(Object listener) {
       boolean sync = testListenerClassValidity(listener.getClass());
+      AsyncDelivery delivery = sync ? null : new AsyncDelivery();
       boolean foundMethods = false;
       Map<Class<? extends Annotation>, Class> allowedListeners = getAllowedMethodAnnotations();
       // now try all methods on the listener for anything that we like.  Note that only PUBLIC methods are scanned.
@@ -136,7 +139,7 @@ public abstract class AbstractListenerImpl {
             Class value = annotationEntry.getValue();
             if (m.isAnnotationPresent(key)) {
                testListenerMethodValidity(m, value, key.getName());
-               addListenerInvocation(key, new ListenerInvocation(listener, m, sync));
+               addListenerInvocation(key, new ListenerInvocation(listener, m, sync, delivery));
                foundMethods = true;
             }
          }
@@ -156,7 +159,8 @@ public abstract class AbstractListenerImpl {
     * invoked synchronously or asynchronously.
     *
     * @param listenerClass class to inspect
-    * @return true if callbacks on this class should use the syncProcessor; false if it should use the asyncProcessor.
+    * @return true if callbacks on this class should be invoked in the caller's thread; false if they should use the
+    *         asyncProcessor.
     */
    protected boolean testListenerClassValidity(Class<?> listenerClass) {
       Listener l = ReflectionUtil.getAnnotation(listenerClass, Listener.class);
@@ -177,40 +181,101 @@ public abstract class AbstractListenerImpl {
    /**
     * Class that encapsulates a valid invocation for a given registered listener - containing a reference to the method
     * to be invoked as well as the target object.
+    * <p/>
+    * Synchronous listeners are invoked directly in the calling thread.  Events for asynchronous listeners are queued
+    * on the listener's {@link AsyncDelivery} and delivered in batches.
     */
    protected class ListenerInvocation {
       public final Object target;
       public final Method method;
       public final boolean sync;
+      private final AsyncDelivery delivery;
 
       public ListenerInvocation(Object target, Method method, boolean sync) {
+         this(target, method, sync, sync ? null : new AsyncDelivery());
+      }
+
+      ListenerInvocation(Object target, Method method, boolean sync, AsyncDelivery delivery) {
          this.target = target;
          this.method = method;
          this.sync = sync;
+         this.delivery = delivery;
+         try {
+            // skips the access checks on every invocation; the JVM also replaces reflective calls on a hot method
+            // with a generated accessor, so after warm up this is as cheap as a direct call through an interface
+            method.setAccessible(true);
+         } catch (SecurityException e) {
+            getLog().debug("Unable to suppress access checks for listener method " + method, e);
+         }
       }
 
-      public void invoke(final Object event) {
-         Runnable r = new Runnable() {
-
-            public void run() {
-               try {
-                  method.invoke(target, event);
-               }
-               catch (InvocationTargetException exception) {
-                  Throwable cause = getRealException(exception);
-                  throw new CacheException("Caught exception invoking method " + method + " on listener instance " + target, cause);
-               }
-               catch (IllegalAccessException exception) {
-                  getLog().warn("Unable to invoke method " + method + " on Object instance " + target + " - removing this target object from list of listeners!", exception);
-                  removeListener(target);
-               }
-            }
-         };
-
+      public void invoke(Object event) {
          if (sync)
-            syncProcessor.execute(r);
+            invokeNow(event);
          else
-            asyncProcessor.execute(r);
+            delivery.enqueue(this, event);
+      }
+
+      void invokeNow(Object event) {
+         try {
+            method.invoke(target, event);
+         }
+         catch (InvocationTargetException exception) {
+            Throwable cause = getRealException(exception);
+            throw new CacheException("Caught exception invoking method " + method + " on listener instance " + target, cause);
+         }
+         catch (IllegalAccessException exception) {
+            getLog().warn("Unable to invoke method " + method + " on Object instance " + target + " - removing this target object from list of listeners!", exception);
+            removeListener(target);
+         }
+      }
+   }
+
+   /**
+    * Queue of events waiting to be delivered to an asynchronous listener.  At most one task per listener is submitted
+    * to the async executor at any time; it drains the queue in batches of up to {@link #MAX_ASYNC_BATCH} events, so a
+    * busy cache does not submit a task per event, and events are delivered in order.
+    */
+   class AsyncDelivery implements Runnable {
+      private final Queue<PendingEvent> pending = new ConcurrentLinkedQueue<PendingEvent>();
+      private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+      void enqueue(ListenerInvocation invocation, Object event) {
+         pending.add(new PendingEvent(invocation, event));
+         if (scheduled.compareAndSet(false, true)) submit();
+      }
+
+      private void submit() {
+         try {
+            asyncProcessor.execute(this);
+         } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            throw e;
+         }
+      }
+
+      public void run() {
+         PendingEvent next;
+         for (int delivered = 0; delivered < MAX_ASYNC_BATCH && (next = pending.poll()) != null; delivered++) {
+            try {
+               next.invocation.invokeNow(next.event);
+            } catch (RuntimeException e) {
+               getLog().warn("Caught exception delivering event " + next.event + " to asynchronous listener " + next.invocation.target, e);
+            }
+         }
+         scheduled.set(false);
+         // events may have been queued after the last poll but before the flag was cleared
+         if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) submit();
+      }
+   }
+
+   private static final class PendingEvent {
+      final ListenerInvocation invocation;
+      final Object event;
+
+      PendingEvent(ListenerInvocation invocation, Object event) {
+         this.invocation = invocation;
+         this.event = event;
       }
    }
 
@@ -56,6 +56,11 @@ public interface CacheNotifier extends Listenable {
     */
    void notifyCacheEntryVisited(Object key, Object value, boolean pre, InvocationContext ctx);
 
+   /**
+    * @return true if at least one listener is registered for CacheEntryVisited events, false otherwise
+    */
+   boolean hasCacheEntryVisitedListeners();
+
    /**
     * Notifies all registered listeners of a CacheEntryEvicted event.
     */
@@ -25,6 +25,7 @@ package org.infinispan.remoting;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.RehashControlCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.config.Configuration;
 import org.infinispan.config.GlobalConfiguration;
@@ -201,7 +202,7 @@ public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
             return JoinHandle.OK;
          else {
             // no point in enqueueing clustered GET commands - just ignore these and hope someone else in the cluster responds.
-            if (dm.isInFinalJoinPhase() && !(cmd instanceof ClusteredGetCommand))
+            if (dm.isInFinalJoinPhase() && !(cmd instanceof ClusteredGetCommand) && !(cmd instanceof ClusteredGetAllCommand))
                return JoinHandle.QUEUE;
             else
                return JoinHandle.IGNORE;
@@ -261,7 +262,7 @@ public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
       String cacheName = cmd.getCacheName();
       try {
          // READ calls should NEVER be enqueued - what's the point!!
-         boolean isClusteredGet = cmd instanceof ClusteredGetCommand;
+         boolean isClusteredGet = cmd instanceof ClusteredGetCommand || cmd instanceof ClusteredGetAllCommand;
          if (isClusteredGet || cmd instanceof RehashControlCommand) {
             try {
                if (isClusteredGet) {
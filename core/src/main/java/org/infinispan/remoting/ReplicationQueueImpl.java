@@ -31,37 +31,87 @@ import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.stats.Histogram;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Units;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A default implementation of the ReplicationQueue interface.
+ * <p/>
+ * Commands are appended to a lock-free queue and replicated in batches.  A batch is sent when the queue holds
+ * <tt>replQueueMaxElements</tt> commands, when the marshalled size of the queued commands reaches
+ * <tt>replQueueMaxBytes</tt> (if set) or when <tt>replQueueInterval</tt> elapses, whichever comes first.
+ * <p/>
+ * Threads adding commands never wait for a flush: the thread that crosses a threshold flushes only if no other flush
+ * is in progress, otherwise it leaves the work to the thread already flushing.  Flushes are serialized so that batches
+ * are sent in the order in which commands were added.
+ * <p/>
+ * When a byte limit or compression is configured, commands are marshalled as they are added and the batch is sent as
+ * a single packed, optionally compressed, {@link MultipleRpcCommand}, so commands are never marshalled twice.
  *
  * @author Manik Surtani
  * @version 4.2
  */
+@MBean(objectName = "ReplicationQueue", description = "Batches asynchronous replication of modifications")
 public class ReplicationQueueImpl implements ReplicationQueue {
    private static final Log log = LogFactory.getLog(ReplicationQueue.class);
+   private static final boolean trace = log.isTraceEnabled();
 
    /**
     * Max elements before we flush
     */
    private long maxElements = 500;
 
+   /**
+    * Max marshalled bytes before we flush, or 0 if unbounded
+    */
+   private long maxBytes = 0;
+
+   private boolean compress;
+
    /**
     * Holds the replication jobs.
     */
-   private final BlockingQueue<ReplicableCommand> elements = new LinkedBlockingQueue<ReplicableCommand>();
+   private final ConcurrentLinkedQueue<QueuedCommand> elements = new ConcurrentLinkedQueue<QueuedCommand>();
+   private final AtomicInteger elementsCount = new AtomicInteger(0);
+   private final AtomicLong elementsBytes = new AtomicLong(0);
+
+   /**
+    * Serializes flushes, so that batches leave in order.
+    */
+   private final ReentrantLock flushLock = new ReentrantLock();
+
+   /**
+    * State of the batch last returned by {@link #drainReplQueue()}, guarded by {@link #flushLock}.
+    */
+   private List<byte[]> drainedBytes;
+   private long drainedOldestNanos;
+
+   private final AtomicLong flushCount = new AtomicLong(0);
+   private final Histogram batchSizes = new Histogram();
+   private final Histogram batchBytes = new Histogram();
+   private final Histogram flushLatencies = new Histogram();
 
    /**
     * For periodical replication
@@ -71,6 +121,7 @@ public class ReplicationQueueImpl implements ReplicationQueue {
    private Configuration configuration;
    private boolean enabled;
    private CommandsFactory commandsFactory;
+   private StreamingMarshaller marshaller;
    private volatile ScheduledFuture<?> scheduledFuture;
 
    /**
@@ -90,14 +141,22 @@ public class ReplicationQueueImpl implements ReplicationQueue {
       this.scheduledExecutor = executor;
    }
 
+   @Inject
+   public void injectMarshaller(StreamingMarshaller marshaller) {
+      this.marshaller = marshaller;
+   }
+
    /**
     * Starts the asynchronous flush queue.
     */
    @Start
    public void start() {
       long interval = configuration.getReplQueueInterval();
-      log.trace("Starting replication queue, with interval %s and maxElements %s", interval, maxElements);
       this.maxElements = configuration.getReplQueueMaxElements();
+      this.maxBytes = configuration.getReplQueueMaxBytes();
+      this.compress = configuration.isReplQueueCompression();
+      log.trace("Starting replication queue, with interval %s, maxElements %s, maxBytes %s and compression %s",
+                interval, maxElements, maxBytes, compress);
       // check again
       enabled = configuration.isUseReplQueue();
       if (enabled && interval > 0) {
@@ -128,47 +187,201 @@ public class ReplicationQueueImpl implements ReplicationQueue {
    public void add(ReplicableCommand job) {
       if (job == null)
          throw new NullPointerException("job is null");
-      try {
-         elements.put(job);
-         if (elements.size() >= maxElements) flush();
-      } catch (InterruptedException ie) {
-         Thread.interrupted();
+      QueuedCommand queued = new QueuedCommand(job, marshall(job));
+      elements.offer(queued);
+      if (queued.bytes != null) elementsBytes.addAndGet(queued.bytes.length);
+      elementsCount.incrementAndGet();
+
+      // never wait for a flush in progress; the flushing thread re-checks the thresholds once it is done
+      while (isFlushNeeded() && flushLock.tryLock()) {
+         try {
+            while (isFlushNeeded()) {
+               if (flushBatch() == 0) break;
+            }
+         } finally {
+            flushLock.unlock();
+         }
       }
    }
 
    @Override
-   public synchronized int flush() {
+   public int flush() {
+      flushLock.lock();
+      try {
+         int flushed = 0;
+         int batch;
+         while ((batch = flushBatch()) > 0) flushed += batch;
+         return flushed;
+      } finally {
+         flushLock.unlock();
+      }
+   }
+
+   private boolean isFlushNeeded() {
+      return elementsCount.get() >= maxElements || (maxBytes > 0 && elementsBytes.get() >= maxBytes);
+   }
+
+   /**
+    * Drains and replicates a single batch.  Must be called with {@link #flushLock} held.
+    *
+    * @return the number of commands replicated
+    */
+   private int flushBatch() {
       List<ReplicableCommand> toReplicate = drainReplQueue();
-      if (log.isTraceEnabled()) log.trace("flush(): flushing repl queue (num elements=%s)", toReplicate.size());
+      List<byte[]> marshalled = drainedBytes;
+      long oldestNanos = drainedOldestNanos;
+      drainedBytes = null;
+      if (trace) log.trace("flush(): flushing repl queue (num elements=%s)", toReplicate.size());
 
       int toReplicateSize = toReplicate.size();
       if (toReplicateSize > 0) {
          try {
             log.trace("Flushing %s elements", toReplicateSize);
-            MultipleRpcCommand multipleRpcCommand = commandsFactory.buildReplicateCommand(toReplicate);
+            MultipleRpcCommand multipleRpcCommand;
+            if (marshalled != null && marshalled.size() == toReplicateSize) {
+               multipleRpcCommand = commandsFactory.buildPackedReplicateCommand(marshalled, compress);
+               batchBytes.record(multipleRpcCommand.getPackedLength());
+            } else {
+               multipleRpcCommand = commandsFactory.buildReplicateCommand(toReplicate);
+            }
             // send to all live caches in the cluster
             rpcManager.invokeRemotely(null, multipleRpcCommand, ResponseMode.getAsyncResponseMode(configuration), configuration.getSyncReplTimeout());
          } catch (Throwable t) {
-            log.error("failed replicating " + toReplicate.size() + " elements in replication queue", t);
+            log.error("failed replicating " + toReplicateSize + " elements in replication queue", t);
          }
+         flushCount.incrementAndGet();
+         batchSizes.record(toReplicateSize);
+         if (oldestNanos != 0) flushLatencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - oldestNanos));
       }
 
       return toReplicateSize;
    }
 
+   /**
+    * Drains the next batch of commands off the queue: at most <tt>replQueueMaxElements</tt> commands, and no more
+    * than needed to reach <tt>replQueueMaxBytes</tt>, if set.
+    *
+    * @return the commands to replicate in the next batch
+    */
    protected List<ReplicableCommand> drainReplQueue() {
-      List<ReplicableCommand> toReplicate = new LinkedList<ReplicableCommand>();
-      elements.drainTo(toReplicate);
+      int limit = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxElements));
+      List<ReplicableCommand> toReplicate = new ArrayList<ReplicableCommand>(Math.min(limit, 64));
+      List<byte[]> marshalled = null;
+      long oldestNanos = 0;
+      long bytes = 0;
+      QueuedCommand queued;
+      while (toReplicate.size() < limit && (queued = elements.poll()) != null) {
+         elementsCount.decrementAndGet();
+         if (oldestNanos == 0) oldestNanos = queued.enqueuedNanos;
+         toReplicate.add(queued.command);
+         if (queued.bytes != null) {
+            elementsBytes.addAndGet(-queued.bytes.length);
+            if (marshalled == null) marshalled = new ArrayList<byte[]>(Math.min(limit, 64));
+            marshalled.add(queued.bytes);
+            bytes += queued.bytes.length;
+            if (maxBytes > 0 && bytes >= maxBytes) break;
+         }
+      }
+      drainedBytes = marshalled;
+      drainedOldestNanos = oldestNanos;
       return toReplicate;
    }
 
+   private byte[] marshall(ReplicableCommand job) {
+      if (maxBytes <= 0 && !compress) return null;
+      try {
+         return marshaller.objectToByteBuffer(job);
+      } catch (Exception e) {
+         // the command will be marshalled along with its batch, as usual
+         if (trace) log.trace("Unable to marshall %s ahead of replication", e, job);
+         return null;
+      }
+   }
+
    @Override
    public int getElementsCount() {
-      return elements.size();
+      return Math.max(0, elementsCount.get());
    }
 
    @Override
    public void reset() {
-      elements.clear();
+      flushLock.lock();
+      try {
+         QueuedCommand queued;
+         while ((queued = elements.poll()) != null) {
+            elementsCount.decrementAndGet();
+            if (queued.bytes != null) elementsBytes.addAndGet(-queued.bytes.length);
+         }
+      } finally {
+         flushLock.unlock();
+      }
+   }
+
+   @ManagedAttribute(description = "Number of commands waiting in the replication queue")
+   @Metric(displayName = "Number of queued commands", displayType = DisplayType.SUMMARY)
+   public int getQueuedCommands() {
+      return getElementsCount();
+   }
+
+   @ManagedAttribute(description = "Number of batches flushed by the replication queue")
+   @Metric(displayName = "Number of flushed batches", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getFlushCount() {
+      return flushCount.get();
+   }
+
+   @ManagedAttribute(description = "Average number of commands per flushed batch")
+   @Metric(displayName = "Average batch size", displayType = DisplayType.SUMMARY)
+   public double getAverageBatchSize() {
+      return batchSizes.getMean();
+   }
+
+   @ManagedAttribute(description = "99th percentile of the number of commands per flushed batch")
+   @Metric(displayName = "99th percentile batch size", displayType = DisplayType.SUMMARY)
+   public long getBatchSize99thPercentile() {
+      return batchSizes.getValueAtPercentile(99);
+   }
+
+   @ManagedAttribute(description = "Average size of packed batches on the wire, in bytes")
+   @Metric(displayName = "Average packed batch size", displayType = DisplayType.SUMMARY)
+   public double getAverageBatchBytes() {
+      return batchBytes.getMean();
+   }
+
+   @ManagedAttribute(description = "Median time the oldest command of a batch spent queued, in milliseconds")
+   @Metric(displayName = "Median flush latency", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public double getFlushLatencyMedian() {
+      return flushLatencies.getValueAtPercentile(50) / 1000d;
+   }
+
+   @ManagedAttribute(description = "99th percentile of the time the oldest command of a batch spent queued, in milliseconds")
+   @Metric(displayName = "99th percentile flush latency", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public double getFlushLatency99thPercentile() {
+      return flushLatencies.getValueAtPercentile(99) / 1000d;
+   }
+
+   @ManagedAttribute(description = "Maximum time the oldest command of a batch spent queued, in milliseconds")
+   @Metric(displayName = "Maximum flush latency", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public double getFlushLatencyMax() {
+      return flushLatencies.getMax() / 1000d;
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component")
+   @Operation(displayName = "Reset statistics")
+   public void resetStatistics() {
+      flushCount.set(0);
+      batchSizes.reset();
+      batchBytes.reset();
+      flushLatencies.reset();
+   }
+
+   private static class QueuedCommand {
+      final ReplicableCommand command;
+      final byte[] bytes;
+      final long enqueuedNanos = System.nanoTime();
+
+      QueuedCommand(ReplicableCommand command, byte[] bytes) {
+         this.command = command;
+         this.bytes = bytes;
+      }
    }
 }
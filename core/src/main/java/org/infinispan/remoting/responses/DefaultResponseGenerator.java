@@ -23,6 +23,7 @@
 package org.infinispan.remoting.responses;
 
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -45,7 +46,7 @@ public class DefaultResponseGenerator implements ResponseGenerator {
    }
 
    private boolean requiresResponse(byte commandId) {
-      return commandId == ClusteredGetCommand.COMMAND_ID || commandId == GetInDoubtTransactionsCommand.COMMAND_ID
+      return commandId == ClusteredGetCommand.COMMAND_ID || commandId == ClusteredGetAllCommand.COMMAND_ID || commandId == GetInDoubtTransactionsCommand.COMMAND_ID
             || commandId == GetInDoubtTxInfoCommand.COMMAND_ID || commandId == CompleteTransactionCommand.COMMAND_ID;
    }
 }
@@ -24,6 +24,7 @@ package org.infinispan.remoting.responses;
 
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
 import org.infinispan.commands.write.WriteCommand;
@@ -50,6 +51,9 @@ public class DistributionResponseGenerator implements ResponseGenerator {
          if (distributionManager.isAffectedByRehash(clusteredGet.getKey()))
             return UnsureResponse.INSTANCE;
          return returnValue == null ? null : new SuccessfulResponse(returnValue);
+      } else if (command.getCommandId() == ClusteredGetAllCommand.COMMAND_ID) {
+         // keys affected by a rehash are flagged as such in the returned map
+         return new SuccessfulResponse(returnValue);
       } else if (command instanceof SingleRpcCommand) {
          SingleRpcCommand src = (SingleRpcCommand) command;
          ReplicableCommand c = src.getCommand();
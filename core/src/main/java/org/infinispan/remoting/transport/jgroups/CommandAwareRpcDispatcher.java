@@ -139,7 +139,8 @@ public class CommandAwareRpcDispatcher extends RpcDispatcher {
    public Object handle(Message req) {
       if (isValid(req)) {
          try {
-            ReplicableCommand cmd = (ReplicableCommand) req_marshaller.objectFromByteBuffer(req.getBuffer(), req.getOffset(), req.getLength());
+            // getBuffer() copies the payload whenever it does not span the whole array, after which the offset is wrong
+            ReplicableCommand cmd = (ReplicableCommand) req_marshaller.objectFromByteBuffer(req.getRawBuffer(), req.getOffset(), req.getLength());
             if (cmd instanceof CacheRpcCommand)
                return executeCommand((CacheRpcCommand) cmd, req);
             else
@@ -202,6 +203,10 @@ public class CommandAwareRpcDispatcher extends RpcDispatcher {
          return msg;
       }
 
+      /**
+       * Marshals the command once; the buffer is shared by the messages to all recipients, including any replay. It
+       * must not be reused once sent, as JGroups holds on to messages until they can no longer be retransmitted.
+       */
       private Buffer marshallCall() {
          Buffer buf;
          try {
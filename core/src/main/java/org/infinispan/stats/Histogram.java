@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative long values, such as latencies or sizes.
+ * <p/>
+ * Values are counted in log-linear buckets: every power of two is split into 16 linear sub-buckets, so any value is
+ * reported with a relative error of at most 1/16th (~6%), regardless of its magnitude, using a fixed amount of memory.
+ * Recording a value is a couple of atomic increments, making this cheap enough to be used on hot paths.
+ * <p/>
+ * Concurrent readers see a weakly consistent view of the histogram, which is good enough for reporting purposes.
+ *
+ * @since 5.0
+ */
+public class Histogram {
+   private static final int SUB_BUCKET_BITS = 4;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   private static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+   private final AtomicLong count = new AtomicLong(0);
+   private final AtomicLong sum = new AtomicLong(0);
+   private final AtomicLong max = new AtomicLong(0);
+
+   /**
+    * Records a value.  Negative values are recorded as 0.
+    */
+   public void record(long value) {
+      if (value < 0) value = 0;
+      counts.incrementAndGet(indexOf(value));
+      count.incrementAndGet();
+      sum.addAndGet(value);
+      updateMax(value);
+   }
+
+   /**
+    * Adds every value recorded by another histogram to this one.
+    */
+   void add(Histogram other) {
+      for (int i = 0; i < BUCKETS; i++) {
+         long c = other.counts.get(i);
+         if (c != 0) counts.addAndGet(i, c);
+      }
+      count.addAndGet(other.count.get());
+      sum.addAndGet(other.sum.get());
+      updateMax(other.max.get());
+   }
+
+   private void updateMax(long value) {
+      long currentMax;
+      while (value > (currentMax = max.get())) {
+         if (max.compareAndSet(currentMax, value)) break;
+      }
+   }
+
+   public long getCount() {
+      return count.get();
+   }
+
+   public long getMax() {
+      return max.get();
+   }
+
+   public double getMean() {
+      long c = count.get();
+      return c == 0 ? 0 : (double) sum.get() / c;
+   }
+
+   /**
+    * @param percentile a percentile between 0 and 100
+    * @return the highest value in the bucket containing the requested percentile, or 0 if nothing was recorded
+    */
+   public long getValueAtPercentile(double percentile) {
+      long total = count.get();
+      if (total == 0) return 0;
+      long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100d) / 100d));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+         seen += counts.get(i);
+         if (seen >= target) return Math.min(highestValueIn(i), max.get());
+      }
+      return max.get();
+   }
+
+   public void reset() {
+      for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+      count.set(0);
+      sum.set(0);
+      max.set(0);
+   }
+
+   static int indexOf(long value) {
+      if (value < SUB_BUCKETS) return (int) value;
+      int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+      int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+      return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+   }
+
+   static long highestValueIn(int index) {
+      if (index < SUB_BUCKETS) return index;
+      int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+      long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+      long upper = (SUB_BUCKETS + subBucket + 1) << shift;
+      return upper <= 0 ? Long.MAX_VALUE : upper - 1;
+   }
+
+   @Override
+   public String toString() {
+      return "Histogram{" +
+            "count=" + getCount() +
+            ", mean=" + getMean() +
+            ", p50=" + getValueAtPercentile(50) +
+            ", p90=" + getValueAtPercentile(90) +
+            ", p99=" + getValueAtPercentile(99) +
+            ", p99.9=" + getValueAtPercentile(99.9) +
+            ", max=" + getMax() +
+            '}';
+   }
+}
@@ -0,0 +1,69 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+/**
+ * The kinds of operation whose latencies are tracked by {@link org.infinispan.interceptors.CacheMgmtInterceptor}.
+ *
+ * @since 5.0
+ */
+public enum LatencyType {
+   /**
+    * A get that found a value.
+    */
+   GET_HIT("getHit"),
+   /**
+    * A get that did not find a value.
+    */
+   GET_MISS("getMiss"),
+   /**
+    * A put of a single entry.
+    */
+   PUT("put"),
+   /**
+    * A removal of a single entry.
+    */
+   REMOVE("remove"),
+   /**
+    * A get served on behalf of another node in the cluster.
+    */
+   CLUSTERED_GET("clusteredGet"),
+   /**
+    * The commit of a transaction, including one phase prepares.
+    */
+   COMMIT("commit");
+
+   private final String statName;
+
+   LatencyType(String statName) {
+      this.statName = statName;
+   }
+
+   /**
+    * @return the name used as a prefix when these latencies are reported as named statistics, such as by the Hot Rod
+    *         stats operation
+    */
+   public String getStatName() {
+      return statName;
+   }
+}
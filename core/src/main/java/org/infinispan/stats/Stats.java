@@ -85,4 +85,10 @@ public interface Stats {
     * @return Number of cache eviction.
     */   
    long getEvictions();
+
+   /**
+    * @param type kind of operation
+    * @return latencies, in nanoseconds, of the given kind of operation, or null if statistics are disabled.
+    */
+   Histogram getLatencies(LatencyType type);
 }
@@ -22,7 +22,9 @@
  */
 package org.infinispan.stats;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import net.jcip.annotations.Immutable;
 
@@ -48,6 +50,7 @@ public class StatsImpl implements Stats {
    final long removeHits;
    final long removeMisses;
    final long evictions;
+   final Map<LatencyType, Histogram> latencies;
    
    public StatsImpl(InterceptorChain chain) {
       List<CommandInterceptor> interceptors = chain.getInterceptorsWhichExtend(CacheMgmtInterceptor.class);
@@ -63,6 +66,8 @@ public class StatsImpl implements Stats {
          removeHits = mgmtInterceptor.getRemoveHits();
          removeMisses = mgmtInterceptor.getRemoveMisses();
          evictions = mgmtInterceptor.getEvictions();
+         latencies = new EnumMap<LatencyType, Histogram>(LatencyType.class);
+         for (LatencyType type : LatencyType.values()) latencies.put(type, mgmtInterceptor.getLatencies(type));
       } else {
          timeSinceStart = -1;
          currentNumberOfEntries = -1;
@@ -74,6 +79,7 @@ public class StatsImpl implements Stats {
          removeHits = -1;
          removeMisses = -1;
          evictions = -1;
+         latencies = null;
       }
    }
 
@@ -117,4 +123,8 @@ public class StatsImpl implements Stats {
       return evictions;
    }
 
+   public Histogram getLatencies(LatencyType type) {
+      return latencies == null ? null : latencies.get(type);
+   }
+
 }
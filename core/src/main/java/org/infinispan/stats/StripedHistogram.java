@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+/**
+ * A {@link Histogram} split into several stripes, for values recorded by many threads at once.
+ * <p/>
+ * Each thread records into one stripe, picked from its id, so threads rarely contend on the same counters.  Readers
+ * merge all stripes into a single {@link Histogram} with {@link #snapshot()}, which is more expensive than reading a
+ * plain histogram, but reads are expected to be rare compared to writes.
+ *
+ * @since 5.0
+ */
+public class StripedHistogram {
+   private static final int MAX_STRIPES = 16;
+
+   private final Histogram[] stripes;
+   private final int mask;
+
+   public StripedHistogram() {
+      this(Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * @param concurrency expected number of concurrently recording threads, rounded up to a power of two and capped at
+    *                    16 stripes, since every stripe holds a full set of buckets
+    */
+   public StripedHistogram(int concurrency) {
+      int numStripes = 1;
+      while (numStripes < concurrency && numStripes < MAX_STRIPES) numStripes <<= 1;
+      stripes = new Histogram[numStripes];
+      for (int i = 0; i < numStripes; i++) stripes[i] = new Histogram();
+      mask = numStripes - 1;
+   }
+
+   /**
+    * Records a value in the calling thread's stripe.  Negative values are recorded as 0.
+    */
+   public void record(long value) {
+      stripes[(int) Thread.currentThread().getId() & mask].record(value);
+   }
+
+   /**
+    * @return a new histogram holding every value recorded so far.  Values recorded concurrently may or may not be
+    *         included.
+    */
+   public Histogram snapshot() {
+      Histogram snapshot = new Histogram();
+      for (Histogram stripe : stripes) snapshot.add(stripe);
+      return snapshot;
+   }
+
+   public void reset() {
+      for (Histogram stripe : stripes) stripe.reset();
+   }
+
+   @Override
+   public String toString() {
+      return snapshot().toString();
+   }
+}
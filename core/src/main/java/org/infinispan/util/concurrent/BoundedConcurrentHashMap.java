@@ -157,6 +157,19 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
     */
    static final int MAX_SEGMENTS = 1 << 16; // slightly conservative
 
+   /**
+    * Per segment capacity handed to the eviction policy of a map bounded by weight only, large enough never to be
+    * reached, and small enough for policies to scale it without overflowing.
+    */
+   static final int UNBOUNDED_SEGMENT_CAPACITY = Integer.MAX_VALUE / 16;
+
+   /**
+    * Weight per table slot of a map bounded by weight only.  Tables of maps with an eviction policy never grow, since
+    * policies keep track of the entries of the table, so such a map is sized for entries of about this weight; maps
+    * of lighter entries get longer hash chains.
+    */
+   static final int WEIGHT_PER_SLOT = 1024;
+
    /**
     * Number of unsynchronized retries in size and containsValue
     * methods before resorting to locking. This is used to avoid
@@ -236,6 +249,8 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       volatile V value;
       final HashEntry<K, V> next;
       volatile Recency state;
+      // weight of this entry as computed by the segment's EntrySizeCalculator, guarded by the segment lock
+      long weight;
 
       HashEntry(K key, int hash, HashEntry<K, V> next, V value) {
          this.key = key;
@@ -319,6 +334,23 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       void onEntryEviction(Map<K, V> evicted);
    }
 
+   /**
+    * Computes the weight of a mapping, typically its approximate size in bytes. Used to bound a map by the accumulated
+    * weight of its entries in addition to their number.
+    * <p>
+    * Implementations are invoked without holding a lock on the Segment and must be thread safe.
+    */
+   public interface EntrySizeCalculator<K, V> {
+      /**
+       * Returns the weight of the given mapping, which must be non-negative.
+       *
+       * @param key key of the mapping
+       * @param value value of the mapping
+       * @return weight of the mapping
+       */
+      long calculateSize(K key, V value);
+   }
+
    static class NullEvictionListener<K, V> implements EvictionListener<K, V> {
       @Override
       public void onEntryEviction(Map<K, V> evicted) {
@@ -476,7 +508,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
 
       private boolean isOverflow() {
-         return lruQueue.size() > trimDownSize;
+         return lruQueue.size() > trimDownSize || (segment.isOverweight() && !lruQueue.isEmpty());
       }
 
       @Override
@@ -566,6 +598,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                   }
                }
             }
+            pruneOverweight(evicted);
             removeFromSegment(evicted);
          } finally {
             accessQueue.clear();
@@ -643,6 +676,46 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return evicted;
       }
 
+      /**
+       * Evicts resident HIR entries, and if needed demotes the bottommost LIR entries to HIR, until the weight of
+       * the segment minus the weight of the entries already selected for eviction fits the segment's weight bound.
+       */
+      private void pruneOverweight(Set<HashEntry<K, V>> evicted) {
+         long excess = segment.excessWeight();
+         if (excess <= 0) {
+            return;
+         }
+         for (HashEntry<K, V> e : evicted) {
+            excess -= e.weight;
+         }
+         while (excess > 0) {
+            if (queue.isEmpty()) {
+               HashEntry<K, V> lir = bottommostLIR();
+               if (lir == null) {
+                  break;
+               }
+               stack.remove(lir.key);
+               lir.transitionLIRResidentToHIRResident();
+               currentLIRSize--;
+               queue.addLast(lir);
+            }
+            HashEntry<K, V> first = queue.removeFirst();
+            first.transitionHIRResidentToHIRNonResident();
+            if (evicted.add(first)) {
+               excess -= first.weight;
+            }
+         }
+      }
+
+      private HashEntry<K, V> bottommostLIR() {
+         for (HashEntry<K, V> e : stack.values()) {
+            if (e.recency() == Recency.LIR_RESIDENT) {
+               return e;
+            }
+         }
+         return null;
+      }
+
       private void removeFromSegment(Set<HashEntry<K, V>> evicted) {
          for (HashEntry<K, V> e : evicted) {
             segment.remove(e.key, e.hash, null);
@@ -795,11 +868,44 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
       transient final EvictionListener<K, V> evictionListener;
 
+      /**
+       * Computes the weight of entries, or null if weights are not tracked.
+       */
+      transient final EntrySizeCalculator<K, V> sizeCalculator;
+
+      /**
+       * Upper bound for the accumulated weight of this segment's entries,
+       * or a non-positive value if the segment is only bounded by count.
+       */
+      transient final long maxWeight;
+
+      /**
+       * Accumulated weight of this segment's entries. Written only while
+       * holding the lock.
+       */
+      transient volatile long weight;
+
       Segment(int cap, float lf, Eviction es, EvictionListener<K, V> listener) {
+         this(cap, lf, es, listener, -1, null);
+      }
+
+      Segment(int cap, float lf, Eviction es, EvictionListener<K, V> listener, long maxWeight,
+            EntrySizeCalculator<K, V> sizeCalculator) {
+         this(cap, cap, lf, es, listener, maxWeight, sizeCalculator);
+      }
+
+      /**
+       * @param cap       number of entries the eviction policy keeps the segment to
+       * @param tableSize size of the table, which may be smaller than <tt>cap</tt> if the segment is bounded by weight
+       */
+      Segment(int cap, int tableSize, float lf, Eviction es, EvictionListener<K, V> listener, long maxWeight,
+            EntrySizeCalculator<K, V> sizeCalculator) {
          loadFactor = lf;
+         this.maxWeight = maxWeight;
+         this.sizeCalculator = sizeCalculator;
          eviction = es.make(this, cap, lf);
          evictionListener = listener;
-         setTable(HashEntry.<K, V> newArray(cap));
+         setTable(HashEntry.<K, V> newArray(tableSize));
       }
 
       @SuppressWarnings("unchecked")
@@ -811,6 +917,43 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return evictionListener;
       }
 
+      /**
+       * Computes the weight of a mapping. Called before acquiring the lock
+       * since calculators may have to do some work, e.g. serialize a value.
+       */
+      long weigh(K key, V value) {
+         return sizeCalculator == null ? 0 : sizeCalculator.calculateSize(key, value);
+      }
+
+      boolean isOverweight() {
+         return maxWeight > 0 && weight > maxWeight;
+      }
+
+      long excessWeight() {
+         return maxWeight > 0 ? weight - maxWeight : 0;
+      }
+
+      /**
+       * Runs the eviction policy if the weight bound has been exceeded and
+       * merges the result with entries already evicted by the caller.
+       * Call only while holding lock.
+       */
+      private Set<HashEntry<K, V>> evictOverweight(Set<HashEntry<K, V>> evicted) {
+         if (!isOverweight() || eviction.strategy() == Eviction.NONE) {
+            return evicted;
+         }
+         Set<HashEntry<K, V>> newlyEvicted = eviction.execute();
+         if (newlyEvicted.isEmpty()) {
+            return evicted;
+         }
+         if (evicted == null || evicted.isEmpty()) {
+            return newlyEvicted;
+         }
+         Set<HashEntry<K, V>> all = new HashSet<HashEntry<K, V>>(evicted);
+         all.addAll(newlyEvicted);
+         return all;
+      }
+
       /**
        * Sets table to new HashEntry array.
        * Call only while holding lock or in constructor.
@@ -909,6 +1052,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
 
       boolean replace(K key, int hash, V oldValue, V newValue) {
+         long newWeight = weigh(key, newValue);
          lock();
          Set<HashEntry<K, V>> evicted = null;
          try {
@@ -921,9 +1065,12 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             if (e != null && oldValue.equals(e.value)) {
                replaced = true;
                e.value = newValue;
+               weight += newWeight - e.weight;
+               e.weight = newWeight;
                if (eviction.onEntryHit(e)) {
                   evicted = attemptEviction(true);
                }
+               evicted = evictOverweight(evicted);
             }
             return replaced;
          } finally {
@@ -933,6 +1080,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
 
       V replace(K key, int hash, V newValue) {
+         long newWeight = weigh(key, newValue);
          lock();
          Set<HashEntry<K, V>> evicted = null;
          try {
@@ -945,9 +1093,12 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             if (e != null) {
                oldValue = e.value;
                e.value = newValue;
+               weight += newWeight - e.weight;
+               e.weight = newWeight;
                if (eviction.onEntryHit(e)) {
                   evicted = attemptEviction(true);
                }
+               evicted = evictOverweight(evicted);
             }
             return oldValue;
          } finally {
@@ -957,6 +1108,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
 
       V put(K key, int hash, V value, boolean onlyIfAbsent) {
+         long newWeight = weigh(key, value);
          lock();
          Set<HashEntry<K, V>> evicted = null;
          try {
@@ -977,7 +1129,10 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                oldValue = e.value;
                if (!onlyIfAbsent) {
                   e.value = value;
+                  weight += newWeight - e.weight;
+                  e.weight = newWeight;
                   eviction.onEntryHit(e);
+                  evicted = evictOverweight(evicted);
                }
             } else {
                oldValue = null;
@@ -992,6 +1147,8 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                   }
                   // add a new entry
                   tab[index] = new HashEntry<K, V>(key, hash, first, value);
+                  tab[index].weight = newWeight;
+                  weight += newWeight;
                   // notify a miss
                   Set<HashEntry<K, V>> newlyEvicted = eviction.onEntryMiss(tab[index]);
                   if (!newlyEvicted.isEmpty()) {
@@ -1001,8 +1158,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                         evicted = newlyEvicted;
                      }
                   }
+                  evicted = evictOverweight(evicted);
                } else {
                   tab[index] = new HashEntry<K, V>(key, hash, first, value);
+                  tab[index].weight = newWeight;
+                  weight += newWeight;
                }
             }
             return oldValue;
@@ -1069,6 +1229,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                      HashEntry<K,V> n = newTable[k];
                      newTable[k] = new HashEntry<K,V>(p.key, p.hash,
                            n, p.value);
+                     newTable[k].weight = p.weight;
                   }
                }
             }
@@ -1103,12 +1264,14 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
                   // e was removed
                   eviction.onEntryRemove(e);
+                  weight -= e.weight;
 
                   HashEntry<K, V> newFirst = e.next;
                   for (HashEntry<K, V> p = first; p != e; p = p.next) {
                      // allow p to be GC-ed
                      eviction.onEntryRemove(p);
                      newFirst = new HashEntry<K, V>(p.key, p.hash, newFirst, p.value);
+                     newFirst.weight = p.weight;
                      // and notify eviction algorithm about new hash entries
                      eviction.onEntryMiss(newFirst);
                   }
@@ -1133,6 +1296,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                }
                ++modCount;
                eviction.clear();
+               weight = 0;
                count = 0; // write-volatile
             } finally {
                unlock();
@@ -1205,22 +1369,66 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
     */
    public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
          Eviction evictionStrategy, EvictionListener<K, V> evictionListener) {
-      if (capacity < 0 || concurrencyLevel <= 0) {
+      this(capacity, concurrencyLevel, evictionStrategy, evictionListener, -1, null);
+   }
+
+   /**
+    * Creates a new, empty map with the specified maximum capacity, maximum weight, concurrency
+    * level and eviction strategy. Entries are evicted when either the number of elements or the
+    * accumulated weight of the elements, as computed by <tt>sizeCalculator</tt>, exceeds its bound.
+    * Both bounds are split evenly among the segments of the map.
+    *
+    * @param capacity
+    *            is the upper bound capacity for the number of elements in this map, or a negative
+    *            value to bound the map by weight only
+    *
+    * @param concurrencyLevel
+    *            the estimated number of concurrently updating threads. The implementation performs
+    *            internal sizing to try to accommodate this many threads.
+    *
+    * @param evictionStrategy
+    *            the algorithm used to evict elements from this map
+    *
+    * @param evictionListener
+    *            the evicton listener callback to be notified about evicted elements
+    *
+    * @param maxWeight
+    *            the upper bound for the accumulated weight of the elements in this map, or a
+    *            non-positive value to bound the map by number of elements only
+    *
+    * @param sizeCalculator
+    *            computes the weight of each element, required if <tt>maxWeight</tt> is positive
+    *
+    * @throws IllegalArgumentException
+    *             if the capacity is negative while the map is not bounded by weight, or the load
+    *             factor or concurrencyLevel are nonpositive.
+    */
+   public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
+         Eviction evictionStrategy, EvictionListener<K, V> evictionListener,
+         long maxWeight, EntrySizeCalculator<K, V> sizeCalculator) {
+      boolean boundedByCount = capacity >= 0;
+      if ((!boundedByCount && maxWeight <= 0) || concurrencyLevel <= 0) {
          throw new IllegalArgumentException();
       }
 
-      concurrencyLevel = Math.min(capacity / 2, concurrencyLevel); // concurrencyLevel cannot be > capacity/2
-      concurrencyLevel = Math.max(concurrencyLevel, 1); // concurrencyLevel cannot be less than 1
+      if (boundedByCount) {
+         concurrencyLevel = Math.min(capacity / 2, concurrencyLevel); // concurrencyLevel cannot be > capacity/2
+         concurrencyLevel = Math.max(concurrencyLevel, 1); // concurrencyLevel cannot be less than 1
 
-      // minimum two elements per segment
-      if (capacity < concurrencyLevel * 2 && capacity != 1) {
-         throw new IllegalArgumentException("Maximum capacity has to be at least twice the concurrencyLevel");
+         // minimum two elements per segment
+         if (capacity < concurrencyLevel * 2 && capacity != 1) {
+            throw new IllegalArgumentException("Maximum capacity has to be at least twice the concurrencyLevel");
+         }
       }
 
       if (evictionStrategy == null || evictionListener == null) {
          throw new IllegalArgumentException();
       }
 
+      if (maxWeight > 0 && sizeCalculator == null) {
+         throw new IllegalArgumentException("An EntrySizeCalculator is required to bound the map by weight");
+      }
+
       if (concurrencyLevel > MAX_SEGMENTS) {
          concurrencyLevel = MAX_SEGMENTS;
       }
@@ -1236,11 +1444,13 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       segmentMask = ssize - 1;
       this.segments = Segment.newArray(ssize);
 
-      if (capacity > MAXIMUM_CAPACITY) {
-         capacity = MAXIMUM_CAPACITY;
+      int tableCapacity = boundedByCount ? capacity :
+            (int) Math.min(Math.max(maxWeight / WEIGHT_PER_SLOT, DEFAULT_MAXIMUM_CAPACITY), MAXIMUM_CAPACITY);
+      if (tableCapacity > MAXIMUM_CAPACITY) {
+         tableCapacity = MAXIMUM_CAPACITY;
       }
-      int c = capacity / ssize;
-      if (c * ssize < capacity) {
+      int c = tableCapacity / ssize;
+      if (c * ssize < tableCapacity) {
          ++c;
       }
       int cap = 1;
@@ -1248,8 +1458,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          cap <<= 1;
       }
 
+      long segmentMaxWeight = maxWeight > 0 ? Math.max(1, maxWeight / ssize) : -1;
+      int segmentCapacity = boundedByCount ? cap : UNBOUNDED_SEGMENT_CAPACITY;
       for (int i = 0; i < this.segments.length; ++i) {
-         this.segments[i] = new Segment<K, V>(cap, DEFAULT_LOAD_FACTOR, evictionStrategy, evictionListener);
+         this.segments[i] = new Segment<K, V>(segmentCapacity, cap, DEFAULT_LOAD_FACTOR, evictionStrategy,
+               evictionListener, segmentMaxWeight, sizeCalculator);
       }
    }
 
@@ -1357,6 +1570,21 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       return true;
    }
 
+   /**
+    * Returns the accumulated weight of the mappings in this map, as computed by the
+    * {@link EntrySizeCalculator} the map was created with, or 0 if the map does not track
+    * weights. The result is only an estimate while the map is concurrently modified.
+    *
+    * @return the accumulated weight of the mappings in this map
+    */
+   public long weight() {
+      long sum = 0;
+      for (Segment<K, V> segment : segments) {
+         sum += segment.weight;
+      }
+      return sum;
+   }
+
    /**
     * Returns the number of key-value mappings in this map.  If the
     * map contains more than <tt>Integer.MAX_VALUE</tt> elements, returns
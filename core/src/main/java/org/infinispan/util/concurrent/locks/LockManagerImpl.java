@@ -34,6 +34,7 @@ import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.util.ReversibleOrderedSet;
 import org.infinispan.util.concurrent.locks.containers.LockContainer;
+import org.infinispan.util.concurrent.locks.containers.LockFreePerEntryLockContainer;
 import org.infinispan.util.concurrent.locks.containers.OwnableReentrantPerEntryLockContainer;
 import org.infinispan.util.concurrent.locks.containers.OwnableReentrantStripedLockContainer;
 import org.infinispan.util.concurrent.locks.containers.ReentrantPerEntryLockContainer;
@@ -76,6 +77,10 @@ public class LockManagerImpl implements LockManager {
 
    @Start
    public void startLockManager() {
+      if (configuration.isUseLockFreeContainer()) {
+         lockContainer = new LockFreePerEntryLockContainer(configuration.getConcurrencyLevel(), invocationContextContainer);
+         return;
+      }
       lockContainer = configuration.isUseLockStriping() ?
       transactionManager == null ? new ReentrantStripedLockContainer(configuration.getConcurrencyLevel()) : new OwnableReentrantStripedLockContainer(configuration.getConcurrencyLevel(), invocationContextContainer) :
       transactionManager == null ? new ReentrantPerEntryLockContainer(configuration.getConcurrencyLevel()) : new OwnableReentrantPerEntryLockContainer(configuration.getConcurrencyLevel(), invocationContextContainer);
@@ -141,7 +146,10 @@ public class LockManagerImpl implements LockManager {
    }
 
    public Object getOwner(Object key) {
-      if (lockContainer.isLocked(key)) {
+      if (lockContainer instanceof LockFreePerEntryLockContainer) {
+         // a single lookup, which does not depend on the record staying locked in between
+         return ((LockFreePerEntryLockContainer) lockContainer).getOwner(key);
+      } else if (lockContainer.isLocked(key)) {
          Lock l = lockContainer.getLock(key);
 
          if (l instanceof OwnableReentrantLock) {
@@ -0,0 +1,360 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent.locks.containers;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.InvocationContextContainer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A per-entry lock container whose locks are plain lock records updated with compare-and-swap, rather than
+ * {@link java.util.concurrent.locks.AbstractQueuedSynchronizer} based locks or lock stripes.
+ * <p/>
+ * Each record holds a single int state: a positive value is the number of shared holders, a negative value is the
+ * hold count of the exclusive owner, and {@link Integer#MIN_VALUE} marks a record that has been released and removed
+ * from the container.  Uncontended acquisition costs one map lookup and one CAS (or one <tt>putIfAbsent</tt> of a
+ * record that is already held), and releasing the last hold removes the record, so no lock objects are retained for
+ * unlocked keys.
+ * <p/>
+ * Contended requestors spin briefly and then park on the record.  Threads are only ever parked on the record of the
+ * key they are waiting for, so a hot key never delays requestors of other keys the way a shared stripe does.
+ * <p/>
+ * Like {@link org.infinispan.util.concurrent.locks.OwnableReentrantLock}, exclusive locks are owned by the lock owner
+ * of the current {@link InvocationContext} (a transaction or a thread) and are reentrant.  Shared locks are not
+ * associated with an owner, and a shared holder cannot upgrade to an exclusive lock on the same key.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class LockFreePerEntryLockContainer implements ReadWriteLockContainer {
+
+   private static final int RETIRED = Integer.MIN_VALUE;
+   private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0;
+
+   private static final int ACQUIRED = 0;
+   private static final int BUSY = 1;
+   private static final int STALE = 2;
+
+   private static final AtomicIntegerFieldUpdater<LockRecord> STATE =
+         AtomicIntegerFieldUpdater.newUpdater(LockRecord.class, "state");
+
+   @SuppressWarnings("unchecked")
+   private static final AtomicReferenceFieldUpdater<LockRecord, Queue> WAITERS =
+         AtomicReferenceFieldUpdater.newUpdater(LockRecord.class, Queue.class, "waiters");
+
+   private final ConcurrentMap<Object, LockRecord> locks;
+   private final InvocationContextContainer icc;
+
+   /**
+    * @param concurrencyLevel concurrency level of the underlying map of lock records
+    * @param icc              used to determine the lock owner of the current invocation.  If null, locks are owned by
+    *                         the calling thread.
+    */
+   public LockFreePerEntryLockContainer(int concurrencyLevel, InvocationContextContainer icc) {
+      locks = new ConcurrentHashMap<Object, LockRecord>(16, .75f, concurrencyLevel);
+      this.icc = icc;
+   }
+
+   private Object currentRequestor() {
+      InvocationContext ctx = icc == null ? null : icc.getInvocationContext();
+      return ctx == null ? Thread.currentThread() : ctx.getLockOwner();
+   }
+
+   public Lock acquireLock(Object key, long timeout, TimeUnit unit) throws InterruptedException {
+      return acquire(key, true, timeout, unit);
+   }
+
+   public Lock acquireSharedLock(Object key, long timeout, TimeUnit unit) throws InterruptedException {
+      return acquire(key, false, timeout, unit);
+   }
+
+   private Lock acquire(Object key, boolean exclusive, long timeout, TimeUnit unit) throws InterruptedException {
+      Object requestor = currentRequestor();
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      while (true) {
+         LockRecord record = locks.get(key);
+         if (record == null) {
+            // publish a record that is already held by the requestor
+            LockRecord held = new LockRecord(key, exclusive ? -1 : 1, exclusive ? requestor : null);
+            record = locks.putIfAbsent(key, held);
+            if (record == null) return held;
+         }
+         int result = record.tryAcquire(requestor, exclusive);
+         if (result == ACQUIRED) return record;
+         if (result == BUSY && !record.await(requestor, exclusive, deadline)) return null;
+         // the record has been released and removed in the meantime, or may now be available, so try again.
+      }
+   }
+
+   public void releaseLock(Object key) {
+      LockRecord record = locks.get(key);
+      if (record != null) record.releaseExclusive(currentRequestor());
+   }
+
+   public void releaseSharedLock(Object key) {
+      LockRecord record = locks.get(key);
+      if (record != null) record.releaseShared(currentRequestor());
+   }
+
+   public boolean ownsLock(Object key, Object owner) {
+      LockRecord record = locks.get(key);
+      return record != null && owner.equals(record.getOwner());
+   }
+
+   public boolean isLocked(Object key) {
+      LockRecord record = locks.get(key);
+      return record != null && record.isLocked();
+   }
+
+   public boolean isSharedLocked(Object key) {
+      LockRecord record = locks.get(key);
+      return record != null && record.state > 0;
+   }
+
+   /**
+    * Returns the record of <tt>key</tt>.  Lookups never publish records, since only releases remove them, so for a key
+    * that is not locked this is a retired record that is not held in the container and cannot be locked.
+    */
+   public Lock getLock(Object key) {
+      LockRecord record = locks.get(key);
+      return record == null ? new LockRecord(key, RETIRED, null) : record;
+   }
+
+   /**
+    * @return the owner of the exclusive lock on <tt>key</tt>, or null if the key is not locked exclusively
+    */
+   public Object getOwner(Object key) {
+      LockRecord record = locks.get(key);
+      return record == null ? null : record.getOwner();
+   }
+
+   public int getNumLocksHeld() {
+      int held = 0;
+      for (LockRecord record : locks.values()) {
+         if (record.isLocked()) held++;
+      }
+      return held;
+   }
+
+   public int size() {
+      return locks.size();
+   }
+
+   public int getLockId(Object key) {
+      return System.identityHashCode(getLock(key));
+   }
+
+   @Override
+   public String toString() {
+      return "LockFreePerEntryLockContainer{locks=" + locks + '}';
+   }
+
+   /**
+    * The lock record of a single key.  Exposed as a {@link Lock} acquiring and releasing the record in exclusive mode,
+    * for compatibility with {@link LockContainer}.  A record that has been released and removed from the container
+    * cannot be locked again.
+    */
+   public final class LockRecord implements Lock {
+
+      private final Object key;
+      volatile int state;
+      volatile Object owner;
+      volatile Queue<Thread> waiters;
+
+      LockRecord(Object key, int state, Object owner) {
+         this.key = key;
+         this.state = state;
+         this.owner = owner;
+      }
+
+      /**
+       * @return the owner of the exclusive lock, or null if the record is not locked exclusively.
+       */
+      public Object getOwner() {
+         int s = state;
+         Object o = owner;
+         return s < 0 && s != RETIRED ? o : null;
+      }
+
+      /**
+       * @return true if the record is locked in either mode, false otherwise
+       */
+      public boolean isLocked() {
+         int s = state;
+         return s != 0 && s != RETIRED;
+      }
+
+      int tryAcquire(Object requestor, boolean exclusive) {
+         while (true) {
+            int s = state;
+            if (s == RETIRED) return STALE;
+            if (s < 0) {
+               if (!requestor.equals(owner)) return BUSY;
+               // reentrant acquisition.  Only the owner changes the state of an exclusively held record.
+               state = s - 1;
+               return ACQUIRED;
+            }
+            if (exclusive) {
+               if (s != 0) return BUSY;
+               if (STATE.compareAndSet(this, 0, -1)) {
+                  owner = requestor;
+                  return ACQUIRED;
+               }
+            } else if (STATE.compareAndSet(this, s, s + 1)) {
+               return ACQUIRED;
+            }
+         }
+      }
+
+      private boolean isBusy(Object requestor, boolean exclusive) {
+         int s = state;
+         if (s == RETIRED) return false;
+         if (s < 0) return !requestor.equals(owner);
+         return exclusive && s != 0;
+      }
+
+      /**
+       * Waits until the record may be acquired by the requestor, or has been removed from the container.
+       *
+       * @return false if the deadline passed first, true otherwise
+       */
+      @SuppressWarnings("unchecked")
+      boolean await(Object requestor, boolean exclusive, long deadline) throws InterruptedException {
+         for (int i = 0; i < SPINS; i++) {
+            if (!isBusy(requestor, exclusive)) return true;
+         }
+         Queue<Thread> q = waiters;
+         if (q == null) {
+            WAITERS.compareAndSet(this, null, new ConcurrentLinkedQueue<Thread>());
+            q = waiters;
+         }
+         Thread current = Thread.currentThread();
+         // enqueue before re-checking the state, so that a concurrent release either is seen here or unparks us
+         q.add(current);
+         try {
+            while (isBusy(requestor, exclusive)) {
+               long remaining = deadline - System.nanoTime();
+               if (remaining <= 0) return false;
+               LockSupport.parkNanos(this, remaining);
+               if (Thread.interrupted()) throw new InterruptedException();
+            }
+            return true;
+         } finally {
+            q.remove(current);
+         }
+      }
+
+      boolean releaseExclusive(Object requestor) {
+         int s = state;
+         if (s >= 0 || s == RETIRED || !requestor.equals(owner)) return false;
+         if (s == -1) {
+            owner = null;
+            state = RETIRED;
+            retire();
+         } else {
+            state = s + 1;
+         }
+         return true;
+      }
+
+      boolean releaseShared(Object requestor) {
+         while (true) {
+            int s = state;
+            // the exclusive owner is granted shared locks as reentrant exclusive acquisitions
+            if (s < 0) return releaseExclusive(requestor);
+            if (s == 0) return false;
+            int next = s == 1 ? RETIRED : s - 1;
+            if (STATE.compareAndSet(this, s, next)) {
+               if (next == RETIRED) retire();
+               return true;
+            }
+         }
+      }
+
+      private void retire() {
+         locks.remove(key, this);
+         Queue<Thread> q = waiters;
+         if (q != null) {
+            for (Thread t : q) LockSupport.unpark(t);
+         }
+      }
+
+      public void lock() {
+         boolean interrupted = false;
+         while (true) {
+            try {
+               if (tryLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) break;
+               throw new IllegalStateException("Lock record for " + key + " has been released and removed");
+            } catch (InterruptedException e) {
+               interrupted = true;
+            }
+         }
+         if (interrupted) Thread.currentThread().interrupt();
+      }
+
+      public void lockInterruptibly() throws InterruptedException {
+         if (!tryLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS))
+            throw new IllegalStateException("Lock record for " + key + " has been released and removed");
+      }
+
+      public boolean tryLock() {
+         return tryAcquire(currentRequestor(), true) == ACQUIRED;
+      }
+
+      public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+         Object requestor = currentRequestor();
+         long deadline = System.nanoTime() + unit.toNanos(time);
+         while (true) {
+            int result = tryAcquire(requestor, true);
+            if (result != BUSY) return result == ACQUIRED;
+            if (!await(requestor, true, deadline)) return false;
+         }
+      }
+
+      public void unlock() {
+         releaseExclusive(currentRequestor());
+      }
+
+      public Condition newCondition() {
+         throw new UnsupportedOperationException("Not supported in this implementation!");
+      }
+
+      @Override
+      public String toString() {
+         int s = state;
+         String status = s == 0 || s == RETIRED ? "Unlocked" : s > 0 ? "Shared by " + s : "Locked by " + owner;
+         return "LockRecord@" + Integer.toHexString(System.identityHashCode(this)) + "[" + status + "]";
+      }
+   }
+}
@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent.locks.containers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A {@link LockContainer} that, in addition to the exclusive locks used for writes, can hand out shared locks on a
+ * key.  Any number of requestors may hold a shared lock on the same key at the same time, while an exclusive lock
+ * excludes both shared and other exclusive holders.
+ *
+ * @since 5.0
+ */
+public interface ReadWriteLockContainer extends LockContainer {
+
+   /**
+    * Attempts to acquire a shared lock for the given object within certain time boundaries defined by the timeout and
+    * time unit parameters.  A requestor that already holds the exclusive lock on the key is granted the shared lock
+    * immediately.
+    *
+    * @param key Object to acquire lock on
+    * @param timeout Time after which the lock acquisition will fail
+    * @param unit Time unit of the given timeout
+    * @return If lock was acquired it returns the corresponding Lock object. If lock was not acquired, it returns null
+    * @throws InterruptedException If the lock acquisition was interrupted
+    */
+   Lock acquireSharedLock(Object key, long timeout, TimeUnit unit) throws InterruptedException;
+
+   /**
+    * Release a shared lock on the given key.
+    *
+    * @param key Object on which the shared lock is to be removed
+    */
+   void releaseSharedLock(Object key);
+
+   /**
+    * @param key object
+    * @return true if an object is locked in shared mode, false otherwise
+    */
+   boolean isSharedLocked(Object key);
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.api;
+
+import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryVisited;
+import org.infinispan.notifications.cachelistener.event.Event;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that reads served directly from the data container on a plain local cache behave like reads going through
+ * the interceptor chain, and that the chain is used again as soon as something needs to see the reads.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "api.DirectLocalReadTest")
+public class DirectLocalReadTest extends SingleCacheManagerTest {
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration c = getDefaultStandaloneConfig(false);
+      c.setExposeJmxStatistics(false);
+      return TestCacheManagerFactory.createCacheManager(c);
+   }
+
+   public void testReads() {
+      cache.put("k", "v");
+      assert "v".equals(cache.get("k"));
+      assert cache.containsKey("k");
+      assert cache.get("missing") == null;
+      assert !cache.containsKey("missing");
+      cache.remove("k");
+      assert cache.get("k") == null;
+   }
+
+   public void testExpiredEntryNotReturned() throws Exception {
+      cache.put("k", "v", 100, TimeUnit.MILLISECONDS);
+      assert "v".equals(cache.get("k"));
+      Thread.sleep(200);
+      assert cache.get("k") == null;
+      assert !cache.containsKey("k");
+   }
+
+   public void testInterceptorAddedAtRuntimeSeesReads() {
+      cache.put("k", "v");
+      GetCountingInterceptor interceptor = new GetCountingInterceptor();
+      cache.getAdvancedCache().addInterceptor(interceptor, 0);
+      try {
+         assert "v".equals(cache.get("k"));
+         assert interceptor.gets.get() == 1;
+      } finally {
+         cache.getAdvancedCache().removeInterceptor(GetCountingInterceptor.class);
+      }
+      assert "v".equals(cache.get("k"));
+      assert interceptor.gets.get() == 1;
+   }
+
+   public void testVisitedListenerNotified() {
+      cache.put("k", "v");
+      VisitedListener listener = new VisitedListener();
+      cache.addListener(listener);
+      try {
+         assert "v".equals(cache.get("k"));
+         assert listener.visits.get() == 2 : "Expected pre and post events but got " + listener.visits.get();
+      } finally {
+         cache.removeListener(listener);
+      }
+   }
+
+   public static class GetCountingInterceptor extends CommandInterceptor {
+      final AtomicInteger gets = new AtomicInteger();
+
+      @Override
+      public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
+         gets.incrementAndGet();
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+
+   @Listener
+   public static class VisitedListener {
+      final AtomicInteger visits = new AtomicInteger();
+
+      @CacheEntryVisited
+      public void visited(Event e) {
+         visits.incrementAndGet();
+      }
+   }
+}
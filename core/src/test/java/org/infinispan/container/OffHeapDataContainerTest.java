@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.infinispan.container.entries.ImmortalCacheEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.MortalCacheEntry;
+import org.infinispan.container.entries.TransientCacheEntry;
+import org.infinispan.container.entries.TransientMortalCacheEntry;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "container.OffHeapDataContainerTest")
+public class OffHeapDataContainerTest extends AbstractInfinispanTest {
+   OffHeapDataContainer dc;
+
+   @BeforeMethod
+   public void setUp() {
+      dc = new OffHeapDataContainer(16, -1, EvictionStrategy.NONE, new TestObjectStreamMarshaller());
+   }
+
+   @AfterMethod
+   public void tearDown() {
+      dc.stop();
+      dc = null;
+   }
+
+   public void testPutGetRemove() {
+      dc.put("k", "v", -1, -1);
+      assert dc.containsKey("k");
+      assert dc.size() == 1;
+      InternalCacheEntry ice = dc.get("k");
+      assert ice.getClass().equals(ImmortalCacheEntry.class);
+      assert "v".equals(ice.getValue());
+
+      dc.put("k", "v2", -1, -1);
+      assert dc.size() == 1;
+      assert "v2".equals(dc.peek("k").getValue());
+
+      ice = dc.remove("k");
+      assert "v2".equals(ice.getValue());
+      assert !dc.containsKey("k");
+      assert dc.get("k") == null;
+      assert dc.size() == 0;
+   }
+
+   public void testEntryTypes() {
+      dc.put("k", "v", 6000000, -1);
+      assert dc.get("k").getClass().equals(MortalCacheEntry.class);
+      dc.put("k", "v", -1, 6000000);
+      assert dc.get("k").getClass().equals(TransientCacheEntry.class);
+      dc.put("k", "v", 6000000, 6000000);
+      assert dc.get("k").getClass().equals(TransientMortalCacheEntry.class);
+   }
+
+   public void testExpiration() throws InterruptedException {
+      dc.put("k", "v", 0, -1);
+      Thread.sleep(10);
+      assert dc.get("k") == null;
+      assert dc.size() == 0;
+
+      dc.put("k1", "v", 0, -1);
+      dc.put("k2", "v", -1, 0);
+      dc.put("k3", "v", -1, -1);
+      Thread.sleep(10);
+      assert dc.size() == 3;
+      dc.purgeExpired();
+      assert dc.size() == 1;
+      assert dc.containsKey("k3");
+   }
+
+   public void testUpdatingLastUsed() throws InterruptedException {
+      dc.put("k", "v", -1, 600000);
+      long lastUsed = dc.get("k").getLastUsed();
+      Thread.sleep(100);
+      assert dc.peek("k").getLastUsed() == lastUsed : "peek should not touch the entry";
+      assert dc.get("k").getLastUsed() > lastUsed;
+   }
+
+   public void testResizeAndIteration() {
+      int n = 5000;
+      for (int i = 0; i < n; i++) dc.put(i, "v" + i, -1, -1);
+      assert dc.size() == n;
+      for (int i = 0; i < n; i++) assert ("v" + i).equals(dc.get(i).getValue());
+
+      Set<Object> keys = new HashSet<Object>(dc.keySet());
+      assert keys.size() == n;
+      int count = 0;
+      for (InternalCacheEntry ice : dc) {
+         assert keys.contains(ice.getKey());
+         count++;
+      }
+      assert count == n;
+      assert dc.values().size() == n;
+      assert dc.entrySet().size() == n;
+   }
+
+   public void testLRUEviction() {
+      dc.stop();
+      dc = new OffHeapDataContainer(1, 10, EvictionStrategy.LRU, new TestObjectStreamMarshaller());
+      for (int i = 0; i < 10; i++) dc.put(i, "v", -1, -1);
+      // touch 0 so that 1 becomes the least recently used entry
+      dc.get(0);
+      dc.put(10, "v", -1, -1);
+      assert dc.size() == 10;
+      assert dc.containsKey(0);
+      assert !dc.containsKey(1);
+      assert dc.containsKey(10);
+   }
+
+   public void testClearAndMemoryAccounting() {
+      long empty = dc.getOffHeapMemoryUsed();
+      for (int i = 0; i < 100; i++) dc.put(i, "value", -1, -1);
+      assert dc.getOffHeapMemoryUsed() > empty;
+      dc.clear();
+      assert dc.size() == 0;
+      assert dc.getOffHeapMemoryUsed() == empty;
+      dc.put("k", "v", -1, -1);
+      assert dc.containsKey("k");
+   }
+}
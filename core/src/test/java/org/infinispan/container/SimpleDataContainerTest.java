@@ -27,6 +27,9 @@ import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.MortalCacheEntry;
 import org.infinispan.container.entries.TransientCacheEntry;
 import org.infinispan.container.entries.TransientMortalCacheEntry;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.test.AbstractInfinispanTest;
 import org.infinispan.util.Immutables;
 import org.testng.annotations.AfterMethod;
@@ -37,6 +40,8 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import static org.easymock.EasyMock.createNiceMock;
+
 @Test(groups = "unit", testName = "container.SimpleDataContainerTest")
 public class SimpleDataContainerTest extends AbstractInfinispanTest {
    DataContainer dc;
@@ -90,6 +95,51 @@ public class SimpleDataContainerTest extends AbstractInfinispanTest {
       assert dc.size() == 0;
    }
 
+   public void testExpirationQueue() throws InterruptedException {
+      DefaultDataContainer ddc = (DefaultDataContainer) dc;
+      dc.put("immortal", "v", -1, -1);
+      dc.put("mortal", "v", 0, -1);
+      dc.put("transient", "v", -1, 0);
+      dc.put("longLived", "v", 6000000, -1);
+      assert ddc.getExpirationQueueDepth() == 3;
+
+      // an entry becoming immortal is no longer tracked
+      dc.put("longLived", "v", -1, -1);
+      assert ddc.getExpirationQueueDepth() == 2;
+
+      Thread.sleep(10);
+      dc.purgeExpired();
+      assert ddc.getLastPurgeCount() == 2;
+      assert ddc.getTotalPurgeCount() == 2;
+      assert ddc.getExpirationQueueDepth() == 0;
+      assert dc.size() == 2;
+
+      // removed entries, and expired entries found on access, are dropped from the queue straight away
+      dc.put("mortal", "v", 0, -1);
+      dc.remove("mortal");
+      assert ddc.getExpirationQueueDepth() == 0;
+      dc.put("mortal", "v", 0, -1);
+      Thread.sleep(10);
+      assert dc.get("mortal") == null;
+      assert ddc.getExpirationQueueDepth() == 0;
+      dc.put("mortal", "v", 0, -1);
+      Thread.sleep(10);
+      assert !dc.containsKey("mortal");
+      assert ddc.getExpirationQueueDepth() == 0;
+      dc.purgeExpired();
+      assert ddc.getLastPurgeCount() == 0;
+   }
+
+   public void testEvictedEntriesAreUnscheduled() {
+      DefaultDataContainer bounded = (DefaultDataContainer) DefaultDataContainer.boundedDataContainer(
+            16, 128, EvictionStrategy.LRU, EvictionThreadPolicy.PIGGYBACK);
+      bounded.initialize(createNiceMock(EvictionManager.class));
+      for (int i = 0; i < 2000; i++) bounded.put("k" + i, "v", 6000000, -1);
+      assert bounded.size() < 2000 : "Expected entries to be evicted";
+      assert bounded.getExpirationQueueDepth() == bounded.size() :
+            "Expected " + bounded.size() + " scheduled keys, but " + bounded.getExpirationQueueDepth() + " are";
+   }
+
    public void testUpdatingLastUsed() throws Exception {
       long idle = 600000;
       dc.put("k", "v", -1, -1);
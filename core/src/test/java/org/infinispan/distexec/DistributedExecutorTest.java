@@ -35,6 +35,8 @@ import org.infinispan.config.Configuration;
 import org.infinispan.config.GlobalConfiguration;
 import org.infinispan.distribution.BaseDistFunctionalTest;
 import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.TestingUtil;
 import org.testng.annotations.Test;
 
 /**
@@ -204,6 +206,37 @@ public class DistributedExecutorTest extends BaseDistFunctionalTest {
       }
    }
 
+   public void testDistributedCallableExecutedOnOwnerOfKeys() throws Exception {
+      c1.put("key1", "Manik");
+      Cache<Object, String> owner = getFirstOwner("key1");
+
+      DistributedTaskManagerImpl taskManager = (DistributedTaskManagerImpl) TestingUtil.extractComponent(owner, DistributedTaskManager.class);
+      long executedBefore = taskManager.getExecutedTasks();
+
+      DistributedExecutorService des = new DefaultExecutorService(c1);
+      Future<Address> future = des.submit(new AddressReturningCallable(), "key1");
+      assert addressOf(owner).equals(future.get());
+      assert taskManager.getExecutedTasks() == executedBefore + 1;
+      assert taskManager.getActiveTasks() == 0;
+   }
+
+   static class AddressReturningCallable implements DistributedCallable<String, String, Address>, Serializable {
+
+      /** The serialVersionUID */
+      private static final long serialVersionUID = 4409424437370498394L;
+      private transient Cache<String, String> cache;
+
+      @Override
+      public Address call() throws Exception {
+         return cache.getCacheManager().getAddress();
+      }
+
+      @Override
+      public void setEnvironment(Cache<String, String> cache, Set<String> inputKeys) {
+         this.cache = cache;
+      }
+   }
+
    static class SimpleDistributedCallable implements DistributedCallable<String, String, Boolean>,
             Serializable {
 
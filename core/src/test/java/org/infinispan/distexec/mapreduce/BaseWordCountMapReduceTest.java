@@ -22,6 +22,7 @@
  */
 package org.infinispan.distexec.mapreduce;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -112,6 +113,63 @@ public abstract class BaseWordCountMapReduceTest extends MultipleCacheManagersTe
       assert count == 2;
    }
    
+   public void testinvokeMapReduceOnAllKeysReducedOnOwners() throws Exception {
+      MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(null);
+      Map<String, Integer> mapReduce = task.reducedOnOwners(true).execute();
+      Integer count = mapReduce.get("Infinispan");
+      assert count == 3;
+      count = mapReduce.get("RedHat");
+      assert count == 2;
+   }
+
+   public void testinvokeMapReduceOnSubsetOfKeysReducedOnOwners() throws Exception {
+      MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(new String[] { "1", "2", "3" });
+      Map<String, Integer> mapReduce = task.reducedOnOwners(true).execute();
+      Integer count = mapReduce.get("Infinispan");
+      assert count == 1;
+      count = mapReduce.get("Boston");
+      assert count == 1;
+   }
+
+   public void testinvokeMapReduceReducedOnOwnersToNull() throws Exception {
+      MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(null, new WordCountMapper(), new IgnoreBostonReducer());
+      Map<String, Integer> mapReduce = task.reducedOnOwners(true).execute();
+      assert mapReduce.get("Infinispan") == 3;
+      assert mapReduce.get("RedHat") == 2;
+   }
+
+   public void testinvokeMapReduceStoringResults() throws Exception {
+      String resultsCacheName = cacheName() + "-results";
+      defineConfigurationOnAllManagers(resultsCacheName, getDefaultClusteredConfig(getCacheMode(), true));
+      waitForClusterToForm(resultsCacheName);
+      MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(null);
+      task.execute(resultsCacheName);
+      Cache c1 = cache(0, resultsCacheName);
+      Cache c2 = cache(1, resultsCacheName);
+      assert Integer.valueOf(3).equals(c1.get("Infinispan"));
+      assert Integer.valueOf(3).equals(c2.get("Infinispan"));
+      assert Integer.valueOf(2).equals(c2.get("RedHat"));
+   }
+
+   /**
+    * Enough entries for each node to map and combine them in several chunks, possibly on several threads
+    */
+   public void testinvokeMapReduceOnManyKeys() throws Exception {
+      Cache c1 = cache(0, cacheName());
+      int numEntries = 10000;
+      Map<String, String> entries = new HashMap<String, String>();
+      for (int i = 0; i < numEntries; i++) {
+         entries.put("k" + i, i % 2 == 0 ? "Infinispan rules" : "Infinispan scales");
+      }
+      c1.putAll(entries);
+      MapReduceTask<String, String, String, Integer> task = new MapReduceTask<String, String, String, Integer>(c1);
+      task.mappedWith(new WordCountMapper()).reducedWith(new WordCountReducer());
+      Map<String, Integer> mapReduce = task.execute();
+      assert mapReduce.get("Infinispan") == numEntries : mapReduce.get("Infinispan");
+      assert mapReduce.get("rules") == numEntries / 2;
+      assert mapReduce.get("scales") == numEntries / 2;
+   }
+
    /**
     * Tests isolation as mapper and reducer get invoked across the cluster
     * https://issues.jboss.org/browse/ISPN-1041
@@ -231,6 +289,16 @@ public abstract class BaseWordCountMapReduceTest extends MultipleCacheManagersTe
       }
    }
 
+   private static class IgnoreBostonReducer extends WordCountReducer {
+      /** The serialVersionUID */
+      private static final long serialVersionUID = -2386364406377478085L;
+
+      @Override
+      public Integer reduce(String key, Iterator<Integer> iter) {
+         return "Boston".equals(key) ? null : super.reduce(key, iter);
+      }
+   }
+
    private static class WordCountReducer implements Reducer<String, Integer> {
       /** The serialVersionUID */
       private static final long serialVersionUID = 1901016598354633256L;
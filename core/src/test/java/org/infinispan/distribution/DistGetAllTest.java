@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.infinispan.context.Flag.SKIP_REMOTE_LOOKUP;
+
+/**
+ * Tests {@link org.infinispan.AdvancedCache#getAll(java.util.Collection)} in distributed mode.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "distribution.DistGetAllTest")
+public class DistGetAllTest extends BaseDistFunctionalTest {
+
+   public DistGetAllTest() {
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   public void testGetAllFromSeveralOwners() {
+      MagicKey k1 = new MagicKey(c1);
+      MagicKey k2 = new MagicKey(c2);
+      MagicKey k3 = new MagicKey(c3);
+      c1.put(k1, "v1");
+      c2.put(k2, "v2");
+      c3.put(k3, "v3");
+
+      Map<Object, String> result = c4.getAdvancedCache().getAll(Arrays.<Object>asList(k1, k2, k3, "doesNotExist"));
+
+      assert result.size() == 3 : "Expected 3 entries but got " + result;
+      assert "v1".equals(result.get(k1));
+      assert "v2".equals(result.get(k2));
+      assert "v3".equals(result.get(k3));
+      assert !result.containsKey("doesNotExist");
+
+      for (MagicKey k : Arrays.asList(k1, k2, k3)) {
+         if (!isOwner(c4, k)) assertIsInL1(c4, k);
+      }
+   }
+
+   public void testGetAllMixingLocalAndRemoteKeys() {
+      MagicKey local = new MagicKey(c1);
+      MagicKey remote = new MagicKey(c3);
+      c1.put(local, "local");
+      c3.put(remote, "remote");
+
+      Map<Object, String> result = c1.getAdvancedCache().getAll(Arrays.<Object>asList(local, remote));
+
+      assert result.size() == 2 : "Expected 2 entries but got " + result;
+      assert "local".equals(result.get(local));
+      assert "remote".equals(result.get(remote));
+   }
+
+   public void testGetAllSkipRemoteLookup() {
+      MagicKey k1 = new MagicKey(c1);
+      c1.put(k1, "v1");
+
+      Map<Object, String> result = c4.getAdvancedCache().withFlags(SKIP_REMOTE_LOOKUP).getAll(Arrays.<Object>asList(k1));
+      if (!isOwner(c4, k1)) {
+         assert result.isEmpty() : "Expected no entries but got " + result;
+         assertIsNotInL1(c4, k1);
+      }
+   }
+}
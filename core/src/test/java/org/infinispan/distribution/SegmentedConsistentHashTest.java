@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.hash.MurmurHash3;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests that {@link SegmentedConsistentHash} maps keys exactly as {@link DefaultConsistentHash} does.
+ *
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "distribution.SegmentedConsistentHashTest")
+public class SegmentedConsistentHashTest extends AbstractInfinispanTest {
+
+   private Set<Address> addresses(int numNodes) {
+      Set<Address> addresses = new HashSet<Address>();
+      for (int i = 0; i < numNodes; i++) addresses.add(new TestAddress(i * 100));
+      return addresses;
+   }
+
+   public void testSameOwnersAsDefaultConsistentHash() {
+      for (int numNodes : new int[]{1, 2, 5, 20}) {
+         DefaultConsistentHash dch = new DefaultConsistentHash(new MurmurHash3());
+         SegmentedConsistentHash sch = new SegmentedConsistentHash(new MurmurHash3());
+         dch.setCaches(addresses(numNodes));
+         sch.setCaches(addresses(numNodes));
+         assert dch.getCaches().equals(sch.getCaches());
+
+         for (int replCount = 1; replCount <= numNodes + 1; replCount++) {
+            for (int i = 0; i < 1000; i++) {
+               String key = "k" + i;
+               List<Address> expected = dch.locate(key, replCount);
+               List<Address> owners = sch.locate(key, replCount);
+               assert expected.equals(owners) : "Key " + key + ": expected " + expected + " but was " + owners;
+               for (Address a : sch.getCaches())
+                  assert sch.isKeyLocalToAddress(a, key, replCount) == expected.contains(a);
+            }
+         }
+      }
+   }
+
+   public void testOwnerListsAreSharedAndImmutable() {
+      SegmentedConsistentHash sch = new SegmentedConsistentHash(new MurmurHash3());
+      sch.setCaches(addresses(5));
+      List<Address> owners = sch.locate("k", 2);
+      assert owners == sch.locate("k", 2);
+      assert owners == sch.getSegmentOwners(sch.getSegment("k"), 2);
+      assert owners.size() == 2;
+      try {
+         owners.add(new TestAddress(1));
+         assert false : "Owner lists should be immutable";
+      } catch (UnsupportedOperationException expected) {
+      }
+   }
+
+   public void testSegments() {
+      SegmentedConsistentHash sch = new SegmentedConsistentHash(new MurmurHash3());
+      sch.setCaches(addresses(5));
+      Set<Address> primaryOwners = new HashSet<Address>();
+      for (int segment = 0; segment < sch.getNumSegments(); segment++) {
+         List<Address> owners = sch.getSegmentOwners(segment, 2);
+         assert owners.size() == 2;
+         assert !owners.get(0).equals(owners.get(1));
+         primaryOwners.add(owners.get(0));
+      }
+      assert primaryOwners.equals(sch.getCaches());
+   }
+
+   public void testNoCaches() {
+      SegmentedConsistentHash sch = new SegmentedConsistentHash(new MurmurHash3());
+      sch.setCaches(new HashSet<Address>());
+      assert sch.locate("k", 2).isEmpty();
+      assert !sch.isKeyLocalToAddress(new TestAddress(1), "k", 2);
+   }
+}
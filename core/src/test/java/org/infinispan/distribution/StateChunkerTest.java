@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.CacheException;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.dummy.DummyInMemoryCacheStore;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Test(groups = "unit", testName = "distribution.StateChunkerTest")
+public class StateChunkerTest extends AbstractInfinispanTest {
+
+   private static final StateChunker.KeyFilter EVEN_KEYS = new StateChunker.KeyFilter() {
+      @Override
+      public boolean accept(Object key) {
+         return ((Integer) key) % 2 == 0;
+      }
+   };
+
+   public void testChunkedByEntries() throws Exception {
+      DataContainer dc = DefaultDataContainer.unBoundedDataContainer(16);
+      for (int i = 0; i < 100; i++) dc.put(i, "v" + i, -1, -1);
+
+      StateChunker chunker = new StateChunker(dc, null, EVEN_KEYS, 7, -1);
+      Map<Object, InternalCacheValue> all = drain(chunker, 7);
+
+      assert all.size() == 50;
+      for (int i = 0; i < 100; i += 2) assert all.get(i).getValue().equals("v" + i);
+      assert chunker.isExhausted();
+      assert chunker.nextChunk().isEmpty();
+   }
+
+   public void testChunkedByBytes() throws Exception {
+      DataContainer dc = DefaultDataContainer.unBoundedDataContainer(16);
+      for (int i = 0; i < 10; i++) dc.put(i * 2, new byte[100], -1, -1);
+
+      StateChunker chunker = new StateChunker(dc, null, EVEN_KEYS, 1000, 250);
+      // 100 bytes per entry, so a chunk is closed once it holds 3 entries
+      Map<Object, InternalCacheValue> all = drain(chunker, 3);
+      assert all.size() == 10;
+   }
+
+   public void testIncludesStoredEntries() throws Exception {
+      DataContainer dc = DefaultDataContainer.unBoundedDataContainer(16);
+      for (int i = 0; i < 10; i++) dc.put(i, "v" + i, -1, -1);
+      CacheStore store = new DummyInMemoryCacheStore();
+      store.init(new DummyInMemoryCacheStore.Cfg(getClass().getName()), null, null);
+      store.start();
+      try {
+         for (int i = 0; i < 20; i++) store.store(InternalEntryFactory.create(i, "v" + i));
+
+         Map<Object, InternalCacheValue> all = drain(new StateChunker(dc, store, EVEN_KEYS, 4, -1), 4);
+         assert all.size() == 10;
+         for (int i = 0; i < 20; i += 2) assert all.get(i).getValue().equals("v" + i);
+      } finally {
+         store.stop();
+      }
+   }
+
+   public void testRequestWithoutTransferInProgressFails() throws Exception {
+      DataContainer dc = DefaultDataContainer.unBoundedDataContainer(16);
+      for (int i = 0; i < 10; i++) dc.put(i, "v" + i, -1, -1);
+      DistributionManagerImpl dm = new DistributionManagerImpl();
+      Address receiver = new TestAddress(1);
+
+      assert dm.startOutboundStateTransfer(receiver, new StateChunker(dc, null, EVEN_KEYS, 100, -1)).size() == 5;
+      assert dm.nextOutboundStateChunk(receiver).isEmpty();
+      try {
+         dm.nextOutboundStateChunk(receiver);
+         assert false : "A request after the end of the transfer should fail rather than look like its end";
+      } catch (CacheException expected) {
+      }
+   }
+
+   private Map<Object, InternalCacheValue> drain(StateChunker chunker, int maxChunkSize) throws Exception {
+      Map<Object, InternalCacheValue> all = new HashMap<Object, InternalCacheValue>();
+      Map<Object, InternalCacheValue> chunk;
+      while (!(chunk = chunker.nextChunk()).isEmpty()) {
+         assert chunk.size() <= maxChunkSize : "Chunk of " + chunk.size() + " entries is larger than " + maxChunkSize;
+         for (Object k : chunk.keySet()) assert !all.containsKey(k) : "Key " + k + " sent twice";
+         all.putAll(chunk);
+      }
+      return all;
+   }
+}
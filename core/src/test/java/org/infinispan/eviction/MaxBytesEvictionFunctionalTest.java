@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+@Test(groups = "functional", testName = "eviction.MaxBytesEvictionFunctionalTest")
+public class MaxBytesEvictionFunctionalTest extends SingleCacheManagerTest {
+
+   private static final long MAX_BYTES = 10000;
+   private static final int VALUE_SIZE = 1000;
+
+   protected MaxBytesEvictionFunctionalTest() {
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   protected EvictionStrategy getEvictionStrategy() {
+      return EvictionStrategy.LRU;
+   }
+
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration cfg = new Configuration().fluent()
+            .eviction().strategy(getEvictionStrategy()).maxEntries(1000).maxBytes(MAX_BYTES).wakeUpInterval(100L)
+            .locking().concurrencyLevel(1).useLockStriping(false)
+            .build();
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(cfg);
+      cache = cm.getCache();
+      return cm;
+   }
+
+   public void testEvictionByWeight() {
+      for (int i = 0; i < 100; i++) {
+         cache.put("key-" + i, new byte[VALUE_SIZE]);
+      }
+      DefaultDataContainer dc = (DefaultDataContainer) cache.getAdvancedCache().getDataContainer();
+      assert dc.getEvictionWeight() <= MAX_BYTES : "Weight too big: " + dc.getEvictionWeight();
+      assert dc.size() <= MAX_BYTES / VALUE_SIZE : "Cache size too big: " + dc.size();
+      assert dc.size() > 0;
+      // the most recently written entry is never the first to go
+      assert cache.containsKey("key-99");
+   }
+
+   public void testEvictionByWeightOnly() {
+      Configuration cfg = new Configuration().fluent()
+            .eviction().strategy(getEvictionStrategy()).maxBytes(MAX_BYTES).wakeUpInterval(100L)
+            .locking().concurrencyLevel(1).useLockStriping(false)
+            .build();
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(cfg);
+      try {
+         Cache<String, byte[]> weighted = cm.getCache();
+         for (int i = 0; i < 100; i++) {
+            weighted.put("key-" + i, new byte[VALUE_SIZE]);
+         }
+         DefaultDataContainer dc = (DefaultDataContainer) weighted.getAdvancedCache().getDataContainer();
+         assert dc.getEvictionWeight() <= MAX_BYTES : "Weight too big: " + dc.getEvictionWeight();
+         assert dc.size() <= MAX_BYTES / VALUE_SIZE : "Cache size too big: " + dc.size();
+         assert dc.size() > 0;
+      } finally {
+         TestingUtil.killCacheManagers(cm);
+      }
+   }
+
+   public void testWeightTracksUpdatesAndRemovals() {
+      DefaultDataContainer dc = (DefaultDataContainer) cache.getAdvancedCache().getDataContainer();
+      cache.put("k", new byte[100]);
+      assert dc.getEvictionWeight() == 100;
+      cache.put("k", new byte[300]);
+      assert dc.getEvictionWeight() == 300;
+      cache.remove("k");
+      assert dc.getEvictionWeight() == 0;
+   }
+}
@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.factories.components;
+
+import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.factories.components.ComponentMetadata.InjectMethodMetadata;
+import org.infinispan.factories.components.ComponentMetadata.PrioritizedMethodMetadata;
+import org.infinispan.interceptors.CacheMgmtInterceptor;
+import org.infinispan.interceptors.DistributionInterceptor;
+import org.infinispan.notifications.cachelistener.CacheNotifierImpl;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+
+/**
+ * Tests that component metadata read back from a {@link ComponentMetadataIndex} matches the metadata built by
+ * reflection.
+ *
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "factories.components.ComponentMetadataIndexTest")
+public class ComponentMetadataIndexTest extends AbstractInfinispanTest {
+
+   private static final Class<?>[] COMPONENTS = {
+         CacheMgmtInterceptor.class, DistributionInterceptor.class, CacheNotifierImpl.class, DefaultDataContainer.class
+   };
+
+   public void testIndexMatchesReflection() throws Exception {
+      ComponentMetadataIndex index = writeAndRead(COMPONENTS);
+      assertEquals(COMPONENTS.length, index.size());
+      for (Class<?> type : COMPONENTS) {
+         ComponentMetadata scanned = ComponentMetadata.scan(type);
+         assertFalse(scanned.isEmpty());
+         assertSameMetadata(scanned, index.resolve(type));
+      }
+   }
+
+   public void testUnindexedClassNotResolved() throws Exception {
+      ComponentMetadataIndex index = writeAndRead(CacheMgmtInterceptor.class);
+      assertNull(index.resolve(DistributionInterceptor.class));
+   }
+
+   public void testChangedClassNotResolved() throws Exception {
+      ComponentMetadataIndex index = writeAndRead(CacheMgmtInterceptor.class, DefaultDataContainer.class);
+      // as if a method had been added to the class since the index was generated
+      index.entries.get(CacheMgmtInterceptor.class.getName()).fingerprint++;
+      assertNull(index.resolve(CacheMgmtInterceptor.class));
+      assertSameMetadata(ComponentMetadata.scan(DefaultDataContainer.class), index.resolve(DefaultDataContainer.class));
+   }
+
+   private ComponentMetadataIndex writeAndRead(Class<?>... types) throws Exception {
+      Map<Class<?>, ComponentMetadata> metadata = new LinkedHashMap<Class<?>, ComponentMetadata>();
+      for (Class<?> type : types) metadata.put(type, ComponentMetadata.scan(type));
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      ComponentMetadataIndex.write(metadata, out);
+      out.flush();
+      return new ComponentMetadataIndex(ComponentMetadataIndex.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+   }
+
+   private void assertSameMetadata(ComponentMetadata expected, ComponentMetadata actual) {
+      assertEquals(expected.isSurvivesRestarts(), actual.isSurvivesRestarts());
+      assertEquals(expected.getInjectMethods().length, actual.getInjectMethods().length);
+      for (int i = 0; i < expected.getInjectMethods().length; i++) {
+         InjectMethodMetadata e = expected.getInjectMethods()[i], a = actual.getInjectMethods()[i];
+         assertEquals(e.getMethod(), a.getMethod());
+         assertEquals(Arrays.asList(e.getParameterTypes()), Arrays.asList(a.getParameterTypes()));
+         assertEquals(Arrays.asList(e.getComponentNames()), Arrays.asList(a.getComponentNames()));
+      }
+      assertSamePrioritizedMethods(expected.getStartMethods(), actual.getStartMethods());
+      assertSamePrioritizedMethods(expected.getStopMethods(), actual.getStopMethods());
+   }
+
+   private void assertSamePrioritizedMethods(PrioritizedMethodMetadata[] expected, PrioritizedMethodMetadata[] actual) {
+      assertEquals(expected.length, actual.length);
+      for (int i = 0; i < expected.length; i++) {
+         assertEquals(expected[i].getMethod(), actual[i].getMethod());
+         assertEquals(expected[i].getPriority(), actual[i].getPriority());
+      }
+   }
+}
@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.interceptors;
+
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.VisitableCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.NonTxInvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that a compiled interceptor chain routes commands only through the interceptors that act on them.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "interceptors.CompiledInterceptorChainTest")
+public class CompiledInterceptorChainTest extends SingleCacheManagerTest {
+
+   private final CountingInterceptor counting = new CountingInterceptor();
+   private final PassThroughInterceptor passThrough = new PassThroughInterceptor();
+   private final PutCountingInterceptor putCounting = new PutCountingInterceptor();
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration c = getDefaultStandaloneConfig(false);
+      c.setUseCompiledInterceptorChain(true);
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(c);
+      cache = cm.getCache();
+      cache.getAdvancedCache().addInterceptor(putCounting, 0);
+      cache.getAdvancedCache().addInterceptor(passThrough, 0);
+      cache.getAdvancedCache().addInterceptor(counting, 0);
+      return cm;
+   }
+
+   public void testCommandsRoutedToActingInterceptors() {
+      InterceptorChain chain = TestingUtil.extractComponent(cache, InterceptorChain.class);
+      assert chain.isCompiled();
+
+      int commands = counting.commands.get();
+      int puts = putCounting.puts.get();
+      cache.put("k", "v");
+      assert counting.commands.get() == commands + 1;
+      assert putCounting.puts.get() == puts + 1;
+      assert "v".equals(cache.get("k"));
+      assert counting.commands.get() == commands + 2;
+      assert putCounting.puts.get() == puts + 1;
+
+      CommandsFactory cf = TestingUtil.extractComponent(cache, CommandsFactory.class);
+      InvocationContext ctx = new NonTxInvocationContext();
+      VisitableCommand get = cf.buildGetKeyValueCommand("k", Collections.<Flag>emptySet());
+      PutKeyValueCommand put = cf.buildPutKeyValueCommand("k", "v", -1, -1, Collections.<Flag>emptySet());
+      CommandDispatchTable.Position position = (CommandDispatchTable.Position) TestingUtil.extractField(counting, "dispatchPosition");
+      assert position.next(ctx, put) == putCounting : "Pass-through interceptor should be skipped for puts";
+      CommandInterceptor next = position.next(ctx, get);
+      assert next != passThrough && next != putCounting : "Interceptors not acting on gets should be skipped";
+   }
+
+   public void testChainModifiedAtRuntime() {
+      InterceptorChain chain = TestingUtil.extractComponent(cache, InterceptorChain.class);
+      PutCountingInterceptor added = new PutCountingInterceptor() {};
+      chain.addInterceptorAfter(added, PassThroughInterceptor.class);
+      try {
+         cache.put("k2", "v2");
+         assert added.puts.get() == 1;
+      } finally {
+         chain.removeInterceptor(added.getClass());
+      }
+      cache.put("k2", "v3");
+      assert added.puts.get() == 1;
+   }
+
+   public void testSwitchingBackToUncompiledChain() {
+      InterceptorChain chain = TestingUtil.extractComponent(cache, InterceptorChain.class);
+      chain.setCompiled(false);
+      try {
+         assert TestingUtil.extractField(counting, "dispatchPosition") == null;
+         int puts = putCounting.puts.get();
+         cache.put("k3", "v");
+         assert putCounting.puts.get() == puts + 1;
+         assert "v".equals(cache.get("k3"));
+      } finally {
+         chain.setCompiled(true);
+      }
+      assert TestingUtil.extractField(counting, "dispatchPosition") != null;
+   }
+
+   public static class CountingInterceptor extends CommandInterceptor {
+      final AtomicInteger commands = new AtomicInteger();
+
+      @Override
+      protected Object handleDefault(InvocationContext ctx, VisitableCommand command) throws Throwable {
+         commands.incrementAndGet();
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+
+   public static class PassThroughInterceptor extends CommandInterceptor {
+   }
+
+   public static class PutCountingInterceptor extends CommandInterceptor {
+      final AtomicInteger puts = new AtomicInteger();
+
+      @Override
+      public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+         puts.incrementAndGet();
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+}
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.io;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "io.ChunkedOutputStreamTest")
+public class ChunkedOutputStreamTest {
+
+   public void testOutputWithinInitialSizeIsNotCopied() {
+      ChunkedOutputStream out = new ChunkedOutputStream(64);
+      byte[] data = randomBytes(40);
+      out.write(data, 0, 30);
+      out.write(data[30]);
+      out.write(data, 31, 9);
+      ByteBuffer buffer = out.toByteBuffer();
+      assertEquals(64, buffer.getBuf().length);
+      assertContents(data, buffer);
+      assertSame(buffer.getBuf(), out.toByteBuffer().getBuf());
+   }
+
+   public void testOutputBeyondInitialSizeIsGathered() {
+      ChunkedOutputStream out = new ChunkedOutputStream(16);
+      byte[] data = randomBytes(100000);
+      // alternate single bytes and ever larger arrays, so that writes straddle chunk boundaries both ways
+      int pos = 0;
+      for (int len = 1; pos < data.length; len *= 3) {
+         out.write(data[pos++]);
+         int n = Math.min(len, data.length - pos);
+         out.write(data, pos, n);
+         pos += n;
+      }
+      assertEquals(data.length, out.size());
+      ByteBuffer buffer = out.toByteBuffer();
+      assertEquals(data.length, buffer.getBuf().length);
+      assertContents(data, buffer);
+   }
+
+   public void testWritesAfterGathering() {
+      ChunkedOutputStream out = new ChunkedOutputStream(0);
+      byte[] data = randomBytes(1000);
+      out.write(data, 0, 600);
+      assertContents(Arrays.copyOf(data, 600), out.toByteBuffer());
+      out.write(data, 600, 400);
+      assertContents(data, out.toByteBuffer());
+   }
+
+   public void testLargeWriteIsSplitIntoBoundedChunks() {
+      ChunkedOutputStream out = new ChunkedOutputStream(128);
+      byte[] data = randomBytes(ChunkedOutputStream.MAX_CHUNK_SIZE * 2 + 12345);
+      out.write(data, 0, data.length);
+      ByteBuffer buffer = out.toByteBuffer();
+      assertTrue(Arrays.equals(data, buffer.getBuf()));
+   }
+
+   public void testMostlyEmptyInitialChunkIsTrimmed() {
+      ChunkedOutputStream out = new ChunkedOutputStream(64 * 1024);
+      byte[] data = randomBytes(100);
+      out.write(data, 0, data.length);
+      ByteBuffer buffer = out.toByteBuffer();
+      assertEquals(data.length, buffer.getBuf().length);
+      assertContents(data, buffer);
+   }
+
+   @Test(expectedExceptions = IndexOutOfBoundsException.class)
+   public void testInvalidRegion() {
+      new ChunkedOutputStream(16).write(new byte[8], 4, 5);
+   }
+
+   private void assertContents(byte[] expected, ByteBuffer buffer) {
+      assertEquals(0, buffer.getOffset());
+      assertEquals(expected.length, buffer.getLength());
+      assertTrue(Arrays.equals(expected, Arrays.copyOf(buffer.getBuf(), buffer.getLength())));
+   }
+
+   private byte[] randomBytes(int length) {
+      byte[] bytes = new byte[length];
+      new Random(length).nextBytes(bytes);
+      return bytes;
+   }
+}
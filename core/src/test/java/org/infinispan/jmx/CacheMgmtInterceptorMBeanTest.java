@@ -26,6 +26,7 @@ import org.infinispan.AdvancedCache;
 import org.infinispan.config.Configuration;
 import org.infinispan.config.GlobalConfiguration;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.stats.LatencyType;
 import org.infinispan.test.SingleCacheManagerTest;
 import static org.infinispan.test.TestingUtil.*;
 import org.infinispan.test.fwk.TestCacheManagerFactory;
@@ -156,6 +157,28 @@ public class CacheMgmtInterceptorMBeanTest extends SingleCacheManagerTest {
       assertRemoveMisses(1);
    }
 
+   public void testLatencies() throws Exception {
+      assertAttributeValue("PutLatencyMax", 0);
+      assertAttributeValue("GetHitLatencyP99", 0);
+      cache.put("key", "value");
+      cache.get("key");
+      cache.remove("key");
+      assert getLongAttribute("PutLatencyMax") > 0;
+      assert getLongAttribute("GetHitLatencyP50") > 0;
+      assert getLongAttribute("GetHitLatencyP999") <= getLongAttribute("GetHitLatencyMax");
+      assert getLongAttribute("RemoveLatencyP99") > 0;
+      assertAttributeValue("GetMissLatencyMax", 0);
+      assert advanced.getStats().getLatencies(LatencyType.PUT).getCount() == 1;
+
+      resetStats();
+      assertAttributeValue("PutLatencyMax", 0);
+      assert advanced.getStats().getLatencies(LatencyType.PUT).getCount() == 0;
+   }
+
+   private long getLongAttribute(String attrName) throws Exception {
+      return (Long) threadMBeanServer.getAttribute(mgmtInterceptor, attrName);
+   }
+
    private void assertAttributeValue(String attrName, float expectedValue) throws Exception {
       String receivedVal = threadMBeanServer.getAttribute(mgmtInterceptor, attrName).toString();
       assert Float.parseFloat(receivedVal) == expectedValue : "expecting " + expectedValue + " for " + attrName + ", but received " + receivedVal;
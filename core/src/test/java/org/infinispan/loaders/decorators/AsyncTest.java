@@ -115,6 +115,14 @@ public class AsyncTest extends AbstractInfinispanTest {
       doTestSameKeyRemove(key);
    }
 
+   @Test(timeOut=10000)
+   public void testStopTwice() throws Exception {
+      store.store(InternalEntryFactory.create("k", "v"));
+      store.stop();
+      store.stop();
+      assert underlying.load("k") != null : "The modification should have been applied before the first stop returned";
+   }
+
    @Test(timeOut=10000)
    public void testRestrictionOnAddingToAsyncQueue() throws Exception {
       store.remove("blah");
@@ -364,6 +372,125 @@ public class AsyncTest extends AbstractInfinispanTest {
       }
    }
 
+   public void testFullQueueBlocksCallers(final Method m) throws Exception {
+      try {
+         final CountDownLatch flushStarted = new CountDownLatch(1);
+         final CountDownLatch releaseFlush = new CountDownLatch(1);
+         DummyInMemoryCacheStore underlying = new DummyInMemoryCacheStore();
+         asyncConfig.modificationQueueSize(5);
+         store = new AsyncStore(underlying, asyncConfig) {
+            @Override
+            protected void applyModificationsSync(ConcurrentMap<Object, Modification> mods) throws CacheLoaderException {
+               flushStarted.countDown();
+               try {
+                  releaseFlush.await(5, TimeUnit.SECONDS);
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               }
+               super.applyModificationsSync(mods);
+            }
+         };
+         dummyCfg = new DummyInMemoryCacheStore.Cfg();
+         dummyCfg.setStore(m.getName());
+         store.init(dummyCfg, null, null);
+         store.start();
+
+         // the first modification is taken off the queue and blocks the coordinator
+         store.store(InternalEntryFactory.create(k(m, 0), v(m, 0)));
+         assert flushStarted.await(5, TimeUnit.SECONDS);
+         for (int i = 1; i <= 5; i++) store.store(InternalEntryFactory.create(k(m, i), v(m, i)));
+         assert 5 == store.getQueueSize();
+
+         final CountDownLatch blockedStoreDone = new CountDownLatch(1);
+         Thread t = new Thread() {
+            @Override
+            public void run() {
+               store.store(InternalEntryFactory.create(k(m, 6), v(m, 6)));
+               blockedStoreDone.countDown();
+            }
+         };
+         t.start();
+         assert !blockedStoreDone.await(200, TimeUnit.MILLISECONDS) : "Store should block while the queue is full";
+
+         releaseFlush.countDown();
+         assert blockedStoreDone.await(5, TimeUnit.SECONDS);
+         for (int i = 0; i <= 6; i++) {
+            while (!store.containsKey(k(m, i))) TestingUtil.sleepThread(20);
+         }
+         assert store.getFlushCount() >= 2;
+      } finally {
+         store.delegate.clear();
+         store.stop();
+         store = null;
+      }
+   }
+
+   public void testStopReleasesBlockedCallers(final Method m) throws Exception {
+      final CountDownLatch flushStarted = new CountDownLatch(1);
+      final CountDownLatch releaseFlush = new CountDownLatch(1);
+      DummyInMemoryCacheStore underlying = new DummyInMemoryCacheStore();
+      asyncConfig.modificationQueueSize(5);
+      store = new AsyncStore(underlying, asyncConfig) {
+         @Override
+         protected void applyModificationsSync(ConcurrentMap<Object, Modification> mods) throws CacheLoaderException {
+            flushStarted.countDown();
+            try {
+               releaseFlush.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+            super.applyModificationsSync(mods);
+         }
+      };
+      dummyCfg = new DummyInMemoryCacheStore.Cfg();
+      dummyCfg.setStore(m.getName());
+      store.init(dummyCfg, null, null);
+      store.start();
+      try {
+         // block the coordinator in a flush and fill the queue up
+         store.store(InternalEntryFactory.create(k(m, 0), v(m, 0)));
+         assert flushStarted.await(5, TimeUnit.SECONDS);
+         for (int i = 1; i <= 5; i++) store.store(InternalEntryFactory.create(k(m, i), v(m, i)));
+
+         final int producers = 3;
+         final CountDownLatch producersDone = new CountDownLatch(producers);
+         for (int i = 0; i < producers; i++) {
+            final int key = 6 + i;
+            new Thread() {
+               @Override
+               public void run() {
+                  store.store(InternalEntryFactory.create(k(m, key), v(m, key)));
+                  producersDone.countDown();
+               }
+            }.start();
+         }
+         assert !producersDone.await(200, TimeUnit.MILLISECONDS) : "Producers should block while the queue is full";
+
+         Thread stopper = new Thread() {
+            @Override
+            public void run() {
+               try {
+                  store.stop();
+               } catch (CacheLoaderException e) {
+                  log.error("Failed to stop store", e);
+               }
+            }
+         };
+         stopper.start();
+         assert producersDone.await(5, TimeUnit.SECONDS) : "Stopping the store should release blocked producers";
+
+         releaseFlush.countDown();
+         stopper.join(10000);
+         assert !stopper.isAlive();
+         for (int i = 0; i < 6 + producers; i++)
+            assert underlying.load(k(m, i)) != null : "Modification " + i + " was not written before the store stopped";
+      } finally {
+         releaseFlush.countDown();
+         underlying.clear();
+         store = null;
+      }
+   }
+
    private void doTestPut(int number, String key, String value) throws Exception {
       for (int i = 0; i < number; i++) {
          InternalCacheEntry cacheEntry = InternalEntryFactory.create(key + i, value + i);
@@ -0,0 +1,146 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.file;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.BaseCacheStoreTest;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+@Test(groups = "unit", testName = "loaders.file.LogFileCacheStoreTest")
+public class LogFileCacheStoreTest extends BaseCacheStoreTest {
+
+   private LogFileCacheStore lfcs;
+   private String tmpDirectory;
+
+   @BeforeClass
+   @Parameters({"basedir"})
+   protected void setUpTempDir(@Optional(value = "/tmp") String basedir) {
+      tmpDirectory = TestingUtil.tmpDirectory(basedir, this);
+   }
+
+   @AfterClass
+   protected void clearTempDir() {
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+      new File(tmpDirectory).mkdirs();
+   }
+
+   protected CacheStore createCacheStore() throws CacheLoaderException {
+      clearTempDir();
+      lfcs = new LogFileCacheStore();
+      LogFileCacheStoreConfig cfg = new LogFileCacheStoreConfig()
+            .location(tmpDirectory)
+            .maxFileSize(1024)
+            .compactionInterval(0) // compaction is triggered manually
+            .purgeSynchronously(true); // for more accurate unit testing
+      lfcs.init(cfg, getCache(), getMarshaller());
+      lfcs.start();
+      return lfcs;
+   }
+
+   public void testIndexRebuiltOnRestart() throws Exception {
+      for (int i = 0; i < 100; i++) cs.store(InternalEntryFactory.create("k" + i, "v" + i));
+      for (int i = 0; i < 100; i += 2) cs.remove("k" + i);
+      cs.store(InternalEntryFactory.create("k1", "updated"));
+      assert lfcs.getLogFileCount() > 1;
+
+      cs.stop();
+      cs.start();
+
+      assert cs.loadAllKeys(null).size() == 50;
+      for (int i = 0; i < 100; i += 2) assert cs.load("k" + i) == null;
+      for (int i = 3; i < 100; i += 2) assert cs.load("k" + i).getValue().equals("v" + i);
+      assert cs.load("k1").getValue().equals("updated");
+   }
+
+   public void testTornWriteTruncated() throws Exception {
+      cs.store(InternalEntryFactory.create("k1", "v1"));
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+      cs.stop();
+
+      File log = new File(lfcs.getRoot(), LogFileCacheStore.fileName(0));
+      long length = log.length();
+      RandomAccessFile raf = new RandomAccessFile(log, "rw");
+      try {
+         raf.setLength(length - 3);
+      } finally {
+         raf.close();
+      }
+
+      cs.start();
+      assert cs.load("k1").getValue().equals("v1");
+      assert cs.load("k2") == null;
+      assert log.length() < length - 3;
+
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+      cs.stop();
+      cs.start();
+      assert cs.load("k2").getValue().equals("v2");
+   }
+
+   public void testCompaction() throws Exception {
+      for (int round = 0; round < 10; round++) {
+         for (int i = 0; i < 10; i++) cs.store(InternalEntryFactory.create("k" + i, "v" + round));
+      }
+      cs.store(InternalEntryFactory.create("removed", "v"));
+      cs.remove("removed");
+      int before = lfcs.getLogFileCount();
+      assert before > 2;
+
+      lfcs.compact();
+      assert lfcs.getLogFileCount() < before;
+      for (int i = 0; i < 10; i++) assert cs.load("k" + i).getValue().equals("v9");
+      assert cs.load("removed") == null;
+
+      cs.stop();
+      cs.start();
+      for (int i = 0; i < 10; i++) assert cs.load("k" + i).getValue().equals("v9");
+      assert cs.load("removed") == null;
+   }
+
+   public void testPurgeExpiredWritesTombstones() throws Exception {
+      long lifespan = 1000;
+      cs.store(InternalEntryFactory.create("k1", "v1", lifespan));
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+      Thread.sleep(lifespan + 100);
+      cs.purgeExpired();
+      assert !cs.containsKey("k1");
+      assert cs.containsKey("k2");
+
+      cs.stop();
+      cs.start();
+      InternalCacheEntry ice = cs.load("k2");
+      assert ice != null && ice.getValue().equals("v2");
+      assert cs.load("k1") == null;
+   }
+}
@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lock;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.locks.containers.LockFreePerEntryLockContainer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the shared and exclusive modes of {@link LockFreePerEntryLockContainer}.
+ *
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "lock.LockFreePerEntryLockContainerTest")
+public class LockFreePerEntryLockContainerTest extends AbstractInfinispanTest {
+
+   private static final String KEY = "k";
+
+   private LockFreePerEntryLockContainer container;
+   private ExecutorService executor;
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp() {
+      container = new LockFreePerEntryLockContainer(16, null);
+      executor = Executors.newSingleThreadExecutor();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      executor.shutdownNow();
+   }
+
+   public void testExclusiveLockIsReentrantAndReleased() throws Exception {
+      assert container.acquireLock(KEY, 0, TimeUnit.MILLISECONDS) != null;
+      assert container.acquireLock(KEY, 0, TimeUnit.MILLISECONDS) != null;
+      assert container.ownsLock(KEY, Thread.currentThread());
+      assert !tryExclusiveFromOtherThread();
+
+      container.releaseLock(KEY);
+      assert container.isLocked(KEY);
+      container.releaseLock(KEY);
+      assert !container.isLocked(KEY);
+      assert container.size() == 0 : "Released lock records should be removed";
+      assert tryExclusiveFromOtherThread();
+   }
+
+   public void testLookupsDoNotPublishRecords() throws Exception {
+      assert !container.getLock(KEY).tryLock();
+      container.getLockId(KEY);
+      assert container.getOwner(KEY) == null;
+      assert container.size() == 0 : "Lookups of unlocked keys should not leave records behind";
+
+      assert container.acquireLock(KEY, 0, TimeUnit.MILLISECONDS) == container.getLock(KEY);
+      assert container.getOwner(KEY) == Thread.currentThread();
+      container.releaseLock(KEY);
+      assert container.size() == 0;
+   }
+
+   public void testSharedLocksExcludeWriters() throws Exception {
+      assert container.acquireSharedLock(KEY, 0, TimeUnit.MILLISECONDS) != null;
+      assert trySharedFromOtherThread();
+      assert container.isSharedLocked(KEY);
+      assert !tryExclusiveFromOtherThread();
+
+      container.releaseSharedLock(KEY);
+      assert !container.isLocked(KEY);
+      assert tryExclusiveFromOtherThread();
+   }
+
+   public void testExclusiveLockExcludesReaders() throws Exception {
+      assert container.acquireLock(KEY, 0, TimeUnit.MILLISECONDS) != null;
+      assert !trySharedFromOtherThread();
+      // the exclusive owner may read its own writes
+      assert container.acquireSharedLock(KEY, 0, TimeUnit.MILLISECONDS) != null;
+      container.releaseSharedLock(KEY);
+      assert container.ownsLock(KEY, Thread.currentThread());
+      container.releaseLock(KEY);
+      assert !container.isLocked(KEY);
+   }
+
+   public void testWaitingWriterAcquiresOnRelease() throws Exception {
+      assert container.acquireSharedLock(KEY, 0, TimeUnit.MILLISECONDS) != null;
+      Future<Boolean> writer = executor.submit(new Callable<Boolean>() {
+         public Boolean call() throws Exception {
+            boolean locked = container.acquireLock(KEY, 10, TimeUnit.SECONDS) != null;
+            if (locked) container.releaseLock(KEY);
+            return locked;
+         }
+      });
+      Thread.sleep(100);
+      assert !writer.isDone();
+      container.releaseSharedLock(KEY);
+      assert writer.get(10, TimeUnit.SECONDS);
+   }
+
+   public void testMutualExclusion() throws Exception {
+      final AtomicInteger inside = new AtomicInteger();
+      final AtomicInteger violations = new AtomicInteger();
+      ExecutorService pool = Executors.newFixedThreadPool(4);
+      try {
+         Future<?>[] futures = new Future<?>[4];
+         for (int t = 0; t < futures.length; t++) {
+            final boolean writer = t == 0;
+            futures[t] = pool.submit(new Callable<Void>() {
+               public Void call() throws Exception {
+                  for (int i = 0; i < 10000; i++) {
+                     if (writer) {
+                        assert container.acquireLock(KEY, 10, TimeUnit.SECONDS) != null;
+                        if (inside.getAndSet(-1) != 0) violations.incrementAndGet();
+                        inside.set(0);
+                        container.releaseLock(KEY);
+                     } else {
+                        assert container.acquireSharedLock(KEY, 10, TimeUnit.SECONDS) != null;
+                        if (inside.getAndIncrement() < 0) violations.incrementAndGet();
+                        inside.decrementAndGet();
+                        container.releaseSharedLock(KEY);
+                     }
+                  }
+                  return null;
+               }
+            });
+         }
+         for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+      } finally {
+         pool.shutdownNow();
+      }
+      assert violations.get() == 0 : "Writer and readers held the lock together " + violations.get() + " times";
+      assert container.size() == 0;
+   }
+
+   private boolean tryExclusiveFromOtherThread() throws Exception {
+      return executor.submit(new Callable<Boolean>() {
+         public Boolean call() throws Exception {
+            boolean locked = container.acquireLock(KEY, 10, TimeUnit.MILLISECONDS) != null;
+            if (locked) container.releaseLock(KEY);
+            return locked;
+         }
+      }).get();
+   }
+
+   private boolean trySharedFromOtherThread() throws Exception {
+      return executor.submit(new Callable<Boolean>() {
+         public Boolean call() throws Exception {
+            boolean locked = container.acquireSharedLock(KEY, 10, TimeUnit.MILLISECONDS) != null;
+            if (locked) container.releaseSharedLock(KEY);
+            return locked;
+         }
+      }).get();
+   }
+}
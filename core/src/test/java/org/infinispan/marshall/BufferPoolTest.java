@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import org.infinispan.commands.RemoteCommandsFactory;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.io.ExposedByteArrayOutputStream;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+
+/**
+ * Tests {@link BufferPool}, {@link BufferSizeEstimator} and their use by {@link VersionAwareMarshaller}.
+ *
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "marshall.BufferPoolTest")
+public class BufferPoolTest extends AbstractInfinispanTest {
+
+   public void testSizeClasses() {
+      assertEquals(0, BufferPool.ceilingSizeClass(1));
+      assertEquals(0, BufferPool.ceilingSizeClass(128));
+      assertEquals(1, BufferPool.ceilingSizeClass(129));
+      assertEquals(1, BufferPool.ceilingSizeClass(256));
+      assertEquals(0, BufferPool.floorSizeClass(255));
+      assertEquals(1, BufferPool.floorSizeClass(256));
+      assertEquals(BufferPool.MAX_POOLED_SIZE, BufferPool.capacityOf(BufferPool.ceilingSizeClass(BufferPool.MAX_POOLED_SIZE)));
+   }
+
+   public void testBuffersAreReused() {
+      BufferPool pool = new BufferPool();
+      ExposedByteArrayOutputStream first = pool.acquire(100);
+      first.write(1);
+      pool.release(first);
+      ExposedByteArrayOutputStream second = pool.acquire(100);
+      assertSame(first, second);
+      assertEquals(0, second.size());
+      // nested acquisitions get distinct buffers
+      ExposedByteArrayOutputStream nested = pool.acquire(100);
+      assertNotSame(second, nested);
+      pool.release(nested);
+      pool.release(second);
+      assertEquals(3, pool.getAcquisitions());
+      assertEquals(1, pool.getReuses());
+      assertEquals(0, pool.getResizes());
+   }
+
+   public void testResizedAndOversizedBuffers() {
+      BufferPool pool = new BufferPool();
+      ExposedByteArrayOutputStream stream = pool.acquire(128);
+      stream.write(new byte[1000], 0, 1000);
+      pool.release(stream);
+      assertEquals(1, pool.getResizes());
+      // the grown buffer now serves larger requests
+      assertSame(stream, pool.acquire(1000));
+
+      ExposedByteArrayOutputStream huge = pool.acquire(BufferPool.MAX_POOLED_SIZE + 1);
+      pool.release(huge);
+      assertEquals(1, pool.getDiscards());
+      assertNotSame(huge, pool.acquire(BufferPool.MAX_POOLED_SIZE + 1));
+   }
+
+   public void testEstimatorLearnsSizes() {
+      BufferSizeEstimator estimator = new BufferSizeEstimator();
+      assertEquals(512, estimator.estimate("x", 512));
+      estimator.record("x", 8000);
+      assert estimator.estimate("x", 512) >= 8000;
+      // shrinks slowly, but does shrink
+      for (int i = 0; i < 100; i++) estimator.record("x", 100);
+      int estimate = estimator.estimate("x", 512);
+      assert estimate >= 100 && estimate < 200 : estimate;
+   }
+
+   public void testEstimatorCapsSizesAtPooledBuffers() {
+      BufferSizeEstimator estimator = new BufferSizeEstimator();
+      estimator.record("x", 5 * 1024 * 1024);
+      assertEquals(BufferPool.MAX_POOLED_SIZE, estimator.estimate("x", 512));
+      // and decays from the cap rather than from the huge size
+      for (int i = 0; i < 60; i++) estimator.record("x", 100);
+      int estimate = estimator.estimate("x", 512);
+      assert estimate < 200 : estimate;
+   }
+
+   public void testMarshallerPoolsCopiedOutput() throws Exception {
+      VersionAwareMarshaller marshaller = new VersionAwareMarshaller();
+      marshaller.inject(Thread.currentThread().getContextClassLoader(), new RemoteCommandsFactory(), new GlobalConfiguration());
+      marshaller.start();
+      try {
+         byte[] value = new byte[5000];
+         Arrays.fill(value, (byte) 7);
+         for (int i = 0; i < 10; i++) {
+            byte[] bytes = marshaller.objectToByteBuffer(value);
+            assert Arrays.equals(value, (byte[]) marshaller.objectFromByteBuffer(bytes));
+         }
+         assertEquals(10, marshaller.getBufferAcquisitions());
+         assertEquals(9, marshaller.getBufferReuses());
+         // only the first call had to grow its buffer, later ones are sized by the estimate
+         assertEquals(1, marshaller.getBufferResizes());
+         marshaller.resetStatistics();
+         assertEquals(0, marshaller.getBufferAcquisitions());
+      } finally {
+         marshaller.stop();
+      }
+   }
+}
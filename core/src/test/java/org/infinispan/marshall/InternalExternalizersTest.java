@@ -0,0 +1,71 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
+import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
+import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
+import org.infinispan.commands.remote.recovery.RemoveRecoveryInfoCommand;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks that every identifier declared in {@link Ids} has an externalizer in {@link InternalExternalizers}, so that
+ * no internal type silently falls back to (or fails) Java serialization.
+ *
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "marshall.InternalExternalizersTest")
+public class InternalExternalizersTest extends AbstractInfinispanTest {
+
+   /**
+    * Ids that are not externalizer ids: the upper bound, and command ids that happen to be declared in {@link Ids}.
+    * Commands are all written by the {@link org.infinispan.marshall.exts.ReplicableCommandExternalizer}.
+    */
+   private static final Set<Integer> NOT_EXTERNALIZER_IDS = new HashSet<Integer>(Arrays.asList(
+         Ids.MAX_ID, GetInDoubtTransactionsCommand.COMMAND_ID, RemoveRecoveryInfoCommand.COMMAND_ID,
+         CompleteTransactionCommand.COMMAND_ID, GetInDoubtTxInfoCommand.COMMAND_ID));
+
+   public void testEveryIdHasAnExternalizer() throws Exception {
+      Map<Integer, AdvancedExternalizer> registered = new HashMap<Integer, AdvancedExternalizer>();
+      for (AdvancedExternalizer ext : InternalExternalizers.load()) {
+         AdvancedExternalizer existing = registered.put(ext.getId(), ext);
+         assert existing == null : "Id " + ext.getId() + " is registered by both " + existing + " and " + ext;
+      }
+
+      for (Field f : Ids.class.getDeclaredFields()) {
+         if (!Modifier.isStatic(f.getModifiers()) || !f.getType().equals(int.class)) continue;
+         int id = f.getInt(null);
+         if (NOT_EXTERNALIZER_IDS.contains(id)) continue;
+         assert registered.containsKey(id) : "No internal externalizer registered for " + f.getName() + " (" + id + ")";
+      }
+   }
+}
@@ -58,6 +58,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -130,15 +131,15 @@ public class MarshalledValueTest extends MultipleCacheManagersTest {
    }
 
    private void assertOnlyOneRepresentationExists(MarshalledValue mv) {
-      assert (mv.instance != null && mv.raw == null) || (mv.instance == null && mv.raw != null) : "Only instance or raw representations should exist in a MarshalledValue; never both";
+      assert (mv.peekInstance() != null && mv.peekRaw() == null) || (mv.peekInstance() == null && mv.peekRaw() != null) : "Only instance or raw representations should exist in a MarshalledValue; never both";
    }
 
    private void assertSerialized(MarshalledValue mv) {
-      assert mv.raw != null : "Should be serialized";
+      assert mv.peekRaw() != null : "Should be serialized";
    }
 
    private void assertDeserialized(MarshalledValue mv) {
-      assert mv.instance != null : "Should be deserialized";
+      assert mv.peekInstance() != null : "Should be deserialized";
    }
 
    private void assertSerializationCounts(int serializationCount, int deserializationCount) {
@@ -361,6 +362,51 @@ public class MarshalledValueTest extends MultipleCacheManagersTest {
       assert mv.equals(mv2);
    }
 
+   public void testCompactionPolicies() throws Exception {
+      MarshalledValue mv = new MarshalledValue(new Pojo(1), true, marshaller);
+      mv.serialize();
+      CompactionPolicy.KEEP_BOTH.compact(mv);
+      assertSerialized(mv);
+      assertDeserialized(mv);
+      CompactionPolicy.KEEP_SERIALIZED.compact(mv);
+      assertSerialized(mv);
+      assertOnlyOneRepresentationExists(mv);
+      mv.get();
+      CompactionPolicy.KEEP_INSTANCE.compact(mv);
+      assertDeserialized(mv);
+      assertOnlyOneRepresentationExists(mv);
+   }
+
+   public void testConcurrentConversionsAndCompactions() throws Exception {
+      final List<Integer> value = new ArrayList<Integer>(Arrays.asList(1, 2, 3));
+      final MarshalledValue mv = new MarshalledValue(value, true, marshaller);
+      final byte[] expectedRaw = new MarshalledValue(value, true, marshaller).getRaw();
+      final AtomicInteger failures = new AtomicInteger();
+      Thread[] threads = new Thread[8];
+      for (int t = 0; t < threads.length; t++) {
+         final boolean preferSerialized = t % 2 == 0;
+         threads[t] = new Thread() {
+            @Override
+            public void run() {
+               for (int i = 0; i < 2000; i++) {
+                  try {
+                     if (!value.equals(mv.get())) failures.incrementAndGet();
+                     if (!Arrays.equals(expectedRaw, mv.getRaw())) failures.incrementAndGet();
+                     mv.compact(preferSerialized, false);
+                  } catch (Throwable e) {
+                     log.error("Unexpected failure", e);
+                     failures.incrementAndGet();
+                  }
+               }
+            }
+         };
+         threads[t].start();
+      }
+      for (Thread thread : threads) thread.join();
+      assert failures.get() == 0 : failures.get() + " reads observed a missing or wrong representation";
+      assert mv.peekInstance() != null || mv.peekRaw() != null;
+   }
+
    public void testMarshallValueWithCustomReadObjectMethod() {
       Cache cache1 = cache(0, "replSync");
       Cache cache2 = cache(1, "replSync");
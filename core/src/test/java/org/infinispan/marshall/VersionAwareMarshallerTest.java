@@ -41,6 +41,7 @@ import org.infinispan.commands.write.ReplaceCommand;
 import org.infinispan.config.GlobalConfiguration;
 import org.infinispan.container.entries.*;
 import org.infinispan.context.Flag;
+import org.infinispan.io.ByteBuffer;
 import org.infinispan.loaders.bucket.Bucket;
 import org.infinispan.marshall.jboss.JBossMarshallingTest.CustomReadObjectMethod;
 import org.infinispan.marshall.jboss.JBossMarshallingTest.ObjectThatContainsACustomReadObjectMethod;
@@ -336,6 +337,25 @@ public class VersionAwareMarshallerTest extends AbstractInfinispanTest {
       marshallAndAssertEquality(c);
    }
 
+   public void testLargePutMapCommandBuffer() throws Exception {
+      Map<Object, Object> map = new HashMap<Object, Object>();
+      Random r = new Random(42);
+      for (int i = 0; i < 8; i++) {
+         byte[] value = new byte[300 * 1024];
+         r.nextBytes(value);
+         map.put("key" + i, value);
+      }
+      PutMapCommand c = new PutMapCommand(map, null, 0, 0, Collections.<Flag>emptySet());
+      ByteBuffer buffer = marshaller.objectToBuffer(c);
+      // unmarshall from the middle of a larger array, as happens with buffers received from JGroups
+      byte[] bytes = new byte[buffer.getLength() + 16];
+      System.arraycopy(buffer.getBuf(), buffer.getOffset(), bytes, 7, buffer.getLength());
+      PutMapCommand read = (PutMapCommand) marshaller.objectFromByteBuffer(bytes, 7, buffer.getLength());
+      assert read.getMap().size() == map.size() : "Expected " + map.size() + " entries, read " + read.getMap().size();
+      for (Map.Entry<Object, Object> e : map.entrySet())
+         assert Arrays.equals((byte[]) e.getValue(), (byte[]) read.getMap().get(e.getKey())) : "Value of " + e.getKey() + " differs";
+   }
+
    public void testExceptionResponse() throws Exception {
       ExceptionResponse er = new ExceptionResponse(new TimeoutException());
       byte[] bytes = marshaller.objectToByteBuffer(er);
@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.binary;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.PojoWithSerializeWith;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.data.Person;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+
+import static org.infinispan.test.TestingUtil.k;
+import static org.infinispan.test.TestingUtil.v;
+import static org.testng.AssertJUnit.assertEquals;
+
+/**
+ * Replication and state transfer between nodes that use {@link BinaryMarshaller} as their global marshaller.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "marshall.binary.BinaryMarshallerReplicationTest")
+public class BinaryMarshallerReplicationTest extends MultipleCacheManagersTest {
+
+   private static final String CACHE_NAME = BinaryMarshallerReplicationTest.class.getName();
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      registerCacheManager(createCacheManager(), createCacheManager());
+      waitForClusterToForm(CACHE_NAME);
+   }
+
+   public void testReplicateUserTypes(Method m) {
+      Cache<Object, Object> cache1 = manager(0).getCache(CACHE_NAME);
+      Cache<Object, Object> cache2 = manager(1).getCache(CACHE_NAME);
+      Person p = new Person();
+      p.setName(v(m));
+      PojoWithSerializeWith pojo = new PojoWithSerializeWith(17, k(m));
+
+      cache1.put(k(m, 1), p);
+      cache1.put(k(m, 2), pojo);
+      cache1.put(k(m, 3), v(m));
+
+      assertEquals(p, cache2.get(k(m, 1)));
+      assertEquals(pojo, cache2.get(k(m, 2)));
+      assertEquals(v(m), cache2.get(k(m, 3)));
+   }
+
+   public void testStateTransferToJoiningNode(Method m) {
+      Cache<Object, Object> cache1 = manager(0).getCache(CACHE_NAME);
+      for (int i = 0; i < 100; i++) cache1.put(k(m, i), v(m, i));
+
+      EmbeddedCacheManager cm = createCacheManager();
+      try {
+         Cache<Object, Object> cache3 = cm.getCache(CACHE_NAME);
+         TestingUtil.blockUntilViewsReceived(60000, cache1, cache3);
+         for (int i = 0; i < 100; i++) assertEquals(v(m, i), cache3.get(k(m, i)));
+      } finally {
+         TestingUtil.killCacheManagers(cm);
+      }
+   }
+
+   private EmbeddedCacheManager createCacheManager() {
+      GlobalConfiguration globalCfg = GlobalConfiguration.getClusteredDefault();
+      globalCfg.fluent().serialization().marshallerClass(BinaryMarshaller.class);
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(globalCfg);
+      Configuration cfg = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC);
+      cfg.setFetchInMemoryState(true);
+      cm.defineConfiguration(CACHE_NAME, cfg);
+      return cm;
+   }
+}
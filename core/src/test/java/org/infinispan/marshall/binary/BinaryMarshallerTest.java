@@ -0,0 +1,246 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.binary;
+
+import org.infinispan.commands.RemoteCommandsFactory;
+import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.RemoveCommand;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.context.Flag;
+import org.infinispan.io.ExposedByteArrayOutputStream;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.marshall.NotSerializableException;
+import org.infinispan.marshall.PojoWithSerializeWith;
+import org.infinispan.remoting.responses.ExceptionResponse;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.data.Address;
+import org.infinispan.test.data.Person;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.jgroups.stack.IpAddress;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.lang.annotation.ElementType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Round trips internal and user types through {@link BinaryMarshaller}.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "marshall.binary.BinaryMarshallerTest")
+public class BinaryMarshallerTest extends AbstractInfinispanTest {
+
+   private final BinaryMarshaller marshaller = new BinaryMarshaller();
+   private final TransactionFactory gtf = new TransactionFactory();
+
+   @BeforeClass
+   public void setUp() {
+      marshaller.inject(Thread.currentThread().getContextClassLoader(), new RemoteCommandsFactory(), new GlobalConfiguration());
+      marshaller.start();
+   }
+
+   @AfterClass
+   public void tearDown() {
+      marshaller.stop();
+   }
+
+   public void testBuiltInTypes() throws Exception {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 100000; i++) sb.append((char) i);
+      Object[] values = {"", "k1", sb.toString(), Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE, Long.MIN_VALUE, 42L,
+                         true, false, (byte) -7, (short) 300, 'c', 1.5f, -2.5d, ElementType.FIELD};
+      for (Object value : values) marshallAndAssertEquality(value);
+      assert marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(null)) == null;
+
+      byte[] bytes = new byte[10000];
+      Arrays.fill(bytes, (byte) 3);
+      assert Arrays.equals(bytes, (byte[]) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(bytes)));
+   }
+
+   public void testSmallIntegersAreCompact() throws Exception {
+      // version byte, tag and a single zig-zag encoded byte
+      assertEquals(3, marshaller.objectToByteBuffer(-1).length);
+      assertEquals(3, marshaller.objectToByteBuffer(63).length);
+   }
+
+   public void testInternalTypes() throws Exception {
+      JGroupsAddress address = new JGroupsAddress(new IpAddress(12345));
+      GlobalTransaction gtx = gtf.newGlobalTransaction(address, false);
+      marshallAndAssertEquality(address);
+      marshallAndAssertEquality(gtx);
+
+      List<Object> list = new ArrayList<Object>();
+      Map<Object, Object> map = new HashMap<Object, Object>();
+      for (int i = 0; i < 10; i++) {
+         list.add(gtf.newGlobalTransaction(new JGroupsAddress(new IpAddress(1000 * i)), false));
+         map.put(i, "v" + i);
+      }
+      marshallAndAssertEquality(list);
+      marshallAndAssertEquality(map);
+      marshallAndAssertEquality(new TreeSet<Object>(map.keySet()));
+      marshallAndAssertEquality(new ByteArrayKey("123".getBytes()));
+
+      PutKeyValueCommand put = new PutKeyValueCommand("k", "v", false, null, 0, 0, Collections.<Flag>emptySet());
+      RemoveCommand remove = new RemoveCommand("k", null, null, Collections.<Flag>emptySet());
+      PutMapCommand putMap = new PutMapCommand(map, null, 0, 0, Collections.<Flag>emptySet());
+      marshallAndAssertEquality(put);
+      marshallAndAssertEquality(new ClusteredGetCommand("key", "mycache", Collections.<Flag>emptySet()));
+      marshallAndAssertEquality(new PrepareCommand(gtx, true, put, remove, putMap));
+
+      InternalCacheEntry entry = InternalEntryFactory.create("key", "value", System.currentTimeMillis() - 1000, 200000, System.currentTimeMillis(), 4000000);
+      marshallAndAssertEquality(entry);
+      marshallAndAssertEquality(new SuccessfulResponse("Blah"));
+
+      ExceptionResponse er = new ExceptionResponse(new TimeoutException());
+      ExceptionResponse rer = (ExceptionResponse) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(er));
+      assertEquals(er.getException().getClass(), rer.getException().getClass());
+   }
+
+   public void testMarshalledValueNestsMarshaller() throws Exception {
+      Person p = new Person();
+      p.setName("Bob Dylan");
+      MarshalledValue mv = new MarshalledValue(p, true, marshaller);
+      MarshalledValue rmv = (MarshalledValue) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(mv));
+      assertEquals(mv, rmv);
+      assertEquals(p, rmv.get());
+   }
+
+   public void testGeneratedExternalizer() throws Exception {
+      Person p = new Person();
+      p.setName("Bob Dylan");
+      Address a = new Address();
+      a.setCity("Duluth");
+      p.setAddress(a);
+      assertEquals(BinaryExternalizerTable.TypeInfo.GENERATED, typeInfo(Person.class).kind);
+      marshallAndAssertEquality(p);
+   }
+
+   public void testGeneratedExternalizerPreservesSharedAndCyclicReferences() throws Exception {
+      Node n1 = new Node("n1");
+      Node n2 = new Node("n2");
+      n1.next = n2;
+      n2.next = n1;
+      Object[] read = (Object[]) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(new Object[]{n1, n2}));
+      Node r1 = (Node) read[0];
+      Node r2 = (Node) read[1];
+      assertEquals("n1", r1.name);
+      assertSame(r2, r1.next);
+      assertSame(r1, r2.next);
+      assertEquals(7, r1.transientCounter);
+   }
+
+   public void testSerializeWithAndSerializableFallback() throws Exception {
+      marshallAndAssertEquality(new PojoWithSerializeWith(17, "k"));
+      CustomSerialization custom = new CustomSerialization();
+      custom.value = 5;
+      assertEquals(BinaryExternalizerTable.TypeInfo.SERIALIZED, typeInfo(CustomSerialization.class).kind);
+      assertEquals(5, ((CustomSerialization) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(custom))).value);
+   }
+
+   @Test(expectedExceptions = NotSerializableException.class)
+   public void testNonSerializable() throws Exception {
+      marshaller.objectToByteBuffer(Collections.singletonList(new Object()));
+   }
+
+   public void testIsMarshallable() throws Exception {
+      assertTrue(marshaller.isMarshallable("k"));
+      assertTrue(marshaller.isMarshallable(new Person()));
+      assert !marshaller.isMarshallable(new Object());
+   }
+
+   public void testStreaming() throws Exception {
+      ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(16);
+      ObjectOutput out = marshaller.startObjectOutput(baos, false);
+      try {
+         for (int i = 0; i < 1000; i++) marshaller.objectToObjectStream("value" + i, out);
+         marshaller.objectToObjectStream(new byte[4096], out);
+      } finally {
+         marshaller.finishObjectOutput(out);
+      }
+
+      ObjectInput in = marshaller.startObjectInput(new ByteArrayInputStream(baos.getRawBuffer(), 0, baos.size()), false);
+      try {
+         for (int i = 0; i < 1000; i++) assertEquals("value" + i, marshaller.objectFromObjectStream(in));
+         assertEquals(4096, ((byte[]) marshaller.objectFromObjectStream(in)).length);
+      } finally {
+         marshaller.finishObjectInput(in);
+      }
+   }
+
+   private BinaryExternalizerTable.TypeInfo typeInfo(Class<?> type) {
+      return new BinaryExternalizerTable(new RemoteCommandsFactory(), marshaller, new GlobalConfiguration()).getTypeInfo(type);
+   }
+
+   private void marshallAndAssertEquality(Object writeObj) throws Exception {
+      byte[] bytes = marshaller.objectToByteBuffer(writeObj);
+      Object readObj = marshaller.objectFromByteBuffer(bytes);
+      assert readObj.equals(writeObj) : "Writen[" + writeObj + "] and read[" + readObj + "] objects should be the same";
+   }
+
+   static class Node implements Serializable {
+      String name;
+      Node next;
+      transient int transientCounter = 7;
+
+      Node() {
+      }
+
+      Node(String name) {
+         this.name = name;
+      }
+   }
+
+   static class CustomSerialization implements Serializable {
+      int value;
+
+      private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+         out.defaultWriteObject();
+      }
+   }
+}
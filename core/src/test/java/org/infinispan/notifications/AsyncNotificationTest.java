@@ -34,7 +34,11 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @Test(groups = "functional", testName = "notifications.AsyncNotificationTest")
 public class AsyncNotificationTest extends AbstractInfinispanTest {
@@ -66,6 +70,15 @@ public class AsyncNotificationTest extends AbstractInfinispanTest {
       assert asyncListener.caller != Thread.currentThread();
    }
 
+   public void testAsyncEventsDeliveredInOrder() throws InterruptedException {
+      int numKeys = 500;
+      OrderRecordingListener listener = new OrderRecordingListener(numKeys);
+      c.addListener(listener);
+      for (int i = 0; i < numKeys; i++) c.put("k" + i, "v");
+      assert listener.latch.await(10, TimeUnit.SECONDS) : "Only received " + listener.keys.size() + " events";
+      for (int i = 0; i < numKeys; i++) assert listener.keys.get(i).equals("k" + i) : "Out of order events: " + listener.keys;
+   }
+
    public abstract static class AbstractListener {
       Thread caller;
       CountDownLatch latch;
@@ -105,4 +118,21 @@ public class AsyncNotificationTest extends AbstractInfinispanTest {
       }
    }
 
+   @Listener(sync = false)
+   public static class OrderRecordingListener {
+      final List<Object> keys = Collections.synchronizedList(new ArrayList<Object>());
+      final CountDownLatch latch;
+
+      public OrderRecordingListener(int expected) {
+         latch = new CountDownLatch(expected);
+      }
+
+      @CacheEntryCreated
+      public void handle(CacheEntryCreatedEvent e) {
+         if (!e.isPre()) {
+            keys.add(e.getKey());
+            latch.countDown();
+         }
+      }
+   }
 }
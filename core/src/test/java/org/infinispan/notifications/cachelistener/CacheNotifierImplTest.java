@@ -62,7 +62,6 @@ public class CacheNotifierImplTest extends AbstractInfinispanTest {
       InvocationContextContainer icc = new InvocationContextContainerImpl();
       n.injectDependencies(icc, mockCache);
       cl = new CacheListener();
-      n.start();
       n.addListener(cl);
       ctx = new NonTxInvocationContext();
    }
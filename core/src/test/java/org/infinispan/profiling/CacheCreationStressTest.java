@@ -23,15 +23,22 @@
 package org.infinispan.profiling;
 
 import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.factories.AbstractComponentRegistry;
+import org.infinispan.factories.components.ComponentMetadata;
+import org.infinispan.factories.components.ComponentMetadataIndex;
 import org.infinispan.manager.CacheContainer;
 import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.test.AbstractInfinispanTest;
 import org.infinispan.test.TestingUtil;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.testng.annotations.Test;
 
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -53,6 +60,52 @@ public class CacheCreationStressTest extends AbstractInfinispanTest {
       TestingUtil.sleepThread(2000);
    }
 
+   /**
+    * Times the start of a manager with many named caches, which is dominated by wiring the components of each cache.
+    * The component metadata of those caches comes from the index generated at build time, if found on the class path.
+    */
+   public void testStartManagerWithManyNamedCaches() {
+      int numCaches = 500;
+      long start = System.nanoTime();
+      EmbeddedCacheManager cm = new DefaultCacheManager();
+      try {
+         for (int i = 0; i < numCaches; i++) {
+            String name = "cache" + i;
+            cm.defineConfiguration(name, new Configuration());
+            cm.getCache(name);
+         }
+         System.out.printf("Started %d named caches in %d ms, %d classes in the component metadata index%n", numCaches,
+                           TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), ComponentMetadataIndex.getInstance().size());
+         compareMetadataResolution(cm.getCache("cache0"), 1000);
+      } finally {
+         TestingUtil.killCacheManagers(cm);
+      }
+   }
+
+   private void compareMetadataResolution(Cache<?, ?> cache, int iterations) {
+      Set<Class<?>> types = new HashSet<Class<?>>();
+      for (AbstractComponentRegistry.Component c : cache.getAdvancedCache().getComponentRegistry().getRegisteredComponents())
+         types.add(c.getInstance().getClass());
+
+      ComponentMetadataIndex index = ComponentMetadataIndex.getInstance();
+      int indexed = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+         for (Class<?> type : types) if (index.resolve(type) != null && i == 0) indexed++;
+      }
+      long indexNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+         for (Class<?> type : types) ComponentMetadata.scan(type);
+      }
+      long scanNanos = System.nanoTime() - start;
+
+      System.out.printf("Resolved metadata of %d components (%d indexed) %d times: index %d ms, reflection %d ms%n",
+                        types.size(), indexed, iterations, TimeUnit.NANOSECONDS.toMillis(indexNanos),
+                        TimeUnit.NANOSECONDS.toMillis(scanNanos));
+   }
+
    public static String generateRandomString(int numberOfChars) {
       Random r = new Random(System.currentTimeMillis());
       StringBuilder sb = new StringBuilder();
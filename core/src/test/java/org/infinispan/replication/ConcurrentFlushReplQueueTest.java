@@ -41,7 +41,8 @@ import java.util.concurrent.TimeUnit;
 /**
  * Verifies that concurrent flushes are handled properly. These can occur when both flushes due to queue max size
  * being exceeded and interval based queue flushes occur at exactly the same time. The test verifies that order of
- * operations is guaranteed under these circumstances.
+ * operations is guaranteed under these circumstances, and that threads exceeding the queue max size do not wait for
+ * a flush already in progress.
  *
  * @author Galder Zamarreño
  * @since 4.2
@@ -67,31 +68,31 @@ public class ConcurrentFlushReplQueueTest extends MultipleCacheManagersTest {
       Cache cache2 = cache(1);
       CountDownLatch intervalFlushLatch = new CountDownLatch(1);
       CountDownLatch secondPutLatch = new CountDownLatch(1);
-      CountDownLatch removeCompletedLatch = new CountDownLatch(1);
       MockReplQueue.intervalFlushLatch = intervalFlushLatch;
       MockReplQueue.secondPutLatch = secondPutLatch;
-      MockReplQueue.removeCompletedLatch = removeCompletedLatch; 
       final String k = "k-" + m.getName();
       final String v = "v-" + m.getName();
       cache1.put(k, v);
       // Wait for periodic repl queue task to try repl the single modification
       secondPutLatch.await();
       // Put something random so that after remove call, the element number exceeds
+      long start = System.currentTimeMillis();
       cache1.put("k-blah","v-blah");
       cache1.remove(k);
-      // Wait for remove to go over draining the queue
-      removeCompletedLatch.await();
+      // The interval flush is still in progress, so the remove must not have waited for it
+      assert System.currentTimeMillis() - start < 2500;
+      assert intervalFlushLatch.getCount() == 1;
       // Once remove executed, now let the interval flush continue
       intervalFlushLatch.countDown();
       // Wait for periodic flush to send modifications over the wire
       TestingUtil.sleepThread(500);
       assert !cache2.containsKey(k);
+      assert "v-blah".equals(cache2.get("k-blah"));
    }
 
    public static class MockReplQueue extends ReplicationQueueImpl {
       static CountDownLatch intervalFlushLatch;
       static CountDownLatch secondPutLatch;
-      static CountDownLatch removeCompletedLatch;
 
       @Override
       protected List<ReplicableCommand> drainReplQueue() {
@@ -103,8 +104,6 @@ public class ConcurrentFlushReplQueueTest extends MultipleCacheManagersTest {
                // it would have done it in that time. If it hasn't and the test passes,
                // it means that correct synchronization is in place.
                intervalFlushLatch.await(5, TimeUnit.SECONDS);
-            } else if (drained.size() > 0) {
-               removeCompletedLatch.countDown();
             }
          } catch (InterruptedException e) {
             throw new RuntimeException(e);
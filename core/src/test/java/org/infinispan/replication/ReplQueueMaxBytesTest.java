@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.replication;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.manager.CacheContainer;
+import org.infinispan.remoting.ReplicationQueue;
+import org.infinispan.remoting.ReplicationQueueImpl;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that the replication queue flushes once the marshalled size of the queued commands reaches
+ * <tt>replQueueMaxBytes</tt>, and that compressed batches are applied on the receiving side.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "replication.ReplQueueMaxBytesTest")
+public class ReplQueueMaxBytesTest extends MultipleCacheManagersTest {
+   private static final int MAX_BYTES = 4096;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration cfg = new Configuration();
+      cfg.setCacheMode(Configuration.CacheMode.REPL_ASYNC);
+      cfg.setUseReplQueue(true);
+      cfg.setReplQueueInterval(60000);
+      cfg.setReplQueueMaxElements(100000);
+      cfg.setReplQueueMaxBytes(MAX_BYTES);
+      cfg.setReplQueueCompression(true);
+      CacheContainer first = TestCacheManagerFactory.createCacheManager(GlobalConfiguration.getClusteredDefault(), cfg);
+      CacheContainer second = TestCacheManagerFactory.createCacheManager(GlobalConfiguration.getClusteredDefault(), cfg);
+      registerCacheManager(first, second);
+   }
+
+   public void testFlushOnMaxBytes() throws Exception {
+      Cache cache1 = cache(0);
+      Cache cache2 = cache(1);
+      ReplicationQueueImpl replQueue = (ReplicationQueueImpl) TestingUtil.extractComponent(cache1, ReplicationQueue.class);
+
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 512; i++) sb.append('x');
+      String value = sb.toString();
+
+      // a few small commands stay queued
+      cache1.put("k0", "v0");
+      assert replQueue.getElementsCount() == 1;
+      assert replQueue.getFlushCount() == 0;
+
+      // enough data to exceed the byte limit several times over
+      int numKeys = 32;
+      for (int i = 1; i <= numKeys; i++) cache1.put("k" + i, value);
+      assert replQueue.getFlushCount() > 0;
+      assert replQueue.getAverageBatchBytes() > 0;
+
+      long start = System.currentTimeMillis();
+      while (System.currentTimeMillis() - start < 5000) {
+         if (value.equals(cache2.get("k" + (numKeys - replQueue.getElementsCount())))) break;
+         Thread.sleep(50);
+      }
+      assert "v0".equals(cache2.get("k0"));
+      for (int i = 1; i <= numKeys - replQueue.getElementsCount(); i++) {
+         assert value.equals(cache2.get("k" + i)) : "k" + i + " not replicated";
+      }
+
+      replQueue.flush();
+      start = System.currentTimeMillis();
+      while (System.currentTimeMillis() - start < 5000) {
+         if (cache2.get("k" + numKeys) != null) break;
+         Thread.sleep(50);
+      }
+      assert value.equals(cache2.get("k" + numKeys));
+      assert replQueue.getElementsCount() == 0;
+   }
+}
@@ -0,0 +1,77 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+@Test(testName = "stats.HistogramTest", groups = "unit")
+public class HistogramTest extends AbstractInfinispanTest {
+
+   public void testEmpty() {
+      Histogram h = new Histogram();
+      assert h.getCount() == 0;
+      assert h.getMean() == 0;
+      assert h.getValueAtPercentile(99) == 0;
+   }
+
+   public void testPercentilesWithinRelativeError() {
+      Histogram h = new Histogram();
+      for (long i = 1; i <= 100000; i++) h.record(i);
+      assert h.getCount() == 100000;
+      assert h.getMax() == 100000;
+      assertWithinError(h.getValueAtPercentile(50), 50000);
+      assertWithinError(h.getValueAtPercentile(99), 99000);
+      assert h.getValueAtPercentile(100) == 100000;
+      assert Math.abs(h.getMean() - 50000.5) < 0.001;
+   }
+
+   public void testSmallValuesAreExact() {
+      Histogram h = new Histogram();
+      for (long i = 0; i < 16; i++) h.record(i);
+      assert h.getValueAtPercentile(50) == 7 : h.getValueAtPercentile(50);
+      assert h.getValueAtPercentile(100) == 15;
+   }
+
+   public void testBucketBoundaries() {
+      long[] values = {0, 1, 15, 16, 17, 31, 32, 1023, 1024, Integer.MAX_VALUE, Long.MAX_VALUE};
+      for (long v : values) {
+         int index = Histogram.indexOf(v);
+         assert Histogram.highestValueIn(index) >= v : "value " + v + " outside of bucket " + index;
+         if (index > 0) assert Histogram.highestValueIn(index - 1) < v : "value " + v + " belongs to a lower bucket";
+      }
+   }
+
+   public void testReset() {
+      Histogram h = new Histogram();
+      h.record(42);
+      h.reset();
+      assert h.getCount() == 0;
+      assert h.getMax() == 0;
+      assert h.getValueAtPercentile(50) == 0;
+   }
+
+   private void assertWithinError(long actual, long expected) {
+      assert Math.abs(actual - expected) <= expected / 16 : "expected " + expected + " but was " + actual;
+   }
+}
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+@Test(testName = "stats.StripedHistogramTest", groups = "unit")
+public class StripedHistogramTest extends AbstractInfinispanTest {
+
+   public void testConcurrentRecording() throws Exception {
+      final StripedHistogram h = new StripedHistogram(4);
+      final int threads = 8;
+      final int perThread = 10000;
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] workers = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+         final long offset = t * perThread;
+         workers[t] = new Thread() {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  return;
+               }
+               for (long i = 1; i <= perThread; i++) h.record(offset + i);
+            }
+         };
+         workers[t].start();
+      }
+      start.countDown();
+      for (Thread w : workers) w.join();
+
+      Histogram snapshot = h.snapshot();
+      long total = (long) threads * perThread;
+      assert snapshot.getCount() == total;
+      assert snapshot.getMax() == total;
+      assert Math.abs(snapshot.getMean() - (total + 1) / 2d) < 0.001;
+      long median = snapshot.getValueAtPercentile(50);
+      assert Math.abs(median - total / 2) <= total / 2 / 16 : "median was " + median;
+   }
+
+   public void testReset() {
+      StripedHistogram h = new StripedHistogram();
+      h.record(42);
+      assert h.snapshot().getCount() == 1;
+      h.reset();
+      assert h.snapshot().getCount() == 0;
+      assert h.snapshot().getMax() == 0;
+   }
+}
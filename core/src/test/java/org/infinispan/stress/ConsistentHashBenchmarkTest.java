@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.NodeTopologyInfo;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
+import org.infinispan.distribution.ch.TopologyInfo;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.hash.MurmurHash3;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compares the cost of {@link ConsistentHash#locate(Object, int)} and
+ * {@link ConsistentHash#isKeyLocalToAddress(Address, Object, int)} for {@link DefaultConsistentHash},
+ * {@link TopologyAwareConsistentHash} and {@link SegmentedConsistentHash}, over a range of cluster sizes.
+ *
+ * @since 5.0
+ */
+@Test(testName = "stress.ConsistentHashBenchmarkTest", groups = "stress", enabled = false, description = "Disabled by default, designed to be run manually.")
+public class ConsistentHashBenchmarkTest {
+
+   private static final int[] NUM_NODES = {2, 10, 100, 500};
+   private static final int NUM_OWNERS = 2;
+   private static final int NUM_KEYS = 10000;
+   private static final int WARMUP_ROUNDS = 50;
+   private static final int ROUNDS = 200;
+
+   public void testLookups() {
+      Object[] keys = new Object[NUM_KEYS];
+      for (int i = 0; i < NUM_KEYS; i++) keys[i] = "key" + i;
+
+      System.out.println(String.format("%-32s %6s %14s %14s", "Consistent hash", "Nodes", "locate ns", "isLocal ns"));
+      for (int numNodes : NUM_NODES) {
+         Set<Address> addresses = new HashSet<Address>();
+         TopologyInfo topologyInfo = new TopologyInfo();
+         for (int i = 0; i < numNodes; i++) {
+            Address a = new TestAddress(i);
+            addresses.add(a);
+            topologyInfo.addNodeTopologyInfo(a, new NodeTopologyInfo("m" + i, "r" + (i % 4), "s" + (i % 2), a));
+         }
+         Address local = addresses.iterator().next();
+
+         ConsistentHash[] hashes = {new DefaultConsistentHash(new MurmurHash3()),
+                                    new TopologyAwareConsistentHash(new MurmurHash3()),
+                                    new SegmentedConsistentHash(new MurmurHash3())};
+         for (ConsistentHash ch : hashes) {
+            ch.setTopologyInfo(topologyInfo);
+            ch.setCaches(addresses);
+            run(ch, keys, local, WARMUP_ROUNDS);
+            long[] nanos = run(ch, keys, local, ROUNDS);
+            long lookups = (long) ROUNDS * NUM_KEYS;
+            System.out.println(String.format("%-32s %6d %14.1f %14.1f", ch.getClass().getSimpleName(), numNodes,
+                  (double) nanos[0] / lookups, (double) nanos[1] / lookups));
+         }
+      }
+   }
+
+   private long[] run(ConsistentHash ch, Object[] keys, Address local, int rounds) {
+      int found = 0;
+      long locateNanos = 0, isLocalNanos = 0;
+      for (int r = 0; r < rounds; r++) {
+         long start = System.nanoTime();
+         for (Object key : keys) found += ch.locate(key, NUM_OWNERS).size();
+         locateNanos += System.nanoTime() - start;
+
+         start = System.nanoTime();
+         for (Object key : keys) if (ch.isKeyLocalToAddress(local, key, NUM_OWNERS)) found++;
+         isLocalNanos += System.nanoTime() - start;
+      }
+      // keep the results alive so the lookups cannot be optimised away
+      if (found == 0) throw new IllegalStateException("No owners found");
+      return new long[]{locateNanos, isLocalNanos};
+   }
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures synchronous replication throughput with large values, replicated one at a time via put() and in batches via
+ * putAll(), which is where the cost of copying marshalled commands on their way to the wire shows.
+ *
+ * @since 5.0
+ */
+@Test(testName = "stress.LargeValueReplicationBenchmarkTest", groups = "stress", enabled = false, description = "Disabled by default, designed to be run manually.")
+public class LargeValueReplicationBenchmarkTest extends MultipleCacheManagersTest {
+
+   private static final int[] VALUE_SIZES = {64 * 1024, 512 * 1024, 2 * 1024 * 1024};
+   private static final long WARMUP_MILLIS = 5000;
+   private static final long RUN_MILLIS = 10000;
+   private static final int BATCH_SIZE = 16;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration replSync = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC);
+      replSync.setSyncReplTimeout(60000);
+      createClusteredCaches(2, "replSync", replSync);
+   }
+
+   public void testReplicationThroughput() {
+      Cache<Object, Object> cache = cache(0, "replSync");
+      for (int size : VALUE_SIZES) {
+         byte[][] values = values(size, BATCH_SIZE);
+         put(cache, values, WARMUP_MILLIS);
+         report("put", size, put(cache, values, RUN_MILLIS), RUN_MILLIS);
+         putAll(cache, values, WARMUP_MILLIS);
+         report("putAll", size, putAll(cache, values, RUN_MILLIS), RUN_MILLIS);
+         cache.clear();
+      }
+   }
+
+   private long put(Cache<Object, Object> cache, byte[][] values, long millis) {
+      long writes = 0;
+      long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+      while (System.nanoTime() < end) {
+         cache.put("key" + (writes % values.length), values[(int) (writes % values.length)]);
+         writes++;
+      }
+      return writes;
+   }
+
+   private long putAll(Cache<Object, Object> cache, byte[][] values, long millis) {
+      Map<Object, Object> batch = new HashMap<Object, Object>();
+      for (int i = 0; i < values.length; i++) batch.put("key" + i, values[i]);
+      long writes = 0;
+      long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+      while (System.nanoTime() < end) {
+         cache.putAll(batch);
+         writes += values.length;
+      }
+      return writes;
+   }
+
+   private void report(String operation, int valueSize, long writes, long millis) {
+      double seconds = millis / 1000d;
+      System.out.println(String.format("%-6s %8d byte values: %10.1f writes/s %10.1f MB/s", operation, valueSize,
+            writes / seconds, writes * (double) valueSize / (1024 * 1024) / seconds));
+   }
+
+   private byte[][] values(int size, int count) {
+      Random r = new Random(size);
+      byte[][] values = new byte[count][size];
+      for (byte[] v : values) r.nextBytes(v);
+      return values;
+   }
+}
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Cache.get() on a plain local, non-transactional cache, where reads are served directly from the data
+ * container, against the same cache with a pass-through custom interceptor installed, which forces every read through
+ * the interceptor chain.
+ * <p/>
+ * Reports throughput and, on JVMs that support thread allocation accounting, the bytes allocated per read.
+ *
+ * @since 5.0
+ */
+@Test(testName = "stress.LocalReadStressTest", groups = "stress", enabled = false, description = "Disabled by default, designed to be run manually.")
+public class LocalReadStressTest {
+
+   private static final int NUM_KEYS = 1000;
+   private static final int WARMUP_ITERATIONS = 3;
+   private static final int MEASUREMENT_ITERATIONS = 5;
+   private static final int READS_PER_ITERATION = 5000000;
+
+   public void testDirectReads() throws Exception {
+      doTest(false);
+   }
+
+   public void testReadsThroughInterceptorChain() throws Exception {
+      doTest(true);
+   }
+
+   private void doTest(boolean forceInterceptorChain) throws Exception {
+      Configuration c = TestCacheManagerFactory.getDefaultConfiguration(false);
+      c.setExposeJmxStatistics(false);
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(c);
+      try {
+         Cache<Integer, String> cache = cm.getCache();
+         if (forceInterceptorChain) cache.getAdvancedCache().addInterceptor(new PassThroughInterceptor(), 0);
+         Integer[] keys = new Integer[NUM_KEYS];
+         for (int i = 0; i < NUM_KEYS; i++) {
+            keys[i] = i;
+            cache.put(keys[i], "value" + i);
+         }
+
+         String name = forceInterceptorChain ? "Interceptor chain" : "Direct";
+         for (int i = 0; i < WARMUP_ITERATIONS; i++) runIteration(cache, keys);
+         long totalOps = 0;
+         for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            runIteration(cache, keys);
+            long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            long allocated = allocatedBytes() - allocatedBefore;
+            long opsPerMs = READS_PER_ITERATION / elapsedMillis;
+            totalOps += opsPerMs;
+            System.out.println(name + " iteration " + (i + 1) + ": " + opsPerMs + " reads/ms"
+                  + (allocatedBefore < 0 ? "" : ", " + (double) allocated / READS_PER_ITERATION + " bytes allocated/read"));
+         }
+         System.out.println(name + " average: " + (totalOps / MEASUREMENT_ITERATIONS) + " reads/ms");
+      } finally {
+         TestingUtil.killCacheManagers(cm);
+      }
+   }
+
+   private void runIteration(Cache<Integer, String> cache, Integer[] keys) {
+      int found = 0;
+      for (int i = 0; i < READS_PER_ITERATION; i++) {
+         if (cache.get(keys[i % NUM_KEYS]) != null) found++;
+      }
+      assert found == READS_PER_ITERATION;
+   }
+
+   /**
+    * @return the bytes allocated by the current thread so far, or -1 if the JVM cannot tell
+    */
+   private static long allocatedBytes() {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      try {
+         Method m = bean.getClass().getMethod("getThreadAllocatedBytes", long.class);
+         m.setAccessible(true);
+         return (Long) m.invoke(bean, Thread.currentThread().getId());
+      } catch (Exception e) {
+         return -1;
+      }
+   }
+
+   public static class PassThroughInterceptor extends CommandInterceptor {
+   }
+}
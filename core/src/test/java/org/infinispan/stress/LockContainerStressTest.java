@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.util.concurrent.locks.containers.LockContainer;
+import org.infinispan.util.concurrent.locks.containers.LockFreePerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReadWriteLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReentrantPerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReentrantStripedLockContainer;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Microbenchmark of lock containers under a read-mostly workload on a small set of hot keys.
+ * <p/>
+ * Each container is measured the same way: {@link #WARMUP_ITERATIONS} untimed iterations followed by {@link
+ * #MEASUREMENT_ITERATIONS} timed iterations of {@link #ITERATION_MILLIS} each, with {@link #NUM_THREADS} threads
+ * repeatedly locking and unlocking a random key out of {@link #NUM_KEYS}.  {@link #READ_PERCENTAGE} percent of the
+ * operations are reads, which take a shared lock on containers that support one and an exclusive lock otherwise.
+ * Throughput is reported per iteration and averaged, in lock/unlock pairs per millisecond.
+ *
+ * @since 5.0
+ */
+@Test(testName = "stress.LockContainerStressTest", groups = "stress", enabled = false, description = "Disabled by default, designed to be run manually.")
+public class LockContainerStressTest {
+
+   private static final int NUM_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+   private static final int NUM_KEYS = 16;
+   private static final int READ_PERCENTAGE = 90;
+   private static final int CONCURRENCY = 32;
+
+   private static final int WARMUP_ITERATIONS = 3;
+   private static final int MEASUREMENT_ITERATIONS = 5;
+   private static final long ITERATION_MILLIS = 2000;
+
+   public void testReentrantStripedLockContainer() throws Exception {
+      doTest(new ReentrantStripedLockContainer(CONCURRENCY), false);
+   }
+
+   public void testReentrantPerEntryLockContainer() throws Exception {
+      doTest(new ReentrantPerEntryLockContainer(CONCURRENCY), false);
+   }
+
+   public void testLockFreePerEntryLockContainerExclusive() throws Exception {
+      doTest(new LockFreePerEntryLockContainer(CONCURRENCY, null), false);
+   }
+
+   public void testLockFreePerEntryLockContainerShared() throws Exception {
+      doTest(new LockFreePerEntryLockContainer(CONCURRENCY, null), true);
+   }
+
+   private void doTest(LockContainer container, boolean sharedReads) throws Exception {
+      String name = container.getClass().getSimpleName() + (sharedReads ? " (shared reads)" : "");
+      for (int i = 0; i < WARMUP_ITERATIONS; i++) runIteration(container, sharedReads);
+
+      long total = 0;
+      for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+         long opsPerMs = runIteration(container, sharedReads);
+         System.out.println(name + " iteration " + (i + 1) + ": " + opsPerMs + " ops/ms");
+         total += opsPerMs;
+      }
+      System.out.println(name + " average: " + (total / MEASUREMENT_ITERATIONS) + " ops/ms with " + NUM_THREADS
+            + " threads, " + NUM_KEYS + " keys, " + READ_PERCENTAGE + "% reads");
+      assert container.getNumLocksHeld() == 0 : "Locks leaked by " + name;
+   }
+
+   private long runIteration(final LockContainer container, final boolean sharedReads) throws Exception {
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicLong ops = new AtomicLong();
+      final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ITERATION_MILLIS);
+      Thread[] threads = new Thread[NUM_THREADS];
+      for (int t = 0; t < NUM_THREADS; t++) {
+         final Random random = new Random(t);
+         threads[t] = new Thread("LockContainerStressTest-" + t) {
+            @Override
+            public void run() {
+               long count = 0;
+               try {
+                  start.await();
+                  while (System.nanoTime() < end) {
+                     // batch the clock checks so that they don't dominate the measured operation
+                     for (int i = 0; i < 100; i++) {
+                        Integer key = random.nextInt(NUM_KEYS);
+                        boolean read = random.nextInt(100) < READ_PERCENTAGE;
+                        if (read && sharedReads) {
+                           ReadWriteLockContainer rw = (ReadWriteLockContainer) container;
+                           if (rw.acquireSharedLock(key, 10, TimeUnit.SECONDS) == null)
+                              throw new IllegalStateException("Timed out acquiring shared lock on " + key);
+                           rw.releaseSharedLock(key);
+                        } else {
+                           if (container.acquireLock(key, 10, TimeUnit.SECONDS) == null)
+                              throw new IllegalStateException("Timed out acquiring lock on " + key);
+                           container.releaseLock(key);
+                        }
+                        count++;
+                     }
+                  }
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               }
+               ops.addAndGet(count);
+            }
+         };
+         threads[t].start();
+      }
+      long startTime = System.nanoTime();
+      start.countDown();
+      for (Thread t : threads) t.join();
+      long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      return ops.get() / elapsedMillis;
+   }
+}
@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.commands.RemoteCommandsFactory;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.marshall.CompactionPolicy;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.marshall.VersionAwareMarshaller;
+import org.infinispan.test.data.Address;
+import org.infinispan.test.data.Person;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures read throughput on a single hot {@link MarshalledValue} shared by many threads, as happens for a hot key in
+ * a cache with <tt>storeAsBinary</tt> enabled, for each {@link CompactionPolicy}. Each read fetches the instance, as a
+ * local get does, then compacts as the interceptor does when the invocation returns. A run where every read also holds
+ * the value's monitor is included as a baseline for the synchronized implementation this replaced.
+ *
+ * @since 5.0
+ */
+@Test(testName = "stress.MarshalledValueBenchmarkTest", groups = "stress", enabled = false, description = "Disabled by default, designed to be run manually.")
+public class MarshalledValueBenchmarkTest {
+
+   private static final long WARMUP_MILLIS = 2000;
+   private static final long RUN_MILLIS = 5000;
+   private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+
+   public void testHotValueReads() throws Exception {
+      VersionAwareMarshaller marshaller = new VersionAwareMarshaller();
+      marshaller.inject(Thread.currentThread().getContextClassLoader(), new RemoteCommandsFactory(), new GlobalConfiguration());
+      marshaller.start();
+      try {
+         Person person = new Person();
+         person.setName("Jane Doe");
+         Address address = new Address();
+         address.setStreet("Main Street");
+         address.setCity("Springfield");
+         address.setZip(12345);
+         person.setAddress(address);
+         byte[] raw = new MarshalledValue(person, true, marshaller).getRaw();
+
+         System.out.println(String.format("%-16s %8s %16s", "Mode", "Threads", "Reads/ms"));
+         for (int threads : THREAD_COUNTS) {
+            // values arrive serialized, as when replicated or loaded
+            System.out.println(String.format("%-16s %8d %16d", "MONITOR", threads,
+                  readsPerMilli(new MarshalledValue(raw, 0, marshaller), null, threads)));
+            for (CompactionPolicy policy : CompactionPolicy.values())
+               System.out.println(String.format("%-16s %8d %16d", policy, threads,
+                     readsPerMilli(new MarshalledValue(raw, 0, marshaller), policy, threads)));
+         }
+      } finally {
+         marshaller.stop();
+      }
+   }
+
+   /**
+    * @param policy policy to compact with after each read, or null to hold the value's monitor around each read and
+    *               compact as the default policy does
+    */
+   private long readsPerMilli(final MarshalledValue mv, final CompactionPolicy policy, int threads) throws Exception {
+      run(mv, policy, threads, WARMUP_MILLIS);
+      return run(mv, policy, threads, RUN_MILLIS) / RUN_MILLIS;
+   }
+
+   private long run(final MarshalledValue mv, final CompactionPolicy policy, int threads, long millis) throws Exception {
+      final AtomicLong reads = new AtomicLong();
+      final CountDownLatch start = new CountDownLatch(1);
+      final long[] deadline = new long[1];
+      Thread[] readers = new Thread[threads];
+      for (int i = 0; i < threads; i++) {
+         readers[i] = new Thread("Reader-" + i) {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+               } catch (InterruptedException e) {
+                  return;
+               }
+               long count = 0;
+               while (System.nanoTime() < deadline[0]) {
+                  for (int j = 0; j < 100; j++) {
+                     if (policy == null) {
+                        synchronized (mv) {
+                           mv.get().hashCode();
+                           mv.compact(false, false);
+                        }
+                     } else {
+                        mv.get().hashCode();
+                        policy.compact(mv);
+                     }
+                  }
+                  count += 100;
+               }
+               reads.addAndGet(count);
+            }
+         };
+         readers[i].start();
+      }
+      deadline[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+      start.countDown();
+      for (Thread reader : readers) reader.join();
+      return reads.get();
+   }
+}
@@ -0,0 +1,229 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.atomic.AtomicHashMap;
+import org.infinispan.commands.RemoteCommandsFactory;
+import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.RemoveCommand;
+import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.context.Flag;
+import org.infinispan.distribution.RemoteTransactionLogDetails;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.NodeTopologyInfo;
+import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
+import org.infinispan.distribution.ch.TopologyInfo;
+import org.infinispan.distribution.ch.UnionConsistentHash;
+import org.infinispan.distribution.ch.VirtualAddress;
+import org.infinispan.loaders.bucket.Bucket;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.marshall.VersionAwareMarshaller;
+import org.infinispan.marshall.binary.BinaryMarshaller;
+import org.infinispan.remoting.responses.ExceptionResponse;
+import org.infinispan.remoting.responses.ExtendedResponse;
+import org.infinispan.remoting.responses.RequestIgnoredResponse;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.responses.UnsuccessfulResponse;
+import org.infinispan.remoting.responses.UnsureResponse;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
+import org.infinispan.test.data.Person;
+import org.infinispan.transaction.TransactionLog;
+import org.infinispan.transaction.xa.DldGlobalTransaction;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.infinispan.transaction.xa.recovery.InDoubtTxInfoImpl;
+import org.infinispan.transaction.xa.recovery.RecoveryAwareDldGlobalTransaction;
+import org.infinispan.transaction.xa.recovery.RecoveryAwareGlobalTransaction;
+import org.infinispan.transaction.xa.recovery.SerializableXid;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.Immutables;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.infinispan.util.hash.MurmurHash3;
+import org.jgroups.stack.IpAddress;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BinaryMarshaller} with the default JBoss Marshalling based {@link VersionAwareMarshaller}, reporting
+ * the marshalled size of, and round trip throughput for, a sample of each type listed in
+ * {@link org.infinispan.marshall.Ids} plus a plain user type.
+ *
+ * @since 5.0
+ */
+@Test(testName = "stress.MarshallerBenchmarkTest", groups = "stress", enabled = false, description = "Disabled by default, designed to be run manually.")
+public class MarshallerBenchmarkTest {
+
+   private static final int WARMUP_ROUND_TRIPS = 20000;
+   private static final int MEASURED_ROUND_TRIPS = 100000;
+
+   public void testCompareWithJBossMarshaller() throws Exception {
+      VersionAwareMarshaller jboss = new VersionAwareMarshaller();
+      jboss.inject(Thread.currentThread().getContextClassLoader(), new RemoteCommandsFactory(), new GlobalConfiguration());
+      jboss.start();
+      BinaryMarshaller binary = new BinaryMarshaller();
+      binary.inject(Thread.currentThread().getContextClassLoader(), new RemoteCommandsFactory(), new GlobalConfiguration());
+      binary.start();
+      try {
+         Map<String, Object> jbossSamples = samples(jboss);
+         Map<String, Object> binarySamples = samples(binary);
+         System.out.println(String.format("%-40s %12s %12s %16s %16s", "Type", "JBoss bytes", "Binary bytes", "JBoss trips/ms", "Binary trips/ms"));
+         long jbossBytes = 0, binaryBytes = 0;
+         for (String name : jbossSamples.keySet()) {
+            Object jbossSample = jbossSamples.get(name);
+            Object binarySample = binarySamples.get(name);
+            int jbossSize = jboss.objectToByteBuffer(jbossSample).length;
+            int binarySize = binary.objectToByteBuffer(binarySample).length;
+            jbossBytes += jbossSize;
+            binaryBytes += binarySize;
+            System.out.println(String.format("%-40s %12d %12d %16d %16d", name, jbossSize, binarySize,
+                  roundTripsPerMilli(jboss, jbossSample), roundTripsPerMilli(binary, binarySample)));
+         }
+         System.out.println(String.format("%-40s %12d %12d", "Total", jbossBytes, binaryBytes));
+      } finally {
+         binary.stop();
+         jboss.stop();
+      }
+   }
+
+   private long roundTripsPerMilli(StreamingMarshaller marshaller, Object sample) throws Exception {
+      for (int i = 0; i < WARMUP_ROUND_TRIPS; i++) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(sample));
+      long start = System.nanoTime();
+      for (int i = 0; i < MEASURED_ROUND_TRIPS; i++) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(sample));
+      return MEASURED_ROUND_TRIPS / Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+   }
+
+   private Map<String, Object> samples(StreamingMarshaller marshaller) throws Exception {
+      Map<String, Object> samples = new LinkedHashMap<String, Object>();
+      Address a1 = new JGroupsAddress(new IpAddress(12345));
+      Address a2 = new JGroupsAddress(new IpAddress(12346));
+      GlobalTransaction gtx = new TransactionFactory().newGlobalTransaction(a1, false);
+      long now = System.currentTimeMillis();
+      Map<Object, Object> map = new HashMap<Object, Object>();
+      for (int i = 0; i < 10; i++) map.put("key" + i, "value" + i);
+      PutKeyValueCommand put = new PutKeyValueCommand("key", "value", false, null, 0, 0, Collections.<Flag>emptySet());
+      RemoveCommand remove = new RemoveCommand("key", null, null, Collections.<Flag>emptySet());
+      PrepareCommand prepare = new PrepareCommand(gtx, true, put, remove);
+      SerializableXid xid = new SerializableXid(new byte[]{1, 2, 3}, new byte[]{4, 5, 6}, 1);
+
+      samples.put("ARRAY_LIST", new ArrayList<Object>(map.values()));
+      samples.put("LINKED_LIST", new LinkedList<Object>(map.values()));
+      samples.put("MAPS", map);
+      samples.put("JDK_SETS", new HashSet<Object>(map.keySet()));
+      samples.put("SINGLETON_LIST", Collections.singletonList("value"));
+      samples.put("SUCCESSFUL_RESPONSE", new SuccessfulResponse("value"));
+      samples.put("EXTENDED_RESPONSE", new ExtendedResponse(new SuccessfulResponse("value"), false));
+      samples.put("EXCEPTION_RESPONSE", new ExceptionResponse(new TimeoutException("timed out")));
+      samples.put("UNSUCCESSFUL_RESPONSE", UnsuccessfulResponse.INSTANCE);
+      samples.put("REQUEST_IGNORED_RESPONSE", RequestIgnoredResponse.INSTANCE);
+      samples.put("IMMORTAL_ENTRY", InternalEntryFactory.create("key", "value", now, -1, now, -1));
+      samples.put("MORTAL_ENTRY", InternalEntryFactory.create("key", "value", now, 200000, now, -1));
+      samples.put("TRANSIENT_ENTRY", InternalEntryFactory.create("key", "value", now, -1, now, 4000000));
+      samples.put("TRANSIENT_MORTAL_ENTRY", InternalEntryFactory.create("key", "value", now, 200000, now, 4000000));
+      samples.put("IMMORTAL_VALUE", InternalEntryFactory.createValue("value", now, -1, now, -1));
+      samples.put("MORTAL_VALUE", InternalEntryFactory.createValue("value", now, 200000, now, -1));
+      samples.put("TRANSIENT_VALUE", InternalEntryFactory.createValue("value", now, -1, now, 4000000));
+      samples.put("TRANSIENT_MORTAL_VALUE", InternalEntryFactory.createValue("value", now, 200000, now, 4000000));
+      samples.put("IMMUTABLE_MAP", Immutables.immutableMapWrap(map));
+
+      AtomicHashMap<Object, Object> ahm = new AtomicHashMap<Object, Object>();
+      ahm.initForWriting();
+      ahm.putAll(map);
+      samples.put("ATOMIC_HASH_MAP", ahm);
+      AtomicHashMap<Object, Object> changed = new AtomicHashMap<Object, Object>();
+      changed.initForWriting();
+      changed.put("k1", "v1");
+      changed.remove("k1");
+      changed.clear();
+      // The delta carries one each of the put, remove and clear operations
+      samples.put("ATOMIC_HASH_MAP_DELTA (+ PUT, REMOVE, CLEAR operations)", changed.delta());
+
+      samples.put("GLOBAL_TRANSACTION", gtx);
+      samples.put("JGROUPS_ADDRESS", a1);
+      samples.put("MARSHALLED_VALUE", new MarshalledValue("value", true, marshaller));
+      samples.put("TRANSACTION_LOG_ENTRY", new TransactionLog.LogEntry(gtx, put, remove));
+      Bucket bucket = new Bucket();
+      bucket.setBucketName("bucket");
+      bucket.addEntry((InternalCacheEntry) samples.get("IMMORTAL_ENTRY"));
+      samples.put("BUCKET", bucket);
+      samples.put("DEADLOCK_DETECTING_GLOBAL_TRANSACTION", new DldGlobalTransaction(a1, false));
+
+      Set<Address> members = new HashSet<Address>(Arrays.asList(a1, a2));
+      DefaultConsistentHash dch = new DefaultConsistentHash(new MurmurHash3());
+      dch.setCaches(members);
+      samples.put("DEFAULT_CONSISTENT_HASH", dch);
+      DefaultConsistentHash newCh = new DefaultConsistentHash(new MurmurHash3());
+      newCh.setCaches(Collections.singleton(a1));
+      samples.put("UNION_CONSISTENT_HASH", new UnionConsistentHash(dch, newCh));
+      samples.put("UNSURE_RESPONSE", UnsureResponse.INSTANCE);
+      samples.put("BYTE_ARRAY_KEY", new ByteArrayKey("key".getBytes()));
+      NodeTopologyInfo nti = new NodeTopologyInfo("machine", "rack", "site", a1);
+      samples.put("NODE_TOPOLOGY_INFO", nti);
+      TopologyInfo topologyInfo = new TopologyInfo();
+      topologyInfo.addNodeTopologyInfo(a1, nti);
+      topologyInfo.addNodeTopologyInfo(a2, new NodeTopologyInfo("machine2", "rack", "site", a2));
+      TopologyAwareConsistentHash tach = new TopologyAwareConsistentHash(new MurmurHash3());
+      tach.setTopologyInfo(topologyInfo);
+      tach.setCaches(members);
+      samples.put("TOPOLOGY_AWARE_CH", tach);
+
+      samples.put("REPLICABLE_COMMAND (put)", put);
+      samples.put("REPLICABLE_COMMAND (putAll)", new PutMapCommand(map, null, 0, 0, Collections.<Flag>emptySet()));
+      samples.put("REPLICABLE_COMMAND (prepare)", prepare);
+      samples.put("REPLICABLE_COMMAND (clustered get)", new ClusteredGetCommand("key", "cache", Collections.<Flag>emptySet()));
+      samples.put("REMOTE_TX_LOG_DETAILS", new RemoteTransactionLogDetails(false,
+            Arrays.<WriteCommand>asList(put, remove), Collections.singletonList(prepare)));
+      samples.put("XID", xid);
+      RecoveryAwareDldGlobalTransaction xidDldGtx = new RecoveryAwareDldGlobalTransaction(a1, false);
+      xidDldGtx.setXid(xid);
+      samples.put("XID_DEADLOCK_DETECTING_GLOBAL_TRANSACTION", xidDldGtx);
+      RecoveryAwareGlobalTransaction xidGtx = new RecoveryAwareGlobalTransaction(a1, false);
+      xidGtx.setXid(xid);
+      samples.put("XID_GLOBAL_TRANSACTION", xidGtx);
+      samples.put("VIRTUAL_ADDRESS", new VirtualAddress(a1, 3));
+      samples.put("IN_DOUBT_TX_INFO", new InDoubtTxInfoImpl(xid, 42L));
+
+      Person person = new Person();
+      person.setName("Bob Dylan");
+      samples.put("User type (org.infinispan.test.data.Person)", person);
+      return samples;
+   }
+}
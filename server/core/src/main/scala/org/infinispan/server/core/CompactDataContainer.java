@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.core;
+
+import org.infinispan.container.OffHeapDataContainer;
+import org.infinispan.container.OffHeapMemory;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.ByteArrayKey;
+
+/**
+ * Data container for protocol server caches, which hold {@link ByteArrayKey} keys and {@link CacheValue} values, that
+ * stores each entry as a single off-heap record holding the key bytes, the value bytes, the version and the expiry
+ * metadata, rather than as a graph of heap objects per entry.
+ * <p/>
+ * Unlike its superclass, which marshalls keys and values, keys are stored as their raw bytes and values as their
+ * version followed by their raw bytes, so storing or reading an entry costs a copy rather than a trip through the
+ * marshaller.  Any other key or value type, such as the server's own topology information, is marshalled as usual.
+ * Each encoded key and value is prefixed with a tag byte so that the two encodings can never be confused.
+ * <p/>
+ * To use it, name this class in the <tt>dataContainer</tt> element of the configuration of the caches exposed by the
+ * server.
+ *
+ * @since 5.0
+ */
+public class CompactDataContainer extends OffHeapDataContainer {
+
+   private static final byte RAW = 0;
+   private static final byte MARSHALLED = 1;
+   private static final int VERSION_SIZE = 8;
+
+   /**
+    * Used when the container is configured by class name.
+    */
+   public CompactDataContainer() {
+   }
+
+   public CompactDataContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy, StreamingMarshaller marshaller) {
+      super(concurrencyLevel, maxEntries, strategy, marshaller);
+   }
+
+   @Override
+   protected byte[] keyToBytes(Object key) {
+      if (key instanceof ByteArrayKey) return tag(RAW, ((ByteArrayKey) key).getData(), 0);
+      return tag(MARSHALLED, super.keyToBytes(key), 0);
+   }
+
+   @Override
+   protected byte[] valueToBytes(Object value) {
+      // subclasses such as MemcachedValue carry more state than version and data
+      if (value != null && value.getClass() == CacheValue.class) {
+         CacheValue cacheValue = (CacheValue) value;
+         byte[] bytes = tag(RAW, cacheValue.data(), VERSION_SIZE);
+         long version = cacheValue.version();
+         for (int i = 0; i < VERSION_SIZE; i++) bytes[1 + i] = (byte) (version >>> (56 - 8 * i));
+         return bytes;
+      }
+      return tag(MARSHALLED, super.valueToBytes(value), 0);
+   }
+
+   @Override
+   protected Object readKey(long address, int length) {
+      byte[] bytes = OffHeapMemory.copyToArray(address + 1, length - 1);
+      return OffHeapMemory.getByte(address) == RAW ? new ByteArrayKey(bytes) : bytes;
+   }
+
+   @Override
+   protected Object readValue(long address, int length) {
+      if (OffHeapMemory.getByte(address) == MARSHALLED) return OffHeapMemory.copyToArray(address + 1, length - 1);
+      long version = 0;
+      for (int i = 0; i < VERSION_SIZE; i++) version = (version << 8) | (OffHeapMemory.getByte(address + 1 + i) & 0xFF);
+      int offset = 1 + VERSION_SIZE;
+      return new CacheValue(OffHeapMemory.copyToArray(address + offset, length - offset), version);
+   }
+
+   @Override
+   protected Object toKey(Object read) {
+      return read instanceof ByteArrayKey ? read : super.toKey(read);
+   }
+
+   @Override
+   protected Object toValue(Object read) {
+      return read instanceof CacheValue ? read : super.toValue(read);
+   }
+
+   /**
+    * Copies <tt>bytes</tt> into a new array after a tag byte and <tt>gap</tt> bytes left for the caller to fill.
+    */
+   private static byte[] tag(byte tag, byte[] bytes, int gap) {
+      byte[] tagged = new byte[1 + gap + bytes.length];
+      tagged[0] = tag;
+      System.arraycopy(bytes, 0, tagged, 1 + gap, bytes.length);
+      return tagged;
+   }
+}
@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.core
+
+import org.testng.annotations.Test
+import org.testng.Assert._
+import org.infinispan.eviction.EvictionStrategy
+import org.infinispan.util.ByteArrayKey
+
+/**
+ * Tests that {@link CompactDataContainer} round trips protocol keys and values without marshalling them, and
+ * still stores other types.
+ *
+ * @since 5.0
+ */
+@Test(groups = Array("functional"), testName = "server.core.CompactDataContainerTest")
+class CompactDataContainerTest extends AbstractMarshallingTest {
+
+   def testCacheValues {
+      val container = new CompactDataContainer(4, -1, EvictionStrategy.NONE, marshaller)
+      try {
+         val key = new ByteArrayKey(Array[Byte](1, 2, 3))
+         val value = new CacheValue(getBigByteArray, Long.MinValue + 7)
+         container.put(key, value, -1, -1)
+         val entry = container.get(new ByteArrayKey(Array[Byte](1, 2, 3)))
+         assertEquals(entry.getValue, value)
+         assertEquals(entry.getValue.asInstanceOf[CacheValue].version, Long.MinValue + 7)
+         assertEquals(container.keySet.iterator.next, key)
+         assertTrue(container.containsKey(key))
+         assertEquals(container.remove(key).getValue, value)
+         assertFalse(container.containsKey(key))
+      } finally {
+         container.stop
+      }
+   }
+
+   def testOtherTypesAreMarshalled {
+      val container = new CompactDataContainer(4, -1, EvictionStrategy.NONE, marshaller)
+      try {
+         container.put("view", "members", -1, -1)
+         // same bytes as the marshalled form must not be confused with the String key
+         val marshalledKey = new ByteArrayKey(marshaller.objectToByteBuffer("view"))
+         container.put(marshalledKey, new CacheValue(Array[Byte](9), 1), -1, -1)
+         assertEquals(container.get("view").getValue, "members")
+         assertEquals(container.get(marshalledKey).getValue, new CacheValue(Array[Byte](9), 1))
+         assertEquals(container.size, 2)
+      } finally {
+         container.stop
+      }
+   }
+
+}
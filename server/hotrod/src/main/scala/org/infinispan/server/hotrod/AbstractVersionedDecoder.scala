@@ -46,6 +46,16 @@ abstract class AbstractVersionedDecoder {
     */
    def readKey(header: HotRodHeader, buffer: ChannelBuffer): (ByteArrayKey, Boolean)
 
+   /**
+    * Read the keys of a multi-key get operation.
+    */
+   def readKeys(header: HotRodHeader, buffer: ChannelBuffer): Seq[ByteArrayKey]
+
+   /**
+    * Read the parameters and the key/value pairs of a multi-key put operation.
+    */
+   def readEntries(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Seq[(ByteArrayKey, Array[Byte])])
+
    /**
     * Read the parameters of the operation, if present.
     */
@@ -76,6 +86,16 @@ abstract class AbstractVersionedDecoder {
     */
    def createGetResponse(header: HotRodHeader, v: CacheValue): AnyRef
 
+   /**
+    * Create a response for a multi-key get request containing the entries found.
+    */
+   def createGetAllResponse(header: HotRodHeader, entries: Map[ByteArrayKey, CacheValue]): AnyRef
+
+   /**
+    * Create a response for a multi-key put request.
+    */
+   def createPutAllResponse(header: HotRodHeader): AnyRef
+
    /**
     * Handle a protocol specific header reading.
     */
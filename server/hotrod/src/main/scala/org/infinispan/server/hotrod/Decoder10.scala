@@ -26,7 +26,7 @@ import org.infinispan.server.core.Operation._
 import HotRodOperation._
 import OperationStatus._
 import org.infinispan.Cache
-import org.infinispan.stats.Stats
+import org.infinispan.stats.{LatencyType, Stats}
 import org.infinispan.server.core._
 import collection.mutable
 import collection.immutable
@@ -64,6 +64,8 @@ object Decoder10 extends AbstractVersionedDecoder with Logging {
          case 0x15 => (StatsRequest, true)
          case 0x17 => (PingRequest, true)
          case 0x19 => (BulkGetRequest, false)
+         case 0x1B => (GetAllRequest, false)
+         case 0x1D => (PutAllRequest, false)
          case _ => throw new HotRodUnknownOperationException("Unknown operation: " + streamOp, messageId)
       }
       if (isTraceEnabled) trace("Operation code: %d has been matched to %s", streamOp, op)
@@ -92,6 +94,21 @@ object Decoder10 extends AbstractVersionedDecoder with Logging {
 
    private def readKey(buffer: ChannelBuffer): ByteArrayKey = new ByteArrayKey(readRangedBytes(buffer))
 
+   override def readKeys(h: HotRodHeader, buffer: ChannelBuffer): Seq[ByteArrayKey] = {
+      val count = readUnsignedInt(buffer)
+      if (isTraceEnabled) trace("About to read %d keys", count)
+      for (i <- 0 until count) yield readKey(buffer)
+   }
+
+   override def readEntries(h: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Seq[(ByteArrayKey, Array[Byte])]) = {
+      val lifespan = readLifespanOrMaxIdle(buffer)
+      val maxIdle = readLifespanOrMaxIdle(buffer)
+      val count = readUnsignedInt(buffer)
+      if (isTraceEnabled) trace("About to read %d entries", count)
+      val entries = for (i <- 0 until count) yield (readKey(buffer), readRangedBytes(buffer))
+      (new RequestParameters(-1, lifespan, maxIdle, -1), entries)
+   }
+
    override def readParameters(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Boolean) = {
       header.op match {
          case RemoveRequest => (null, true)
@@ -151,6 +168,12 @@ object Decoder10 extends AbstractVersionedDecoder with Logging {
             h.topologyId, None, 0)
    }
 
+   override def createGetAllResponse(h: HotRodHeader, entries: Map[ByteArrayKey, CacheValue]): AnyRef =
+      new GetAllResponse(h.messageId, h.cacheName, h.clientIntel, GetAllResponse, Success, h.topologyId, entries)
+
+   override def createPutAllResponse(h: HotRodHeader): AnyRef =
+      new Response(h.messageId, h.cacheName, h.clientIntel, PutAllResponse, Success, h.topologyId)
+
    override def customReadHeader(h: HotRodHeader, buffer: ChannelBuffer, cache: Cache[ByteArrayKey, CacheValue]): AnyRef = {
       h.op match {
          case ClearRequest => {
@@ -210,6 +233,16 @@ object Decoder10 extends AbstractVersionedDecoder with Logging {
       stats += ("misses" -> cacheStats.getMisses.toString)
       stats += ("removeHits" -> cacheStats.getRemoveHits.toString)
       stats += ("removeMisses" -> cacheStats.getRemoveMisses.toString)
+      for (latencyType <- LatencyType.values) {
+         val latencies = cacheStats.getLatencies(latencyType)
+         if (latencies != null) {
+            val prefix = latencyType.getStatName + "Latency"
+            stats += (prefix + "P50" -> latencies.getValueAtPercentile(50).toString)
+            stats += (prefix + "P99" -> latencies.getValueAtPercentile(99).toString)
+            stats += (prefix + "P999" -> latencies.getValueAtPercentile(99.9).toString)
+            stats += (prefix + "Max" -> latencies.getMax.toString)
+         }
+      }
       new StatsResponse(h.messageId, h.cacheName, h.clientIntel, immutable.Map[String, String]() ++ stats, h.topologyId)
    }
 
@@ -247,6 +280,8 @@ object Decoder10 extends AbstractVersionedDecoder with Logging {
          case StatsRequest => StatsResponse
          case PingRequest => PingResponse
          case BulkGetRequest => BulkGetResponse
+         case GetAllRequest => GetAllResponse
+         case PutAllRequest => PutAllResponse
       }
    }
 
@@ -267,6 +302,8 @@ object OperationResponse extends Enumeration {
    val StatsResponse = Value(0x16)
    val PingResponse = Value(0x18)
    val BulkGetResponse = Value(0x1A)
+   val GetAllResponse = Value(0x1C)
+   val PutAllResponse = Value(0x1E)
    val ErrorResponse = Value(0x50)
 }
 
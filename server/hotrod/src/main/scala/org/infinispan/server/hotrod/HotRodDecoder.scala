@@ -35,6 +35,9 @@ import org.infinispan.util.ByteArrayKey
 import java.io.{IOException, StreamCorruptedException}
 import org.jboss.netty.buffer.ChannelBuffer
 import org.jboss.netty.channel.Channel
+import org.infinispan.server.hotrod.HotRodOperation._
+import java.util.concurrent.TimeUnit
+import collection.{immutable, mutable}
 
 /**
  * Top level Hot Rod decoder that after figuring out the version, delegates the rest of the reading to the
@@ -141,13 +144,40 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
       header.decoder.createGetResponse(header, v)
 
    override def createMultiGetResponse(pairs: Map[ByteArrayKey, CacheValue]): AnyRef =
-      null // Unsupported
+      header.decoder.createGetAllResponse(header, pairs)
 
    override protected def customDecodeHeader(ch: Channel, buffer: ChannelBuffer): AnyRef =
       writeResponse(ch, header.decoder.customReadHeader(header, buffer, cache))
 
-   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef =
-      writeResponse(ch, header.decoder.customReadKey(header, buffer, cache))
+   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case GetAllRequest => writeResponse(ch, getAll(buffer))
+         case PutAllRequest => writeResponse(ch, putAll(buffer))
+         case _ => writeResponse(ch, header.decoder.customReadKey(header, buffer, cache))
+      }
+   }
+
+   private def getAll(buffer: ChannelBuffer): AnyRef = {
+      val keys = header.decoder.readKeys(header, buffer)
+      val found = mutable.Map.empty[ByteArrayKey, CacheValue]
+      for (k <- keys) {
+         val v = cache.get(k)
+         if (v != null) found += (k -> v)
+      }
+      createMultiGetResponse(immutable.Map[ByteArrayKey, CacheValue]() ++ found)
+   }
+
+   private def putAll(buffer: ChannelBuffer): AnyRef = {
+      val (parameters, entries) = header.decoder.readEntries(header, buffer)
+      val map = new java.util.HashMap[ByteArrayKey, CacheValue](entries.size * 4 / 3 + 1)
+      for ((k, rawV) <- entries)
+         map.put(k, header.decoder.createValue(parameters, generateVersion(cache), rawV))
+      // Get an optimised cache in case we can make the operation more efficient
+      getOptimizedCache(cache).putAll(map,
+         toMillis(parameters.lifespan), TimeUnit.MILLISECONDS,
+         toMillis(parameters.maxIdle), TimeUnit.MILLISECONDS)
+      header.decoder.createPutAllResponse(header)
+   }
 
    override protected def customDecodeValue(ch: Channel, buffer: ChannelBuffer): AnyRef =
       writeResponse(ch, header.decoder.customReadValue(header, buffer, cache))
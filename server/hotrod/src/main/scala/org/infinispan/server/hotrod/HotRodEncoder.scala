@@ -31,7 +31,7 @@ import scala.collection.JavaConversions._
 import org.jboss.netty.channel.ChannelHandlerContext
 import org.jboss.netty.handler.codec.oneone.OneToOneEncoder
 import org.jboss.netty.channel.Channel
-import org.jboss.netty.buffer.ChannelBuffer
+import org.jboss.netty.buffer.{ChannelBuffers, ChannelBuffer}
 import org.infinispan.server.core.transport.ExtendedChannelBuffer._
 
 /**
@@ -72,7 +72,7 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
          case g: GetWithVersionResponse => {
             if (g.status == Success) {
                buffer.writeLong(g.version)
-               writeRangedBytes(g.data.get, buffer)
+               return writeValue(g.data.get, buffer)
             }
          }
          case g: BulkGetResponse => {
@@ -92,7 +92,16 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
                buffer.writeByte(0) // Done
             }
          }
-         case g: GetResponse => if (g.status == Success) writeRangedBytes(g.data.get, buffer)
+         case g: GetAllResponse => {
+            if (isTrace) trace("About to write %d entries found by multi-key get", g.entries.size)
+            for ((k, v) <- g.entries) {
+               buffer.writeByte(1) // Not done
+               writeRangedBytes(k.getData, buffer)
+               writeRangedBytes(v.data, buffer)
+            }
+            buffer.writeByte(0) // Done
+         }
+         case g: GetResponse => if (g.status == Success) return writeValue(g.data.get, buffer)
          case e: ErrorResponse => writeString(e.msg, buffer)
          case _ => if (buffer == null) throw new IllegalArgumentException("Response received is unknown: " + msg);         
       }
@@ -101,6 +110,20 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
 
    val DEFAULT_HASH_FUNCTION_VERSION: Byte = 2
 
+   /**
+    * Writes the value a get response ends with.  Large values are appended to the response by reference instead of
+    * being copied into the response buffer, which is safe since stored values are never modified once created.
+    */
+   private def writeValue(value: Array[Byte], buffer: ChannelBuffer): ChannelBuffer = {
+      writeUnsignedInt(value.length, buffer)
+      if (value.length < WrapValueThreshold) {
+         buffer.writeBytes(value)
+         buffer
+      } else {
+         ChannelBuffers.wrappedBuffer(buffer, ChannelBuffers.wrappedBuffer(value))
+      }
+   }
+
    private def getTopologyResponse(r: Response): AbstractTopologyResponse = {
       // If clustered, set up a cache for topology information
       if (isClustered) {
@@ -193,4 +216,6 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
 
 object HotRodEncoder extends Logging {
    private val Magic = 0xA1
+   // below this size, copying is cheaper than managing a composite buffer
+   private val WrapValueThreshold = 512
 }
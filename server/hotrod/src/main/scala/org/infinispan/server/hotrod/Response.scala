@@ -24,7 +24,8 @@ package org.infinispan.server.hotrod
 
 import OperationStatus._
 import OperationResponse._
-import org.infinispan.util.Util
+import org.infinispan.util.{ByteArrayKey, Util}
+import org.infinispan.server.core.CacheValue
 
 /**
  * A basic responses. The rest of this file contains other response types.
@@ -87,6 +88,20 @@ class BulkGetResponse(override val messageId: Long, override val cacheName: Stri
    }
 }
 
+class GetAllResponse(override val messageId: Long, override val cacheName: String, override val clientIntel: Short,
+                     override val operation: OperationResponse, override val status: OperationStatus,
+                     override val topologyId: Int, val entries: Map[ByteArrayKey, CacheValue])
+      extends Response(messageId, cacheName, clientIntel, operation, status, topologyId) {
+   override def toString = {
+      new StringBuilder().append("GetAllResponse").append("{")
+         .append("messageId=").append(messageId)
+         .append(", operation=").append(operation)
+         .append(", status=").append(status)
+         .append(", entries=").append(entries.size)
+         .append("}").toString
+   }
+}
+
 class GetWithVersionResponse(override val messageId: Long, override val cacheName: String,
                              override val clientIntel: Short, override val operation: OperationResponse,
                              override val status: OperationStatus,
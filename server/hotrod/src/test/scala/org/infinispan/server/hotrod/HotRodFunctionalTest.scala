@@ -398,6 +398,31 @@ class HotRodFunctionalTest extends HotRodSingleNodeTest {
       }
    }
 
+   def testGetAll(m: Method) {
+      val size = 20
+      for (i <- 0 until size) {
+         val status = client.put(k(m, i + "k-") , 0, 0, v(m, i + "v-")).status
+         assertStatus(status, Success)
+      }
+      val keys = (0 until size).map(i => k(m, i + "k-")) :+ k(m, "missing-")
+      val resp = client.getAll(keys)
+      assertStatus(resp.status, Success)
+      val data = resp.bulkData
+      assertEquals(size, data.size)
+      for (i <- 0 until size)
+         assertTrue(Arrays.equals(data.get(new ByteArrayKey(k(m, i + "k-"))).get, v(m, i + "v-")))
+      assertFalse(data.contains(new ByteArrayKey(k(m, "missing-"))))
+   }
+
+   def testPutAll(m: Method) {
+      val size = 20
+      val entries = (0 until size).map(i => (k(m, i + "k-"), v(m, i + "v-")))
+      val status = client.putAll(entries, 0, 0).status
+      assertStatus(status, Success)
+      for (i <- 0 until size)
+         assertSuccess(client.get(k(m, i + "k-"), 0), v(m, i + "v-"))
+   }
+
    def testPutBigSizeKey(m: Method) {
       val key = generateRandomString(1024 * 1024).getBytes
       val status = client.put(key, 0, 0, v(m)).status
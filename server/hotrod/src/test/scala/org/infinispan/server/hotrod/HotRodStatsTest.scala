@@ -62,6 +62,9 @@ class HotRodStatsTest extends HotRodSingleNodeTest {
       assertEquals(s.get("hits").get, "1")
       assertEquals(s.get("misses").get, "0")
       assertEquals(s.get("retrievals").get, "1")
+      assertTrue(s.get("putLatencyMax").get.toLong > 0)
+      assertTrue(s.get("getHitLatencyP50").get.toLong > 0)
+      assertEquals(s.get("getMissLatencyMax").get, "0")
    }
 
 }
\ No newline at end of file
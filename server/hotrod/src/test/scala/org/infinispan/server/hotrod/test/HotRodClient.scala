@@ -226,6 +226,22 @@ class HotRodClient(host: String, port: Int, defaultCacheName: String, rspTimeout
       var handler = ch.getPipeline.getLast.asInstanceOf[ClientHandler]
       handler.getResponse(op.id).asInstanceOf[TestBulkGetResponse]
    }
+
+   def getAll(keys: Seq[Array[Byte]]): TestBulkGetResponse = {
+      val op = new GetAllOp(0xA0, 0x1B, defaultCacheName, 1, 0, keys)
+      val writeFuture = writeOp(op)
+      // Get the handler instance to retrieve the answer.
+      var handler = ch.getPipeline.getLast.asInstanceOf[ClientHandler]
+      handler.getResponse(op.id).asInstanceOf[TestBulkGetResponse]
+   }
+
+   def putAll(entries: Seq[(Array[Byte], Array[Byte])], lifespan: Int, maxIdle: Int): TestResponse = {
+      val op = new PutAllOp(0xA0, 0x1D, defaultCacheName, 1, 0, entries, lifespan, maxIdle)
+      val writeFuture = writeOp(op)
+      // Get the handler instance to retrieve the answer.
+      var handler = ch.getPipeline.getLast.asInstanceOf[ClientHandler]
+      handler.getResponse(op.id)
+   }
 }
 
 private class ClientPipelineFactory(client: HotRodClient, rspTimeoutSeconds: Int) extends ChannelPipelineFactory {
@@ -268,7 +284,8 @@ private class Encoder extends OneToOneEncoder {
             buffer.writeByte(op.clientIntel) // client intelligence
             writeUnsignedInt(op.topologyId, buffer) // topology id
             writeRangedBytes(new Array[Byte](0), buffer)
-            if (op.code != 0x13 && op.code != 0x15 && op.code != 0x17 && op.code != 0x19) { // if it's a key based op...
+            if (op.code != 0x13 && op.code != 0x15 && op.code != 0x17 && op.code != 0x19
+                  && op.code != 0x1B && op.code != 0x1D) { // if it's a key based op...
                writeRangedBytes(op.key, buffer) // key length + key
                if (op.value != null) {
                   if (op.code != 0x0D) { // If it's not removeIfUnmodified...
@@ -284,6 +301,19 @@ private class Encoder extends OneToOneEncoder {
                }
             } else if (op.code == 0x19) {
                writeUnsignedInt(op.asInstanceOf[BulkGetOp].count, buffer) // Entry count
+            } else if (op.code == 0x1B) {
+               val keys = op.asInstanceOf[GetAllOp].keys
+               writeUnsignedInt(keys.size, buffer) // Key count
+               keys.foreach(writeRangedBytes(_, buffer))
+            } else if (op.code == 0x1D) {
+               val putAll = op.asInstanceOf[PutAllOp]
+               writeUnsignedInt(putAll.lifespan, buffer) // lifespan
+               writeUnsignedInt(putAll.maxIdle, buffer) // maxIdle
+               writeUnsignedInt(putAll.entries.size, buffer) // Entry count
+               for ((k, v) <- putAll.entries) {
+                  writeRangedBytes(k, buffer)
+                  writeRangedBytes(v, buffer)
+               }
             }
             buffer
          }
@@ -361,7 +391,7 @@ private class Decoder(client: HotRodClient) extends ReplayingDecoder[VoidEnum] w
                }
             } else new TestResponse(id, op.cacheName, op.clientIntel, opCode, status, op.topologyId, topologyChangeResponse)
          }
-         case ContainsKeyResponse | ClearResponse | PingResponse =>
+         case ContainsKeyResponse | ClearResponse | PingResponse | PutAllResponse =>
             new TestResponse(id, op.cacheName, op.clientIntel, opCode, status, op.topologyId, topologyChangeResponse)
          case GetWithVersionResponse  => {
             if (status == Success) {
@@ -382,7 +412,7 @@ private class Decoder(client: HotRodClient) extends ReplayingDecoder[VoidEnum] w
                new TestGetResponse(id, op.cacheName, op.clientIntel, opCode, status, op.topologyId, None, topologyChangeResponse)
             }
          }
-         case BulkGetResponse => {
+         case BulkGetResponse | GetAllResponse => {
             var done = buf.readByte
             val bulkBuffer = mutable.Map.empty[ByteArrayKey, Array[Byte]]
             while (done == 1) {
@@ -390,7 +420,7 @@ private class Decoder(client: HotRodClient) extends ReplayingDecoder[VoidEnum] w
                done = buf.readByte
             }
             val bulk = immutable.Map[ByteArrayKey, Array[Byte]]() ++ bulkBuffer
-            new TestBulkGetResponse(id, op.cacheName, op.clientIntel, bulk, op.topologyId, topologyChangeResponse)
+            new TestBulkGetResponse(id, op.cacheName, op.clientIntel, opCode, bulk, op.topologyId, topologyChangeResponse)
          }
          case ErrorResponse => {
             if (op == null)
@@ -495,6 +525,22 @@ class BulkGetOp(override val magic: Int,
               override val topologyId: Int,
               val count: Int) extends Op(magic, code, cacheName, null, 0, 0, null, 0, 0, clientIntel, topologyId)
 
+class GetAllOp(override val magic: Int,
+               override val code: Byte,
+               override val cacheName: String,
+               override val clientIntel: Byte,
+               override val topologyId: Int,
+               val keys: Seq[Array[Byte]]) extends Op(magic, code, cacheName, null, 0, 0, null, 0, 0, clientIntel, topologyId)
+
+class PutAllOp(override val magic: Int,
+               override val code: Byte,
+               override val cacheName: String,
+               override val clientIntel: Byte,
+               override val topologyId: Int,
+               val entries: Seq[(Array[Byte], Array[Byte])],
+               override val lifespan: Int,
+               override val maxIdle: Int) extends Op(magic, code, cacheName, null, lifespan, maxIdle, null, 0, 0, clientIntel, topologyId)
+
 class TestResponse(override val messageId: Long, override val cacheName: String,
                    override val clientIntel: Short, override val operation: OperationResponse,
                    override val status: OperationStatus,
@@ -535,6 +581,7 @@ class TestStatsResponse(override val messageId: Long, override val cacheName: St
       extends TestResponse(messageId, cacheName, clientIntel, StatsResponse, Success, topologyId, topologyResponse)
 
 class TestBulkGetResponse(override val messageId: Long, override val cacheName: String,
-                          override val clientIntel: Short, val bulkData: Map[ByteArrayKey, Array[Byte]],
+                          override val clientIntel: Short, override val operation: OperationResponse,
+                          val bulkData: Map[ByteArrayKey, Array[Byte]],
                           override val topologyId: Int, override val topologyResponse: Option[AbstractTopologyResponse])
-      extends TestResponse(messageId, cacheName, clientIntel, BulkGetResponse, Success, topologyId, topologyResponse)
\ No newline at end of file
+      extends TestResponse(messageId, cacheName, clientIntel, operation, Success, topologyId, topologyResponse)
\ No newline at end of file